@@ -0,0 +1,133 @@
+package com.upec.factoryscheduling.benchmark;
+
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
+import org.openjdk.jmh.annotations.*;
+import org.optaplanner.core.api.score.Score;
+import org.optaplanner.core.api.score.stream.ConstraintStreamImplType;
+import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.impl.score.director.InnerScoreDirector;
+import org.optaplanner.core.impl.solver.DefaultSolverFactory;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 约束分数计算基准测试
+ * <p>针对 FactorySchedulingConstraintProvider 的每个约束（或全部约束）分别测量：</p>
+ * <ul>
+ *     <li>fullScore：设置工作解并完整计算一次分数，对应求解开始和问题变更时的开销</li>
+ *     <li>incrementalMove：修改一个 Timeslot.maintenance 后增量计算分数，对应局部搜索中每一步的开销</li>
+ * </ul>
+ * <p>运行方式见 README 的"性能基准测试"一节，例如：
+ * {@code mvn -Pbenchmark package exec:exec -Dbenchmark.args="ConstraintScoreBenchmark -p constraint=hardCapacityExceeded"}</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ConstraintScoreBenchmark {
+
+    private static final String VARIABLE_NAME = "maintenance";
+    private static final int MOVE_COUNT = 1 << 14;
+
+    @Param({"500"})
+    private int tasks;
+
+    @Param({"6"})
+    private int proceduresPerTask;
+
+    @Param({"2"})
+    private int slicesPerProcedure;
+
+    @Param({"50"})
+    private int workCenters;
+
+    @Param({"30"})
+    private int horizonDays;
+
+    @Param({"BAVET"})
+    private ConstraintStreamImplType constraintStreamImplType;
+
+    /**
+     * 约束方法名，ALL 表示全部约束
+     */
+    @Param({SelectableConstraintProvider.ALL,
+            "hardWorkCenterMatch", "hardCapacityExceeded",
+            "hardOutsourcingProcedurePreviousTimeConstraint", "hardOutsourcingProcedureNextTimeConstraint",
+            "mediumProcedureSequence", "mediumProcedureSliceSequence", "mediumOrderDateConstraint",
+            "softEarlyCompletion", "softOnTimeStart", "softHighPriorityFirst",
+            "softBalancedLoad", "softContinuousSlices", "softCapacityUtilization"})
+    private String constraint;
+
+    private FactorySchedulingSolution solution;
+    private InnerScoreDirector<FactorySchedulingSolution, ?> scoreDirector;
+
+    /**
+     * 预生成的移动序列，避免在测量过程中生成随机数
+     */
+    private Timeslot[] moveTimeslots;
+    private WorkCenterMaintenance[] moveMaintenances;
+    private int moveIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticProblemGenerator generator = new SyntheticProblemGenerator(tasks, proceduresPerTask,
+                slicesPerProcedure, workCenters, horizonDays, 42L);
+        solution = generator.generate();
+
+        SelectableConstraintProvider.select(constraint);
+        SolverConfig solverConfig = new SolverConfig()
+                .withSolutionClass(FactorySchedulingSolution.class)
+                .withEntityClasses(Timeslot.class)
+                .withConstraintProviderClass(SelectableConstraintProvider.class);
+        solverConfig.getScoreDirectorFactoryConfig().setConstraintStreamImplType(constraintStreamImplType);
+        DefaultSolverFactory<FactorySchedulingSolution> solverFactory =
+                (DefaultSolverFactory<FactorySchedulingSolution>) SolverFactory.<FactorySchedulingSolution>create(solverConfig);
+        scoreDirector = solverFactory.getScoreDirectorFactory().buildScoreDirector(false, false);
+        scoreDirector.setWorkingSolution(solution);
+        scoreDirector.calculateScore();
+
+        // 90%的移动在同一工作中心内换日期，10%移动到任意工作中心，以覆盖工作中心匹配约束
+        Random random = new Random(7L);
+        List<Timeslot> timeslots = solution.getTimeslots();
+        List<WorkCenterMaintenance> maintenances = solution.getMaintenances();
+        moveTimeslots = new Timeslot[MOVE_COUNT];
+        moveMaintenances = new WorkCenterMaintenance[MOVE_COUNT];
+        for (int i = 0; i < MOVE_COUNT; i++) {
+            Timeslot timeslot = timeslots.get(random.nextInt(timeslots.size()));
+            List<WorkCenterMaintenance> candidates = random.nextInt(10) == 0 ? maintenances
+                    : generator.getMaintenancesByWorkCenter().get(timeslot.getProcedure().getWorkCenter().getId());
+            moveTimeslots[i] = timeslot;
+            moveMaintenances[i] = candidates.get(random.nextInt(candidates.size()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scoreDirector.close();
+    }
+
+    @Benchmark
+    public Score<?> fullScore() {
+        scoreDirector.setWorkingSolution(solution);
+        return scoreDirector.calculateScore();
+    }
+
+    @Benchmark
+    public Score<?> incrementalMove() {
+        int i = moveIndex;
+        moveIndex = (i + 1) & (MOVE_COUNT - 1);
+        Timeslot timeslot = moveTimeslots[i];
+        scoreDirector.beforeVariableChanged(timeslot, VARIABLE_NAME);
+        timeslot.setMaintenance(moveMaintenances[i]);
+        scoreDirector.afterVariableChanged(timeslot, VARIABLE_NAME);
+        scoreDirector.triggerVariableListeners();
+        return scoreDirector.calculateScore();
+    }
+}
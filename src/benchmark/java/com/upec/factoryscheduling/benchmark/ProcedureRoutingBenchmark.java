@@ -0,0 +1,159 @@
+package com.upec.factoryscheduling.benchmark;
+
+import com.upec.factoryscheduling.aps.entity.Procedure;
+import com.upec.factoryscheduling.aps.entity.Task;
+import com.upec.factoryscheduling.common.utils.ProcedureRouting;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 工艺路线层级计算基准测试
+ * <p>对比 {@link ProcedureRouting#buildAll(Collection)}（Kahn拓扑序+最长路径，O(V+E)）与原 NodeLevelManager 的
+ * BFS实现（找到更长路径时重新入队）在一批任务上的耗时：</p>
+ * <ul>
+ *     <li>DEEP：工序链，每道工序同时连到其后第1、2、3道工序（先列远的），BFS先找到短路径，之后每找到更长的路径都重新入队</li>
+ *     <li>WIDE：首工序分出 width 条长度不同的并行分支，分支之间有交叉边，最后汇合到末工序</li>
+ * </ul>
+ * <p>例如：{@code mvn -Pbenchmark package exec:exec -Dbenchmark.args="ProcedureRoutingBenchmark -p shape=DEEP,WIDE"}</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ProcedureRoutingBenchmark {
+
+    @Param({"DEEP", "WIDE"})
+    private String shape;
+
+    /**
+     * 每个任务的工序数
+     */
+    @Param({"24", "96", "384"})
+    private int procedures;
+
+    @Param({"200"})
+    private int tasks;
+
+    @Param({"KAHN", "LEGACY_BFS"})
+    private String algorithm;
+
+    private List<Procedure> batch;
+    private List<Procedure> roots;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        batch = new ArrayList<>(tasks * procedures);
+        roots = new ArrayList<>(tasks);
+        Random random = new Random(42L);
+        for (int t = 0; t < tasks; t++) {
+            Task task = new Task();
+            task.setTaskNo("T" + t);
+            List<Procedure> nodes = new ArrayList<>(procedures);
+            for (int i = 0; i < procedures; i++) {
+                Procedure procedure = new Procedure();
+                procedure.setId(task.getTaskNo() + "_" + (i + 1));
+                procedure.setProcedureNo(i + 1);
+                procedure.setTask(task);
+                nodes.add(procedure);
+            }
+            if ("DEEP".equals(shape)) {
+                linkDeep(nodes);
+            } else {
+                linkWide(nodes, random);
+            }
+            batch.addAll(nodes);
+            roots.add(nodes.get(0));
+        }
+    }
+
+    @Benchmark
+    public int levels() {
+        if ("KAHN".equals(algorithm)) {
+            return ProcedureRouting.buildAll(batch).size();
+        }
+        int enqueued = 0;
+        for (Procedure root : roots) {
+            enqueued += legacyCalculateLevels(root);
+        }
+        return enqueued;
+    }
+
+    /**
+     * 链 1→2→…→n，每道工序另有跨过1、2道工序的边
+     */
+    private static void linkDeep(List<Procedure> nodes) {
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int d = 3; d >= 1; d--) {
+                if (i + d < nodes.size()) {
+                    nodes.get(i).addNextProcedure(nodes.get(i + d));
+                }
+            }
+        }
+    }
+
+    /**
+     * 首工序分出若干条长度不同的分支，相邻分支同一位置之间有交叉边，分支末端汇合到末工序
+     */
+    private static void linkWide(List<Procedure> nodes, Random random) {
+        Procedure first = nodes.get(0);
+        Procedure last = nodes.get(nodes.size() - 1);
+        List<Procedure> middle = nodes.subList(1, nodes.size() - 1);
+        int width = Math.max(2, (int) Math.sqrt(middle.size()));
+        List<List<Procedure>> branches = new ArrayList<>();
+        for (int b = 0; b < width; b++) {
+            branches.add(new ArrayList<>());
+        }
+        for (int i = 0; i < middle.size(); i++) {
+            branches.get(random.nextInt(width)).add(middle.get(i));
+        }
+        for (int b = 0; b < width; b++) {
+            List<Procedure> branch = branches.get(b);
+            Procedure previous = first;
+            for (Procedure procedure : branch) {
+                previous.addNextProcedure(procedure);
+                previous = procedure;
+            }
+            previous.addNextProcedure(last);
+            if (b > 0) {
+                List<Procedure> left = branches.get(b - 1);
+                for (int i = 0; i < Math.min(left.size(), branch.size()) - 1; i++) {
+                    left.get(i).addNextProcedure(branch.get(i + 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * 原 NodeLevelManager.calculateLevels：找到更长路径就把节点重新入队，返回入队次数
+     */
+    private static int legacyCalculateLevels(Procedure root) {
+        Queue<Procedure> queue = new LinkedList<>();
+        Map<Procedure, Integer> visited = new HashMap<>();
+        root.setLevel(1);
+        root.setIndex(1);
+        queue.offer(root);
+        visited.put(root, 0);
+        int enqueued = 1;
+        while (!queue.isEmpty()) {
+            Procedure current = queue.poll();
+            int currentLevel = current.getLevel();
+            if (current.getNextProcedure() != null) {
+                for (Procedure nextProcedure : current.getNextProcedure()) {
+                    int newLevel = currentLevel + 1;
+                    if (!visited.containsKey(nextProcedure) || newLevel > visited.get(nextProcedure)) {
+                        nextProcedure.setLevel(newLevel);
+                        nextProcedure.setIndex(newLevel);
+                        visited.put(nextProcedure, newLevel);
+                        queue.offer(nextProcedure);
+                        enqueued++;
+                    }
+                }
+            }
+        }
+        return enqueued;
+    }
+}
@@ -0,0 +1,69 @@
+package com.upec.factoryscheduling.benchmark;
+
+import com.upec.factoryscheduling.aps.solver.FactorySchedulingConstraintProvider;
+import org.optaplanner.core.api.score.stream.Constraint;
+import org.optaplanner.core.api.score.stream.ConstraintFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * 可按方法名选择单个约束的约束提供者
+ * <p>OptaPlanner通过无参构造函数实例化ConstraintProvider，因此被选中的约束通过静态字段传入，
+ * 必须在创建ScoreDirectorFactory之前调用 {@link #select(String)}。
+ * 约束名称使用 {@link FactorySchedulingConstraintProvider} 中的方法名（如 hardCapacityExceeded），
+ * {@link #ALL} 表示全部约束。</p>
+ */
+public class SelectableConstraintProvider extends FactorySchedulingConstraintProvider {
+
+    public static final String ALL = "ALL";
+
+    private static volatile String selected = ALL;
+
+    /**
+     * 选择要启用的约束
+     *
+     * @param constraint 约束方法名或 {@link #ALL}
+     * @throws IllegalArgumentException 约束方法不存在时抛出
+     */
+    public static void select(String constraint) {
+        if (!ALL.equals(constraint) && !constraintMethods().containsKey(constraint)) {
+            throw new IllegalArgumentException("约束不存在: " + constraint + "，可选: " + constraintNames());
+        }
+        selected = constraint;
+    }
+
+    /**
+     * FactorySchedulingConstraintProvider 中定义的全部约束方法名
+     */
+    public static List<String> constraintNames() {
+        return List.copyOf(constraintMethods().keySet());
+    }
+
+    @Override
+    public Constraint[] defineConstraints(ConstraintFactory constraintFactory) {
+        String constraint = selected;
+        if (ALL.equals(constraint)) {
+            return super.defineConstraints(constraintFactory);
+        }
+        try {
+            return new Constraint[]{(Constraint) constraintMethods().get(constraint).invoke(this, constraintFactory)};
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("无法创建约束: " + constraint, e);
+        }
+    }
+
+    private static Map<String, Method> constraintMethods() {
+        return Arrays.stream(FactorySchedulingConstraintProvider.class.getDeclaredMethods())
+                .filter(m -> Constraint.class.equals(m.getReturnType()))
+                .filter(m -> Modifier.isProtected(m.getModifiers()))
+                .filter(m -> m.getParameterCount() == 1 && ConstraintFactory.class.equals(m.getParameterTypes()[0]))
+                .peek(m -> m.setAccessible(true))
+                .collect(Collectors.toMap(Method::getName, m -> m, (a, b) -> a, TreeMap::new));
+    }
+}
@@ -0,0 +1,72 @@
+package com.upec.factoryscheduling.benchmark;
+
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
+import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolutionCloner;
+import org.openjdk.jmh.annotations.*;
+import org.optaplanner.core.api.domain.solution.cloner.SolutionCloner;
+import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.impl.domain.solution.cloner.FieldAccessingSolutionCloner;
+import org.optaplanner.core.impl.solver.DefaultSolverFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 规划解克隆基准测试
+ * <p>求解器每产生一个更优解都要克隆一次规划解，这里对比 {@link FactorySchedulingSolutionCloner} 与
+ * OptaPlanner 默认的反射克隆器（FieldAccessingSolutionCloner）在不同时间槽数量下的单次克隆耗时。</p>
+ * <p>例如：{@code mvn -Pbenchmark package exec:exec -Dbenchmark.args="SolutionCloneBenchmark -p timeslots=10000,50000,200000"}</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SolutionCloneBenchmark {
+
+    private static final int PROCEDURES_PER_TASK = 6;
+    private static final int SLICES_PER_PROCEDURE = 2;
+
+    @Param({"10000", "50000", "200000"})
+    private int timeslots;
+
+    /**
+     * CUSTOM：FactorySchedulingSolutionCloner，REFLECTIVE：OptaPlanner默认克隆器
+     */
+    @Param({"CUSTOM", "REFLECTIVE"})
+    private String cloner;
+
+    @Param({"100"})
+    private int workCenters;
+
+    @Param({"30"})
+    private int horizonDays;
+
+    private FactorySchedulingSolution solution;
+    private SolutionCloner<FactorySchedulingSolution> solutionCloner;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int tasks = Math.max(1, timeslots / (PROCEDURES_PER_TASK * SLICES_PER_PROCEDURE));
+        solution = new SyntheticProblemGenerator(tasks, PROCEDURES_PER_TASK, SLICES_PER_PROCEDURE,
+                workCenters, horizonDays, 42L).generate();
+        if ("CUSTOM".equals(cloner)) {
+            solutionCloner = new FactorySchedulingSolutionCloner();
+        } else {
+            SolverConfig solverConfig = new SolverConfig()
+                    .withSolutionClass(FactorySchedulingSolution.class)
+                    .withEntityClasses(Timeslot.class)
+                    .withConstraintProviderClass(SelectableConstraintProvider.class);
+            DefaultSolverFactory<FactorySchedulingSolution> solverFactory =
+                    (DefaultSolverFactory<FactorySchedulingSolution>) SolverFactory.<FactorySchedulingSolution>create(solverConfig);
+            solutionCloner = new FieldAccessingSolutionCloner<>(solverFactory.getScoreDirectorFactory().getSolutionDescriptor());
+        }
+    }
+
+    @Benchmark
+    public FactorySchedulingSolution cloneSolution() {
+        return solutionCloner.cloneSolution(solution);
+    }
+}
@@ -0,0 +1,234 @@
+package com.upec.factoryscheduling.benchmark;
+
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.solution.CriticalPathWindowBuilder;
+import com.upec.factoryscheduling.aps.solution.EpochMinutesBuilder;
+import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
+import com.upec.factoryscheduling.aps.solution.FixedTaskBuilder;
+import com.upec.factoryscheduling.aps.solution.InitialAssignmentBuilder;
+import com.upec.factoryscheduling.aps.solution.MaintenanceRangeBuilder;
+import com.upec.factoryscheduling.aps.solution.PlanningEpoch;
+import com.upec.factoryscheduling.aps.solution.ProblemSnapshotCodec;
+import com.upec.factoryscheduling.aps.solution.ProcedureLinkBuilder;
+import com.upec.factoryscheduling.aps.solution.WorkCenterIndexBuilder;
+import com.upec.factoryscheduling.common.configuration.OptaPlannerConfig;
+import com.upec.factoryscheduling.common.configuration.SolverProfile;
+import com.upec.factoryscheduling.common.configuration.SolverProperties;
+import org.optaplanner.benchmark.api.PlannerBenchmark;
+import org.optaplanner.benchmark.api.PlannerBenchmarkFactory;
+import org.optaplanner.benchmark.config.PlannerBenchmarkConfig;
+import org.optaplanner.benchmark.config.ProblemBenchmarksConfig;
+import org.optaplanner.benchmark.config.SolverBenchmarkConfig;
+import org.optaplanner.benchmark.config.statistic.ProblemStatisticType;
+import org.optaplanner.benchmark.config.statistic.SingleStatisticType;
+import org.optaplanner.core.api.score.stream.ConstraintStreamImplType;
+import org.optaplanner.core.config.constructionheuristic.ConstructionHeuristicType;
+import org.optaplanner.core.config.localsearch.LocalSearchType;
+import org.optaplanner.core.config.solver.EnvironmentMode;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.config.solver.termination.TerminationConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 求解器配置基准测试
+ * <p>基于 optaplanner-benchmark，在相同的合成数据集上对比构造启发式、局部搜索算法和移动线程数的组合，
+ * 并在输出目录生成标准HTML报告（报告所需的静态资源随报告一起输出，可离线查看）。</p>
+ * <p>每个组合都以生产环境的 {@link OptaPlannerConfig#solverConfig(SolverProperties)} 为基础，
+ * 通过 {@link SolverProfile} 覆盖对应参数，选出的组合可以直接写入 application.yaml 的 aps.solver.profiles。</p>
+ * <p>参数均为 key=value 形式，多个取值用逗号分隔：</p>
+ * <pre>
+ * datasets=500x6x2x50x30          数据集，格式为 任务数x每任务工序数x每工序分片数x工作中心数x排程天数，
+ *                                 或 snapshot:文件路径 使用生产环境保存的问题快照
+ * ch=FIRST_FIT_DECREASING,WEAKEST_FIT
+ * ls=LATE_ACCEPTANCE,TABU_SEARCH,GREAT_DELUGE
+ * threads=NONE,AUTO                移动线程数
+ * partitions=1                     分区个数，大于1时启用分区搜索；取 1,2,4,8 可得到分区个数的扩展曲线
+ * partitionSeconds=10              分区搜索阶段的时间(秒)，应小于seconds
+ * shift=false                      局部搜索是否加入平移复合移动，取 false,true 对比两者
+ * seconds=30                       每个组合在每个数据集上的求解时间
+ * warmup=30                        预热时间(秒)
+ * impl=BAVET                       约束流实现
+ * output=target/planner-benchmark  报告输出目录
+ * </pre>
+ */
+public class SolverConfigBenchmarkRunner {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    private static final String SNAPSHOT_PREFIX = "snapshot:";
+    // 与 application.yaml 中 aps.solver.maintenance-window-days-before/after 的默认值一致
+    private static final int MAINTENANCE_WINDOW_DAYS_BEFORE = 3;
+    private static final int MAINTENANCE_WINDOW_DAYS_AFTER = 10;
+    // 与 aps.solver.critical-path-day-minutes 的默认值一致
+    private static final int CRITICAL_PATH_DAY_MINUTES = 1440;
+
+    static {
+        DEFAULTS.put("datasets", "500x6x2x50x30");
+        DEFAULTS.put("ch", "FIRST_FIT_DECREASING,WEAKEST_FIT");
+        DEFAULTS.put("ls", "LATE_ACCEPTANCE,TABU_SEARCH,GREAT_DELUGE");
+        DEFAULTS.put("threads", "NONE,AUTO");
+        DEFAULTS.put("partitions", "1");
+        DEFAULTS.put("partitionSeconds", "10");
+        DEFAULTS.put("shift", "false");
+        DEFAULTS.put("seconds", "30");
+        DEFAULTS.put("warmup", "30");
+        DEFAULTS.put("impl", "BAVET");
+        DEFAULTS.put("output", "target/planner-benchmark");
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = parseOptions(args);
+        List<FactorySchedulingSolution> problems = split(options.get("datasets"), SolverConfigBenchmarkRunner::createProblem);
+        PlannerBenchmarkConfig benchmarkConfig = createBenchmarkConfig(options);
+        PlannerBenchmark benchmark = PlannerBenchmarkFactory.create(benchmarkConfig).buildPlannerBenchmark(problems);
+        File report = benchmark.benchmark();
+        System.out.println("基准测试报告: " + report.getAbsolutePath());
+    }
+
+    static PlannerBenchmarkConfig createBenchmarkConfig(Map<String, String> options) {
+        SolverConfig baseConfig = createBaseSolverConfig(ConstraintStreamImplType.valueOf(options.get("impl")));
+        long seconds = Long.parseLong(options.get("seconds"));
+        List<ConstructionHeuristicType> constructionHeuristicTypes = split(options.get("ch"), ConstructionHeuristicType::valueOf);
+        List<LocalSearchType> localSearchTypes = split(options.get("ls"), LocalSearchType::valueOf);
+        List<String> moveThreadCounts = split(options.get("threads"), s -> s);
+        List<Integer> partitionCounts = split(options.get("partitions"), Integer::valueOf);
+        long partitionSeconds = Long.parseLong(options.get("partitionSeconds"));
+        List<Boolean> shiftMoves = split(options.get("shift"), Boolean::valueOf);
+
+        List<SolverBenchmarkConfig> solverBenchmarkConfigs = new ArrayList<>();
+        for (ConstructionHeuristicType constructionHeuristicType : constructionHeuristicTypes) {
+            for (LocalSearchType localSearchType : localSearchTypes) {
+                for (String moveThreadCount : moveThreadCounts) {
+                    for (Integer partitionCount : partitionCounts) {
+                        for (Boolean shift : shiftMoves) {
+                            SolverProfile profile = new SolverProfile();
+                            profile.setName(constructionHeuristicType + " " + localSearchType + " (threads " + moveThreadCount
+                                    + (partitionCount > 1 ? ", partitions " + partitionCount : "") + (shift ? ", shift" : "") + ")");
+                            profile.setEnvironmentMode(EnvironmentMode.REPRODUCIBLE);
+                            profile.setMoveThreadCount(moveThreadCount);
+                            profile.setConstraintStreamImplType(baseConfig.getScoreDirectorFactoryConfig().getConstraintStreamImplType());
+                            profile.setConstructionHeuristicType(constructionHeuristicType);
+                            profile.setLocalSearchType(localSearchType);
+                            profile.setPartitionCount(partitionCount);
+                            profile.setPartitionSecondsSpentLimit(partitionSeconds);
+                            profile.setShiftMoves(shift);
+                            profile.validate();
+
+                            SolverConfig solverConfig = new SolverConfig(baseConfig);
+                            profile.applyTo(solverConfig);
+                            solverConfig.setTerminationConfig(new TerminationConfig().withSecondsSpentLimit(seconds));
+
+                            SolverBenchmarkConfig solverBenchmarkConfig = new SolverBenchmarkConfig();
+                            solverBenchmarkConfig.setName(profile.getName());
+                            solverBenchmarkConfig.setSolverConfig(solverConfig);
+                            solverBenchmarkConfigs.add(solverBenchmarkConfig);
+                        }
+                    }
+                }
+            }
+        }
+
+        ProblemBenchmarksConfig problemBenchmarksConfig = new ProblemBenchmarksConfig();
+        problemBenchmarksConfig.setProblemStatisticTypeList(Arrays.asList(ProblemStatisticType.BEST_SCORE,
+                ProblemStatisticType.STEP_SCORE, ProblemStatisticType.SCORE_CALCULATION_SPEED, ProblemStatisticType.MOVE_COUNT_PER_STEP));
+        // 按移动类型统计被选为步骤的移动带来的分数变化，用于对比平移移动与ChangeMove/SwapMove
+        problemBenchmarksConfig.setSingleStatisticTypeList(Collections.singletonList(SingleStatisticType.PICKED_MOVE_TYPE_STEP_SCORE_DIFF));
+        SolverBenchmarkConfig inheritedConfig = new SolverBenchmarkConfig();
+        inheritedConfig.setProblemBenchmarksConfig(problemBenchmarksConfig);
+
+        PlannerBenchmarkConfig benchmarkConfig = new PlannerBenchmarkConfig();
+        benchmarkConfig.setName("工厂排程求解器配置对比");
+        benchmarkConfig.setBenchmarkDirectory(new File(options.get("output")));
+        // 多个组合同时运行会互相争抢CPU，影响移动线程数的对比结果
+        benchmarkConfig.setParallelBenchmarkCount("1");
+        benchmarkConfig.setWarmUpSecondsSpentLimit(Long.parseLong(options.get("warmup")));
+        benchmarkConfig.setInheritedSolverBenchmarkConfig(inheritedConfig);
+        benchmarkConfig.setSolverBenchmarkConfigList(solverBenchmarkConfigs);
+        return benchmarkConfig;
+    }
+
+    /**
+     * 与生产环境相同的基础求解器配置
+     */
+    private static SolverConfig createBaseSolverConfig(ConstraintStreamImplType constraintStreamImplType) {
+        SolverProfile profile = new SolverProfile();
+        profile.setEnvironmentMode(EnvironmentMode.REPRODUCIBLE);
+        profile.setConstraintStreamImplType(constraintStreamImplType);
+        SolverProperties solverProperties = new SolverProperties();
+        solverProperties.setActiveProfile("benchmark");
+        solverProperties.getProfiles().put("benchmark", profile);
+        return new OptaPlannerConfig().solverConfig(solverProperties);
+    }
+
+    /**
+     * 按 任务数x每任务工序数x每工序分片数x工作中心数x排程天数 生成未初始化的问题
+     */
+    private static FactorySchedulingSolution createProblem(String spec) {
+        if (spec.startsWith(SNAPSHOT_PREFIX)) {
+            return loadSnapshot(Paths.get(spec.substring(SNAPSHOT_PREFIX.length())));
+        }
+        String[] parts = spec.split("x");
+        if (parts.length != 5) {
+            throw new IllegalArgumentException("数据集格式应为 任务数x每任务工序数x每工序分片数x工作中心数x排程天数: " + spec);
+        }
+        SyntheticProblemGenerator generator = new SyntheticProblemGenerator(Integer.parseInt(parts[0]),
+                Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]),
+                Integer.parseInt(parts[4]), 42L);
+        return generator.generate(false);
+    }
+
+    /**
+     * 读取问题快照并构建派生数据，与从快照求解时相同(冷启动，基准时间沿用快照中的值)
+     */
+    private static FactorySchedulingSolution loadSnapshot(Path file) {
+        FactorySchedulingSolution problem;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            problem = ProblemSnapshotCodec.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("无法读取问题快照: " + file, e);
+        }
+        PlanningEpoch epoch = problem.getPlanningEpoch() != null ? problem.getPlanningEpoch() : PlanningEpoch.now();
+        List<Timeslot> timeslots = problem.getTimeslots().stream()
+                .sorted(Comparator.comparing((Timeslot t) -> t.getProcedure().getId()).thenComparingInt(Timeslot::getIndex))
+                .collect(Collectors.toList());
+        problem.setProcedureLinks(ProcedureLinkBuilder.build(timeslots));
+        InitialAssignmentBuilder.build(timeslots, problem.getMaintenances(), epoch, false);
+        CriticalPathWindowBuilder.build(timeslots, problem.getProcedureLinks(), epoch, MAINTENANCE_WINDOW_DAYS_AFTER, CRITICAL_PATH_DAY_MINUTES);
+        MaintenanceRangeBuilder.build(timeslots, problem.getMaintenances(), MAINTENANCE_WINDOW_DAYS_BEFORE, MAINTENANCE_WINDOW_DAYS_AFTER);
+        EpochMinutesBuilder.build(timeslots, problem.getMaintenances(), epoch);
+        WorkCenterIndexBuilder.build(timeslots, problem.getMaintenances(), new HashMap<>());
+        problem.setPlanningEpoch(epoch);
+        problem.setTimeslots(timeslots);
+        FixedTaskBuilder.build(problem);
+        return problem;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index < 0 || !DEFAULTS.containsKey(arg.substring(0, index))) {
+                throw new IllegalArgumentException("无法识别的参数: " + arg + "，可选: " + DEFAULTS.keySet());
+            }
+            options.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+        return options;
+    }
+
+    private static <T> List<T> split(String value, Function<String, T> parser) {
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(parser)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,209 @@
+package com.upec.factoryscheduling.benchmark;
+
+import com.upec.factoryscheduling.aps.entity.*;
+import com.upec.factoryscheduling.aps.solution.CriticalPathWindowBuilder;
+import com.upec.factoryscheduling.aps.solution.EpochMinutesBuilder;
+import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
+import com.upec.factoryscheduling.aps.solution.MaintenanceRangeBuilder;
+import com.upec.factoryscheduling.aps.solution.PlanningEpoch;
+import com.upec.factoryscheduling.aps.solution.ProcedureLinkBuilder;
+import com.upec.factoryscheduling.aps.solution.WorkCenterIndexBuilder;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * 合成调度问题生成器
+ * <p>按任务数、每任务工序数、每工序分片数、工作中心数和排程天数生成 {@link FactorySchedulingSolution}，
+ * 结构与 SchedulingService.loadProblemWithSlices 加载的问题一致：
+ * 工序按路线串联（约五分之一的工序带一个并行分支），部分工序为外协工作中心 PM10W200，
+ * 每个工作中心每天一条 480 分钟的维护日历，并已构建工序前后继索引和时间槽可选日历。</p>
+ * <p>相同参数和随机种子生成的问题完全相同，便于对比约束修改前后的性能。</p>
+ */
+@Getter
+public class SyntheticProblemGenerator {
+
+    public static final String OUTSOURCING_WORK_CENTER_CODE = "PM10W200";
+
+    private static final LocalDate HORIZON_START = LocalDate.of(2025, 1, 6);
+    private static final int DAILY_CAPACITY = 480;
+    // 与 application.yaml 中 aps.solver.maintenance-window-days-before/after 的默认值一致
+    private static final int MAINTENANCE_WINDOW_DAYS_BEFORE = 3;
+    private static final int MAINTENANCE_WINDOW_DAYS_AFTER = 10;
+    // 与 aps.solver.critical-path-day-minutes 的默认值一致
+    private static final int CRITICAL_PATH_DAY_MINUTES = 1440;
+
+    private final int tasks;
+    private final int proceduresPerTask;
+    private final int slicesPerProcedure;
+    private final int workCenters;
+    private final int horizonDays;
+    private final long seed;
+
+    /**
+     * 维护日历按工作中心id分组，方便基准测试构造同工作中心的移动
+     */
+    private final Map<String, List<WorkCenterMaintenance>> maintenancesByWorkCenter = new HashMap<>();
+
+    public SyntheticProblemGenerator(int tasks, int proceduresPerTask, int slicesPerProcedure,
+                                     int workCenters, int horizonDays, long seed) {
+        if (tasks < 1 || proceduresPerTask < 1 || slicesPerProcedure < 1 || workCenters < 2 || horizonDays < 1) {
+            throw new IllegalArgumentException("tasks/proceduresPerTask/slicesPerProcedure/horizonDays必须为正数，workCenters至少为2");
+        }
+        this.tasks = tasks;
+        this.proceduresPerTask = proceduresPerTask;
+        this.slicesPerProcedure = slicesPerProcedure;
+        this.workCenters = workCenters;
+        this.horizonDays = horizonDays;
+        this.seed = seed;
+    }
+
+    /**
+     * 生成问题，所有时间槽已按计划日期分配到对应工作中心的维护日历
+     */
+    public FactorySchedulingSolution generate() {
+        return generate(true);
+    }
+
+    /**
+     * 生成问题
+     *
+     * @param initialized 为true时按计划日期初始化 Timeslot.maintenance，为false时全部为空（用于构造启发式）
+     */
+    public FactorySchedulingSolution generate(boolean initialized) {
+        Random random = new Random(seed);
+        maintenancesByWorkCenter.clear();
+        List<WorkCenter> centers = createWorkCenters();
+        List<WorkCenterMaintenance> maintenances = createMaintenances(centers);
+        List<Timeslot> timeslots = new ArrayList<>();
+        for (int t = 0; t < tasks; t++) {
+            timeslots.addAll(createTask(t, centers, random, initialized));
+        }
+        FactorySchedulingSolution solution = new FactorySchedulingSolution(timeslots, maintenances);
+        solution.setProblemId(seed);
+        solution.setProcedureLinks(ProcedureLinkBuilder.build(solution.getTimeslots()));
+        // 固定基准时间，保证同一种子生成的问题分数一致
+        PlanningEpoch epoch = new PlanningEpoch(HORIZON_START.atStartOfDay());
+        CriticalPathWindowBuilder.build(solution.getTimeslots(), solution.getProcedureLinks(), epoch,
+                MAINTENANCE_WINDOW_DAYS_AFTER, CRITICAL_PATH_DAY_MINUTES);
+        MaintenanceRangeBuilder.build(solution.getTimeslots(), solution.getMaintenances(), MAINTENANCE_WINDOW_DAYS_BEFORE, MAINTENANCE_WINDOW_DAYS_AFTER);
+        EpochMinutesBuilder.build(solution, epoch);
+        WorkCenterIndexBuilder.build(solution);
+        return solution;
+    }
+
+    private List<WorkCenter> createWorkCenters() {
+        List<WorkCenter> centers = new ArrayList<>(workCenters);
+        for (int i = 0; i < workCenters; i++) {
+            WorkCenter workCenter = new WorkCenter();
+            workCenter.setId("WC" + i);
+            // 第一个工作中心作为外协工作中心
+            workCenter.setWorkCenterCode(i == 0 ? OUTSOURCING_WORK_CENTER_CODE : "WC" + i);
+            workCenter.setName(workCenter.getWorkCenterCode());
+            workCenter.setStatus("Y");
+            centers.add(workCenter);
+        }
+        return centers;
+    }
+
+    private List<WorkCenterMaintenance> createMaintenances(List<WorkCenter> centers) {
+        List<WorkCenterMaintenance> maintenances = new ArrayList<>(centers.size() * horizonDays);
+        for (WorkCenter workCenter : centers) {
+            List<WorkCenterMaintenance> list = new ArrayList<>(horizonDays);
+            for (int d = 0; d < horizonDays; d++) {
+                WorkCenterMaintenance maintenance = new WorkCenterMaintenance(workCenter, HORIZON_START.plusDays(d), DAILY_CAPACITY, "");
+                maintenance.setId(workCenter.getId() + "_" + d);
+                maintenance.setYear(maintenance.getDate().getYear());
+                maintenance.setStatus("Y");
+                maintenance.setStartTime(LocalTime.of(9, 0));
+                maintenance.setEndTime(LocalTime.of(17, 0));
+                list.add(maintenance);
+                maintenances.add(maintenance);
+            }
+            maintenancesByWorkCenter.put(workCenter.getId(), list);
+        }
+        return maintenances;
+    }
+
+    private List<Timeslot> createTask(int taskIndex, List<WorkCenter> centers, Random random, boolean initialized) {
+        String taskNo = "T" + taskIndex;
+        int startDay = random.nextInt(Math.max(1, horizonDays / 2));
+        Order order = new Order();
+        order.setOrderNo("O" + taskIndex);
+        order.setPlanStartDate(HORIZON_START.plusDays(startDay));
+        order.setPlanEndDate(HORIZON_START.plusDays(horizonDays - 1));
+        Task task = new Task();
+        task.setTaskNo(taskNo);
+        task.setOrderNo(order.getOrderNo());
+        task.setPriority(random.nextInt(5) + 1);
+        task.setPlanStartDate(order.getPlanStartDate());
+        task.setPlanEndDate(order.getPlanEndDate());
+        if (random.nextInt(10) == 0) {
+            task.setFactStartDate(order.getPlanStartDate().atTime(8, 0));
+        }
+
+        List<Procedure> procedures = new ArrayList<>(proceduresPerTask);
+        for (int p = 0; p < proceduresPerTask; p++) {
+            Procedure procedure = new Procedure();
+            procedure.setId(taskNo + "_" + (p + 1));
+            procedure.setTask(task);
+            procedure.setOrder(order);
+            procedure.setProcedureNo(p + 1);
+            procedure.setProcedureName("P" + (p + 1));
+            procedure.setIndex(p + 1);
+            procedure.setLevel(p + 1);
+            // 约5%的工序为外协工序
+            WorkCenter workCenter = random.nextInt(20) == 0 ? centers.get(0) : centers.get(1 + random.nextInt(centers.size() - 1));
+            procedure.setWorkCenter(workCenter);
+            procedure.setMachineMinutes(60 + random.nextInt(4) * 30);
+            procedure.setPlanStartDate(HORIZON_START.plusDays(Math.min(horizonDays - 1, startDay + p)));
+            procedure.setPlanEndDate(HORIZON_START.plusDays(Math.min(horizonDays - 1, startDay + p + slicesPerProcedure)));
+            procedure.setNextProcedure(new ArrayList<>());
+            procedure.setNextProcedureNo(new ArrayList<>());
+            procedure.setStatus("待生产");
+            procedures.add(procedure);
+        }
+        // 串联路线，约五分之一的工序额外指向后面第二道工序形成并行分支
+        for (int p = 0; p + 1 < proceduresPerTask; p++) {
+            link(procedures.get(p), procedures.get(p + 1));
+            if (p + 2 < proceduresPerTask && random.nextInt(5) == 0) {
+                link(procedures.get(p), procedures.get(p + 2));
+                procedures.get(p + 2).setParallel(true);
+            }
+        }
+
+        List<Timeslot> timeslots = new ArrayList<>(proceduresPerTask * slicesPerProcedure);
+        for (Procedure procedure : procedures) {
+            List<WorkCenterMaintenance> candidates = maintenancesByWorkCenter.get(procedure.getWorkCenter().getId());
+            int sliceDuration = Math.max(1, procedure.getMachineMinutes() / slicesPerProcedure);
+            for (int s = 1; s <= slicesPerProcedure; s++) {
+                Timeslot timeslot = new Timeslot();
+                timeslot.setId(procedure.getId() + "_" + s);
+                timeslot.setProblemId(seed);
+                timeslot.setProcedure(procedure);
+                timeslot.setPriority(task.getPriority());
+                timeslot.setDuration(sliceDuration);
+                timeslot.setParallel(procedure.isParallel());
+                timeslot.setIndex(s);
+                timeslot.setTotal(slicesPerProcedure);
+                timeslot.setProcedureIndex(procedure.getIndex());
+                if (initialized) {
+                    int day = Math.min(horizonDays - 1, startDay + procedure.getIndex() - 1 + s - 1);
+                    WorkCenterMaintenance maintenance = candidates.get(day);
+                    timeslot.setMaintenance(maintenance);
+                    timeslot.setStartTime(LocalDateTime.of(maintenance.getDate(), maintenance.getStartTime()));
+                }
+                timeslots.add(timeslot);
+            }
+        }
+        return timeslots;
+    }
+
+    private static void link(Procedure from, Procedure to) {
+        from.addNextProcedure(to);
+        from.getNextProcedureNo().add(to.getProcedureNo());
+    }
+}
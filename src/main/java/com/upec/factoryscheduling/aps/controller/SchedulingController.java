@@ -1,18 +1,28 @@
 package com.upec.factoryscheduling.aps.controller;
 
 import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.response.SolveResponse;
+import com.upec.factoryscheduling.aps.response.SolveStatusResponse;
 import com.upec.factoryscheduling.aps.resquest.ProcedureRequest;
 import com.upec.factoryscheduling.aps.service.SchedulingService;
 import com.upec.factoryscheduling.aps.service.TimeslotService;
 import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
+import com.upec.factoryscheduling.aps.solver.SolverJobQueue;
+import com.upec.factoryscheduling.common.configuration.SolverProfile;
 import com.upec.factoryscheduling.common.utils.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.optaplanner.core.api.score.ScoreExplanation;
 import org.optaplanner.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
 import org.optaplanner.core.api.solver.SolverStatus;
+import org.optaplanner.core.config.solver.EnvironmentMode;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.security.Principal;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -54,15 +64,121 @@ public class SchedulingController {
     /**
      * 启动调度求解
      * <p>根据指定的问题ID和订单编号列表开始调度优化过程，触发OptaPlanner求解器进行排程计算。</p>
+     * <p>默认使用aps.solver.active-profile档位，可通过参数指定其它档位或覆盖环境模式、移动线程数。</p>
+     * <p>同时求解的问题个数有上限，超出时进入排队(返回状态SOLVING_SCHEDULED及排队位置、预计开始秒数)，之后通过 /status 接口查询。</p>
      * 
      * @param problemId 问题ID，用于唯一标识本次调度任务
      * @param orderNos 需要参与调度的订单编号列表
-     * @return 操作结果，包含成功消息
+     * @param profile 求解档位名称（可选），如dev、prod
+     * @param environmentMode 覆盖环境模式（可选），如FULL_ASSERT、REPRODUCIBLE、NON_REPRODUCIBLE
+     * @param moveThreadCount 覆盖移动线程数（可选），NONE、AUTO或正整数
+     * @param warmStart 是否以上次保存的排程为初始解（可选），默认使用aps.solver.warm-start
+     * @param principal 当前登录用户，用于排队轮转和每用户限额
+     * @return 操作结果，包含实际生效的求解档位；问题已在求解或排队中、或排队个数已满时返回409
      */
     @PostMapping("/solve/{problemId}")
-    public ApiResponse<String> startScheduling(@PathVariable Long problemId, @RequestBody List<String> orderNos) {
-        schedulingService.startScheduling(problemId, orderNos);
-        return ApiResponse.success("Scheduling started for problem " + problemId);
+    public ApiResponse<SolveResponse> startScheduling(@PathVariable Long problemId,
+                                                      @RequestBody List<String> orderNos,
+                                                      @RequestParam(required = false) String profile,
+                                                      @RequestParam(required = false) EnvironmentMode environmentMode,
+                                                      @RequestParam(required = false) String moveThreadCount,
+                                                      @RequestParam(required = false) Boolean warmStart,
+                                                      Principal principal) {
+        String user = principal != null ? principal.getName() : SolverJobQueue.ANONYMOUS_USER;
+        SolverProfile solverProfile;
+        try {
+            solverProfile = schedulingService.startScheduling(problemId, orderNos, profile, environmentMode,
+                    moveThreadCount, warmStart, user);
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+        } catch (IllegalStateException e) {
+            return ApiResponse.error(HttpStatus.CONFLICT.value(), e.getMessage());
+        }
+        return ApiResponse.success(solveResponse(problemId, solverProfile, "Scheduling"));
+    }
+
+    /**
+     * 保存问题快照
+     * <p>从数据库加载指定任务的问题并写入快照文件，之后可通过 /replay/{problemId} 从快照求解。
+     * aps.solver.snapshot-on-load 开启时每次求解加载问题都会自动保存(默认关闭)。每个问题只保留最近一个快照。</p>
+     *
+     * @param problemId 问题ID
+     * @param taskNos   任务编号列表
+     * @return 快照中的时间槽个数
+     */
+    @PostMapping("/snapshot/{problemId}")
+    public ApiResponse<Integer> saveSnapshot(@PathVariable Long problemId, @RequestBody List<String> taskNos) {
+        try {
+            return ApiResponse.success(schedulingService.saveSnapshot(problemId, taskNos));
+        } catch (IllegalStateException e) {
+            return ApiResponse.error(HttpStatus.INTERNAL_SERVER_ERROR.value(), e.getMessage());
+        }
+    }
+
+    /**
+     * 从问题快照开始求解，不查询数据库，排程基准时间沿用快照中的值
+     *
+     * @param problemId 问题ID
+     * @param profile   求解档位名称（可选）
+     * @param warmStart 是否以快照中的分配为初始解（可选）
+     * @param principal 当前登录用户
+     * @return 操作结果；没有快照时返回400，问题已在求解或排队中时返回409
+     */
+    @PostMapping("/replay/{problemId}")
+    public ApiResponse<SolveResponse> replaySnapshot(@PathVariable Long problemId,
+                                                     @RequestParam(required = false) String profile,
+                                                     @RequestParam(required = false) Boolean warmStart,
+                                                     Principal principal) {
+        String user = principal != null ? principal.getName() : SolverJobQueue.ANONYMOUS_USER;
+        SolverProfile solverProfile;
+        try {
+            solverProfile = schedulingService.startSchedulingFromSnapshot(problemId, profile, warmStart, user);
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+        } catch (IllegalStateException e) {
+            return ApiResponse.error(HttpStatus.CONFLICT.value(), e.getMessage());
+        }
+        return ApiResponse.success(solveResponse(problemId, solverProfile, "Replay"));
+    }
+
+    /**
+     * 构建求解提交的响应：实际生效的档位和当前排队状态
+     *
+     * @param action 消息中的动作名称，如Scheduling、Replay
+     */
+    private SolveResponse solveResponse(Long problemId, SolverProfile solverProfile, String action) {
+        SolveResponse response = new SolveResponse();
+        response.setProblemId(problemId);
+        response.setProfile(solverProfile.getName());
+        response.setEnvironmentMode(solverProfile.getEnvironmentMode().name());
+        response.setMoveThreadCount(solverProfile.getMoveThreadCount());
+        SolveStatusResponse status = schedulingService.getSolveStatus(problemId);
+        response.setStatus(status.getStatus());
+        response.setQueuePosition(status.getQueuePosition());
+        response.setQueueLength(status.getQueueLength());
+        response.setEtaSeconds(status.getEtaSeconds());
+        response.setMessage(action + (SolverStatus.SOLVING_SCHEDULED.name().equals(status.getStatus()) ? " queued" : " started")
+                + " for problem " + problemId);
+        return response;
+    }
+
+    /**
+     * 订阅最佳解推送(SSE)
+     * <p>连接后先收到当前最佳解的全量快照(snapshot事件)，之后按 aps.solver.stream-interval-millis 合并推送
+     * 分数和发生变化的时间槽(update事件)，求解结束后连接关闭。数据来自内存，不访问数据库，
+     * 前端无需轮询 /solution 接口。浏览器EventSource无法设置请求头，可通过 ?token= 传递JWT令牌。
+     * 问题未在求解时立即推送最后的最佳解(或failed事件)后关闭连接，问题不存在时返回404。</p>
+     *
+     * @param problemId 问题ID
+     * @return SSE连接
+     */
+    @GetMapping(value = "/stream/{problemId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamBestSolution(@PathVariable Long problemId) {
+        try {
+            return ResponseEntity.ok(schedulingService.subscribeBestSolution(problemId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
     }
 
     /**
@@ -110,15 +226,15 @@ public class SchedulingController {
 
     /**
      * 获取求解状态
-     * <p>获取指定问题ID的当前调度任务的求解状态，如正在求解、已完成、未开始等。</p>
+     * <p>获取指定问题ID的当前调度任务的求解状态，如正在求解、已完成、未开始等。
+     * 排队中(SOLVING_SCHEDULED)时同时返回排队位置、排队总数和预计开始秒数。</p>
      * 
      * @param problemId 问题ID，指定要查询状态的调度任务
-     * @return 包含求解状态名称的HTTP响应
+     * @return 包含求解状态和排队信息的HTTP响应
      */
     @GetMapping("/status/{problemId}")
-    public ApiResponse<String> getStatus(@PathVariable Long problemId) {
-        SolverStatus isSolving = schedulingService.isSolving(problemId);
-        return ApiResponse.success(isSolving.name());
+    public ApiResponse<SolveStatusResponse> getStatus(@PathVariable Long problemId) {
+        return ApiResponse.success(schedulingService.getSolveStatus(problemId));
     }
 
     /**
@@ -150,6 +266,88 @@ public class SchedulingController {
     
 
 
+    /**
+     * 求解中加入新任务
+     * <p>通过ProblemChange交给正在运行的求解器，求解器在当前最佳解的基础上继续求解，接口不等待变更生效。</p>
+     *
+     * @param problemId 问题ID
+     * @param taskNos   新任务编号列表
+     * @return 加载到的时间槽个数
+     */
+    @PostMapping("/change/{problemId}/timeslots/add")
+    public ApiResponse<Integer> addTasks(@PathVariable Long problemId, @RequestBody List<String> taskNos) {
+        try {
+            return ApiResponse.success(schedulingService.addTasks(problemId, taskNos));
+        } catch (IllegalStateException e) {
+            return ApiResponse.error(HttpStatus.CONFLICT.value(), e.getMessage());
+        }
+    }
+
+    /**
+     * 求解中移除时间槽
+     *
+     * @param problemId   问题ID
+     * @param timeslotIds 时间槽id列表
+     * @return 操作结果
+     */
+    @PostMapping("/change/{problemId}/timeslots/remove")
+    public ApiResponse<String> removeTimeslots(@PathVariable Long problemId, @RequestBody List<String> timeslotIds) {
+        try {
+            schedulingService.removeTimeslots(problemId, timeslotIds);
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+        } catch (IllegalStateException e) {
+            return ApiResponse.error(HttpStatus.CONFLICT.value(), e.getMessage());
+        }
+        return ApiResponse.success("Remove submitted for problem " + problemId);
+    }
+
+    /**
+     * 求解中固定(手动排定)时间槽
+     * <p>指定maintenanceId时先把时间槽移到该日历，固定后求解器不再移动它；pinned=false取消固定。</p>
+     *
+     * @param problemId     问题ID
+     * @param timeslotId    时间槽id
+     * @param maintenanceId 目标日历id（可选）
+     * @param pinned        是否固定，默认true
+     * @return 操作结果
+     */
+    @PostMapping("/change/{problemId}/timeslots/{timeslotId}/pin")
+    public ApiResponse<String> pinTimeslot(@PathVariable Long problemId, @PathVariable String timeslotId,
+                                           @RequestParam(required = false) String maintenanceId,
+                                           @RequestParam(defaultValue = "true") boolean pinned) {
+        try {
+            schedulingService.pinTimeslot(problemId, timeslotId, maintenanceId, pinned);
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+        } catch (IllegalStateException e) {
+            return ApiResponse.error(HttpStatus.CONFLICT.value(), e.getMessage());
+        }
+        return ApiResponse.success("Pin submitted for timeslot " + timeslotId);
+    }
+
+    /**
+     * 求解中修改日历容量
+     * <p>只影响正在运行的求解，不修改数据库中的日历。</p>
+     *
+     * @param problemId     问题ID
+     * @param maintenanceId 日历id
+     * @param capacity      新容量(分钟)
+     * @return 操作结果
+     */
+    @PostMapping("/change/{problemId}/maintenances/{maintenanceId}/capacity")
+    public ApiResponse<String> changeMaintenanceCapacity(@PathVariable Long problemId, @PathVariable String maintenanceId,
+                                                         @RequestParam int capacity) {
+        try {
+            schedulingService.changeMaintenanceCapacity(problemId, maintenanceId, capacity);
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+        } catch (IllegalStateException e) {
+            return ApiResponse.error(HttpStatus.CONFLICT.value(), e.getMessage());
+        }
+        return ApiResponse.success("Capacity change submitted for maintenance " + maintenanceId);
+    }
+
     /**
      * 获取解决方案详细解释
      * <p>获取指定问题ID的当前最佳解决方案的详细评分解释，包括各约束条件的贡献和违反情况。</p>
@@ -159,7 +357,11 @@ public class SchedulingController {
      */
     @GetMapping("/explain/{problemId}")
     public ApiResponse<ScoreExplanation<FactorySchedulingSolution, HardMediumSoftScore>> getExplanation(@PathVariable Long problemId) {
-        return ApiResponse.success(schedulingService.explainSolution(problemId));
+        try {
+            return ApiResponse.success(schedulingService.explainSolution(problemId));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(HttpStatus.NOT_FOUND.value(), e.getMessage());
+        }
     }
 
 
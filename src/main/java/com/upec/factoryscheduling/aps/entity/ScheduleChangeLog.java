@@ -0,0 +1,49 @@
+package com.upec.factoryscheduling.aps.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 排程变更记录
+ * <p>每次保存求解结果记录一行：写入了多少时间槽、其中换了日历的个数和只变了开始时间的个数，
+ * 用于查看每次重排实际改动的规模。</p>
+ */
+@Data
+@Entity
+@Table(name = "aps_schedule_change_log", indexes = @Index(name = "idx_change_log_problem", columnList = "problem_id"))
+public class ScheduleChangeLog {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "problem_id", nullable = false)
+    private Long problemId;
+
+    @Column(name = "saved_at", nullable = false)
+    private LocalDateTime savedAt;
+
+    //解中的时间槽个数
+    @Column(name = "total_slots")
+    private int totalSlots;
+
+    //写入数据库的时间槽个数
+    @Column(name = "changed_slots")
+    private int changedSlots;
+
+    //换了日历的时间槽个数
+    @Column(name = "moved_slots")
+    private int movedSlots;
+
+    //日历未变、只有开始时间(或problem_id、manual)变化的时间槽个数
+    @Column(name = "retimed_slots")
+    private int retimedSlots;
+
+    @Column(name = "elapsed_millis")
+    private long elapsedMillis;
+
+    @Column(name = "score", length = 64)
+    private String score;
+}
@@ -1,5 +1,7 @@
 package com.upec.factoryscheduling.aps.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.upec.factoryscheduling.common.utils.ProcedureRouting;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -7,6 +9,7 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -54,4 +57,9 @@ public class Task implements Serializable {
 
     private LocalDateTime createDate;
 
+    //工艺路线(工序拓扑序和层级),转换MES数据时由ProcedureRouting.buildAll构建,不持久化
+    @Transient
+    @JsonIgnore
+    private ProcedureRouting routing;
+
 }
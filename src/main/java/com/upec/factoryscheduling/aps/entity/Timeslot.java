@@ -1,29 +1,47 @@
 package com.upec.factoryscheduling.aps.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.upec.factoryscheduling.aps.solution.PersistedAssignment;
+import com.upec.factoryscheduling.aps.solution.PlanningEpoch;
+import com.upec.factoryscheduling.aps.solution.TimeslotDifficultyComparator;
 import com.upec.factoryscheduling.aps.solution.TimeslotVariableListener;
+import com.upec.factoryscheduling.aps.solution.WorkCenterIndexBuilder;
+import com.upec.factoryscheduling.aps.solution.WorkCenterMaintenanceStrengthComparator;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.ToString;
 import org.optaplanner.core.api.domain.entity.PlanningEntity;
+import org.optaplanner.core.api.domain.entity.PlanningPin;
 import org.optaplanner.core.api.domain.lookup.PlanningId;
+import org.optaplanner.core.api.domain.valuerange.ValueRangeProvider;
+import org.optaplanner.core.api.domain.variable.PiggybackShadowVariable;
 import org.optaplanner.core.api.domain.variable.PlanningVariable;
 import org.optaplanner.core.api.domain.variable.ShadowVariable;
 
 import javax.persistence.*;
 import java.io.Serializable;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
-@PlanningEntity
+@PlanningEntity(difficultyComparatorClass = TimeslotDifficultyComparator.class)
 @Getter
 @Setter
 @Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Table(name = "aps_timeslot")
+//新增字段时需同步 FactorySchedulingSolutionCloner#cloneTimeslot
 public class Timeslot implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    //equals/hashCode只使用id,规划变量变化时hashCode保持不变(禁忌搜索等依赖该特性)
     @Id
     @PlanningId
+    @EqualsAndHashCode.Include
     private String id;
     @Column(name = "problem_id")
     private Long problemId;
@@ -37,13 +55,46 @@ public class Timeslot implements Serializable {
     //优先级
     private Integer priority;
 
-    //规划开始时间
+    //规划开始时间(同一日历内的时间槽按顺序依次排开)
     @ShadowVariable(variableListenerClass = TimeslotVariableListener.class, sourceVariableName = "maintenance", sourceEntityClass = Timeslot.class)
     @Column(name = "start_time")
     private LocalDateTime startTime;
 
+    //在日历内的开始偏移(分钟,含日历已用时间),与startTime由同一监听器维护,不持久化
+    @Transient
+    @JsonIgnore
+    @PiggybackShadowVariable(shadowVariableName = "startTime")
+    private Integer offsetMinutes;
+
+    //所在日历的总负载(分钟,含日历已用时间),只有日历内最后一个时间槽有值,其余为null,不持久化
+    @Transient
+    @JsonIgnore
+    @PiggybackShadowVariable(shadowVariableName = "startTime")
+    private Integer calendarLoadMinutes;
+
+    //开始时间距排程基准时间(PlanningEpoch)的分钟数,与startTime由同一监听器维护,约束只使用该值做整数运算,不持久化
+    @Transient
+    @JsonIgnore
+    @PiggybackShadowVariable(shadowVariableName = "startTime")
+    private Integer startMinute;
+
+    //工序计划完成日期23:59距基准时间的分钟数,无计划日期为PlanningEpoch.NONE(加载问题时由EpochMinutesBuilder写入,不持久化)
+    @Transient
+    @JsonIgnore
+    private int planEndMinute = PlanningEpoch.NONE;
+
+    //任务计划开始日期0点距基准时间的分钟数,无计划日期为PlanningEpoch.NONE
+    @Transient
+    @JsonIgnore
+    private int planStartMinute = PlanningEpoch.NONE;
+
+    //任务实际开始时间距基准时间的分钟数,无实际开始时间为PlanningEpoch.NONE
+    @Transient
+    @JsonIgnore
+    private int factStartMinute = PlanningEpoch.NONE;
+
     //绑定的工作中心日历
-    @PlanningVariable(valueRangeProviderRefs = "maintenanceRange")
+    @PlanningVariable(valueRangeProviderRefs = "maintenanceRange", strengthComparatorClass = WorkCenterMaintenanceStrengthComparator.class)
     @OneToOne(fetch = FetchType.EAGER, cascade = {CascadeType.PERSIST, CascadeType.MERGE, CascadeType.REFRESH})
     private WorkCenterMaintenance maintenance;
 
@@ -64,10 +115,71 @@ public class Timeslot implements Serializable {
     @Column(name = "procedure_index")
     private int procedureIndex;
 
+    //工序序号(求解器内部索引,加载问题时由ProcedureLinkBuilder分配,不持久化)
+    @Transient
+    @JsonIgnore
+    private int procedureSeq = -1;
+
+    //工作中心索引(加载问题时由WorkCenterIndexBuilder分配,无工作中心为-1,不持久化)
+    @Transient
+    @JsonIgnore
+    private int workCenterIndex = WorkCenterIndexBuilder.NONE;
+
+    //是否为外协工序(工作中心PM10W200),不占用产能
+    @Transient
+    @JsonIgnore
+    private boolean outsourcing;
+
+    //工序号,无工序号为0
+    @Transient
+    @JsonIgnore
+    private int procedureNo;
+
+    //关键路径时间窗:工序最早可开始日期(加载问题时由CriticalPathWindowBuilder构建,未构建为null,不持久化)
+    @Transient
+    @JsonIgnore
+    private LocalDate earliestDate;
+
+    //关键路径时间窗:工序最晚应完成日期(无完成期限或期限不可行为null,不持久化)
+    @Transient
+    @JsonIgnore
+    private LocalDate latestDate;
+
+    //可选的工作中心日历(同工作中心且在计划日期窗口与关键路径时间窗内,加载问题时由MaintenanceRangeBuilder构建,不持久化)
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    @ValueRangeProvider(id = "maintenanceRange")
+    private List<WorkCenterMaintenance> maintenanceRange = new ArrayList<>();
+
+    //加载问题时从数据库读出的分配列,保存最终解时只写入与之不同的时间槽(加载问题时写入,不持久化)
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    private PersistedAssignment persisted;
+
     public LocalDateTime getEndTime() {
         if (this.startTime != null && this.duration >= 0) {
             return this.startTime.plusMinutes(this.duration);
         }
         return null;
     }
+
+    /**
+     * 是否固定，固定的时间槽求解器不会移动
+     * <p>手动排定(或当天已完成)且已分配日历的时间槽固定；尚未分配日历的仍交给求解器初始化</p>
+     */
+    @PlanningPin
+    @JsonIgnore
+    public boolean isPinned() {
+        return this.manual && this.maintenance != null;
+    }
+
+    /**
+     * 结束时间距基准时间的分钟数，调用前需确认 startMinute 不为null
+     */
+    @JsonIgnore
+    public int getEndMinute() {
+        return this.startMinute + this.duration;
+    }
 }
@@ -1,7 +1,9 @@
 package com.upec.factoryscheduling.aps.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
+import org.optaplanner.core.api.domain.lookup.PlanningId;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -15,7 +17,9 @@ import java.time.LocalTime;
 public class WorkCenterMaintenance implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    //多线程求解时移动线程按id查找日历
     @Id
+    @PlanningId
     private String id;
 
     @OneToOne(fetch = FetchType.EAGER)
@@ -44,6 +48,21 @@ public class WorkCenterMaintenance implements Serializable {
     @Column(name = "usage_time")
     private int usageTime;
 
+    //日历开始时间距排程基准时间(PlanningEpoch)的分钟数,加载问题时由EpochMinutesBuilder写入,不持久化
+    @Transient
+    @JsonIgnore
+    private int startMinute;
+
+    //工作中心索引,加载问题时由WorkCenterIndexBuilder写入,不持久化
+    @Transient
+    @JsonIgnore
+    private int workCenterIndex = -1;
+
+    //全部固定的任务在该日历上占用的时间(分钟),加载问题时由FixedTaskBuilder写入,不持久化
+    @Transient
+    @JsonIgnore
+    private int fixedLoadMinutes;
+
     /**
      * 检查是否还有可用容量
      */
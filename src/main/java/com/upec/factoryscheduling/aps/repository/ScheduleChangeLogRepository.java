@@ -0,0 +1,13 @@
+package com.upec.factoryscheduling.aps.repository;
+
+import com.upec.factoryscheduling.aps.entity.ScheduleChangeLog;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ScheduleChangeLogRepository extends JpaRepository<ScheduleChangeLog, Long> {
+
+    List<ScheduleChangeLog> findAllByProblemIdOrderBySavedAtDesc(Long problemId);
+}
@@ -26,6 +26,10 @@ public interface TimeslotRepository extends JpaRepository<Timeslot, String> {
 
     List<Timeslot> findAllByProcedure(Procedure procedure);
 
+    List<Timeslot> findAllByProblemId(Long problemId);
+
+    boolean existsByProblemId(Long problemId);
+
     List<Timeslot> findAllByIdIsIn(Collection<String> ids);
 
     List<Timeslot> findAllByProcedureAndIdNot(Procedure procedure, String id);
@@ -0,0 +1,36 @@
+package com.upec.factoryscheduling.aps.response;
+
+import lombok.Data;
+import org.optaplanner.core.api.solver.SolverStatus;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 最佳解推送消息
+ * <p>连接建立后的第一条消息 full=true，changes 为全部时间槽；之后只包含相对该客户端上一条消息发生变化的时间槽，
+ * 客户端按 timeslotId 合并即可得到当前最佳解。</p>
+ */
+@Data
+public class SolutionUpdate implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Long problemId;
+    /**
+     * 快照版本，随每次推送递增
+     */
+    private long version;
+    private boolean full;
+    private String score;
+    private boolean feasible;
+    private SolverStatus solverStatus;
+    /**
+     * 求解出错时的错误信息
+     */
+    private String error;
+    private List<TimeslotAssignment> changes;
+    /**
+     * 已从问题中移除的时间槽id
+     */
+    private List<String> removed;
+}
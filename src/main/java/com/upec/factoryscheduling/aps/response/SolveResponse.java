@@ -0,0 +1,30 @@
+package com.upec.factoryscheduling.aps.response;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 启动求解的响应
+ * <p>返回本次求解实际生效的求解档位，便于确认环境模式和移动线程数</p>
+ */
+@Data
+public class SolveResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Long problemId;
+    private String profile;
+    private String environmentMode;
+    private String moveThreadCount;
+    /**
+     * SOLVING_ACTIVE表示已开始求解，SOLVING_SCHEDULED表示在排队
+     */
+    private String status;
+    /**
+     * 排队位置、排队总数和预计多少秒后开始求解，只在排队(SOLVING_SCHEDULED)时有值，含义同 {@link SolveStatusResponse}
+     */
+    private Integer queuePosition;
+    private Integer queueLength;
+    private Long etaSeconds;
+    private String message;
+}
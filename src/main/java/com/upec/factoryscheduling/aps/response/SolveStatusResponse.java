@@ -0,0 +1,29 @@
+package com.upec.factoryscheduling.aps.response;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 求解状态
+ * <p>排队中(SOLVING_SCHEDULED)时包含排队位置和预计开始时间，其它状态下排队字段为空</p>
+ */
+@Data
+public class SolveStatusResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Long problemId;
+    private String status;
+    /**
+     * 排队位置，从1开始
+     */
+    private Integer queuePosition;
+    /**
+     * 排队中的问题总数
+     */
+    private Integer queueLength;
+    /**
+     * 预计多少秒后开始求解，按最近完成的求解时长估算
+     */
+    private Long etaSeconds;
+}
@@ -0,0 +1,22 @@
+package com.upec.factoryscheduling.aps.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 时间槽的排程结果（推送给前端的精简形式）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimeslotAssignment implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String timeslotId;
+    private String maintenanceId;
+    private LocalDateTime startTime;
+}
@@ -0,0 +1,298 @@
+package com.upec.factoryscheduling.aps.service;
+
+import com.google.common.collect.Lists;
+import com.upec.factoryscheduling.aps.entity.Order;
+import com.upec.factoryscheduling.aps.entity.Procedure;
+import com.upec.factoryscheduling.aps.entity.Task;
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 排程基础数据(订单、任务、工序、时间槽)的批量写入
+ * <p>MES导入时使用，代替JPA的saveAll：JPA对每行先查询再合并，并级联合并订单、任务、工作中心。
+ * 这里按主键做MySQL的 insert ... on duplicate key update，一批语句一次发送
+ * (连接串设置 rewriteBatchedStatements=true 时驱动合并为多行语句)。</p>
+ * <p>已存在的时间槽只更新工序派生的列(时长、优先级、并行、工序索引)，不覆盖求解结果(日历、开始时间、手动标记)。
+ * 工序的后继工序号和后继工序关联先删除再插入。</p>
+ * <p>列名与JPA实体一致：未标注@Column的属性使用属性名(如planQuantity、routeId)。</p>
+ */
+@Slf4j
+@Service
+public class PlannerDataBatchWriter {
+
+    private static final String UPSERT_ORDER_SQL = "insert into aps_orders (order_no, product_code, product_name, erp_status, order_status, "
+            + "plan_start_date, plan_end_date, fact_start_date, fact_end_date, create_date, plan_quantity, contract_num) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) on duplicate key update product_code = values(product_code), "
+            + "product_name = values(product_name), erp_status = values(erp_status), order_status = values(order_status), "
+            + "plan_start_date = values(plan_start_date), plan_end_date = values(plan_end_date), fact_start_date = values(fact_start_date), "
+            + "fact_end_date = values(fact_end_date), plan_quantity = values(plan_quantity), contract_num = values(contract_num)";
+
+    private static final String UPSERT_TASK_SQL = "insert into aps_task (task_no, order_no, status, planQuantity, fact_start_date, fact_end_date, "
+            + "plan_start_date, plan_end_date, priority, routeId, LOCKED_REMARK, createDate) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "on duplicate key update order_no = values(order_no), status = values(status), planQuantity = values(planQuantity), "
+            + "fact_start_date = values(fact_start_date), fact_end_date = values(fact_end_date), plan_start_date = values(plan_start_date), "
+            + "plan_end_date = values(plan_end_date), priority = values(priority), routeId = values(routeId), LOCKED_REMARK = values(LOCKED_REMARK)";
+
+    private static final String UPSERT_PROCEDURE_SQL = "insert into aps_procedure (id, order_no, task_no, work_center_id, procedure_name, "
+            + "procedure_no, procedure_type, machine_minutes, human_minutes, rework, start_time, end_time, plan_start_date, plan_end_date, "
+            + "status, parallel, p_index, p_level, create_date) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "on duplicate key update order_no = values(order_no), task_no = values(task_no), work_center_id = values(work_center_id), "
+            + "procedure_name = values(procedure_name), procedure_no = values(procedure_no), procedure_type = values(procedure_type), "
+            + "machine_minutes = values(machine_minutes), human_minutes = values(human_minutes), rework = values(rework), "
+            + "start_time = values(start_time), end_time = values(end_time), plan_start_date = values(plan_start_date), "
+            + "plan_end_date = values(plan_end_date), status = values(status), parallel = values(parallel), p_index = values(p_index), "
+            + "p_level = values(p_level)";
+
+    private static final String DELETE_NEXT_NO_SQL = "delete from asp_procedure_no_next where Procedure_id in (%s)";
+    private static final String INSERT_NEXT_NO_SQL = "insert into asp_procedure_no_next (Procedure_id, next_procedure_no) values (?, ?)";
+    private static final String DELETE_NEXT_SQL = "delete from aps_procedure_next where Procedure_id in (%s)";
+    private static final String INSERT_NEXT_SQL = "insert into aps_procedure_next (Procedure_id, nextProcedure_id) values (?, ?)";
+
+    private static final String UPSERT_TIMESLOT_SQL = "insert into aps_timeslot (id, procedure_id, duration, priority, start_time, parallel, "
+            + "manual, p_index, total, procedure_index) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) on duplicate key update "
+            + "duration = values(duration), priority = values(priority), parallel = values(parallel), procedure_index = values(procedure_index)";
+
+    private static final String UPDATE_ORDER_SQL = "update aps_orders set order_status = ?, erp_status = ?, contract_num = ?, plan_quantity = ?, "
+            + "plan_start_date = ?, plan_end_date = ?, fact_start_date = ?, fact_end_date = ? where order_no = ?";
+
+    private static final String UPDATE_TASK_SQL = "update aps_task set status = ?, routeId = ?, plan_start_date = ?, plan_end_date = ?, "
+            + "fact_start_date = ?, fact_end_date = ?, LOCKED_REMARK = ?, planQuantity = ? where task_no = ?";
+
+    private static final String UPDATE_PROCEDURE_SQL = "update aps_procedure set procedure_name = ?, status = ?, machine_minutes = ?, "
+            + "human_minutes = ?, rework = ?, start_time = ?, end_time = ?, plan_start_date = ?, plan_end_date = ? where id = ?";
+
+    // 拆分后的时间槽(total>1)按拆分比例计算时长，这里只更新未拆分的时间槽
+    private static final String UPDATE_TIMESLOT_DURATION_SQL = "update aps_timeslot set duration = ? where procedure_id = ? and total = 1";
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Qualifier("mySqlTemplate")
+    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 在一个事务中写入一批排程基础数据
+     *
+     * @param batch     一批数据，订单、任务、工序、时间槽按此顺序写入
+     * @param batchSize 每条批量语句的行数
+     * @return 写入的行数(不含后继关系)
+     */
+    @Transactional("mysqlTransactionManager")
+    public int write(Batch batch, int batchSize) {
+        int rows = 0;
+        rows += upsert(UPSERT_ORDER_SQL, batch.getOrders(), batchSize, PlannerDataBatchWriter::bindOrder);
+        rows += upsert(UPSERT_TASK_SQL, batch.getTasks(), batchSize, PlannerDataBatchWriter::bindTask);
+        rows += upsert(UPSERT_PROCEDURE_SQL, batch.getProcedures(), batchSize, PlannerDataBatchWriter::bindProcedure);
+        replaceNextProcedures(batch.getProcedures(), batchSize);
+        rows += upsert(UPSERT_TIMESLOT_SQL, batch.getTimeslots(), batchSize, PlannerDataBatchWriter::bindTimeslot);
+        return rows;
+    }
+
+    /**
+     * 批量更新已存在订单的MES状态和日期，不存在的订单忽略
+     */
+    @Transactional("mysqlTransactionManager")
+    public int updateOrders(List<Order> orders, int batchSize) {
+        return upsert(UPDATE_ORDER_SQL, orders, batchSize, (ps, order) -> {
+            ps.setString(1, order.getOrderStatus());
+            ps.setString(2, order.getErpStatus());
+            ps.setString(3, order.getContractNum());
+            setInteger(ps, 4, order.getPlanQuantity());
+            ps.setObject(5, order.getPlanStartDate());
+            ps.setObject(6, order.getPlanEndDate());
+            ps.setObject(7, order.getFactStartDate());
+            ps.setObject(8, order.getFactEndDate());
+            ps.setString(9, order.getOrderNo());
+        });
+    }
+
+    /**
+     * 批量更新已存在任务的MES状态和日期，不存在的任务忽略
+     */
+    @Transactional("mysqlTransactionManager")
+    public int updateTasks(List<Task> tasks, int batchSize) {
+        return upsert(UPDATE_TASK_SQL, tasks, batchSize, (ps, task) -> {
+            ps.setString(1, task.getStatus());
+            ps.setString(2, task.getRouteId());
+            ps.setObject(3, task.getPlanStartDate());
+            ps.setObject(4, task.getPlanEndDate());
+            ps.setObject(5, task.getFactStartDate());
+            ps.setObject(6, task.getFactEndDate());
+            ps.setString(7, task.getLockedRemark());
+            setInteger(ps, 8, task.getPlanQuantity());
+            ps.setString(9, task.getTaskNo());
+        });
+    }
+
+    /**
+     * 批量更新已存在工序的MES状态、工时和日期，以及未拆分时间槽的时长，不存在的工序忽略
+     */
+    @Transactional("mysqlTransactionManager")
+    public int updateProcedures(List<Procedure> procedures, int batchSize) {
+        upsert(UPDATE_PROCEDURE_SQL, procedures, batchSize, (ps, procedure) -> {
+            ps.setString(1, procedure.getProcedureName());
+            ps.setString(2, procedure.getStatus());
+            ps.setInt(3, procedure.getMachineMinutes());
+            ps.setInt(4, procedure.getHumanMinutes());
+            ps.setBoolean(5, procedure.isRework());
+            ps.setObject(6, procedure.getStartTime());
+            ps.setObject(7, procedure.getEndTime());
+            ps.setObject(8, procedure.getPlanStartDate());
+            ps.setObject(9, procedure.getPlanEndDate());
+            ps.setString(10, procedure.getId());
+        });
+        return upsert(UPDATE_TIMESLOT_DURATION_SQL, procedures, batchSize, (ps, procedure) -> {
+            ps.setInt(1, procedure.getMachineMinutes());
+            ps.setString(2, procedure.getId());
+        });
+    }
+
+    private <T> int upsert(String sql, List<T> rows, int batchSize, ParameterizedPreparedStatementSetter<T> setter) {
+        for (List<T> chunk : Lists.partition(rows, batchSize)) {
+            jdbcTemplate.batchUpdate(sql, chunk, chunk.size(), setter);
+        }
+        return rows.size();
+    }
+
+    private void replaceNextProcedures(List<Procedure> procedures, int batchSize) {
+        List<String[]> nextNos = new ArrayList<>();
+        List<String[]> nexts = new ArrayList<>();
+        for (Procedure procedure : procedures) {
+            if (procedure.getNextProcedureNo() != null) {
+                for (Integer number : procedure.getNextProcedureNo()) {
+                    nextNos.add(new String[]{procedure.getId(), String.valueOf(number)});
+                }
+            }
+            if (procedure.getNextProcedure() != null) {
+                for (Procedure next : procedure.getNextProcedure()) {
+                    nexts.add(new String[]{procedure.getId(), next.getId()});
+                }
+            }
+        }
+        for (List<Procedure> chunk : Lists.partition(procedures, batchSize)) {
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            Object[] ids = chunk.stream().map(Procedure::getId).toArray();
+            jdbcTemplate.update(String.format(DELETE_NEXT_NO_SQL, placeholders), ids);
+            jdbcTemplate.update(String.format(DELETE_NEXT_SQL, placeholders), ids);
+        }
+        upsert(INSERT_NEXT_NO_SQL, nextNos, batchSize, (ps, row) -> {
+            ps.setString(1, row[0]);
+            ps.setInt(2, Integer.parseInt(row[1]));
+        });
+        upsert(INSERT_NEXT_SQL, nexts, batchSize, (ps, row) -> {
+            ps.setString(1, row[0]);
+            ps.setString(2, row[1]);
+        });
+    }
+
+    private static void bindOrder(PreparedStatement ps, Order order) throws SQLException {
+        ps.setString(1, order.getOrderNo());
+        ps.setString(2, order.getProductCode());
+        ps.setString(3, order.getProductName());
+        ps.setString(4, order.getErpStatus());
+        ps.setString(5, order.getOrderStatus());
+        ps.setObject(6, order.getPlanStartDate());
+        ps.setObject(7, order.getPlanEndDate());
+        ps.setObject(8, order.getFactStartDate());
+        ps.setObject(9, order.getFactEndDate());
+        ps.setObject(10, order.getCreateDate());
+        setInteger(ps, 11, order.getPlanQuantity());
+        ps.setString(12, order.getContractNum());
+    }
+
+    private static void bindTask(PreparedStatement ps, Task task) throws SQLException {
+        ps.setString(1, task.getTaskNo());
+        ps.setString(2, task.getOrderNo());
+        ps.setString(3, task.getStatus());
+        setInteger(ps, 4, task.getPlanQuantity());
+        ps.setObject(5, task.getFactStartDate());
+        ps.setObject(6, task.getFactEndDate());
+        ps.setObject(7, task.getPlanStartDate());
+        ps.setObject(8, task.getPlanEndDate());
+        ps.setInt(9, task.getPriority());
+        ps.setString(10, task.getRouteId());
+        ps.setString(11, task.getLockedRemark());
+        ps.setObject(12, task.getCreateDate());
+    }
+
+    private static void bindProcedure(PreparedStatement ps, Procedure procedure) throws SQLException {
+        ps.setString(1, procedure.getId());
+        ps.setString(2, procedure.getOrder() == null ? null : procedure.getOrder().getOrderNo());
+        ps.setString(3, procedure.getTask() == null ? null : procedure.getTask().getTaskNo());
+        ps.setString(4, procedure.getWorkCenter() == null ? null : procedure.getWorkCenter().getId());
+        ps.setString(5, procedure.getProcedureName());
+        setInteger(ps, 6, procedure.getProcedureNo());
+        ps.setString(7, procedure.getProcedureType());
+        ps.setInt(8, procedure.getMachineMinutes());
+        ps.setInt(9, procedure.getHumanMinutes());
+        ps.setBoolean(10, procedure.isRework());
+        ps.setObject(11, procedure.getStartTime());
+        ps.setObject(12, procedure.getEndTime());
+        ps.setObject(13, procedure.getPlanStartDate());
+        ps.setObject(14, procedure.getPlanEndDate());
+        ps.setString(15, procedure.getStatus());
+        ps.setBoolean(16, procedure.isParallel());
+        ps.setInt(17, procedure.getIndex());
+        setInteger(ps, 18, procedure.getLevel());
+        ps.setObject(19, procedure.getCreateDate());
+    }
+
+    private static void bindTimeslot(PreparedStatement ps, Timeslot timeslot) throws SQLException {
+        ps.setString(1, timeslot.getId());
+        ps.setString(2, timeslot.getProcedure() == null ? null : timeslot.getProcedure().getId());
+        ps.setInt(3, timeslot.getDuration());
+        setInteger(ps, 4, timeslot.getPriority());
+        ps.setObject(5, timeslot.getStartTime());
+        ps.setBoolean(6, timeslot.isParallel());
+        ps.setBoolean(7, timeslot.isManual());
+        ps.setInt(8, timeslot.getIndex());
+        ps.setInt(9, timeslot.getTotal());
+        ps.setInt(10, timeslot.getProcedureIndex());
+    }
+
+    private static void setInteger(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.INTEGER);
+        } else {
+            ps.setInt(index, value);
+        }
+    }
+
+    /**
+     * 一批排程基础数据
+     */
+    @Getter
+    public static class Batch {
+        private final List<Order> orders;
+        private final List<Task> tasks;
+        private final List<Procedure> procedures;
+        private final List<Timeslot> timeslots;
+
+        public Batch(List<Order> orders, List<Task> tasks, List<Procedure> procedures, List<Timeslot> timeslots) {
+            this.orders = orders;
+            this.tasks = tasks;
+            this.procedures = procedures;
+            this.timeslots = timeslots;
+        }
+
+        public int size() {
+            return orders.size() + tasks.size() + procedures.size() + timeslots.size();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.upec.factoryscheduling.aps.service;
+
+import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
+import com.upec.factoryscheduling.aps.solution.ProblemSnapshotCodec;
+import com.upec.factoryscheduling.common.configuration.SolverProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Optional;
+
+/**
+ * 问题快照存储
+ * <p>每个问题一个文件 {snapshot-dir}/problem-{problemId}.snap，格式见 {@link ProblemSnapshotCodec}。
+ * 写入时先写临时文件再原子替换，读取时内存映射整个文件解码，不访问数据库。</p>
+ */
+@Slf4j
+@Service
+public class ProblemSnapshotStore {
+
+    private Path directory;
+
+    @Autowired
+    public void setSolverProperties(SolverProperties solverProperties) {
+        this.directory = Paths.get(solverProperties.getSnapshotDir());
+    }
+
+    /**
+     * 保存问题快照，已有的快照被替换
+     *
+     * @param problemId 问题ID
+     * @param problem   从数据库加载、尚未做派生处理的问题
+     * @return 快照文件
+     * @throws IllegalStateException 写入失败时抛出
+     */
+    public Path save(Long problemId, FactorySchedulingSolution problem) {
+        long start = System.nanoTime();
+        Path file = fileOf(problemId);
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "problem-" + problemId + "-", ".tmp");
+            try {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)) {
+                    ProblemSnapshotCodec.write(problem, out);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            log.info("问题{}快照已保存：{}个时间槽，{}字节，耗时{}ms", problemId, problem.getTimeslots().size(),
+                    Files.size(file), (System.nanoTime() - start) / 1_000_000);
+            return file;
+        } catch (IOException e) {
+            throw new IllegalStateException("保存问题" + problemId + "快照失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 读取问题快照
+     *
+     * @param problemId 问题ID
+     * @return 问题，没有快照时为空
+     * @throws IllegalStateException 文件无法读取或格式错误时抛出
+     */
+    public Optional<FactorySchedulingSolution> load(Long problemId) {
+        Path file = fileOf(problemId);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            FactorySchedulingSolution problem = ProblemSnapshotCodec.read(buffer);
+            log.info("问题{}快照已读取：{}个时间槽，耗时{}ms", problemId, problem.getTimeslots().size(),
+                    (System.nanoTime() - start) / 1_000_000);
+            return Optional.of(problem);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("读取问题" + problemId + "快照失败: " + e.getMessage(), e);
+        }
+    }
+
+    public boolean exists(Long problemId) {
+        return Files.exists(fileOf(problemId));
+    }
+
+    public boolean delete(Long problemId) {
+        try {
+            return Files.deleteIfExists(fileOf(problemId));
+        } catch (IOException e) {
+            throw new IllegalStateException("删除问题" + problemId + "快照失败: " + e.getMessage(), e);
+        }
+    }
+
+    private Path fileOf(Long problemId) {
+        return directory.resolve("problem-" + problemId + ".snap");
+    }
+}
@@ -1,8 +1,28 @@
 package com.upec.factoryscheduling.aps.service;
 
 import com.upec.factoryscheduling.aps.entity.*;
+import com.upec.factoryscheduling.aps.response.SolveStatusResponse;
 import com.upec.factoryscheduling.aps.response.TimeslotValidate;
+import com.upec.factoryscheduling.aps.solution.AddTimeslotsProblemChange;
+import com.upec.factoryscheduling.aps.solution.CriticalPathWindowBuilder;
+import com.upec.factoryscheduling.aps.solution.EpochMinutesBuilder;
 import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
+import com.upec.factoryscheduling.aps.solution.FixedTaskBuilder;
+import com.upec.factoryscheduling.aps.solution.InitialAssignmentBuilder;
+import com.upec.factoryscheduling.aps.solution.MaintenanceCapacityProblemChange;
+import com.upec.factoryscheduling.aps.solution.MaintenanceRangeBuilder;
+import com.upec.factoryscheduling.aps.solution.PersistedAssignment;
+import com.upec.factoryscheduling.aps.solution.PinTimeslotProblemChange;
+import com.upec.factoryscheduling.aps.solution.PlanningEpoch;
+import com.upec.factoryscheduling.aps.solution.ProcedureLinkBuilder;
+import com.upec.factoryscheduling.aps.solution.RemoveTimeslotsProblemChange;
+import com.upec.factoryscheduling.aps.solution.WorkCenterIndexBuilder;
+import com.upec.factoryscheduling.aps.solver.BestSolutionRegistry;
+import com.upec.factoryscheduling.aps.solver.BestSolutionSnapshot;
+import com.upec.factoryscheduling.aps.solver.SolverJobQueue;
+import com.upec.factoryscheduling.aps.solver.SolverManagerRegistry;
+import com.upec.factoryscheduling.common.configuration.SolverProfile;
+import com.upec.factoryscheduling.common.configuration.SolverProperties;
 import com.xkzhangsan.time.calculator.DateTimeCalculatorUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.optaplanner.core.api.score.ScoreExplanation;
@@ -11,15 +31,18 @@ import org.optaplanner.core.api.solver.SolutionManager;
 import org.optaplanner.core.api.solver.SolverJob;
 import org.optaplanner.core.api.solver.SolverManager;
 import org.optaplanner.core.api.solver.SolverStatus;
+import org.optaplanner.core.config.solver.EnvironmentMode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -52,9 +75,9 @@ public class SchedulingService {
     private WorkCenterMaintenanceService maintenanceService;
 
     /**
-     * OptaPlanner求解器管理器 - 用于创建和管理求解作业
+     * 求解器管理器注册表 - 按求解档位管理SolverManager，记录每个问题所在的求解器
      */
-    private SolverManager<FactorySchedulingSolution, Long> solverManager;
+    private SolverManagerRegistry solverManagerRegistry;
 
     /**
      * 解决方案管理器 - 用于更新和解释解决方案
@@ -66,6 +89,36 @@ public class SchedulingService {
      */
     private TimeslotService timeslotService;
 
+    /**
+     * 求解器配置 - 提供时间槽可选日历窗口等问题加载参数
+     */
+    private SolverProperties solverProperties;
+
+    /**
+     * 最佳解推送服务 - 向浏览器推送求解过程中的最佳解
+     */
+    private SolutionStreamService solutionStreamService;
+
+    /**
+     * 最佳解注册表 - 内存中保存每个问题的最新最佳解
+     */
+    private BestSolutionRegistry bestSolutionRegistry;
+
+    /**
+     * 求解排队
+     */
+    private SolverJobQueue solverJobQueue;
+
+    /**
+     * 时间槽分配结果的批量写入
+     */
+    private TimeslotAssignmentWriter timeslotAssignmentWriter;
+
+    /**
+     * 问题快照存储
+     */
+    private ProblemSnapshotStore problemSnapshotStore;
+
 
     @Autowired
     public void setTimeslotService(TimeslotService timeslotService) {
@@ -93,8 +146,38 @@ public class SchedulingService {
     }
 
     @Autowired
-    public void setSolverManager(SolverManager<FactorySchedulingSolution, Long> solverManager) {
-        this.solverManager = solverManager;
+    public void setSolverManagerRegistry(SolverManagerRegistry solverManagerRegistry) {
+        this.solverManagerRegistry = solverManagerRegistry;
+    }
+
+    @Autowired
+    public void setSolverProperties(SolverProperties solverProperties) {
+        this.solverProperties = solverProperties;
+    }
+
+    @Autowired
+    public void setSolutionStreamService(SolutionStreamService solutionStreamService) {
+        this.solutionStreamService = solutionStreamService;
+    }
+
+    @Autowired
+    public void setTimeslotAssignmentWriter(TimeslotAssignmentWriter timeslotAssignmentWriter) {
+        this.timeslotAssignmentWriter = timeslotAssignmentWriter;
+    }
+
+    @Autowired
+    public void setSolverJobQueue(SolverJobQueue solverJobQueue) {
+        this.solverJobQueue = solverJobQueue;
+    }
+
+    @Autowired
+    public void setBestSolutionRegistry(BestSolutionRegistry bestSolutionRegistry) {
+        this.bestSolutionRegistry = bestSolutionRegistry;
+    }
+
+    @Autowired
+    public void setProblemSnapshotStore(ProblemSnapshotStore problemSnapshotStore) {
+        this.problemSnapshotStore = problemSnapshotStore;
     }
 
     @Autowired
@@ -111,29 +194,126 @@ public class SchedulingService {
      * @param taskNos   订单编号列表 - 指定需要参与调度的订单，如果为空则调度所有订单
      */
     public void startScheduling(Long problemId, List<String> taskNos) {
-        // 加载调度问题数据，包括订单、工序、时间槽等信息
-        FactorySchedulingSolution problem = loadProblemWithSlices(taskNos, problemId);
-        // 使用求解器管理器创建求解作业并监听进度
-        SolverJob<FactorySchedulingSolution, Long> solverJob = solverManager.solveAndListen(
-                problemId,  // 问题标识
-                id -> problem,  // 提供问题数据的函数
-                // 每次找到更好的解决方案时的回调函数
-                solution -> {
-                    // 记录新的最佳解决方案分数
-                    log.info("New best solution found: {}", solution.getScore());
-                    // 此处可以扩展，例如更新UI或临时保存中间结果
-                },
-                // 求解完成时的回调函数
-                finalBestSolution -> {
-                    // 记录最终最佳解决方案分数
-                    log.info("Final best solution found: {}", finalBestSolution.getScore());
-                    // 保存最终调度结果到数据库
-                    saveSolution(finalBestSolution);
-                },
-                // 求解出错时的回调函数
-                (id, throwable) -> {
-                    log.error("Scheduling error: {}", throwable.getMessage());
-                });
+        startScheduling(problemId, taskNos, null, null, null, null, SolverJobQueue.ANONYMOUS_USER);
+    }
+
+    /**
+     * 使用指定求解档位开始调度过程
+     * <p>求解请求先进入 {@link SolverJobQueue}，有空闲名额时立即开始，否则排队；
+     * 问题数据在开始求解时才加载，排队期间的数据修改也会生效。</p>
+     *
+     * @param problemId       问题ID
+     * @param taskNos         任务编号列表
+     * @param profileName     求解档位名称，为空时使用aps.solver.active-profile
+     * @param environmentMode 覆盖档位中的环境模式，可为空
+     * @param moveThreadCount 覆盖档位中的移动线程数(NONE/AUTO/正整数)，可为空
+     * @param warmStart       是否以上次保存的排程为初始解，为空时使用aps.solver.warm-start
+     * @param user            提交求解的用户，用于排队轮转和每用户限额
+     * @return 本次求解实际使用的档位(AUTO参数已按CPU配额确定)
+     * @throws IllegalArgumentException 档位不存在或参数不合法时抛出
+     * @throws IllegalStateException    问题已在求解或排队中，或用户排队个数已满时抛出
+     */
+    public SolverProfile startScheduling(Long problemId, List<String> taskNos, String profileName,
+                                         EnvironmentMode environmentMode, String moveThreadCount, Boolean warmStart,
+                                         String user) {
+        // 先校验档位，避免参数错误时进入排队
+        SolverProfile profile = solverManagerRegistry.resolveProfile(profileName, environmentMode, moveThreadCount);
+        boolean warm = warmStart != null ? warmStart : solverProperties.isWarmStart();
+        return solverJobQueue.submit(problemId, user, profile,
+                adjusted -> solve(problemId, adjusted, () -> loadProblemWithSlices(taskNos, problemId, warm)));
+    }
+
+    /**
+     * 从问题快照开始求解，不查询数据库
+     * <p>快照由从数据库加载问题时写入(见 {@link ProblemSnapshotStore})，排程基准时间沿用快照中的值，
+     * 用于重新求解和复现问题。求解结果与正常求解一样保存；快照中记录的数据库值可能已过时，
+     * 加载后清空，保存时由 {@link TimeslotAssignmentWriter} 重新查询数据库中的当前值再比较。</p>
+     *
+     * @param problemId   问题ID
+     * @param profileName 求解档位名称，为空时使用aps.solver.active-profile
+     * @param warmStart   是否以快照中保存的分配为初始解，为空时使用aps.solver.warm-start
+     * @param user        提交求解的用户
+     * @return 本次求解实际使用的档位
+     * @throws IllegalArgumentException 问题没有快照或档位不存在时抛出
+     * @throws IllegalStateException    问题已在求解或排队中，或用户排队个数已满时抛出
+     */
+    public SolverProfile startSchedulingFromSnapshot(Long problemId, String profileName, Boolean warmStart, String user) {
+        if (!problemSnapshotStore.exists(problemId)) {
+            throw new IllegalArgumentException("问题" + problemId + "没有快照");
+        }
+        SolverProfile profile = solverManagerRegistry.resolveProfile(profileName, null, null);
+        boolean warm = warmStart != null ? warmStart : solverProperties.isWarmStart();
+        return solverJobQueue.submit(problemId, user, profile, adjusted -> solve(problemId, adjusted, () -> {
+            FactorySchedulingSolution snapshot = problemSnapshotStore.load(problemId)
+                    .orElseThrow(() -> new IllegalStateException("问题" + problemId + "快照已被删除"));
+            snapshot.getAllTimeslots().forEach(timeslot -> timeslot.setPersisted(null));
+            return prepareProblem(snapshot, warm);
+        }));
+    }
+
+    /**
+     * 保存问题快照，之后可通过 {@link #startSchedulingFromSnapshot} 从快照求解
+     *
+     * @param problemId 问题ID
+     * @param taskNos   任务编号列表
+     * @return 快照中的时间槽个数
+     */
+    public int saveSnapshot(Long problemId, List<String> taskNos) {
+        FactorySchedulingSolution problem = loadProblem(taskNos, problemId);
+        problem.setPlanningEpoch(PlanningEpoch.now());
+        problemSnapshotStore.save(problemId, problem);
+        return problem.getTimeslots().size();
+    }
+
+    /**
+     * 开始求解，由 {@link SolverJobQueue} 在有空闲名额时调用
+     *
+     * @param loader 在求解线程中加载问题
+     */
+    private void solve(Long problemId, SolverProfile profile, Supplier<FactorySchedulingSolution> loader) {
+        SolverManager<FactorySchedulingSolution, Long> solverManager = solverManagerRegistry.register(problemId, profile);
+        log.info("问题{}使用求解档位: {}", problemId, profile);
+        try {
+            // 使用求解器管理器创建求解作业并监听进度
+            solverManager.solveAndListen(
+                    problemId,  // 问题标识
+                    // 在求解线程中加载调度问题数据，包括订单、工序、时间槽等信息
+                    id -> loader.get(),
+                    // 每次找到更好的解决方案时的回调函数
+                    solution -> {
+                        // 记录新的最佳解决方案分数
+                        log.info("New best solution found: {}", solution.getScore());
+                        // 记录到注册表并推送给订阅的浏览器，两者都只保存引用
+                        bestSolutionRegistry.update(problemId, solution);
+                        solutionStreamService.publish(problemId, solution);
+                    },
+                    // 求解完成时的回调函数
+                    finalBestSolution -> {
+                        try {
+                            // 记录最终最佳解决方案分数
+                            log.info("Final best solution found: {}", finalBestSolution.getScore());
+                            bestSolutionRegistry.finish(problemId, finalBestSolution);
+                            solutionStreamService.complete(problemId, finalBestSolution);
+                            // 保存最终调度结果到数据库
+                            saveSolution(finalBestSolution);
+                        } finally {
+                            // 保存完成后再释放名额，求解线程空出后下一个问题才开始
+                            solverManagerRegistry.release(problemId);
+                            solverJobQueue.finished(problemId);
+                        }
+                    },
+                    // 求解出错时的回调函数
+                    (id, throwable) -> {
+                        log.error("Scheduling error: {}", throwable.getMessage());
+                        solutionStreamService.fail(id, throwable);
+                        solverManagerRegistry.release(id);
+                        solverJobQueue.finished(id);
+                    });
+        } catch (RuntimeException e) {
+            // 未能提交求解时回调不会执行，由这里移除问题的记录
+            solverManagerRegistry.release(problemId);
+            throw e;
+        }
     }
 
 
@@ -167,28 +347,67 @@ public class SchedulingService {
      * @param problemId 问题ID - 标识需要停止的调度问题实例
      */
     public void stopScheduling(Long problemId) {
-        // 调用求解器管理器终止指定问题ID的求解过程
-        solverManager.terminateEarly(problemId);
+        // 排队中的问题直接取消，正在求解的问题提前终止
+        if (solverJobQueue.cancel(problemId)) {
+            return;
+        }
+        solverManagerRegistry.managerOf(problemId).terminateEarly(problemId);
     }
 
     /**
      * 获取当前最佳解决方案
      * <p>返回指定问题ID的当前最优解，并设置其求解状态。
-     * 无论求解是否完成，此方法都返回当前计算出的最佳解决方案。</p>
+     * 无论求解是否完成，此方法都返回当前计算出的最佳解决方案。
+     * 优先读取 {@link BestSolutionRegistry} 中的快照；问题不在内存中(未求解过或已淘汰)时，
+     * 只从数据库加载该问题已保存的时间槽，此时没有分数。</p>
      *
      * @param problemId 问题ID - 标识需要获取解决方案的调度问题实例
      * @return FactorySchedulingSolution - 当前的最佳调度解决方案，包含求解状态信息
      */
     public FactorySchedulingSolution getBestSolution(Long problemId) {
-        // 获取最终最佳解决方案
-        FactorySchedulingSolution solution = getFinalBestSolution();
+        BestSolutionSnapshot snapshot = bestSolutionRegistry.get(problemId);
+        FactorySchedulingSolution solution;
+        if (snapshot != null) {
+            // 复制解对象，设置求解状态不影响快照
+            solution = snapshot.copySolution();
+        } else {
+            solution = new FactorySchedulingSolution(timeslotService.findAllByProblemId(problemId), new ArrayList<>());
+            solution.setProblemId(problemId);
+        }
         // 获取并设置当前求解状态
-        SolverStatus solverStatus = solverManager.getSolverStatus(problemId);
-        solution.setSolverStatus(solverStatus);
+        solution.setSolverStatus(isSolving(problemId));
         return solution;
     }
 
 
+    /**
+     * 订阅问题的最佳解推送(SSE)
+     * <p>先订阅再确认求解状态：问题未在排队或求解时不会再有求解回调关闭连接，
+     * 直接推送内存中的最后最佳解(没有时推送failed事件)并以NOT_SOLVING结束，连接随即关闭。
+     * 订阅后再检查可避免与同时结束的求解竞争，最多重复推送一次最终快照。</p>
+     *
+     * @param problemId 问题ID
+     * @return SSE连接
+     * @throws IllegalArgumentException 问题不在排队、求解中，内存和数据库中也没有该问题
+     */
+    public SseEmitter subscribeBestSolution(Long problemId) {
+        if (isSolving(problemId) == SolverStatus.NOT_SOLVING && bestSolutionRegistry.get(problemId) == null
+                && !timeslotService.existsByProblemId(problemId)) {
+            throw new IllegalArgumentException("问题" + problemId + "不存在");
+        }
+        SseEmitter emitter = solutionStreamService.subscribe(problemId);
+        if (isSolving(problemId) == SolverStatus.NOT_SOLVING) {
+            BestSolutionSnapshot snapshot = bestSolutionRegistry.get(problemId);
+            if (snapshot != null) {
+                solutionStreamService.complete(problemId, snapshot.getSolution());
+            } else {
+                solutionStreamService.fail(problemId,
+                        new IllegalStateException("问题" + problemId + "未在求解，内存中没有最佳解，请通过 /solution 查询"));
+            }
+        }
+        return emitter;
+    }
+
     /**
      * 获取解决方案得分
      * <p>返回当前最佳解决方案的得分，采用HardSoftScore形式，包含硬性约束分数和软性约束分数。
@@ -199,8 +418,9 @@ public class SchedulingService {
      * @return HardMediumSoftScore - 当前最佳解决方案的评分对象
      */
     public HardMediumSoftScore getScore(Long problemId) {
-        // 从最佳解决方案中提取得分
-        return getBestSolution(problemId).getScore();
+        // 直接读取内存中的快照分数，问题不在内存中时返回null
+        BestSolutionSnapshot snapshot = bestSolutionRegistry.get(problemId);
+        return snapshot == null ? null : snapshot.getScore();
     }
 
     /**
@@ -208,14 +428,38 @@ public class SchedulingService {
      * <p>返回指定问题ID的求解器当前状态，包括：
      * NOT_SOLVING - 未开始求解或已停止
      * SOLVING_ACTIVE - 正在积极求解
-     * SOLVING_SCHEDULED - 求解已安排但尚未开始</p>
+     * SOLVING_SCHEDULED - 求解已安排但尚未开始(在 {@link SolverJobQueue} 中排队)</p>
      *
      * @param problemId 问题ID - 标识需要检查状态的调度问题实例
      * @return SolverStatus - 当前求解器的状态枚举值
      */
     public SolverStatus isSolving(Long problemId) {
+        if (solverJobQueue.isQueued(problemId)) {
+            return SolverStatus.SOLVING_SCHEDULED;
+        }
         // 获取并返回求解器状态
-        return solverManager.getSolverStatus(problemId);
+        return solverManagerRegistry.managerOf(problemId).getSolverStatus(problemId);
+    }
+
+    /**
+     * 查询求解状态和排队信息
+     *
+     * @param problemId 问题ID
+     * @return 求解状态，排队中时包含排队位置和预计开始时间
+     */
+    public SolveStatusResponse getSolveStatus(Long problemId) {
+        SolveStatusResponse response = new SolveStatusResponse();
+        response.setProblemId(problemId);
+        SolverJobQueue.QueuePosition position = solverJobQueue.positionOf(problemId);
+        if (position != null) {
+            response.setStatus(SolverStatus.SOLVING_SCHEDULED.name());
+            response.setQueuePosition(position.getPosition());
+            response.setQueueLength(position.getQueueLength());
+            response.setEtaSeconds(position.getEtaSeconds());
+        } else {
+            response.setStatus(isSolving(problemId).name());
+        }
+        return response;
     }
 
     /**
@@ -231,11 +475,14 @@ public class SchedulingService {
         List<WorkCenter> workCenters = new ArrayList<>();
         // 查找与订单相关的所有时间槽并设置问题ID
         List<Timeslot> timeslots = timeslotService.findAllByTaskIn(taskNos).stream().peek(timeslot -> {
+            // 记录数据库中的分配，保存最终解时只写入变化的时间槽
+            timeslot.setPersisted(PersistedAssignment.of(timeslot));
             if (timeslot.getProcedure().getWorkCenter() != null) {
                 workCenters.add(timeslot.getProcedure().getWorkCenter());
             }
             timeslot.setProblemId(problemId);
-            if (timeslot.getProcedure().getStartTime() != null) {
+            // 已开工或已完成的工序固定，求解器不再移动
+            if (timeslot.getProcedure().getStartTime() != null || timeslot.getProcedure().getEndTime() != null) {
                 timeslot.setManual(true);
             }
         }).filter(timeslot -> timeslot.getProcedure().getWorkCenter() != null).collect(Collectors.toList());
@@ -248,7 +495,14 @@ public class SchedulingService {
                 .map(Order::getPlanEndDate)
                 .max(LocalDate::compareTo)
                 .orElse(LocalDate.now());
-        List<WorkCenterMaintenance> maintenances = maintenanceService.findAllByMachineInAndDateBetween(workCenters, start, end.plusDays(10));
+        List<WorkCenterMaintenance> maintenances = new ArrayList<>(maintenanceService.findAllByMachineInAndDateBetween(workCenters, start, end.plusDays(10)));
+        // 手动排定(含已开工、已完成)的时间槽保留已保存的日历，不在加载范围内的日历一并加入问题，否则分配被清空后会变为可移动
+        Set<String> loaded = maintenances.stream().map(WorkCenterMaintenance::getId).collect(Collectors.toSet());
+        for (Timeslot timeslot : timeslots) {
+            if (timeslot.isManual() && timeslot.getMaintenance() != null && loaded.add(timeslot.getMaintenance().getId())) {
+                maintenances.add(timeslot.getMaintenance());
+            }
+        }
         return new FactorySchedulingSolution(timeslots, maintenances);
     }
 
@@ -259,35 +513,89 @@ public class SchedulingService {
      *
      * @param orderNos  订单编号列表
      * @param problemId 问题ID
+     * @param warmStart 是否保留上次保存的分配作为初始解
      * @return FactorySchedulingSolution - 包含所有调度所需数据的问题实例
      */
-    private FactorySchedulingSolution loadProblemWithSlices(List<String> orderNos, Long problemId) {
-        // 首先加载基础问题数据
+    private FactorySchedulingSolution loadProblemWithSlices(List<String> orderNos, Long problemId, boolean warmStart) {
+        // 首先加载基础问题数据，以加载时刻为排程基准时间
         FactorySchedulingSolution solution = loadProblem(orderNos, problemId);
+        solution.setPlanningEpoch(PlanningEpoch.now());
+        if (solverProperties.isSnapshotOnLoad()) {
+            // 快照写入失败不影响求解
+            try {
+                problemSnapshotStore.save(problemId, solution);
+            } catch (IllegalStateException e) {
+                log.warn(e.getMessage());
+            }
+        }
+        return prepareProblem(solution, warmStart);
+    }
+
+    /**
+     * 处理分片并构建派生数据(前后继索引、初始分配、可选日历、分钟数)，从数据库和从快照加载的问题都经过这里
+     *
+     * @param solution  问题，排程基准时间已确定
+     * @param warmStart 是否保留上次保存的分配作为初始解
+     */
+    private FactorySchedulingSolution prepareProblem(FactorySchedulingSolution solution, boolean warmStart) {
         // 如果有时间槽数据，对分片数据进行额外处理
         if (!CollectionUtils.isEmpty(solution.getTimeslots())) {
             // 按工序ID和分片索引对时间槽进行排序，确保分片顺序正确
-            List<Timeslot> sortedTimeslots = solution.getTimeslots().stream()
-                    .sorted((t1, t2) -> {
-                        // 首先按工序ID排序
-                        int procCompare = t1.getProcedure() != null && t2.getProcedure() != null ?
-                                t1.getProcedure().getId().compareTo(t2.getProcedure().getId()) : 0;
-                        if (procCompare != 0) return procCompare;
-
-                        // 然后按分片索引排序
-                        return Integer.compare(t1.getIndex(), t2.getIndex());
-                    }).collect(Collectors.toList());
+            List<Timeslot> sortedTimeslots = sortSlices(solution.getTimeslots());
 
             // 设置分片之间的连接关系
             setupSliceRelationships(sortedTimeslots);
 
+            // 分配工序序号并构建前后继索引，约束通过整数键做索引连接
+            solution.setProcedureLinks(ProcedureLinkBuilder.build(sortedTimeslots));
+
+            // 约束中的时间运算均使用相对排程基准时间的分钟数
+            PlanningEpoch epoch = solution.getPlanningEpoch();
+
+            // 已保存的日历替换为问题中的实例，热启动时保留为初始解，构造启发式只分配其余时间槽
+            InitialAssignmentBuilder.build(sortedTimeslots, solution.getMaintenances(), epoch, warmStart);
+
+            // 沿前后继关系计算每个工序的关键路径时间窗，进一步收窄可选日历
+            if (solverProperties.getCriticalPathDayMinutes() > 0) {
+                CriticalPathWindowBuilder.build(sortedTimeslots, solution.getProcedureLinks(), epoch,
+                        solverProperties.getMaintenanceWindowDaysAfter(), solverProperties.getCriticalPathDayMinutes());
+            }
+
+            // 限定每个时间槽只能选择本工作中心、计划日期窗口和关键路径时间窗内的日历
+            MaintenanceRangeBuilder.build(sortedTimeslots, solution.getMaintenances(),
+                    solverProperties.getMaintenanceWindowDaysBefore(), solverProperties.getMaintenanceWindowDaysAfter());
+
+            EpochMinutesBuilder.build(solution, epoch);
+
+            // 约束和监听器只读取工作中心索引、外协标记等整数字段
+            WorkCenterIndexBuilder.build(solution);
+
             // 更新解决方案中的时间槽列表
             solution.setTimeslots(sortedTimeslots);
+
+            // 时间槽全部固定的任务移出规划实体，只保留其占用的产能
+            FixedTaskBuilder.build(solution);
         }
 
         return solution;
     }
 
+    /**
+     * 按工序ID和分片索引对时间槽排序
+     */
+    private static List<Timeslot> sortSlices(List<Timeslot> timeslots) {
+        return timeslots.stream()
+                .sorted((t1, t2) -> {
+                    // 首先按工序ID排序
+                    int procCompare = t1.getProcedure() != null && t2.getProcedure() != null ?
+                            t1.getProcedure().getId().compareTo(t2.getProcedure().getId()) : 0;
+                    if (procCompare != 0) return procCompare;
+
+                    // 然后按分片索引排序
+                    return Integer.compare(t1.getIndex(), t2.getIndex());
+                }).collect(Collectors.toList());
+    }
+
     /**
      * 设置分片之间的关系，确保同一工序的分片按顺序连接
      */
@@ -326,7 +634,8 @@ public class SchedulingService {
     /**
      * 保存调度结果
      * <p>将求解器生成的调度解决方案持久化到数据库中。
-     * 主要包括保存所有时间槽信息，并根据时间槽更新对应工序的开始和结束时间。
+     * 时间槽只写入日历和开始时间等分配列，且只更新与加载问题时不同的行，每次保存记录一行排程变更记录，
+     * 见 {@link TimeslotAssignmentWriter}。
      * 方法使用@Transactional注解确保数据一致性。</p>
      *
      * @param solution FactorySchedulingSolution - 求解器生成的调度解决方案
@@ -339,11 +648,12 @@ public class SchedulingService {
             log.warn("保存失败：解决方案对象为null");
             return;
         }
-        if (CollectionUtils.isEmpty(solution.getTimeslots())) {
+        // 任务全部固定时规划实体为空，仍需写入并记录排程变更记录，因此按合并后的时间槽判断
+        List<Timeslot> timeslots = solution.getAllTimeslots();
+        if (CollectionUtils.isEmpty(timeslots)) {
             log.warn("保存失败：解决方案中没有时间槽数据");
             return;
         }
-        List<Timeslot> timeslots = solution.getTimeslots();
         int i = 1;
         for (Timeslot timeslot : timeslots) {
             if (timeslot.getMaintenance() == null) {
@@ -356,12 +666,10 @@ public class SchedulingService {
             }
         }
         try {
-            // 首先保存所有时间槽到数据库
-            int savedCount = solution.getTimeslots().size();
-            timeslotService.saveAll(solution.getTimeslots());
-            log.info("已保存 {} 个时间槽到数据库", savedCount);
+            // 只写入与加载时相比发生变化的时间槽，并记录排程变更记录
+            timeslotAssignmentWriter.writeSolution(solution);
             // 根据工序ID对时间槽进行分组
-            Map<String, List<Timeslot>> timeslotsByProcedure = solution.getTimeslots().stream()
+            Map<String, List<Timeslot>> timeslotsByProcedure = timeslots.stream()
                     .filter(t -> t.getProcedure() != null)  // 过滤出关联了工序的时间槽
                     .collect(Collectors.groupingBy(t -> t.getProcedure().getId()));
             log.info("找到 {} 个关联了工序的时间槽组", timeslotsByProcedure.size());
@@ -425,10 +733,11 @@ public class SchedulingService {
      */
     public void saveSchedulingResult(FactorySchedulingSolution solution) { // 保留此方法以兼容现有调用
         if (solution != null && solution.getTimeslots() != null) {
-            // 保存所有时间槽
-            timeslotService.saveAll(solution.getTimeslots());
+            // 保存所有时间槽(含全部固定的任务)的分配结果
+            List<Timeslot> timeslots = solution.getAllTimeslots();
+            timeslotAssignmentWriter.write(timeslots);
             // 更新工序的开始和结束时间
-            Map<String, List<Timeslot>> timeslotsByProcedure = solution.getTimeslots().stream()
+            Map<String, List<Timeslot>> timeslotsByProcedure = timeslots.stream()
                     .filter(t -> t.getProcedure() != null)
                     .collect(Collectors.groupingBy(t -> t.getProcedure().getId()));
 
@@ -478,7 +787,8 @@ public class SchedulingService {
      */
     public boolean isSolutionFeasible(Long problemId) {
         // 获取最佳解决方案的得分，并检查是否可行
-        return getBestSolution(problemId).getScore().isFeasible();
+        HardMediumSoftScore score = getScore(problemId);
+        return score != null && score.isFeasible();
     }
 
     /**
@@ -494,6 +804,104 @@ public class SchedulingService {
         solutionManager.update(updatedSolution);
     }
 
+    /**
+     * 求解过程中加入新任务
+     * <p>时间槽和日历在调用线程中从数据库加载，再通过 {@link AddTimeslotsProblemChange} 交给求解线程合并，
+     * 求解器在当前最佳解的基础上继续求解，不需要重新开始。问题中已有的时间槽会被忽略。</p>
+     *
+     * @param problemId 问题ID
+     * @param taskNos   新任务编号列表
+     * @return 加载到的时间槽个数
+     * @throws IllegalStateException 问题未在求解时抛出
+     */
+    public int addTasks(Long problemId, List<String> taskNos) {
+        SolverManager<FactorySchedulingSolution, Long> solverManager = solvingManagerOf(problemId);
+        FactorySchedulingSolution loaded = loadProblem(taskNos, problemId);
+        List<Timeslot> timeslots = sortSlices(loaded.getTimeslots());
+        solverManager.addProblemChange(problemId, new AddTimeslotsProblemChange(timeslots, loaded.getMaintenances(),
+                solverProperties.getMaintenanceWindowDaysBefore(), solverProperties.getMaintenanceWindowDaysAfter(),
+                solverProperties.getCriticalPathDayMinutes()));
+        return timeslots.size();
+    }
+
+    /**
+     * 求解过程中移除时间槽(如任务撤销)，不修改数据库
+     *
+     * @param problemId   问题ID
+     * @param timeslotIds 时间槽id列表
+     * @throws IllegalStateException    问题未在求解时抛出
+     * @throws IllegalArgumentException 时间槽id为空时抛出
+     */
+    public void removeTimeslots(Long problemId, List<String> timeslotIds) {
+        SolverManager<FactorySchedulingSolution, Long> solverManager = solvingManagerOf(problemId);
+        if (CollectionUtils.isEmpty(timeslotIds)) {
+            throw new IllegalArgumentException("时间槽id不能为空");
+        }
+        solverManager.addProblemChange(problemId, new RemoveTimeslotsProblemChange(timeslotIds));
+    }
+
+    /**
+     * 求解过程中固定或取消固定时间槽
+     * <p>指定日历时先把时间槽移到该日历再固定，用于甘特图上的手动拖动；固定后求解器不再移动该时间槽，
+     * 其余时间槽围绕它继续优化。结果随最终解一起保存。</p>
+     *
+     * @param problemId     问题ID
+     * @param timeslotId    时间槽id
+     * @param maintenanceId 目标日历id，可为空
+     * @param pinned        true固定，false取消固定
+     * @throws IllegalStateException    问题未在求解时抛出
+     * @throws IllegalArgumentException 时间槽或日历不在当前最佳解中，或时间槽所在工序已开工、已完成时抛出
+     */
+    public void pinTimeslot(Long problemId, String timeslotId, String maintenanceId, boolean pinned) {
+        SolverManager<FactorySchedulingSolution, Long> solverManager = solvingManagerOf(problemId);
+        BestSolutionSnapshot snapshot = bestSolutionRegistry.get(problemId);
+        if (snapshot != null) {
+            FactorySchedulingSolution solution = snapshot.getSolution();
+            Timeslot timeslot = solution.getAllTimeslots().stream()
+                    .filter(t -> t.getId().equals(timeslotId))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("时间槽" + timeslotId + "不在问题" + problemId + "中"));
+            Procedure procedure = timeslot.getProcedure();
+            if (procedure != null && (procedure.getStartTime() != null || procedure.getEndTime() != null)) {
+                throw new IllegalArgumentException("时间槽" + timeslotId + "所在工序已开工或已完成，不能调整");
+            }
+            if (maintenanceId != null && solution.getMaintenances().stream()
+                    .noneMatch(maintenance -> maintenance.getId().equals(maintenanceId))) {
+                throw new IllegalArgumentException("日历" + maintenanceId + "不在问题" + problemId + "中");
+            }
+        }
+        solverManager.addProblemChange(problemId, new PinTimeslotProblemChange(timeslotId, maintenanceId, pinned));
+    }
+
+    /**
+     * 求解过程中修改日历容量(如临时停机、加班)
+     * <p>只修改求解中的问题，不写入数据库</p>
+     *
+     * @param problemId     问题ID
+     * @param maintenanceId 日历id
+     * @param capacity      新容量(分钟)
+     * @throws IllegalStateException    问题未在求解时抛出
+     * @throws IllegalArgumentException 容量为负数时抛出
+     */
+    public void changeMaintenanceCapacity(Long problemId, String maintenanceId, int capacity) {
+        SolverManager<FactorySchedulingSolution, Long> solverManager = solvingManagerOf(problemId);
+        if (capacity < 0) {
+            throw new IllegalArgumentException("容量不能为负数: " + capacity);
+        }
+        solverManager.addProblemChange(problemId, new MaintenanceCapacityProblemChange(maintenanceId, capacity));
+    }
+
+    /**
+     * 获取正在求解该问题的求解器管理器，问题未在求解时抛出IllegalStateException
+     */
+    private SolverManager<FactorySchedulingSolution, Long> solvingManagerOf(Long problemId) {
+        SolverManager<FactorySchedulingSolution, Long> solverManager = solverManagerRegistry.managerOf(problemId);
+        if (solverManager.getSolverStatus(problemId) == SolverStatus.NOT_SOLVING) {
+            throw new IllegalStateException("问题" + problemId + "未在求解中");
+        }
+        return solverManager;
+    }
+
     /**
      * 获取解决方案的详细解释
      * <p>提供对当前最佳解决方案得分的详细分析，包括：
@@ -506,10 +914,12 @@ public class SchedulingService {
      * @return ScoreExplanation - 包含解决方案得分详细解释的对象
      */
     public ScoreExplanation<FactorySchedulingSolution, HardMediumSoftScore> explainSolution(Long problemId) {
-        // 获取最佳解决方案
-        FactorySchedulingSolution solution = getBestSolution(problemId);
-        // 使用解决方案管理器生成解释
-        return solutionManager.explain(solution);
+        // 获取内存中的最佳解快照，解释结果随快照缓存
+        BestSolutionSnapshot snapshot = bestSolutionRegistry.get(problemId);
+        if (snapshot == null) {
+            throw new IllegalArgumentException("问题" + problemId + "不在内存中，请先求解");
+        }
+        return snapshot.explain(solutionManager);
     }
 
     /**
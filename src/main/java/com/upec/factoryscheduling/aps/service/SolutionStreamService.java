@@ -0,0 +1,333 @@
+package com.upec.factoryscheduling.aps.service;
+
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.response.SolutionUpdate;
+import com.upec.factoryscheduling.aps.response.TimeslotAssignment;
+import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
+import com.upec.factoryscheduling.common.configuration.SolverProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.optaplanner.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
+import org.optaplanner.core.api.solver.SolverStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 最佳解推送服务(SSE)
+ * <p>solveAndListen 的回调只把最新解放入对应问题的通道，不做任何IO；后台定时器每隔
+ * aps.solver.stream-interval-millis 把最新解生成一次不可变快照，期间产生的多个更优解合并为一次推送。</p>
+ * <p>每个客户端记录自己最后收到的快照，推送内容为相对该快照变化的时间槽。客户端上一条消息尚未发送完成时跳过本轮，
+ * 下一轮直接按最新快照计算差异，慢客户端不会堆积消息，也不会拖慢求解线程或其它客户端。</p>
+ * <p>事件类型：snapshot(连接后的全量数据)、update(增量)、failed(求解出错)。求解结束后推送最后一次快照并关闭连接。
+ * 所有数据来自内存中的最佳解，不访问数据库。</p>
+ */
+@Slf4j
+@Service
+public class SolutionStreamService {
+
+    private static final String EVENT_SNAPSHOT = "snapshot";
+    private static final String EVENT_UPDATE = "update";
+    /**
+     * 不使用"error"，避免与浏览器EventSource的连接错误事件混淆
+     */
+    private static final String EVENT_FAILED = "failed";
+
+    /**
+     * 发送线程数和排队上限，排队满时本轮跳过，下一轮合并推送
+     */
+    private static final int SENDER_THREADS = 4;
+    private static final int SENDER_QUEUE_CAPACITY = 1024;
+
+    private final long timeoutMillis;
+
+    /**
+     * problemId -> 推送通道
+     */
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService ticker;
+
+    private final ThreadPoolExecutor sender;
+
+    @Autowired
+    public SolutionStreamService(SolverProperties solverProperties) {
+        this.timeoutMillis = solverProperties.getStreamTimeoutMillis();
+        CustomizableThreadFactory tickerThreadFactory = new CustomizableThreadFactory("solution-stream-ticker-");
+        tickerThreadFactory.setDaemon(true);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(tickerThreadFactory);
+        CustomizableThreadFactory senderThreadFactory = new CustomizableThreadFactory("solution-stream-sender-");
+        senderThreadFactory.setDaemon(true);
+        this.sender = new ThreadPoolExecutor(SENDER_THREADS, SENDER_THREADS, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(SENDER_QUEUE_CAPACITY), senderThreadFactory);
+        long intervalMillis = solverProperties.getStreamIntervalMillis();
+        this.ticker.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 订阅问题的最佳解推送
+     * <p>问题正在求解时，下一轮即收到当前最佳解的全量快照；尚未开始求解时等待求解开始。</p>
+     *
+     * @param problemId 问题ID
+     * @return SSE连接
+     */
+    public SseEmitter subscribe(Long problemId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> unsubscribe(problemId, subscriber));
+        emitter.onTimeout(() -> unsubscribe(problemId, subscriber));
+        emitter.onError(e -> unsubscribe(problemId, subscriber));
+        channels.compute(problemId, (id, channel) -> {
+            Channel result = channel == null ? new Channel(id) : channel;
+            result.subscribers.add(subscriber);
+            return result;
+        });
+        return emitter;
+    }
+
+    /**
+     * 发布新的最佳解，在 solveAndListen 的最佳解回调中调用，只记录引用
+     */
+    public void publish(Long problemId, FactorySchedulingSolution solution) {
+        offer(problemId, new Pending(solution, SolverStatus.SOLVING_ACTIVE, null));
+    }
+
+    /**
+     * 发布最终解，推送完成后关闭该问题的全部连接
+     */
+    public void complete(Long problemId, FactorySchedulingSolution solution) {
+        offer(problemId, new Pending(solution, SolverStatus.NOT_SOLVING, null));
+    }
+
+    /**
+     * 发布求解错误，推送完成后关闭该问题的全部连接
+     */
+    public void fail(Long problemId, Throwable throwable) {
+        String message = throwable == null || throwable.getMessage() == null ? "求解出错" : throwable.getMessage();
+        offer(problemId, new Pending(null, SolverStatus.NOT_SOLVING, message));
+    }
+
+    /**
+     * 与通道移除互斥，避免最新解写入已被移除的通道
+     */
+    private void offer(Long problemId, Pending pending) {
+        channels.compute(problemId, (id, channel) -> {
+            Channel result = channel == null ? new Channel(id) : channel;
+            result.pending.set(pending);
+            return result;
+        });
+    }
+
+    /**
+     * 定时器线程：生成快照并把发送任务交给发送线程
+     */
+    private void flush() {
+        try {
+            for (Channel channel : channels.values()) {
+                Pending pending = channel.pending.getAndSet(null);
+                if (pending != null) {
+                    channel.snapshot = Snapshot.of(channel, pending);
+                }
+                Snapshot snapshot = channel.snapshot;
+                if (snapshot == null) {
+                    continue;
+                }
+                for (Subscriber subscriber : channel.subscribers) {
+                    if (subscriber.sent == snapshot || !subscriber.busy.compareAndSet(false, true)) {
+                        continue;
+                    }
+                    try {
+                        sender.execute(() -> send(channel, subscriber, snapshot));
+                    } catch (RejectedExecutionException e) {
+                        // 发送队列已满，下一轮按最新快照合并推送
+                        subscriber.busy.set(false);
+                    }
+                }
+                if (snapshot.isFinished() && channel.subscribers.isEmpty()) {
+                    removeIfIdle(channel.problemId);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("最佳解推送失败", e);
+        }
+    }
+
+    /**
+     * 发送线程：计算相对客户端上一条消息的差异并发送
+     */
+    private void send(Channel channel, Subscriber subscriber, Snapshot snapshot) {
+        try {
+            Snapshot previous = subscriber.sent;
+            SolutionUpdate update = snapshot.toUpdate(channel.problemId, previous);
+            String name = snapshot.error != null ? EVENT_FAILED : previous == null ? EVENT_SNAPSHOT : EVENT_UPDATE;
+            subscriber.emitter.send(SseEmitter.event()
+                    .name(name)
+                    .id(String.valueOf(snapshot.version))
+                    .data(update, MediaType.APPLICATION_JSON));
+            subscriber.sent = snapshot;
+            if (snapshot.isFinished()) {
+                subscriber.emitter.complete();
+                unsubscribe(channel.problemId, subscriber);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开
+            log.debug("问题{}的推送连接已断开: {}", channel.problemId, e.getMessage());
+            unsubscribe(channel.problemId, subscriber);
+        } finally {
+            subscriber.busy.set(false);
+        }
+    }
+
+    private void unsubscribe(Long problemId, Subscriber subscriber) {
+        Channel channel = channels.get(problemId);
+        if (channel != null && channel.subscribers.remove(subscriber)) {
+            removeIfIdle(problemId);
+        }
+    }
+
+    /**
+     * 没有订阅者且不在求解中的通道直接移除
+     */
+    private void removeIfIdle(Long problemId) {
+        channels.computeIfPresent(problemId, (id, channel) -> {
+            Snapshot snapshot = channel.snapshot;
+            boolean idle = channel.subscribers.isEmpty() && channel.pending.get() == null
+                    && (snapshot == null || snapshot.isFinished());
+            return idle ? null : channel;
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        ticker.shutdownNow();
+        sender.shutdownNow();
+        channels.values().forEach(channel -> channel.subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        channels.clear();
+    }
+
+    private static final class Channel {
+        private final Long problemId;
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        /**
+         * 尚未生成快照的最新解，多次发布只保留最后一次
+         */
+        private final AtomicReference<Pending> pending = new AtomicReference<>();
+        /**
+         * 最近一次生成的快照，只在定时器线程中写入
+         */
+        private volatile Snapshot snapshot;
+        private long version;
+
+        private Channel(Long problemId) {
+            this.problemId = problemId;
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final AtomicBoolean busy = new AtomicBoolean();
+        /**
+         * 客户端最后收到的快照，为null时下一次发送全量数据
+         */
+        private volatile Snapshot sent;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    private static final class Pending {
+        private final FactorySchedulingSolution solution;
+        private final SolverStatus solverStatus;
+        private final String error;
+
+        private Pending(FactorySchedulingSolution solution, SolverStatus solverStatus, String error) {
+            this.solution = solution;
+            this.solverStatus = solverStatus;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 不可变快照，同一轮的所有客户端共用
+     */
+    private static final class Snapshot {
+        private final long version;
+        private final HardMediumSoftScore score;
+        private final SolverStatus solverStatus;
+        private final String error;
+        /**
+         * 时间槽id -> 排程结果，保持问题中的顺序
+         */
+        private final Map<String, TimeslotAssignment> assignments;
+
+        private Snapshot(long version, HardMediumSoftScore score, SolverStatus solverStatus, String error,
+                         Map<String, TimeslotAssignment> assignments) {
+            this.version = version;
+            this.score = score;
+            this.solverStatus = solverStatus;
+            this.error = error;
+            this.assignments = assignments;
+        }
+
+        /**
+         * 由最新解生成快照，出错时沿用上一次快照的数据
+         */
+        private static Snapshot of(Channel channel, Pending pending) {
+            Snapshot previous = channel.snapshot;
+            if (pending.solution == null) {
+                return new Snapshot(++channel.version, previous == null ? null : previous.score, pending.solverStatus,
+                        pending.error, previous == null ? Collections.emptyMap() : previous.assignments);
+            }
+            Map<String, TimeslotAssignment> assignments = new LinkedHashMap<>();
+            for (Timeslot timeslot : pending.solution.getAllTimeslots()) {
+                assignments.put(timeslot.getId(), new TimeslotAssignment(timeslot.getId(),
+                        timeslot.getMaintenance() == null ? null : timeslot.getMaintenance().getId(), timeslot.getStartTime()));
+            }
+            return new Snapshot(++channel.version, pending.solution.getScore(), pending.solverStatus, pending.error,
+                    Collections.unmodifiableMap(assignments));
+        }
+
+        private boolean isFinished() {
+            return solverStatus == SolverStatus.NOT_SOLVING;
+        }
+
+        private SolutionUpdate toUpdate(Long problemId, Snapshot previous) {
+            SolutionUpdate update = new SolutionUpdate();
+            update.setProblemId(problemId);
+            update.setVersion(version);
+            update.setFull(previous == null);
+            update.setScore(score == null ? null : score.toString());
+            update.setFeasible(score != null && score.isFeasible());
+            update.setSolverStatus(solverStatus);
+            update.setError(error);
+            List<TimeslotAssignment> changes = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            if (previous == null) {
+                changes.addAll(assignments.values());
+            } else if (previous.assignments != assignments) {
+                for (TimeslotAssignment assignment : assignments.values()) {
+                    if (!assignment.equals(previous.assignments.get(assignment.getTimeslotId()))) {
+                        changes.add(assignment);
+                    }
+                }
+                for (String timeslotId : previous.assignments.keySet()) {
+                    if (!assignments.containsKey(timeslotId)) {
+                        removed.add(timeslotId);
+                    }
+                }
+            }
+            update.setChanges(changes);
+            update.setRemoved(removed);
+            return update;
+        }
+    }
+}
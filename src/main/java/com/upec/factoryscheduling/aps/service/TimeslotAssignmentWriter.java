@@ -0,0 +1,218 @@
+package com.upec.factoryscheduling.aps.service;
+
+import com.google.common.collect.Lists;
+import com.upec.factoryscheduling.aps.entity.ScheduleChangeLog;
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.repository.ScheduleChangeLogRepository;
+import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
+import com.upec.factoryscheduling.aps.solution.PersistedAssignment;
+import com.upec.factoryscheduling.common.configuration.SolverProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 时间槽分配结果的批量写入
+ * <p>求解结果只改变时间槽的日历(maintenance_id)和开始时间(start_time)，以及加载问题时写入的problem_id、manual。
+ * 这里只更新这四列，不经过JPA的merge级联(每个时间槽都会查询并合并工序、任务、订单、工作中心)。</p>
+ * <p>只有值发生变化的行才更新：加载问题时记录了数据库值的时间槽({@link Timeslot#getPersisted()})直接在内存中比较，
+ * 其余时间槽按id分批查询数据库中的当前值再比较。更新通过JDBC批量执行，
+ * 连接串设置 rewriteBatchedStatements=true 时MySQL驱动会把一批合并为多行语句。
+ * 数据库中不存在的时间槽(理论上不会出现)仍通过JPA保存。</p>
+ * <p>耗时和行数记录到指标 aps.solution.save(Timer) 和 aps.solution.save.rows(按result区分updated/unchanged/inserted)。</p>
+ */
+@Slf4j
+@Service
+public class TimeslotAssignmentWriter {
+
+    private static final String SELECT_SQL = "select id, problem_id, maintenance_id, start_time, manual from aps_timeslot where id in (%s)";
+    private static final String UPDATE_SQL = "update aps_timeslot set problem_id = ?, maintenance_id = ?, start_time = ?, manual = ? where id = ?";
+
+    private JdbcTemplate jdbcTemplate;
+    private TimeslotService timeslotService;
+    private SolverProperties solverProperties;
+    private MeterRegistry meterRegistry;
+    private ScheduleChangeLogRepository changeLogRepository;
+
+    @Autowired
+    @Qualifier("mySqlTemplate")
+    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Autowired
+    public void setTimeslotService(TimeslotService timeslotService) {
+        this.timeslotService = timeslotService;
+    }
+
+    @Autowired
+    public void setSolverProperties(SolverProperties solverProperties) {
+        this.solverProperties = solverProperties;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Autowired
+    public void setChangeLogRepository(ScheduleChangeLogRepository changeLogRepository) {
+        this.changeLogRepository = changeLogRepository;
+    }
+
+    /**
+     * 写入最终解中变化的时间槽，并记录一行排程变更记录
+     *
+     * @param solution 最终解
+     * @return 写入统计
+     */
+    @Transactional("mysqlTransactionManager")
+    public WriteResult writeSolution(FactorySchedulingSolution solution) {
+        WriteResult result = write(solution.getAllTimeslots());
+        ScheduleChangeLog changeLog = new ScheduleChangeLog();
+        changeLog.setProblemId(solution.getProblemId());
+        changeLog.setSavedAt(LocalDateTime.now());
+        changeLog.setTotalSlots(result.getTotal());
+        changeLog.setChangedSlots(result.getUpdated() + result.getInserted());
+        changeLog.setMovedSlots(result.getMoved());
+        changeLog.setRetimedSlots(result.getUpdated() - result.getMoved());
+        changeLog.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(result.getElapsedNanos()));
+        changeLog.setScore(solution.getScore() == null ? null : solution.getScore().toString());
+        changeLogRepository.save(changeLog);
+        return result;
+    }
+
+    /**
+     * 写入时间槽的分配结果，只更新发生变化的行
+     *
+     * @param timeslots 求解结果中的时间槽
+     * @return 写入统计
+     */
+    @Transactional("mysqlTransactionManager")
+    public WriteResult write(List<Timeslot> timeslots) {
+        long begin = System.nanoTime();
+        int batchSize = solverProperties.getSaveBatchSize();
+        List<Timeslot> untracked = new ArrayList<>();
+        for (Timeslot timeslot : timeslots) {
+            if (timeslot.getPersisted() == null) {
+                untracked.add(timeslot);
+            }
+        }
+        Map<String, PersistedAssignment> queried = untracked.isEmpty() ? Collections.emptyMap() : loadPersisted(untracked, batchSize);
+
+        List<Timeslot> changed = new ArrayList<>();
+        List<Timeslot> missing = new ArrayList<>();
+        int moved = 0;
+        for (Timeslot timeslot : timeslots) {
+            PersistedAssignment current = timeslot.getPersisted() != null ? timeslot.getPersisted() : queried.get(timeslot.getId());
+            PersistedAssignment target = PersistedAssignment.of(timeslot);
+            if (current == null) {
+                missing.add(timeslot);
+            } else if (!current.equals(target)) {
+                changed.add(timeslot);
+                if (target.isMovedFrom(current)) {
+                    moved++;
+                }
+            }
+        }
+        for (List<Timeslot> batch : Lists.partition(changed, batchSize)) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, batch, batch.size(), TimeslotAssignmentWriter::bind);
+        }
+        if (!missing.isEmpty()) {
+            log.warn("{}个时间槽在数据库中不存在，通过JPA保存", missing.size());
+            timeslotService.saveAll(missing);
+        }
+
+        long elapsedNanos = System.nanoTime() - begin;
+        WriteResult result = new WriteResult(timeslots.size(), changed.size(), moved, missing.size(), elapsedNanos);
+        record(result);
+        log.info("时间槽写入完成：共{}个，更新{}个(换日历{}个)，未变化{}个，新增{}个，耗时{}ms，{}行/秒", result.getTotal(), result.getUpdated(),
+                result.getMoved(), result.getUnchanged(), result.getInserted(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                Math.round(result.rowsPerSecond()));
+        return result;
+    }
+
+    private Map<String, PersistedAssignment> loadPersisted(List<Timeslot> timeslots, int batchSize) {
+        Map<String, PersistedAssignment> persisted = new HashMap<>(timeslots.size() * 2);
+        List<String> ids = new ArrayList<>(timeslots.size());
+        for (Timeslot timeslot : timeslots) {
+            ids.add(timeslot.getId());
+        }
+        for (List<String> chunk : Lists.partition(ids, batchSize)) {
+            String sql = String.format(SELECT_SQL, String.join(",", Collections.nCopies(chunk.size(), "?")));
+            jdbcTemplate.query(sql, rs -> {
+                Long problemId = rs.getLong("problem_id");
+                if (rs.wasNull()) {
+                    problemId = null;
+                }
+                persisted.put(rs.getString("id"), new PersistedAssignment(problemId, rs.getString("maintenance_id"),
+                        rs.getObject("start_time", LocalDateTime.class), rs.getBoolean("manual")));
+            }, chunk.toArray());
+        }
+        return persisted;
+    }
+
+    private static void bind(PreparedStatement ps, Timeslot timeslot) throws SQLException {
+        if (timeslot.getProblemId() == null) {
+            ps.setNull(1, Types.BIGINT);
+        } else {
+            ps.setLong(1, timeslot.getProblemId());
+        }
+        ps.setString(2, timeslot.getMaintenance() == null ? null : timeslot.getMaintenance().getId());
+        ps.setObject(3, timeslot.getStartTime() == null ? null : timeslot.getStartTime().withNano(0));
+        ps.setBoolean(4, timeslot.isManual());
+        ps.setString(5, timeslot.getId());
+    }
+
+    private void record(WriteResult result) {
+        Timer.builder("aps.solution.save").description("保存求解结果的耗时")
+                .register(meterRegistry).record(result.getElapsedNanos(), TimeUnit.NANOSECONDS);
+        meterRegistry.counter("aps.solution.save.rows", "result", "updated").increment(result.getUpdated());
+        meterRegistry.counter("aps.solution.save.rows", "result", "unchanged").increment(result.getUnchanged());
+        meterRegistry.counter("aps.solution.save.rows", "result", "inserted").increment(result.getInserted());
+    }
+
+    /**
+     * 写入统计
+     */
+    @Getter
+    public static class WriteResult {
+        private final int total;
+        private final int updated;
+        /**
+         * 更新的时间槽中换了日历的个数
+         */
+        private final int moved;
+        private final int inserted;
+        private final long elapsedNanos;
+
+        WriteResult(int total, int updated, int moved, int inserted, long elapsedNanos) {
+            this.total = total;
+            this.updated = updated;
+            this.moved = moved;
+            this.inserted = inserted;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getUnchanged() {
+            return total - updated - inserted;
+        }
+
+        public double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : total * 1e9 / elapsedNanos;
+        }
+    }
+}
@@ -67,6 +67,14 @@ public class TimeslotService {
         return timeslotRepository.saveAll(timeslots);
     }
 
+    public List<Timeslot> findAllByProblemId(Long problemId) {
+        return timeslotRepository.findAllByProblemId(problemId);
+    }
+
+    public boolean existsByProblemId(Long problemId) {
+        return timeslotRepository.existsByProblemId(problemId);
+    }
+
     @Transactional("mysqlTransactionManager")
     public List<Timeslot> findAllByTaskIn(List<String> taskNos) {
         // 使用 JOIN FETCH 预加载 nextProcedure，避免懒加载异常
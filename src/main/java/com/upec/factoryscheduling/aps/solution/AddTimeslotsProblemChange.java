@@ -0,0 +1,89 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+import lombok.extern.slf4j.Slf4j;
+import org.optaplanner.core.api.solver.change.ProblemChange;
+import org.optaplanner.core.api.solver.change.ProblemChangeDirector;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 添加时间槽 - 求解中的问题变更
+ * <p>用于求解过程中MES下发的新任务。时间槽和日历由调用方在求解线程之外从数据库加载，
+ * 这里只做与工作解合并：问题中已有的时间槽忽略；已有的日历替换为工作解中的实例，缺少的日历作为问题事实加入；
+ * 新工序的序号接在现有最大序号之后，并与加载问题时一样构建前后继关系、关键路径时间窗、可选日历和基准分钟数。</p>
+ */
+@Slf4j
+public class AddTimeslotsProblemChange implements ProblemChange<FactorySchedulingSolution> {
+
+    private final List<Timeslot> timeslots;
+    private final List<WorkCenterMaintenance> maintenances;
+    private final int maintenanceWindowDaysBefore;
+    private final int maintenanceWindowDaysAfter;
+    private final int criticalPathDayMinutes;
+
+    public AddTimeslotsProblemChange(List<Timeslot> timeslots, List<WorkCenterMaintenance> maintenances,
+                                     int maintenanceWindowDaysBefore, int maintenanceWindowDaysAfter, int criticalPathDayMinutes) {
+        this.timeslots = new ArrayList<>(timeslots);
+        this.maintenances = new ArrayList<>(maintenances);
+        this.maintenanceWindowDaysBefore = maintenanceWindowDaysBefore;
+        this.maintenanceWindowDaysAfter = maintenanceWindowDaysAfter;
+        this.criticalPathDayMinutes = criticalPathDayMinutes;
+    }
+
+    @Override
+    public void doChange(FactorySchedulingSolution workingSolution, ProblemChangeDirector problemChangeDirector) {
+        // 全部固定的任务的时间槽不在规划实体中，同样视为已有
+        Set<String> existingIds = workingSolution.getAllTimeslots().stream().map(Timeslot::getId).collect(Collectors.toSet());
+        List<Timeslot> added = timeslots.stream()
+                .filter(timeslot -> !existingIds.contains(timeslot.getId()))
+                .collect(Collectors.toList());
+        if (added.isEmpty()) {
+            return;
+        }
+        // 日历：沿用工作解中的实例，缺少的作为问题事实加入
+        Map<String, WorkCenterMaintenance> maintenanceById = workingSolution.getMaintenances().stream()
+                .collect(Collectors.toMap(WorkCenterMaintenance::getId, Function.identity(), (a, b) -> a));
+        List<WorkCenterMaintenance> newMaintenances = maintenances.stream()
+                .filter(maintenance -> !maintenanceById.containsKey(maintenance.getId()))
+                .collect(Collectors.toList());
+        PlanningEpoch epoch = workingSolution.getPlanningEpoch();
+        if (epoch != null) {
+            EpochMinutesBuilder.build(added, newMaintenances, epoch);
+        }
+        for (WorkCenterMaintenance maintenance : newMaintenances) {
+            problemChangeDirector.addProblemFact(maintenance, workingSolution.getMaintenances()::add);
+            maintenanceById.put(maintenance.getId(), maintenance);
+        }
+        for (Timeslot timeslot : added) {
+            if (timeslot.getMaintenance() != null) {
+                timeslot.setMaintenance(maintenanceById.get(timeslot.getMaintenance().getId()));
+            }
+        }
+        // 工序序号接在现有序号(含固定时间槽)之后
+        int offset = workingSolution.getAllTimeslots().stream().mapToInt(Timeslot::getProcedureSeq).max().orElse(-1) + 1;
+        List<ProcedureLink> links = ProcedureLinkBuilder.build(added);
+        // 新工序只与新工序相连，关键路径时间窗在偏移序号之前按局部序号计算
+        if (epoch != null && criticalPathDayMinutes > 0) {
+            CriticalPathWindowBuilder.build(added, links, epoch, maintenanceWindowDaysAfter, criticalPathDayMinutes);
+        }
+        for (Timeslot timeslot : added) {
+            if (timeslot.getProcedureSeq() >= 0) {
+                timeslot.setProcedureSeq(timeslot.getProcedureSeq() + offset);
+            }
+        }
+        for (ProcedureLink link : links) {
+            problemChangeDirector.addProblemFact(new ProcedureLink(link.getFromSeq() + offset, link.getToSeq() + offset),
+                    workingSolution.getProcedureLinks()::add);
+        }
+        MaintenanceRangeBuilder.build(added, workingSolution.getMaintenances(), maintenanceWindowDaysBefore, maintenanceWindowDaysAfter);
+        WorkCenterIndexBuilder.build(added, newMaintenances, WorkCenterIndexBuilder.indexOf(workingSolution));
+        for (Timeslot timeslot : added) {
+            problemChangeDirector.addEntity(timeslot, workingSolution.getTimeslots()::add);
+        }
+        log.info("求解中添加时间槽{}个，日历{}个", added.size(), newMaintenances.size());
+    }
+}
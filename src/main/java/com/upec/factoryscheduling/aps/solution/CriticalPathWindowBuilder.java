@@ -0,0 +1,182 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.Procedure;
+import com.upec.factoryscheduling.aps.entity.Task;
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 关键路径时间窗构建器
+ * <p>沿 {@link ProcedureLink} 构成的工序有向图做一次关键路径（CPM）正推和逆推，按天计算每个工序最早可开始、最晚应完成的日期，
+ * 写入 {@link Timeslot#getEarliestDate()} 和 {@link Timeslot#getLatestDate()}，由 {@link MaintenanceRangeBuilder}
+ * 与计划日期窗口取交集，求解器只在时间窗内为时间槽选择日历，不再提出把后序工序排到前序工序之前的移动。</p>
+ * <ul>
+ *     <li>正推：工序最早日期 = max(任务实际开始日期(没有时取计划开始日期)、排程基准日期、各前序工序最早日期 + 前序跨越天数)</li>
+ *     <li>逆推：末道工序最晚日期 = 任务计划完成日期(没有时取工序计划完成日期) + daysAfter，
+ *     其余工序最晚日期 = min(自身期限、各后序工序最晚日期 - 后序跨越天数)</li>
+ * </ul>
+ * <p>跨越天数 = ceil(工序全部分片时长 / dayMinutes) - 1，后序工序可以与前序工序在同一天衔接，因此时间窗不会排除可行解。
+ * 没有完成期限、期限早于最早日期（期限本身不可行）或处在环上的工序不设最晚日期。时间窗只依赖问题数据，只需在加载问题时执行一次。</p>
+ */
+@Slf4j
+public final class CriticalPathWindowBuilder {
+
+    private static final long UNBOUNDED = Long.MAX_VALUE;
+
+    private CriticalPathWindowBuilder() {
+    }
+
+    /**
+     * 计算并写入时间槽的时间窗
+     *
+     * @param timeslots  时间槽，procedureSeq 已由 {@link ProcedureLinkBuilder} 分配
+     * @param links      这些时间槽的前后继关系
+     * @param epoch      排程基准时间，早于基准日期的时间窗从基准日期开始
+     * @param daysAfter  计划完成日期之后允许的天数
+     * @param dayMinutes 一个工作日可排的分钟数，用于把工序时长换算为天数
+     * @return 设置了最晚日期的工序个数
+     */
+    public static int build(List<Timeslot> timeslots, List<ProcedureLink> links, PlanningEpoch epoch,
+                            int daysAfter, int dayMinutes) {
+        int n = 0;
+        for (Timeslot timeslot : timeslots) {
+            n = Math.max(n, timeslot.getProcedureSeq() + 1);
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long epochDay = epoch.getStart().toLocalDate().toEpochDay();
+        long[] minutes = new long[n];
+        long[] earliest = new long[n];
+        long[] latest = new long[n];
+        Arrays.fill(earliest, Long.MIN_VALUE);
+        Arrays.fill(latest, UNBOUNDED);
+        for (Timeslot timeslot : timeslots) {
+            int seq = timeslot.getProcedureSeq();
+            if (seq < 0) {
+                continue;
+            }
+            minutes[seq] += timeslot.getDuration();
+            if (earliest[seq] == Long.MIN_VALUE) {
+                earliest[seq] = Math.max(epochDay, releaseDayOf(timeslot.getProcedure(), epochDay));
+                LocalDate deadline = deadlineOf(timeslot.getProcedure());
+                latest[seq] = deadline == null ? UNBOUNDED : deadline.plusDays(daysAfter).toEpochDay();
+            }
+        }
+        long[] span = new long[n];
+        for (int seq = 0; seq < n; seq++) {
+            span[seq] = Math.max(0, (minutes[seq] + dayMinutes - 1) / dayMinutes - 1);
+        }
+
+        // 邻接表(CSR)和Kahn拓扑序
+        int[] inDegree = new int[n];
+        int[] offsets = new int[n + 1];
+        for (ProcedureLink link : links) {
+            if (link.getFromSeq() < n && link.getToSeq() < n) {
+                offsets[link.getFromSeq() + 1]++;
+                inDegree[link.getToSeq()]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] successors = new int[offsets[n]];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for (ProcedureLink link : links) {
+            if (link.getFromSeq() < n && link.getToSeq() < n) {
+                successors[fill[link.getFromSeq()]++] = link.getToSeq();
+            }
+        }
+        int[] order = new int[n];
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            if (inDegree[i] == 0) {
+                order[tail++] = i;
+            }
+        }
+        // 正推最早日期
+        for (int head = 0; head < tail; head++) {
+            int i = order[head];
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                int j = successors[k];
+                earliest[j] = Math.max(earliest[j], earliest[i] + span[i]);
+                if (--inDegree[j] == 0) {
+                    order[tail++] = j;
+                }
+            }
+        }
+        // 环上的工序没有进入拓扑序，不设最晚日期
+        boolean[] ordered = new boolean[n];
+        for (int k = 0; k < tail; k++) {
+            ordered[order[k]] = true;
+        }
+        // 逆推最晚日期
+        for (int k = tail - 1; k >= 0; k--) {
+            int i = order[k];
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                int j = successors[e];
+                if (ordered[j] && latest[j] != UNBOUNDED) {
+                    latest[i] = Math.min(latest[i], latest[j] - span[j]);
+                }
+            }
+        }
+
+        int bounded = 0;
+        int infeasible = 0;
+        for (int i = 0; i < n; i++) {
+            if (!ordered[i]) {
+                latest[i] = UNBOUNDED;
+            } else if (latest[i] != UNBOUNDED && latest[i] < earliest[i] + span[i]) {
+                latest[i] = UNBOUNDED;
+                infeasible++;
+            } else if (latest[i] != UNBOUNDED) {
+                bounded++;
+            }
+        }
+        for (Timeslot timeslot : timeslots) {
+            int seq = timeslot.getProcedureSeq();
+            if (seq < 0 || earliest[seq] == Long.MIN_VALUE) {
+                timeslot.setEarliestDate(null);
+                timeslot.setLatestDate(null);
+                continue;
+            }
+            timeslot.setEarliestDate(LocalDate.ofEpochDay(earliest[seq]));
+            timeslot.setLatestDate(latest[seq] == UNBOUNDED ? null : LocalDate.ofEpochDay(latest[seq]));
+        }
+        log.info("关键路径时间窗：{}个工序，{}个有最晚日期，{}个完成期限不可行，{}个工序处在环上",
+                n, bounded, infeasible, n - tail);
+        return bounded;
+    }
+
+    /**
+     * 任务可开始的日期：实际开始日期，没有时取计划开始日期，都没有时为排程基准日期
+     */
+    private static long releaseDayOf(Procedure procedure, long epochDay) {
+        Task task = procedure == null ? null : procedure.getTask();
+        if (task == null) {
+            return epochDay;
+        }
+        if (task.getFactStartDate() != null) {
+            return task.getFactStartDate().toLocalDate().toEpochDay();
+        }
+        return task.getPlanStartDate() == null ? epochDay : task.getPlanStartDate().toEpochDay();
+    }
+
+    /**
+     * 工序的完成期限：任务计划完成日期，没有时取工序计划完成日期
+     */
+    private static LocalDate deadlineOf(Procedure procedure) {
+        if (procedure == null) {
+            return null;
+        }
+        Task task = procedure.getTask();
+        if (task != null && task.getPlanEndDate() != null) {
+            return task.getPlanEndDate();
+        }
+        return procedure.getPlanEndDate();
+    }
+}
@@ -0,0 +1,45 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.Procedure;
+import com.upec.factoryscheduling.aps.entity.Task;
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+
+import java.util.List;
+
+/**
+ * 基准分钟数构建器
+ * <p>按 {@link PlanningEpoch} 把日历开始时间、工序计划日期和任务实际开始时间换算为分钟数，
+ * 写入 {@link WorkCenterMaintenance#getStartMinute()} 和 Timeslot 的 planStartMinute/planEndMinute/factStartMinute。
+ * 这些值在求解过程中不变，只需在加载问题时执行一次；时间槽的开始分钟数由 {@link TimeslotVariableListener} 维护。</p>
+ */
+public final class EpochMinutesBuilder {
+
+    private EpochMinutesBuilder() {
+    }
+
+    /**
+     * 写入问题的基准时间并换算全部分钟数
+     *
+     * @param solution 问题
+     * @param epoch    基准时间
+     */
+    public static void build(FactorySchedulingSolution solution, PlanningEpoch epoch) {
+        solution.setPlanningEpoch(epoch);
+        build(solution.getTimeslots(), solution.getMaintenances(), epoch);
+    }
+
+    public static void build(List<Timeslot> timeslots, List<WorkCenterMaintenance> maintenances, PlanningEpoch epoch) {
+        for (WorkCenterMaintenance maintenance : maintenances) {
+            maintenance.setStartMinute(maintenance.getDate() == null || maintenance.getStartTime() == null ? 0
+                    : epoch.minutesOf(maintenance.getDate().atTime(maintenance.getStartTime())));
+        }
+        for (Timeslot timeslot : timeslots) {
+            Procedure procedure = timeslot.getProcedure();
+            Task task = procedure == null ? null : procedure.getTask();
+            timeslot.setPlanEndMinute(procedure == null ? PlanningEpoch.NONE : epoch.minutesOf(procedure.getPlanEndDate(), 23, 59));
+            timeslot.setPlanStartMinute(task == null ? PlanningEpoch.NONE : epoch.minutesOf(task.getPlanStartDate(), 0, 0));
+            timeslot.setFactStartMinute(task == null ? PlanningEpoch.NONE : epoch.minutesOf(task.getFactStartDate()));
+        }
+    }
+}
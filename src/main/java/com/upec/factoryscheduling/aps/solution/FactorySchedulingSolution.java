@@ -9,13 +9,13 @@ import org.optaplanner.core.api.domain.solution.PlanningEntityCollectionProperty
 import org.optaplanner.core.api.domain.solution.PlanningScore;
 import org.optaplanner.core.api.domain.solution.PlanningSolution;
 import org.optaplanner.core.api.domain.solution.ProblemFactCollectionProperty;
-import org.optaplanner.core.api.domain.valuerange.ValueRangeProvider;
+import org.optaplanner.core.api.domain.solution.ProblemFactProperty;
 import org.optaplanner.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
 import org.optaplanner.core.api.solver.SolverStatus;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * 工厂调度规划解决方案类
@@ -24,8 +24,10 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * - 问题事实（可用的工作中心、时间范围、维护计划等约束条件）
  * - 规划分数（评估解决方案质量的指标）
  * </p>
+ * <p>规划解只在求解线程内读写，不做同步：求解器对外只发布 {@link FactorySchedulingSolutionCloner} 产生的克隆，
+ * 克隆发布后不再修改，由 BestSolutionSnapshot 的final字段保证其他线程可见。</p>
  */
-@PlanningSolution  // 标记此类为OptaPlanner规划解决方案
+@PlanningSolution(solutionCloner = FactorySchedulingSolutionCloner.class)  // 标记此类为OptaPlanner规划解决方案，克隆时不经反射遍历JPA实体
 public class FactorySchedulingSolution implements  Serializable {
     private static final long serialVersionUID = 1L;
 
@@ -43,70 +45,72 @@ public class FactorySchedulingSolution implements  Serializable {
 
 
     /**
-     * 设备维护计划列表 - 影响工作中心可用性的约束条件和规划变量取值范围
-     * <p>在维护期间，对应的工作中心不可用</p>
-     * 使用CopyOnWriteArrayList确保线程安全的读取操作
+     * 设备维护计划列表 - 影响工作中心可用性的约束条件
+     * <p>在维护期间，对应的工作中心不可用。规划变量的取值范围由每个时间槽的
+     * {@link Timeslot#getMaintenanceRange()} 提供，见 {@link MaintenanceRangeBuilder}</p>
      */
     @JsonIgnore
     @Getter
-    @ValueRangeProvider(id = "maintenanceRange")
     @ProblemFactCollectionProperty
     private List<WorkCenterMaintenance> maintenances;
 
+    /**
+     * 全部固定的任务的时间槽
+     * <p>由 {@link FixedTaskBuilder} 从规划实体中移出，求解器不再看到它们，只通过日历的固定负载占用产能；
+     * 求解过程中不修改，克隆之间共享。对外展示和保存时与 {@link #getTimeslots()} 合并，见 {@link #getAllTimeslots()}</p>
+     */
+    @JsonIgnore
+    @Getter
+    @Setter
+    private List<Timeslot> fixedTimeslots = new ArrayList<>();
+
+    /**
+     * 工序前后继关系 - 问题事实
+     * <p>由 {@link ProcedureLinkBuilder} 在加载问题时构建，供工序顺序类约束做索引连接</p>
+     */
+    @JsonIgnore
+    @Getter
+    @Setter
+    @ProblemFactCollectionProperty
+    private List<ProcedureLink> procedureLinks = new ArrayList<>();
+
+    /**
+     * 排程基准时间 - 问题事实
+     * <p>由 {@link EpochMinutesBuilder} 在加载问题时写入，问题中的时间点均换算为相对该时间的分钟数</p>
+     */
+    @JsonIgnore
+    @Getter
+    @Setter
+    @ProblemFactProperty
+    private PlanningEpoch planningEpoch;
+
     /**
      * 规划分数 - 评估解决方案质量的指标
-     * <p>使用HardSoftScore类型，包含硬约束和软约束的违反情况：
+     * <p>使用HardMediumSoftScore类型，包含硬约束、中等约束和软约束的违反情况：
      * - 硬约束：必须满足的规则，如设备冲突、维护时间冲突等
      * - 软约束：应当尽量满足的规则，如订单优先级、完成时间等
      * </p>
-     * volatile确保多线程环境下的可见性
      */
+    @Getter
+    @Setter
     @PlanningScore
-    private volatile HardMediumSoftScore score;
+    private HardMediumSoftScore score;
 
     /**
      * 求解器状态 - 表示当前规划过程的状态
      * <p>如NOT_SOLVING、SOLVING_ACTIVE、SOLVING_SCHEDULED等</p>
-     * volatile确保多线程环境下的可见性
      */
-    private volatile SolverStatus solverStatus;
-    
-    /**
-     * 获取规划分数
-     */
-    public synchronized HardMediumSoftScore getScore() {
-        return score;
-    }
-    
-    /**
-     * 设置规划分数
-     */
-    public synchronized void setScore(HardMediumSoftScore score) {
-        this.score = score;
-    }
-    
-    /**
-     * 获取求解器状态
-     */
-    public synchronized SolverStatus getSolverStatus() {
-        return solverStatus;
-    }
-    
-    /**
-     * 设置求解器状态
-     */
-    public synchronized void setSolverStatus(SolverStatus solverStatus) {
-        this.solverStatus = solverStatus;
-    }
+    @Getter
+    @Setter
+    private SolverStatus solverStatus;
 
     /**
      * 默认构造函数
      * <p>为了序列化和框架要求而提供</p>
      */
     public FactorySchedulingSolution() {
-        // 初始化线程安全的列表以避免空指针异常和确保并发安全
-        this.timeslots = new CopyOnWriteArrayList<>();
-        this.maintenances = new CopyOnWriteArrayList<>();
+        this.timeslots = new ArrayList<>();
+        this.maintenances = new ArrayList<>();
     }
 
     /**
@@ -117,64 +121,75 @@ public class FactorySchedulingSolution implements  Serializable {
      */
     public FactorySchedulingSolution(List<Timeslot> timeslots,
                                      List<WorkCenterMaintenance> maintenances) {
-        // 使用CopyOnWriteArrayList确保线程安全
-        this.timeslots = timeslots != null ? new CopyOnWriteArrayList<>(timeslots) : new CopyOnWriteArrayList<>();
-        this.maintenances = maintenances != null ? new CopyOnWriteArrayList<>(maintenances) : new CopyOnWriteArrayList<>();
+        setTimeslots(timeslots);
+        setMaintenances(maintenances);
     }
 
     /**
-     * 线程安全地设置时间槽列表
+     * 设置时间槽列表，复制为可修改的列表（问题变更会向其中添加、移除时间槽）
      * @param timeslots 新的时间槽列表
      */
-    public synchronized void setTimeslots(List<Timeslot> timeslots) {
-        this.timeslots = timeslots != null ? new CopyOnWriteArrayList<>(timeslots) : new CopyOnWriteArrayList<>();
+    public void setTimeslots(List<Timeslot> timeslots) {
+        this.timeslots = timeslots != null ? new ArrayList<>(timeslots) : new ArrayList<>();
     }
 
     /**
-     * 线程安全地设置维护计划列表
+     * 设置维护计划列表，复制为可修改的列表
      * @param maintenances 新的维护计划列表
      */
-    public synchronized void setMaintenances(List<WorkCenterMaintenance> maintenances) {
-        this.maintenances = maintenances != null ? new CopyOnWriteArrayList<>(maintenances) : new CopyOnWriteArrayList<>();
+    public void setMaintenances(List<WorkCenterMaintenance> maintenances) {
+        this.maintenances = maintenances != null ? new ArrayList<>(maintenances) : new ArrayList<>();
+    }
+
+    /**
+     * 参与求解的时间槽和全部固定的任务的时间槽
+     */
+    @JsonIgnore
+    public List<Timeslot> getAllTimeslots() {
+        if (fixedTimeslots.isEmpty()) {
+            return timeslots;
+        }
+        List<Timeslot> all = new ArrayList<>(timeslots.size() + fixedTimeslots.size());
+        all.addAll(timeslots);
+        all.addAll(fixedTimeslots);
+        return all;
     }
 
     /**
-     * 线程安全地添加单个时间槽
+     * 添加单个时间槽
      * @param timeslot 要添加的时间槽
      */
-    public synchronized void addTimeslot(Timeslot timeslot) {
+    public void addTimeslot(Timeslot timeslot) {
         if (timeslot != null) {
             this.timeslots.add(timeslot);
         }
     }
 
     /**
-     * 线程安全地添加单个维护计划
+     * 添加单个维护计划
      * @param maintenance 要添加的维护计划
      */
-    public synchronized void addMaintenance(WorkCenterMaintenance maintenance) {
+    public void addMaintenance(WorkCenterMaintenance maintenance) {
         if (maintenance != null) {
             this.maintenances.add(maintenance);
         }
     }
 
     /**
-     * 线程安全地移除时间槽
+     * 移除时间槽
      * @param timeslot 要移除的时间槽
      * @return 是否成功移除
      */
-    public synchronized boolean removeTimeslot(Timeslot timeslot) {
+    public boolean removeTimeslot(Timeslot timeslot) {
         return timeslot != null && this.timeslots.remove(timeslot);
     }
 
     /**
-     * 线程安全地移除维护计划
+     * 移除维护计划
      * @param maintenance 要移除的维护计划
      * @return 是否成功移除
      */
-    public synchronized boolean removeMaintenance(WorkCenterMaintenance maintenance) {
+    public boolean removeMaintenance(WorkCenterMaintenance maintenance) {
         return maintenance != null && this.maintenances.remove(maintenance);
     }
-
-
 }
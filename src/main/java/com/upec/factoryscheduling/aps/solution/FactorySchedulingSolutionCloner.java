@@ -0,0 +1,68 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import org.optaplanner.core.api.domain.solution.cloner.SolutionCloner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 规划解克隆器
+ * <p>求解器每次产生更优解、多线程求解同步工作解时都会克隆规划解。默认克隆器按反射逐字段复制，
+ * 并逐个判断字段类型是否需要深克隆，时间槽越多开销越大。这里只对规划实体 {@link Timeslot} 逐字段复制，
+ * 工序、日历、前后继关系等问题事实在克隆之间共享，不触及 Procedure/WorkCenter 等JPA实体图。</p>
+ * <p>Timeslot 新增字段时需同步 {@link #cloneTimeslot(Timeslot)}。</p>
+ */
+public class FactorySchedulingSolutionCloner implements SolutionCloner<FactorySchedulingSolution> {
+
+    @Override
+    public FactorySchedulingSolution cloneSolution(FactorySchedulingSolution original) {
+        FactorySchedulingSolution clone = new FactorySchedulingSolution();
+        clone.setProblemId(original.getProblemId());
+        List<Timeslot> timeslots = clone.getTimeslots();
+        for (Timeslot timeslot : original.getTimeslots()) {
+            timeslots.add(cloneTimeslot(timeslot));
+        }
+        clone.setFixedTimeslots(original.getFixedTimeslots());
+        clone.setMaintenances(original.getMaintenances());
+        clone.setProcedureLinks(new ArrayList<>(original.getProcedureLinks()));
+        clone.setPlanningEpoch(original.getPlanningEpoch());
+        clone.setScore(original.getScore());
+        clone.setSolverStatus(original.getSolverStatus());
+        return clone;
+    }
+
+    /**
+     * 复制时间槽，规划变量、影子变量和加载问题时写入的派生字段均按值复制，问题事实按引用共享
+     */
+    static Timeslot cloneTimeslot(Timeslot original) {
+        Timeslot clone = new Timeslot();
+        clone.setId(original.getId());
+        clone.setProblemId(original.getProblemId());
+        clone.setProcedure(original.getProcedure());
+        clone.setDuration(original.getDuration());
+        clone.setPriority(original.getPriority());
+        clone.setStartTime(original.getStartTime());
+        clone.setOffsetMinutes(original.getOffsetMinutes());
+        clone.setCalendarLoadMinutes(original.getCalendarLoadMinutes());
+        clone.setStartMinute(original.getStartMinute());
+        clone.setPlanEndMinute(original.getPlanEndMinute());
+        clone.setPlanStartMinute(original.getPlanStartMinute());
+        clone.setFactStartMinute(original.getFactStartMinute());
+        clone.setMaintenance(original.getMaintenance());
+        clone.setParallel(original.isParallel());
+        clone.setManual(original.isManual());
+        clone.setIndex(original.getIndex());
+        clone.setTotal(original.getTotal());
+        clone.setProcedureIndex(original.getProcedureIndex());
+        clone.setProcedureSeq(original.getProcedureSeq());
+        clone.setWorkCenterIndex(original.getWorkCenterIndex());
+        clone.setOutsourcing(original.isOutsourcing());
+        clone.setProcedureNo(original.getProcedureNo());
+        clone.setEarliestDate(original.getEarliestDate());
+        clone.setLatestDate(original.getLatestDate());
+        clone.setMaintenanceRange(original.getMaintenanceRange());
+        clone.setPersisted(original.getPersisted());
+        return clone;
+    }
+}
@@ -0,0 +1,80 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.Procedure;
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 固定任务构建器
+ * <p>时间槽全部固定（{@link Timeslot#isPinned()}，即已开工、已完成或手动排定）的任务不再作为规划实体：
+ * 这些时间槽移到 {@link FactorySchedulingSolution#getFixedTimeslots()}，移动选择器和约束索引中只保留可移动的时间槽。
+ * 它们占用的产能累加到日历的 {@link WorkCenterMaintenance#getFixedLoadMinutes()}，由 {@link TimeslotVariableListener}
+ * 排在日历最前面；前后继关系只在任务内部，端点为固定时间槽的 ProcedureLink 一并去掉。</p>
+ * <p>部分时间槽固定的任务仍留在规划实体中，固定的时间槽由 {@link Timeslot#isPinned()} 排除在移动之外。
+ * 需在 {@link InitialAssignmentBuilder}、{@link WorkCenterIndexBuilder} 之后执行。</p>
+ */
+@Slf4j
+public final class FixedTaskBuilder {
+
+    private FixedTaskBuilder() {
+    }
+
+    /**
+     * 拆出全部固定的任务
+     *
+     * @param solution 问题
+     * @return 移出规划实体的时间槽个数
+     */
+    public static int build(FactorySchedulingSolution solution) {
+        Map<String, List<Timeslot>> timeslotsByTask = solution.getTimeslots().stream()
+                .collect(Collectors.groupingBy(FixedTaskBuilder::taskKeyOf, LinkedHashMap::new, Collectors.toList()));
+        List<Timeslot> movable = new ArrayList<>(solution.getTimeslots().size());
+        List<Timeslot> fixed = new ArrayList<>();
+        int fixedTasks = 0;
+        for (List<Timeslot> timeslots : timeslotsByTask.values()) {
+            if (timeslots.stream().allMatch(Timeslot::isPinned)) {
+                fixed.addAll(timeslots);
+                fixedTasks++;
+            } else {
+                movable.addAll(timeslots);
+            }
+        }
+        for (WorkCenterMaintenance maintenance : solution.getMaintenances()) {
+            maintenance.setFixedLoadMinutes(0);
+        }
+        Set<Integer> fixedSeqs = new HashSet<>();
+        for (Timeslot timeslot : fixed) {
+            if (!timeslot.isOutsourcing()) {
+                WorkCenterMaintenance maintenance = timeslot.getMaintenance();
+                maintenance.setFixedLoadMinutes(maintenance.getFixedLoadMinutes() + timeslot.getDuration());
+            }
+            if (timeslot.getProcedureSeq() >= 0) {
+                fixedSeqs.add(timeslot.getProcedureSeq());
+            }
+        }
+        if (!fixedSeqs.isEmpty()) {
+            solution.setProcedureLinks(solution.getProcedureLinks().stream()
+                    .filter(link -> !fixedSeqs.contains(link.getFromSeq()) && !fixedSeqs.contains(link.getToSeq()))
+                    .collect(Collectors.toList()));
+        }
+        solution.setTimeslots(movable);
+        solution.setFixedTimeslots(fixed);
+        log.info("{}个任务已全部固定，{}个时间槽作为问题事实，{}个时间槽参与求解", fixedTasks, fixed.size(), movable.size());
+        return fixed.size();
+    }
+
+    private static String taskKeyOf(Timeslot timeslot) {
+        Procedure procedure = timeslot.getProcedure();
+        if (procedure == null) {
+            return "timeslot:" + timeslot.getId();
+        }
+        if (procedure.getTask() != null && procedure.getTask().getTaskNo() != null) {
+            return procedure.getTask().getTaskNo();
+        }
+        return "procedure:" + procedure.getId();
+    }
+}
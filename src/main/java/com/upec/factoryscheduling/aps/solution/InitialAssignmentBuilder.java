@@ -0,0 +1,77 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.Procedure;
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 初始分配构建器
+ * <p>从数据库加载的时间槽带有上次保存的日历，但与问题中的日历不是同一个对象。这里按id把它替换为问题中的日历实例，
+ * 使影子变量监听器和容量约束把它们视为同一个日历。</p>
+ * <p>热启动时保留上次的分配作为初始解，构造启发式只处理未分配的时间槽（新任务、新分片），之后直接进入局部搜索；
+ * 冷启动时只保留手动排定的分配，其余全部交给构造启发式。非手动的分配在日历不在问题中、日历不属于工序的工作中心
+ * 或日历日期早于排程基准日期时清空。</p>
+ * <p>手动排定(含已开工、已完成)的分配总是保留，否则 {@link Timeslot#isPinned()} 变为false，时间槽会被求解器移动：
+ * 加载问题时已把这些时间槽的日历加入问题，属于其它工作中心时由硬约束报告；只有日历确实不在问题中(如旧快照)时才清空并记录警告。
+ * 必须在 {@link MaintenanceRangeBuilder} 之前执行。</p>
+ */
+@Slf4j
+public final class InitialAssignmentBuilder {
+
+    private InitialAssignmentBuilder() {
+    }
+
+    /**
+     * 构建初始分配
+     *
+     * @param timeslots    问题中的全部时间槽
+     * @param maintenances 问题中的全部工作中心日历
+     * @param epoch        排程基准时间
+     * @param warmStart    是否保留上次保存的分配
+     * @return 保留分配的时间槽个数
+     */
+    public static int build(List<Timeslot> timeslots, List<WorkCenterMaintenance> maintenances, PlanningEpoch epoch,
+                            boolean warmStart) {
+        Map<String, WorkCenterMaintenance> maintenanceById = new HashMap<>();
+        for (WorkCenterMaintenance maintenance : maintenances) {
+            maintenanceById.putIfAbsent(maintenance.getId(), maintenance);
+        }
+        LocalDate today = epoch.getStart().toLocalDate();
+        int kept = 0;
+        for (Timeslot timeslot : timeslots) {
+            WorkCenterMaintenance persisted = timeslot.getMaintenance();
+            if (persisted == null) {
+                continue;
+            }
+            WorkCenterMaintenance maintenance = maintenanceById.get(persisted.getId());
+            if (timeslot.isManual()) {
+                if (maintenance == null) {
+                    log.warn("手动排定的时间槽{}的日历{}不在问题中，将由求解器重新分配", timeslot.getId(), persisted.getId());
+                }
+            } else if (maintenance == null || !sameWorkCenter(timeslot.getProcedure(), maintenance)
+                    || !warmStart || (maintenance.getDate() != null && maintenance.getDate().isBefore(today))) {
+                maintenance = null;
+            }
+            timeslot.setMaintenance(maintenance);
+            if (maintenance != null) {
+                kept++;
+            }
+        }
+        log.info("{}：{}个时间槽保留已保存的分配，{}个由构造启发式分配",
+                warmStart ? "热启动" : "冷启动", kept, timeslots.size() - kept);
+        return kept;
+    }
+
+    private static boolean sameWorkCenter(Procedure procedure, WorkCenterMaintenance maintenance) {
+        if (procedure == null || procedure.getWorkCenter() == null || maintenance.getWorkCenter() == null) {
+            return true;
+        }
+        return procedure.getWorkCenter().getId().equals(maintenance.getWorkCenter().getId());
+    }
+}
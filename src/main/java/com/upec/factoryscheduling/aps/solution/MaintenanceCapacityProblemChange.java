@@ -0,0 +1,42 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+import lombok.extern.slf4j.Slf4j;
+import org.optaplanner.core.api.solver.change.ProblemChange;
+import org.optaplanner.core.api.solver.change.ProblemChangeDirector;
+
+import java.util.IdentityHashMap;
+
+/**
+ * 修改日历容量 - 求解中的问题变更
+ * <p>容量类约束按时间槽读取所在日历的容量，只修改日历时约束不会重新计算；日历又在克隆之间共享，
+ * 不能原地修改。这里复制日历后修改副本，由 {@link MaintenanceReplacer} 把分配到该日历的时间槽切换到副本，
+ * 从而触发这些时间槽上的容量类约束重新计算。</p>
+ */
+@Slf4j
+public class MaintenanceCapacityProblemChange implements ProblemChange<FactorySchedulingSolution> {
+
+    private final String maintenanceId;
+    private final int capacity;
+
+    public MaintenanceCapacityProblemChange(String maintenanceId, int capacity) {
+        this.maintenanceId = maintenanceId;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void doChange(FactorySchedulingSolution workingSolution, ProblemChangeDirector problemChangeDirector) {
+        WorkCenterMaintenance key = new WorkCenterMaintenance();
+        key.setId(maintenanceId);
+        WorkCenterMaintenance maintenance = problemChangeDirector.lookUpWorkingObject(key).orElse(null);
+        if (maintenance == null) {
+            log.warn("修改日历容量失败，日历{}不在问题中", maintenanceId);
+            return;
+        }
+        WorkCenterMaintenance copy = MaintenanceReplacer.copyOf(maintenance);
+        copy.setCapacity(capacity);
+        IdentityHashMap<WorkCenterMaintenance, WorkCenterMaintenance> replacements = new IdentityHashMap<>();
+        replacements.put(maintenance, copy);
+        MaintenanceReplacer.replace(workingSolution, problemChangeDirector, replacements);
+    }
+}
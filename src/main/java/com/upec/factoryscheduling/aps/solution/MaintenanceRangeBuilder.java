@@ -0,0 +1,109 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.Procedure;
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 时间槽可选日历构建器
+ * <p>为每个时间槽计算 {@link Timeslot#getMaintenanceRange()}：只包含工序所在工作中心的日历，
+ * 且日期位于 [计划开始日期 - daysBefore, 计划完成日期 + daysAfter] 之内。
+ * 求解器因此不会再提出分配到其它工作中心的移动，搜索空间约缩小为原来的 1/工作中心数。</p>
+ * <p>已由 {@link CriticalPathWindowBuilder} 构建关键路径时间窗时，再与 [{@link Timeslot#getEarliestDate()},
+ * {@link Timeslot#getLatestDate()}] 取交集，排除早于前序工序最早完成、晚于后序工序最晚开始的日期。</p>
+ * <p>同一工序的分片共用同一个列表；交集为空时依次退回到关键路径时间窗、计划日期窗口、该工作中心的全部日历，
+ * 工作中心没有任何日历时退回到全部日历，由硬约束给出提示。只需在加载问题时执行一次。</p>
+ */
+public final class MaintenanceRangeBuilder {
+
+    private MaintenanceRangeBuilder() {
+    }
+
+    /**
+     * 构建时间槽的可选日历
+     *
+     * @param timeslots    问题中的全部时间槽
+     * @param maintenances 问题中的全部工作中心日历
+     * @param daysBefore   计划开始日期之前允许的天数
+     * @param daysAfter    计划完成日期之后允许的天数
+     */
+    public static void build(List<Timeslot> timeslots, List<WorkCenterMaintenance> maintenances, int daysBefore, int daysAfter) {
+        Map<String, List<WorkCenterMaintenance>> byWorkCenter = maintenances.stream()
+                .filter(maintenance -> maintenance.getWorkCenter() != null && maintenance.getDate() != null)
+                .sorted(Comparator.comparing(WorkCenterMaintenance::getDate))
+                .collect(Collectors.groupingBy(maintenance -> maintenance.getWorkCenter().getId(), HashMap::new, Collectors.toList()));
+        Map<String, List<WorkCenterMaintenance>> rangeByProcedure = new HashMap<>();
+        for (Timeslot timeslot : timeslots) {
+            Procedure procedure = timeslot.getProcedure();
+            List<WorkCenterMaintenance> range;
+            if (procedure == null || procedure.getWorkCenter() == null) {
+                range = maintenances;
+            } else {
+                range = rangeByProcedure.computeIfAbsent(procedure.getId(),
+                        id -> rangeOf(timeslot, byWorkCenter, maintenances, daysBefore, daysAfter));
+            }
+            // 已分配的日历必须在可选范围内，否则求解器无法撤销该分配
+            WorkCenterMaintenance current = timeslot.getMaintenance();
+            if (current != null && !range.contains(current)) {
+                range = new ArrayList<>(range);
+                range.add(current);
+            }
+            timeslot.setMaintenanceRange(range);
+        }
+    }
+
+    private static List<WorkCenterMaintenance> rangeOf(Timeslot timeslot, Map<String, List<WorkCenterMaintenance>> byWorkCenter,
+                                                       List<WorkCenterMaintenance> maintenances, int daysBefore, int daysAfter) {
+        Procedure procedure = timeslot.getProcedure();
+        List<WorkCenterMaintenance> candidates = byWorkCenter.get(procedure.getWorkCenter().getId());
+        if (candidates == null) {
+            return maintenances;
+        }
+        LocalDate planStart = procedure.getPlanStartDate() != null ? procedure.getPlanStartDate() : procedure.getPlanEndDate();
+        LocalDate planEnd = procedure.getPlanEndDate() != null ? procedure.getPlanEndDate() : procedure.getPlanStartDate();
+        LocalDate from = null;
+        LocalDate to = null;
+        if (planStart != null) {
+            from = planStart.minusDays(daysBefore);
+            to = (planEnd.isBefore(planStart) ? planStart : planEnd).plusDays(daysAfter);
+        }
+        LocalDate earliest = timeslot.getEarliestDate();
+        LocalDate latest = timeslot.getLatestDate();
+        if (earliest != null || latest != null) {
+            List<WorkCenterMaintenance> range = filter(candidates, later(from, earliest), earlier(to, latest));
+            if (range.isEmpty()) {
+                range = filter(candidates, earliest, latest);
+            }
+            if (!range.isEmpty()) {
+                return range;
+            }
+        }
+        if (from == null) {
+            return candidates;
+        }
+        List<WorkCenterMaintenance> range = filter(candidates, from, to);
+        return range.isEmpty() ? candidates : range;
+    }
+
+    /**
+     * 日期在 [from, to] 内的日历，边界为null表示不限
+     */
+    private static List<WorkCenterMaintenance> filter(List<WorkCenterMaintenance> candidates, LocalDate from, LocalDate to) {
+        return candidates.stream()
+                .filter(maintenance -> (from == null || !maintenance.getDate().isBefore(from))
+                        && (to == null || !maintenance.getDate().isAfter(to)))
+                .collect(Collectors.toList());
+    }
+
+    private static LocalDate later(LocalDate a, LocalDate b) {
+        return a == null ? b : b == null || a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDate earlier(LocalDate a, LocalDate b) {
+        return a == null ? b : b == null || a.isBefore(b) ? a : b;
+    }
+}
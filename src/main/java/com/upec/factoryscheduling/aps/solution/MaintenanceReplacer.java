@@ -0,0 +1,94 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+import org.optaplanner.core.api.solver.change.ProblemChangeDirector;
+
+import java.util.*;
+
+/**
+ * 在求解中替换日历 - 供问题变更使用
+ * <p>日历、日历列表和时间槽的可选日历列表在克隆之间共享（见 {@link FactorySchedulingSolutionCloner}），
+ * 已发布的解仍引用它们，修改日历属性时不能原地修改，而是复制后修改副本，再把工作解切换到副本上：
+ * 替换日历列表和可选日历列表中的日历，并把分配到原日历的时间槽重新分配到副本。
+ * 重新分配会触发 {@link TimeslotVariableListener} 重排日历内的时间槽，容量类约束也随之按新属性重新计算。</p>
+ * <p>全部固定的任务的时间槽仍引用原日历，只用于展示和保存。WorkCenterMaintenance 新增字段时需同步 {@link #copyOf(WorkCenterMaintenance)}。</p>
+ */
+final class MaintenanceReplacer {
+
+    private MaintenanceReplacer() {
+    }
+
+    /**
+     * 复制日历，持久化字段和加载问题时写入的派生字段均按值复制
+     */
+    static WorkCenterMaintenance copyOf(WorkCenterMaintenance original) {
+        WorkCenterMaintenance copy = new WorkCenterMaintenance();
+        copy.setId(original.getId());
+        copy.setWorkCenter(original.getWorkCenter());
+        copy.setYear(original.getYear());
+        copy.setDate(original.getDate());
+        copy.setCapacity(original.getCapacity());
+        copy.setStatus(original.getStatus());
+        copy.setDescription(original.getDescription());
+        copy.setStartTime(original.getStartTime());
+        copy.setEndTime(original.getEndTime());
+        copy.setUsageTime(original.getUsageTime());
+        copy.setStartMinute(original.getStartMinute());
+        copy.setWorkCenterIndex(original.getWorkCenterIndex());
+        copy.setFixedLoadMinutes(original.getFixedLoadMinutes());
+        return copy;
+    }
+
+    /**
+     * 用副本替换工作解中的日历
+     *
+     * @param workingSolution      工作解
+     * @param problemChangeDirector 问题变更入口
+     * @param replacements         工作解中的日历 -> 副本，按对象标识匹配
+     */
+    static void replace(FactorySchedulingSolution workingSolution, ProblemChangeDirector problemChangeDirector,
+                        IdentityHashMap<WorkCenterMaintenance, WorkCenterMaintenance> replacements) {
+        if (replacements.isEmpty()) {
+            return;
+        }
+        List<WorkCenterMaintenance> original = workingSolution.getMaintenances();
+        List<WorkCenterMaintenance> maintenances = new ArrayList<>(original);
+        for (Map.Entry<WorkCenterMaintenance, WorkCenterMaintenance> entry : replacements.entrySet()) {
+            int index = maintenances.indexOf(entry.getKey());
+            problemChangeDirector.removeProblemFact(entry.getKey(), m -> maintenances.remove(index));
+            problemChangeDirector.addProblemFact(entry.getValue(), m -> maintenances.add(index, m));
+        }
+        workingSolution.setMaintenances(maintenances);
+
+        // 同一工序的分片共用可选日历列表，按列表标识缓存替换结果，保持共享
+        Map<List<WorkCenterMaintenance>, List<WorkCenterMaintenance>> ranges = new IdentityHashMap<>();
+        ranges.put(original, maintenances);
+        for (Timeslot timeslot : workingSolution.getTimeslots()) {
+            List<WorkCenterMaintenance> range = ranges.computeIfAbsent(timeslot.getMaintenanceRange(),
+                    r -> replaceIn(r, replacements));
+            if (range != timeslot.getMaintenanceRange()) {
+                problemChangeDirector.changeProblemProperty(timeslot, t -> t.setMaintenanceRange(range));
+            }
+            WorkCenterMaintenance copy = timeslot.getMaintenance() == null ? null : replacements.get(timeslot.getMaintenance());
+            if (copy != null) {
+                problemChangeDirector.changeVariable(timeslot, "maintenance", t -> t.setMaintenance(copy));
+            }
+        }
+    }
+
+    /**
+     * 替换列表中的日历，不含被替换的日历时返回原列表
+     */
+    private static List<WorkCenterMaintenance> replaceIn(List<WorkCenterMaintenance> range,
+                                                         Map<WorkCenterMaintenance, WorkCenterMaintenance> replacements) {
+        if (range == null || range.stream().noneMatch(replacements::containsKey)) {
+            return range;
+        }
+        List<WorkCenterMaintenance> replaced = new ArrayList<>(range.size());
+        for (WorkCenterMaintenance maintenance : range) {
+            replaced.add(replacements.getOrDefault(maintenance, maintenance));
+        }
+        return replaced;
+    }
+}
@@ -0,0 +1,64 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * 时间槽在数据库中的分配列(problem_id、maintenance_id、start_time、manual)
+ * <p>加载问题时记录每个时间槽从数据库读出的值(见 {@link Timeslot#getPersisted()})，保存最终解时与解中的值比较，
+ * 只写入发生变化的时间槽，无需再查询数据库。对象不可变，规划克隆时各个克隆共用同一个实例。</p>
+ */
+@Getter
+public final class PersistedAssignment implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Long problemId;
+    private final String maintenanceId;
+    private final LocalDateTime startTime;
+    private final boolean manual;
+
+    public PersistedAssignment(Long problemId, String maintenanceId, LocalDateTime startTime, boolean manual) {
+        this.problemId = problemId;
+        this.maintenanceId = maintenanceId;
+        // 数据库datetime列精度为秒
+        this.startTime = startTime == null ? null : startTime.withNano(0);
+        this.manual = manual;
+    }
+
+    /**
+     * 时间槽当前的分配列
+     */
+    public static PersistedAssignment of(Timeslot timeslot) {
+        String maintenanceId = timeslot.getMaintenance() == null ? null : timeslot.getMaintenance().getId();
+        return new PersistedAssignment(timeslot.getProblemId(), maintenanceId, timeslot.getStartTime(), timeslot.isManual());
+    }
+
+    /**
+     * 日历是否不同
+     */
+    public boolean isMovedFrom(PersistedAssignment other) {
+        return !Objects.equals(maintenanceId, other.maintenanceId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PersistedAssignment)) {
+            return false;
+        }
+        PersistedAssignment that = (PersistedAssignment) o;
+        return manual == that.manual && Objects.equals(problemId, that.problemId)
+                && Objects.equals(maintenanceId, that.maintenanceId) && Objects.equals(startTime, that.startTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(problemId, maintenanceId, startTime, manual);
+    }
+}
@@ -0,0 +1,121 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+import lombok.extern.slf4j.Slf4j;
+import org.optaplanner.core.api.solver.change.ProblemChange;
+import org.optaplanner.core.api.solver.change.ProblemChangeDirector;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 固定(或取消固定)时间槽 - 求解中的问题变更
+ * <p>可同时把时间槽移到指定日历；固定后 {@link Timeslot#isPinned()} 为true，求解器不再移动该时间槽。
+ * 对象不存在时只记录日志，不抛出异常，避免中断求解。</p>
+ * <p>全部固定的任务的时间槽不是规划实体(见 {@link FixedTaskBuilder})，取消固定或移到其它日历时先从固定列表中取出，
+ * 从原日历的固定负载中扣除其时长，再作为规划实体加入。</p>
+ */
+@Slf4j
+public class PinTimeslotProblemChange implements ProblemChange<FactorySchedulingSolution> {
+
+    private final String timeslotId;
+    /**
+     * 目标日历id，为null时保持当前日历
+     */
+    private final String maintenanceId;
+    private final boolean pinned;
+
+    public PinTimeslotProblemChange(String timeslotId, String maintenanceId, boolean pinned) {
+        this.timeslotId = timeslotId;
+        this.maintenanceId = maintenanceId;
+        this.pinned = pinned;
+    }
+
+    @Override
+    public void doChange(FactorySchedulingSolution workingSolution, ProblemChangeDirector problemChangeDirector) {
+        Timeslot key = new Timeslot();
+        key.setId(timeslotId);
+        Timeslot timeslot = problemChangeDirector.lookUpWorkingObject(key).orElse(null);
+        WorkCenterMaintenance maintenance = null;
+        if (maintenanceId != null) {
+            WorkCenterMaintenance maintenanceKey = new WorkCenterMaintenance();
+            maintenanceKey.setId(maintenanceId);
+            maintenance = problemChangeDirector.lookUpWorkingObject(maintenanceKey).orElse(null);
+            if (maintenance == null) {
+                log.warn("固定时间槽失败，日历{}不在问题中", maintenanceId);
+                return;
+            }
+        }
+        if (timeslot == null) {
+            timeslot = releaseFixed(workingSolution, problemChangeDirector, maintenance);
+            if (timeslot == null) {
+                return;
+            }
+        }
+        if (maintenance != null) {
+            WorkCenterMaintenance target = maintenance;
+            if (!timeslot.getMaintenanceRange().contains(target)) {
+                // 同一工序的分片共用可选日历列表，复制后再添加
+                problemChangeDirector.changeProblemProperty(timeslot, t -> {
+                    List<WorkCenterMaintenance> range = new ArrayList<>(t.getMaintenanceRange());
+                    range.add(target);
+                    t.setMaintenanceRange(range);
+                });
+            }
+            problemChangeDirector.changeVariable(timeslot, "maintenance", t -> t.setMaintenance(target));
+        }
+        problemChangeDirector.changeProblemProperty(timeslot, t -> t.setManual(pinned));
+    }
+
+    /**
+     * 从全部固定的任务中取出时间槽，作为规划实体加入工作解
+     * <p>固定列表、日历和固定时间槽本身在克隆之间共享，这里替换为新列表、日历副本和时间槽副本。
+     * 时间槽仍固定在原日历上时无需取出，返回null。</p>
+     *
+     * @param target 目标日历，为null时保持当前日历
+     * @return 加入工作解的时间槽，时间槽不在问题中或无需取出时返回null
+     */
+    private Timeslot releaseFixed(FactorySchedulingSolution workingSolution, ProblemChangeDirector problemChangeDirector,
+                                  WorkCenterMaintenance target) {
+        Timeslot fixed = workingSolution.getFixedTimeslots().stream()
+                .filter(timeslot -> timeslotId.equals(timeslot.getId()))
+                .findFirst()
+                .orElse(null);
+        if (fixed == null) {
+            log.warn("固定时间槽失败，时间槽{}不在问题中", timeslotId);
+            return null;
+        }
+        // 固定时间槽可能仍引用已被替换的日历，按id取工作解中的实例
+        WorkCenterMaintenance current = problemChangeDirector.lookUpWorkingObject(fixed.getMaintenance()).orElse(null);
+        if (pinned && (target == null || target == current)) {
+            return null;
+        }
+        workingSolution.setFixedTimeslots(workingSolution.getFixedTimeslots().stream()
+                .filter(timeslot -> timeslot != fixed)
+                .collect(Collectors.toList()));
+        if (current != null && !fixed.isOutsourcing()) {
+            WorkCenterMaintenance copy = MaintenanceReplacer.copyOf(current);
+            copy.setFixedLoadMinutes(copy.getFixedLoadMinutes() - fixed.getDuration());
+            IdentityHashMap<WorkCenterMaintenance, WorkCenterMaintenance> replacements = new IdentityHashMap<>();
+            replacements.put(current, copy);
+            MaintenanceReplacer.replace(workingSolution, problemChangeDirector, replacements);
+            current = copy;
+        }
+        Timeslot timeslot = FactorySchedulingSolutionCloner.cloneTimeslot(fixed);
+        timeslot.setMaintenance(current);
+        // 可选日历是拆出固定任务之前构建的，同样按id换成工作解中的实例
+        List<WorkCenterMaintenance> range = new ArrayList<>(fixed.getMaintenanceRange().size() + 1);
+        for (WorkCenterMaintenance maintenance : fixed.getMaintenanceRange()) {
+            problemChangeDirector.lookUpWorkingObject(maintenance).ifPresent(range::add);
+        }
+        if (current != null && !range.contains(current)) {
+            range.add(current);
+        }
+        timeslot.setMaintenanceRange(range);
+        problemChangeDirector.addEntity(timeslot, workingSolution.getTimeslots()::add);
+        return timeslot;
+    }
+}
@@ -0,0 +1,56 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 排程基准时间 - 问题事实
+ * <p>加载问题时确定一次（精确到分钟），求解过程中保持不变。问题中的所有时间点都换算为相对该时间的分钟数
+ * （见 {@link EpochMinutesBuilder}），约束只做整数运算，不再在每次匹配时调用 LocalDateTime.now()
+ * 或创建 LocalDateTime/Duration 对象，同一个解的分数也不会随求解时间漂移。</p>
+ */
+@Getter
+public class PlanningEpoch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 日期缺失时的分钟数
+     */
+    public static final int NONE = Integer.MIN_VALUE;
+
+    private final LocalDateTime start;
+
+    public PlanningEpoch(LocalDateTime start) {
+        this.start = start.truncatedTo(ChronoUnit.MINUTES);
+    }
+
+    /**
+     * 以当前时间为基准
+     */
+    public static PlanningEpoch now() {
+        return new PlanningEpoch(LocalDateTime.now());
+    }
+
+    /**
+     * 基准时间到指定时间的分钟数，早于基准时间为负数，参数为null时返回 {@link #NONE}
+     */
+    public int minutesOf(LocalDateTime dateTime) {
+        return dateTime == null ? NONE : Math.toIntExact(ChronoUnit.MINUTES.between(start, dateTime));
+    }
+
+    /**
+     * 基准时间到指定日期某一时刻的分钟数，日期为null时返回 {@link #NONE}
+     */
+    public int minutesOf(LocalDate date, int hour, int minute) {
+        return date == null ? NONE : minutesOf(date.atTime(hour, minute));
+    }
+
+    @Override
+    public String toString() {
+        return start.toString();
+    }
+}
@@ -0,0 +1,616 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * 问题快照的二进制编码
+ * <p>保存从数据库加载、尚未做任何派生处理的问题：时间槽、工序(含后继工序)、任务、订单、工作中心和日历，以及排程基准时间。
+ * 工序前后继索引、时间槽可选日历、分钟数等派生数据不保存，读取后与从数据库加载时一样重新构建。</p>
+ * <p>按列存储：字符串放在文件头部的字典中，各列只存字典下标；每类对象先写个数，再逐列写出全部对象的该列值；
+ * 对象之间的引用存为所在列表的下标。日期存为天数，时间存为秒数，空值使用各类型的最小值。
+ * 读取时直接从 {@link ByteBuffer}(通常是内存映射的文件)解码，不经过JPA。</p>
+ */
+public final class ProblemSnapshotCodec {
+
+    private static final int MAGIC = 0x41505353;
+    private static final short VERSION = 1;
+
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    private static final long NULL_LONG = Long.MIN_VALUE;
+
+    private ProblemSnapshotCodec() {
+    }
+
+    /**
+     * 编码问题
+     *
+     * @param problem 从数据库加载的问题，排程基准时间可为空
+     * @param out     输出，调用方负责关闭
+     */
+    public static void write(FactorySchedulingSolution problem, OutputStream out) throws IOException {
+        List<Timeslot> timeslots = problem.getTimeslots();
+        List<WorkCenterMaintenance> maintenances = problem.getMaintenances();
+
+        // 时间槽的工序以及它们可达的后继工序
+        Map<String, Integer> procedureIndex = new HashMap<>();
+        List<Procedure> procedures = new ArrayList<>();
+        Deque<Procedure> pending = new ArrayDeque<>();
+        for (Timeslot timeslot : timeslots) {
+            pending.add(timeslot.getProcedure());
+        }
+        while (!pending.isEmpty()) {
+            Procedure procedure = pending.poll();
+            if (procedure == null || procedureIndex.containsKey(procedure.getId())) {
+                continue;
+            }
+            procedureIndex.put(procedure.getId(), procedures.size());
+            procedures.add(procedure);
+            if (procedure.getNextProcedure() != null) {
+                pending.addAll(procedure.getNextProcedure());
+            }
+        }
+        Map<String, Integer> taskIndex = new HashMap<>();
+        List<Task> tasks = new ArrayList<>();
+        Map<String, Integer> orderIndex = new HashMap<>();
+        List<Order> orders = new ArrayList<>();
+        Map<String, Integer> workCenterIndex = new HashMap<>();
+        List<WorkCenter> workCenters = new ArrayList<>();
+        for (Procedure procedure : procedures) {
+            collect(procedure.getTask(), Task::getTaskNo, taskIndex, tasks);
+            collect(procedure.getOrder(), Order::getOrderNo, orderIndex, orders);
+            collect(procedure.getWorkCenter(), WorkCenter::getId, workCenterIndex, workCenters);
+        }
+        for (WorkCenterMaintenance maintenance : maintenances) {
+            collect(maintenance.getWorkCenter(), WorkCenter::getId, workCenterIndex, workCenters);
+        }
+
+        ColumnWriter body = new ColumnWriter();
+        body.writeInt(workCenters.size());
+        body.strings(workCenters, WorkCenter::getId);
+        body.strings(workCenters, WorkCenter::getWorkCenterCode);
+        body.strings(workCenters, WorkCenter::getName);
+        body.strings(workCenters, WorkCenter::getStatus);
+
+        body.writeInt(orders.size());
+        body.strings(orders, Order::getOrderNo);
+        body.strings(orders, Order::getProductCode);
+        body.strings(orders, Order::getProductName);
+        body.strings(orders, Order::getErpStatus);
+        body.strings(orders, Order::getOrderStatus);
+        body.dates(orders, Order::getPlanStartDate);
+        body.dates(orders, Order::getPlanEndDate);
+        body.dateTimes(orders, Order::getFactStartDate);
+        body.dateTimes(orders, Order::getFactEndDate);
+        body.dateTimes(orders, Order::getCreateDate);
+        body.nullableInts(orders, Order::getPlanQuantity);
+        body.strings(orders, Order::getContractNum);
+
+        body.writeInt(tasks.size());
+        body.strings(tasks, Task::getTaskNo);
+        body.strings(tasks, Task::getOrderNo);
+        body.strings(tasks, Task::getStatus);
+        body.nullableInts(tasks, Task::getPlanQuantity);
+        body.dateTimes(tasks, Task::getFactStartDate);
+        body.dateTimes(tasks, Task::getFactEndDate);
+        body.dates(tasks, Task::getPlanStartDate);
+        body.dates(tasks, Task::getPlanEndDate);
+        body.ints(tasks, Task::getPriority);
+        body.strings(tasks, Task::getRouteId);
+        body.strings(tasks, Task::getLockedRemark);
+        body.dateTimes(tasks, Task::getCreateDate);
+
+        body.writeInt(procedures.size());
+        body.strings(procedures, Procedure::getId);
+        body.ints(procedures, p -> indexOf(orderIndex, p.getOrder() == null ? null : p.getOrder().getOrderNo()));
+        body.ints(procedures, p -> indexOf(taskIndex, p.getTask() == null ? null : p.getTask().getTaskNo()));
+        body.ints(procedures, p -> indexOf(workCenterIndex, p.getWorkCenter() == null ? null : p.getWorkCenter().getId()));
+        body.strings(procedures, Procedure::getProcedureName);
+        body.nullableInts(procedures, Procedure::getProcedureNo);
+        body.strings(procedures, Procedure::getProcedureType);
+        body.ints(procedures, Procedure::getMachineMinutes);
+        body.ints(procedures, Procedure::getHumanMinutes);
+        body.booleans(procedures, Procedure::isRework);
+        body.dateTimes(procedures, Procedure::getStartTime);
+        body.dateTimes(procedures, Procedure::getEndTime);
+        body.dates(procedures, Procedure::getPlanStartDate);
+        body.dates(procedures, Procedure::getPlanEndDate);
+        body.strings(procedures, Procedure::getStatus);
+        body.booleans(procedures, Procedure::isParallel);
+        body.ints(procedures, Procedure::getIndex);
+        body.nullableInts(procedures, Procedure::getLevel);
+        body.dateTimes(procedures, Procedure::getCreateDate);
+        // 变长列：先写每行的个数(null为-1)，再写展开后的值
+        body.ints(procedures, p -> p.getNextProcedureNo() == null ? -1 : p.getNextProcedureNo().size());
+        for (Procedure procedure : procedures) {
+            if (procedure.getNextProcedureNo() != null) {
+                for (Integer number : procedure.getNextProcedureNo()) {
+                    body.writeInt(number == null ? NULL_INT : number);
+                }
+            }
+        }
+        body.ints(procedures, p -> p.getNextProcedure() == null ? -1 : p.getNextProcedure().size());
+        for (Procedure procedure : procedures) {
+            if (procedure.getNextProcedure() != null) {
+                for (Procedure next : procedure.getNextProcedure()) {
+                    body.writeInt(procedureIndex.get(next.getId()));
+                }
+            }
+        }
+
+        body.writeInt(maintenances.size());
+        body.strings(maintenances, WorkCenterMaintenance::getId);
+        body.ints(maintenances, m -> indexOf(workCenterIndex, m.getWorkCenter() == null ? null : m.getWorkCenter().getId()));
+        body.ints(maintenances, WorkCenterMaintenance::getYear);
+        body.dates(maintenances, WorkCenterMaintenance::getDate);
+        body.ints(maintenances, WorkCenterMaintenance::getCapacity);
+        body.strings(maintenances, WorkCenterMaintenance::getStatus);
+        body.strings(maintenances, WorkCenterMaintenance::getDescription);
+        body.times(maintenances, WorkCenterMaintenance::getStartTime);
+        body.times(maintenances, WorkCenterMaintenance::getEndTime);
+        body.ints(maintenances, WorkCenterMaintenance::getUsageTime);
+
+        body.writeInt(timeslots.size());
+        body.strings(timeslots, Timeslot::getId);
+        body.longs(timeslots, Timeslot::getProblemId);
+        body.ints(timeslots, t -> indexOf(procedureIndex, t.getProcedure() == null ? null : t.getProcedure().getId()));
+        body.ints(timeslots, Timeslot::getDuration);
+        body.nullableInts(timeslots, Timeslot::getPriority);
+        body.dateTimes(timeslots, Timeslot::getStartTime);
+        // 日历存id，已保存的日历可能不在问题中
+        body.strings(timeslots, t -> t.getMaintenance() == null ? null : t.getMaintenance().getId());
+        body.booleans(timeslots, Timeslot::isParallel);
+        body.booleans(timeslots, Timeslot::isManual);
+        body.ints(timeslots, Timeslot::getIndex);
+        body.ints(timeslots, Timeslot::getTotal);
+        body.ints(timeslots, Timeslot::getProcedureIndex);
+        body.booleans(timeslots, t -> t.getPersisted() != null);
+        body.longs(timeslots, t -> t.getPersisted() == null ? null : t.getPersisted().getProblemId());
+        body.strings(timeslots, t -> t.getPersisted() == null ? null : t.getPersisted().getMaintenanceId());
+        body.dateTimes(timeslots, t -> t.getPersisted() == null ? null : t.getPersisted().getStartTime());
+        body.booleans(timeslots, t -> t.getPersisted() != null && t.getPersisted().isManual());
+
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        header.writeLong(problem.getProblemId() == null ? NULL_LONG : problem.getProblemId());
+        header.writeLong(problem.getPlanningEpoch() == null ? NULL_LONG : problem.getPlanningEpoch().getStart().toEpochSecond(ZoneOffset.UTC));
+        header.writeInt(body.dictionary.size());
+        for (String value : body.dictionary) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            header.writeInt(bytes.length);
+            header.write(bytes);
+        }
+        header.flush();
+        body.bytes.writeTo(out);
+    }
+
+    /**
+     * 解码问题
+     *
+     * @param buffer 快照内容，从当前位置开始读取
+     * @return 问题，排程基准时间为保存时的值
+     * @throws IllegalArgumentException 不是快照文件或版本不支持时抛出
+     */
+    public static FactorySchedulingSolution read(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("不是问题快照文件");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("不支持的问题快照版本: " + version);
+        }
+        long problemId = buffer.getLong();
+        long epochSeconds = buffer.getLong();
+        ColumnReader in = new ColumnReader(buffer);
+
+        int n = buffer.getInt();
+        String[] ids = in.strings(n);
+        String[] codes = in.strings(n);
+        String[] names = in.strings(n);
+        String[] statuses = in.strings(n);
+        List<WorkCenter> workCenters = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            WorkCenter workCenter = new WorkCenter();
+            workCenter.setId(ids[i]);
+            workCenter.setWorkCenterCode(codes[i]);
+            workCenter.setName(names[i]);
+            workCenter.setStatus(statuses[i]);
+            workCenters.add(workCenter);
+        }
+
+        n = buffer.getInt();
+        String[] orderNos = in.strings(n);
+        String[] productCodes = in.strings(n);
+        String[] productNames = in.strings(n);
+        String[] erpStatuses = in.strings(n);
+        String[] orderStatuses = in.strings(n);
+        LocalDate[] planStarts = in.dates(n);
+        LocalDate[] planEnds = in.dates(n);
+        LocalDateTime[] factStarts = in.dateTimes(n);
+        LocalDateTime[] factEnds = in.dateTimes(n);
+        LocalDateTime[] createDates = in.dateTimes(n);
+        Integer[] quantities = in.nullableInts(n);
+        String[] contracts = in.strings(n);
+        List<Order> orders = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Order order = new Order();
+            order.setOrderNo(orderNos[i]);
+            order.setProductCode(productCodes[i]);
+            order.setProductName(productNames[i]);
+            order.setErpStatus(erpStatuses[i]);
+            order.setOrderStatus(orderStatuses[i]);
+            order.setPlanStartDate(planStarts[i]);
+            order.setPlanEndDate(planEnds[i]);
+            order.setFactStartDate(factStarts[i]);
+            order.setFactEndDate(factEnds[i]);
+            order.setCreateDate(createDates[i]);
+            order.setPlanQuantity(quantities[i]);
+            order.setContractNum(contracts[i]);
+            orders.add(order);
+        }
+
+        n = buffer.getInt();
+        String[] taskNos = in.strings(n);
+        String[] taskOrderNos = in.strings(n);
+        String[] taskStatuses = in.strings(n);
+        Integer[] taskQuantities = in.nullableInts(n);
+        LocalDateTime[] taskFactStarts = in.dateTimes(n);
+        LocalDateTime[] taskFactEnds = in.dateTimes(n);
+        LocalDate[] taskPlanStarts = in.dates(n);
+        LocalDate[] taskPlanEnds = in.dates(n);
+        int[] priorities = in.ints(n);
+        String[] routeIds = in.strings(n);
+        String[] lockedRemarks = in.strings(n);
+        LocalDateTime[] taskCreateDates = in.dateTimes(n);
+        List<Task> tasks = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Task task = new Task();
+            task.setTaskNo(taskNos[i]);
+            task.setOrderNo(taskOrderNos[i]);
+            task.setStatus(taskStatuses[i]);
+            task.setPlanQuantity(taskQuantities[i]);
+            task.setFactStartDate(taskFactStarts[i]);
+            task.setFactEndDate(taskFactEnds[i]);
+            task.setPlanStartDate(taskPlanStarts[i]);
+            task.setPlanEndDate(taskPlanEnds[i]);
+            task.setPriority(priorities[i]);
+            task.setRouteId(routeIds[i]);
+            task.setLockedRemark(lockedRemarks[i]);
+            task.setCreateDate(taskCreateDates[i]);
+            tasks.add(task);
+        }
+
+        n = buffer.getInt();
+        String[] procedureIds = in.strings(n);
+        int[] orderRefs = in.ints(n);
+        int[] taskRefs = in.ints(n);
+        int[] workCenterRefs = in.ints(n);
+        String[] procedureNames = in.strings(n);
+        Integer[] procedureNos = in.nullableInts(n);
+        String[] procedureTypes = in.strings(n);
+        int[] machineMinutes = in.ints(n);
+        int[] humanMinutes = in.ints(n);
+        boolean[] reworks = in.booleans(n);
+        LocalDateTime[] startTimes = in.dateTimes(n);
+        LocalDateTime[] endTimes = in.dateTimes(n);
+        LocalDate[] procedurePlanStarts = in.dates(n);
+        LocalDate[] procedurePlanEnds = in.dates(n);
+        String[] procedureStatuses = in.strings(n);
+        boolean[] parallels = in.booleans(n);
+        int[] indexes = in.ints(n);
+        Integer[] levels = in.nullableInts(n);
+        LocalDateTime[] procedureCreateDates = in.dateTimes(n);
+        List<Procedure> procedures = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Procedure procedure = new Procedure();
+            procedure.setId(procedureIds[i]);
+            procedure.setOrder(orderRefs[i] < 0 ? null : orders.get(orderRefs[i]));
+            procedure.setTask(taskRefs[i] < 0 ? null : tasks.get(taskRefs[i]));
+            procedure.setWorkCenter(workCenterRefs[i] < 0 ? null : workCenters.get(workCenterRefs[i]));
+            procedure.setProcedureName(procedureNames[i]);
+            procedure.setProcedureNo(procedureNos[i]);
+            procedure.setProcedureType(procedureTypes[i]);
+            procedure.setMachineMinutes(machineMinutes[i]);
+            procedure.setHumanMinutes(humanMinutes[i]);
+            procedure.setRework(reworks[i]);
+            procedure.setStartTime(startTimes[i]);
+            procedure.setEndTime(endTimes[i]);
+            procedure.setPlanStartDate(procedurePlanStarts[i]);
+            procedure.setPlanEndDate(procedurePlanEnds[i]);
+            procedure.setStatus(procedureStatuses[i]);
+            procedure.setParallel(parallels[i]);
+            procedure.setIndex(indexes[i]);
+            procedure.setLevel(levels[i]);
+            procedure.setCreateDate(procedureCreateDates[i]);
+            procedures.add(procedure);
+        }
+        int[] nextNoCounts = in.ints(n);
+        for (int i = 0; i < n; i++) {
+            if (nextNoCounts[i] >= 0) {
+                List<Integer> numbers = new ArrayList<>(nextNoCounts[i]);
+                for (int j = 0; j < nextNoCounts[i]; j++) {
+                    int number = buffer.getInt();
+                    numbers.add(number == NULL_INT ? null : number);
+                }
+                procedures.get(i).setNextProcedureNo(numbers);
+            }
+        }
+        int[] nextCounts = in.ints(n);
+        for (int i = 0; i < n; i++) {
+            if (nextCounts[i] >= 0) {
+                List<Procedure> next = new ArrayList<>(nextCounts[i]);
+                for (int j = 0; j < nextCounts[i]; j++) {
+                    next.add(procedures.get(buffer.getInt()));
+                }
+                procedures.get(i).setNextProcedure(next);
+            }
+        }
+
+        n = buffer.getInt();
+        String[] maintenanceIds = in.strings(n);
+        int[] maintenanceWorkCenters = in.ints(n);
+        int[] years = in.ints(n);
+        LocalDate[] dates = in.dates(n);
+        int[] capacities = in.ints(n);
+        String[] maintenanceStatuses = in.strings(n);
+        String[] descriptions = in.strings(n);
+        LocalTime[] maintenanceStarts = in.times(n);
+        LocalTime[] maintenanceEnds = in.times(n);
+        int[] usageTimes = in.ints(n);
+        List<WorkCenterMaintenance> maintenances = new ArrayList<>(n);
+        Map<String, WorkCenterMaintenance> maintenanceById = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            WorkCenterMaintenance maintenance = new WorkCenterMaintenance();
+            maintenance.setId(maintenanceIds[i]);
+            maintenance.setWorkCenter(maintenanceWorkCenters[i] < 0 ? null : workCenters.get(maintenanceWorkCenters[i]));
+            maintenance.setYear(years[i]);
+            maintenance.setDate(dates[i]);
+            maintenance.setCapacity(capacities[i]);
+            maintenance.setStatus(maintenanceStatuses[i]);
+            maintenance.setDescription(descriptions[i]);
+            maintenance.setStartTime(maintenanceStarts[i]);
+            maintenance.setEndTime(maintenanceEnds[i]);
+            maintenance.setUsageTime(usageTimes[i]);
+            maintenances.add(maintenance);
+            maintenanceById.putIfAbsent(maintenance.getId(), maintenance);
+        }
+
+        n = buffer.getInt();
+        String[] timeslotIds = in.strings(n);
+        Long[] problemIds = in.longs(n);
+        int[] procedureRefs = in.ints(n);
+        int[] durations = in.ints(n);
+        Integer[] timeslotPriorities = in.nullableInts(n);
+        LocalDateTime[] timeslotStarts = in.dateTimes(n);
+        String[] timeslotMaintenances = in.strings(n);
+        boolean[] timeslotParallels = in.booleans(n);
+        boolean[] manuals = in.booleans(n);
+        int[] sliceIndexes = in.ints(n);
+        int[] totals = in.ints(n);
+        int[] procedureIndexes = in.ints(n);
+        boolean[] hasPersisted = in.booleans(n);
+        Long[] persistedProblemIds = in.longs(n);
+        String[] persistedMaintenances = in.strings(n);
+        LocalDateTime[] persistedStarts = in.dateTimes(n);
+        boolean[] persistedManuals = in.booleans(n);
+        List<Timeslot> timeslots = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Timeslot timeslot = new Timeslot();
+            timeslot.setId(timeslotIds[i]);
+            timeslot.setProblemId(problemIds[i]);
+            timeslot.setProcedure(procedureRefs[i] < 0 ? null : procedures.get(procedureRefs[i]));
+            timeslot.setDuration(durations[i]);
+            timeslot.setPriority(timeslotPriorities[i]);
+            timeslot.setStartTime(timeslotStarts[i]);
+            if (timeslotMaintenances[i] != null) {
+                // 不在问题中的日历只保留id，与从数据库加载时一样由 InitialAssignmentBuilder 清空
+                timeslot.setMaintenance(maintenanceById.computeIfAbsent(timeslotMaintenances[i], id -> {
+                    WorkCenterMaintenance detached = new WorkCenterMaintenance();
+                    detached.setId(id);
+                    return detached;
+                }));
+            }
+            timeslot.setParallel(timeslotParallels[i]);
+            timeslot.setManual(manuals[i]);
+            timeslot.setIndex(sliceIndexes[i]);
+            timeslot.setTotal(totals[i]);
+            timeslot.setProcedureIndex(procedureIndexes[i]);
+            if (hasPersisted[i]) {
+                timeslot.setPersisted(new PersistedAssignment(persistedProblemIds[i], persistedMaintenances[i],
+                        persistedStarts[i], persistedManuals[i]));
+            }
+            timeslots.add(timeslot);
+        }
+
+        FactorySchedulingSolution problem = new FactorySchedulingSolution(timeslots, maintenances);
+        problem.setProblemId(problemId == NULL_LONG ? null : problemId);
+        if (epochSeconds != NULL_LONG) {
+            problem.setPlanningEpoch(new PlanningEpoch(LocalDateTime.ofEpochSecond(epochSeconds, 0, ZoneOffset.UTC)));
+        }
+        return problem;
+    }
+
+    private static <T> void collect(T value, Function<T, String> id, Map<String, Integer> index, List<T> list) {
+        if (value != null && !index.containsKey(id.apply(value))) {
+            index.put(id.apply(value), list.size());
+            list.add(value);
+        }
+    }
+
+    private static int indexOf(Map<String, Integer> index, String id) {
+        return id == null ? -1 : index.getOrDefault(id, -1);
+    }
+
+    /**
+     * 按列写出，字符串收集到字典中
+     */
+    private static final class ColumnWriter {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+
+        void writeInt(int value) throws IOException {
+            out.writeInt(value);
+        }
+
+        <T> void ints(List<T> rows, ToIntFunction<T> column) throws IOException {
+            for (T row : rows) {
+                out.writeInt(column.applyAsInt(row));
+            }
+        }
+
+        <T> void nullableInts(List<T> rows, Function<T, Integer> column) throws IOException {
+            for (T row : rows) {
+                Integer value = column.apply(row);
+                out.writeInt(value == null ? NULL_INT : value);
+            }
+        }
+
+        <T> void longs(List<T> rows, Function<T, Long> column) throws IOException {
+            for (T row : rows) {
+                Long value = column.apply(row);
+                out.writeLong(value == null ? NULL_LONG : value);
+            }
+        }
+
+        <T> void booleans(List<T> rows, Predicate<T> column) throws IOException {
+            for (T row : rows) {
+                out.writeByte(column.test(row) ? 1 : 0);
+            }
+        }
+
+        <T> void strings(List<T> rows, Function<T, String> column) throws IOException {
+            for (T row : rows) {
+                String value = column.apply(row);
+                out.writeInt(value == null ? -1 : dictionaryIndex.computeIfAbsent(value, v -> {
+                    dictionary.add(v);
+                    return dictionary.size() - 1;
+                }));
+            }
+        }
+
+        <T> void dates(List<T> rows, Function<T, LocalDate> column) throws IOException {
+            for (T row : rows) {
+                LocalDate value = column.apply(row);
+                out.writeInt(value == null ? NULL_INT : Math.toIntExact(value.toEpochDay()));
+            }
+        }
+
+        <T> void dateTimes(List<T> rows, Function<T, LocalDateTime> column) throws IOException {
+            for (T row : rows) {
+                LocalDateTime value = column.apply(row);
+                out.writeLong(value == null ? NULL_LONG : value.toEpochSecond(ZoneOffset.UTC));
+            }
+        }
+
+        <T> void times(List<T> rows, Function<T, LocalTime> column) throws IOException {
+            for (T row : rows) {
+                LocalTime value = column.apply(row);
+                out.writeInt(value == null ? NULL_INT : value.toSecondOfDay());
+            }
+        }
+    }
+
+    /**
+     * 按列读取，构造时读入字符串字典
+     */
+    private static final class ColumnReader {
+        private final ByteBuffer buffer;
+        private final String[] dictionary;
+
+        ColumnReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.dictionary = new String[buffer.getInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        int[] ints(int n) {
+            int[] values = new int[n];
+            buffer.asIntBuffer().get(values);
+            buffer.position(buffer.position() + n * Integer.BYTES);
+            return values;
+        }
+
+        Integer[] nullableInts(int n) {
+            Integer[] values = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                int value = buffer.getInt();
+                values[i] = value == NULL_INT ? null : value;
+            }
+            return values;
+        }
+
+        Long[] longs(int n) {
+            Long[] values = new Long[n];
+            for (int i = 0; i < n; i++) {
+                long value = buffer.getLong();
+                values[i] = value == NULL_LONG ? null : value;
+            }
+            return values;
+        }
+
+        boolean[] booleans(int n) {
+            boolean[] values = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                values[i] = buffer.get() != 0;
+            }
+            return values;
+        }
+
+        String[] strings(int n) {
+            String[] values = new String[n];
+            for (int i = 0; i < n; i++) {
+                int index = buffer.getInt();
+                values[i] = index < 0 ? null : dictionary[index];
+            }
+            return values;
+        }
+
+        LocalDate[] dates(int n) {
+            LocalDate[] values = new LocalDate[n];
+            for (int i = 0; i < n; i++) {
+                int value = buffer.getInt();
+                values[i] = value == NULL_INT ? null : LocalDate.ofEpochDay(value);
+            }
+            return values;
+        }
+
+        LocalDateTime[] dateTimes(int n) {
+            LocalDateTime[] values = new LocalDateTime[n];
+            for (int i = 0; i < n; i++) {
+                long value = buffer.getLong();
+                values[i] = value == NULL_LONG ? null : LocalDateTime.ofEpochSecond(value, 0, ZoneOffset.UTC);
+            }
+            return values;
+        }
+
+        LocalTime[] times(int n) {
+            LocalTime[] values = new LocalTime[n];
+            for (int i = 0; i < n; i++) {
+                int value = buffer.getInt();
+                values[i] = value == NULL_INT ? null : LocalTime.ofSecondOfDay(value);
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * 工序前后继关系 - 求解器内部使用的问题事实
+ * <p>在加载问题时根据 {@link com.upec.factoryscheduling.aps.entity.Procedure#getNextProcedure()} 一次性构建，
+ * 使用整数序号表示前序工序和后序工序，约束中通过 Joiners.equal 建立索引连接，
+ * 避免在每次移动时遍历懒加载的后继工序列表。</p>
+ */
+@Getter
+public class ProcedureLink implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 前序工序序号，对应 Timeslot.procedureSeq
+     */
+    private final int fromSeq;
+
+    /**
+     * 后序工序序号，对应 Timeslot.procedureSeq
+     */
+    private final int toSeq;
+
+    public ProcedureLink(int fromSeq, int toSeq) {
+        this.fromSeq = fromSeq;
+        this.toSeq = toSeq;
+    }
+
+    @Override
+    public String toString() {
+        return fromSeq + "->" + toSeq;
+    }
+}
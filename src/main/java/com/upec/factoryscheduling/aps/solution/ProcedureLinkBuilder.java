@@ -0,0 +1,78 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.Procedure;
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import org.springframework.util.CollectionUtils;
+
+import java.util.*;
+
+/**
+ * 工序后继索引构建器
+ * <p>为问题中的每个工序分配连续的整数序号并写入 {@link Timeslot#setProcedureSeq(int)}，
+ * 同时根据工序的后继关系生成 {@link ProcedureLink} 列表。只需在加载问题时执行一次。</p>
+ */
+public final class ProcedureLinkBuilder {
+
+    private ProcedureLinkBuilder() {
+    }
+
+    /**
+     * 构建工序序号和前后继关系
+     *
+     * @param timeslots 问题中的全部时间槽
+     * @return 前后继关系列表（仅包含两端工序都在本次问题中的关系）
+     */
+    public static List<ProcedureLink> build(List<Timeslot> timeslots) {
+        Map<String, Integer> seqById = new HashMap<>();
+        Map<String, Procedure> procedureById = new LinkedHashMap<>();
+        for (Timeslot timeslot : timeslots) {
+            Procedure procedure = timeslot.getProcedure();
+            if (procedure == null) {
+                timeslot.setProcedureSeq(-1);
+                continue;
+            }
+            Integer seq = seqById.computeIfAbsent(procedure.getId(), id -> seqById.size());
+            procedureById.putIfAbsent(procedure.getId(), procedure);
+            timeslot.setProcedureSeq(seq);
+        }
+        // 按 任务号_工序号 建立查找表，用于只有 nextProcedureNo 而没有 nextProcedure 的工序
+        Map<String, Procedure> procedureByTaskAndNo = new HashMap<>();
+        for (Procedure procedure : procedureById.values()) {
+            if (procedure.getTask() != null && procedure.getProcedureNo() != null) {
+                procedureByTaskAndNo.putIfAbsent(procedure.getTask().getTaskNo() + "_" + procedure.getProcedureNo(), procedure);
+            }
+        }
+        List<ProcedureLink> links = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (Procedure procedure : procedureById.values()) {
+            int fromSeq = seqById.get(procedure.getId());
+            for (Procedure next : resolveNext(procedure, procedureByTaskAndNo)) {
+                Integer toSeq = seqById.get(next.getId());
+                if (toSeq == null || toSeq == fromSeq) {
+                    continue;
+                }
+                if (seen.add(((long) fromSeq << 32) | toSeq)) {
+                    links.add(new ProcedureLink(fromSeq, toSeq));
+                }
+            }
+        }
+        return links;
+    }
+
+    private static List<Procedure> resolveNext(Procedure procedure, Map<String, Procedure> procedureByTaskAndNo) {
+        if (!CollectionUtils.isEmpty(procedure.getNextProcedure())) {
+            return procedure.getNextProcedure();
+        }
+        if (CollectionUtils.isEmpty(procedure.getNextProcedureNo()) || procedure.getTask() == null) {
+            return Collections.emptyList();
+        }
+        List<Procedure> next = new ArrayList<>();
+        for (Integer procedureNo : procedure.getNextProcedureNo()) {
+            Procedure p = procedureByTaskAndNo.get(procedure.getTask().getTaskNo() + "_" + procedureNo);
+            if (p != null) {
+                next.add(p);
+            }
+        }
+        return next;
+    }
+}
@@ -0,0 +1,67 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+import lombok.extern.slf4j.Slf4j;
+import org.optaplanner.core.api.solver.change.ProblemChange;
+import org.optaplanner.core.api.solver.change.ProblemChangeDirector;
+
+import java.util.*;
+
+/**
+ * 移除时间槽 - 求解中的问题变更
+ * <p>用于撤销任务等场景，不在问题中的时间槽直接忽略。全部固定的任务的时间槽从固定列表中移除，
+ * 并从所在日历的固定负载中扣除其时长，由 {@link MaintenanceReplacer} 通知该日历上的时间槽重新排开。</p>
+ */
+@Slf4j
+public class RemoveTimeslotsProblemChange implements ProblemChange<FactorySchedulingSolution> {
+
+    private final List<String> timeslotIds;
+
+    public RemoveTimeslotsProblemChange(Collection<String> timeslotIds) {
+        this.timeslotIds = new ArrayList<>(timeslotIds);
+    }
+
+    @Override
+    public void doChange(FactorySchedulingSolution workingSolution, ProblemChangeDirector problemChangeDirector) {
+        int removed = removeFixed(workingSolution, problemChangeDirector);
+        for (String timeslotId : timeslotIds) {
+            Timeslot key = new Timeslot();
+            key.setId(timeslotId);
+            Timeslot timeslot = problemChangeDirector.lookUpWorkingObject(key).orElse(null);
+            if (timeslot != null) {
+                problemChangeDirector.removeEntity(timeslot, t -> workingSolution.getTimeslots().remove(t));
+                removed++;
+            }
+        }
+        log.info("求解中移除时间槽{}个", removed);
+    }
+
+    /**
+     * 从全部固定的任务中移除时间槽，退回其占用的产能
+     * <p>固定时间槽列表和日历在克隆之间共享，替换为新列表和日历副本而不是原地修改</p>
+     */
+    private int removeFixed(FactorySchedulingSolution workingSolution, ProblemChangeDirector problemChangeDirector) {
+        Set<String> ids = new HashSet<>(timeslotIds);
+        List<Timeslot> fixed = new ArrayList<>(workingSolution.getFixedTimeslots().size());
+        IdentityHashMap<WorkCenterMaintenance, WorkCenterMaintenance> replacements = new IdentityHashMap<>();
+        for (Timeslot timeslot : workingSolution.getFixedTimeslots()) {
+            if (!ids.contains(timeslot.getId())) {
+                fixed.add(timeslot);
+            } else if (!timeslot.isOutsourcing() && timeslot.getMaintenance() != null) {
+                // 固定时间槽可能仍引用已被替换的日历，按id取工作解中的实例
+                WorkCenterMaintenance maintenance = problemChangeDirector.lookUpWorkingObject(timeslot.getMaintenance()).orElse(null);
+                if (maintenance != null) {
+                    WorkCenterMaintenance copy = replacements.computeIfAbsent(maintenance, MaintenanceReplacer::copyOf);
+                    copy.setFixedLoadMinutes(copy.getFixedLoadMinutes() - timeslot.getDuration());
+                }
+            }
+        }
+        int removed = workingSolution.getFixedTimeslots().size() - fixed.size();
+        if (removed > 0) {
+            workingSolution.setFixedTimeslots(fixed);
+            MaintenanceReplacer.replace(workingSolution, problemChangeDirector, replacements);
+        }
+        return removed;
+    }
+}
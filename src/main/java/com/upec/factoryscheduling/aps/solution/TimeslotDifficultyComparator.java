@@ -0,0 +1,34 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.Procedure;
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/**
+ * 时间槽难度比较器（按难度升序）
+ * <p>供 FIRST_FIT_DECREASING 等构造启发式使用，越难安排的时间槽越先分配：
+ * 工序计划完成日期越早越难，优先级数值越小越难，时长越长越难。</p>
+ */
+public class TimeslotDifficultyComparator implements Comparator<Timeslot>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Comparator<Timeslot> COMPARATOR = Comparator
+            .comparing(TimeslotDifficultyComparator::planEndDate, Comparator.nullsFirst(Comparator.<LocalDate>reverseOrder()))
+            .thenComparing(Timeslot::getPriority, Comparator.nullsFirst(Comparator.<Integer>reverseOrder()))
+            .thenComparingInt(Timeslot::getDuration)
+            .thenComparing(Timeslot::getId, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+
+    @Override
+    public int compare(Timeslot a, Timeslot b) {
+        return COMPARATOR.compare(a, b);
+    }
+
+    private static LocalDate planEndDate(Timeslot timeslot) {
+        Procedure procedure = timeslot.getProcedure();
+        return procedure == null ? null : procedure.getPlanEndDate();
+    }
+}
@@ -1,6 +1,5 @@
 package com.upec.factoryscheduling.aps.solution;
 
-import com.upec.factoryscheduling.aps.entity.Procedure;
 import com.upec.factoryscheduling.aps.entity.Timeslot;
 import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
 import lombok.extern.slf4j.Slf4j;
@@ -9,76 +8,221 @@ import org.optaplanner.core.api.score.director.ScoreDirector;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.concurrent.locks.StampedLock;
+import java.util.*;
 
+/**
+ * 时间槽开始时间监听器
+ * <p>同一工作中心日历（机台-天）内的时间槽按固定顺序依次排开：
+ * 开始时间 = 日历开始时间 + 日历已用时间 + 全部固定的任务占用的时间（见 {@link FixedTaskBuilder}）+ 排在前面的时间槽时长之和，
+ * 同时维护日历内的开始偏移 {@link Timeslot#getOffsetMinutes()} 和距排程基准时间的分钟数 {@link Timeslot#getStartMinute()}。</p>
+ * <p>序列中最后一个时间槽的 {@link Timeslot#getCalendarLoadMinutes()} 为该日历的总负载（已用时间+全部时长），
+ * 其余时间槽为null。容量类约束只需读取该值，不必再按日历分组求和。</p>
+ * <p>日历内顺序为：优先级、工序索引、分片索引、id。每个日历的时间槽序列保存在监听器中，
+ * 移动时只重新计算离开位置和插入位置之后的时间槽。OptaPlanner为每个ScoreDirector创建独立的监听器实例，
+ * 因此多线程求解时各移动线程互不干扰。</p>
+ * <p>外协工序（工作中心PM10W200，见 {@link Timeslot#isOutsourcing()}）不占用产能，不参与排队，开始时间为日历开始时间。</p>
+ */
 @Slf4j
 public class TimeslotVariableListener implements VariableListener<FactorySchedulingSolution, Timeslot>, Serializable {
 
     private static final long serialVersionUID = 1L;
 
-    private static final String WORK_CENTER_CODE = "PM10W200";
+    public static final String START_TIME = "startTime";
+    public static final String OFFSET_MINUTES = "offsetMinutes";
+    public static final String START_MINUTE = "startMinute";
+    public static final String CALENDAR_LOAD_MINUTES = "calendarLoadMinutes";
 
     /**
-     * 全局锁 - 用于保护关键操作，使用StampedLock提高读写性能
+     * 日历内时间槽的排列顺序
      */
-    private final StampedLock globalLock = new StampedLock();
+    public static final Comparator<Timeslot> SEQUENCE_COMPARATOR = Comparator
+            .comparing(Timeslot::getPriority, Comparator.nullsLast(Comparator.<Integer>naturalOrder()))
+            .thenComparingInt(Timeslot::getProcedureIndex)
+            .thenComparingInt(Timeslot::getIndex)
+            .thenComparing(Timeslot::getId, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+
+    /**
+     * 日历 -> 按顺序排列的时间槽
+     */
+    private final Map<WorkCenterMaintenance, List<Timeslot>> sequences = new HashMap<>();
+
+    @Override
+    public void resetWorkingSolution(ScoreDirector<FactorySchedulingSolution> scoreDirector) {
+        // 设置工作解时约束会话尚未建立，直接重建序列并写入影子变量，无需通知ScoreDirector
+        sequences.clear();
+        for (Timeslot timeslot : scoreDirector.getWorkingSolution().getTimeslots()) {
+            WorkCenterMaintenance maintenance = timeslot.getMaintenance();
+            timeslot.setCalendarLoadMinutes(null);
+            if (maintenance == null) {
+                timeslot.setStartTime(null);
+                timeslot.setOffsetMinutes(null);
+                timeslot.setStartMinute(null);
+            } else if (timeslot.isOutsourcing()) {
+                timeslot.setStartTime(startOf(maintenance, 0));
+                timeslot.setOffsetMinutes(0);
+                timeslot.setStartMinute(maintenance.getStartMinute());
+            } else {
+                sequences.computeIfAbsent(maintenance, m -> new ArrayList<>()).add(timeslot);
+            }
+        }
+        for (Map.Entry<WorkCenterMaintenance, List<Timeslot>> entry : sequences.entrySet()) {
+            List<Timeslot> sequence = entry.getValue();
+            sequence.sort(SEQUENCE_COMPARATOR);
+            int offset = baseOffsetOf(entry.getKey());
+            for (Timeslot timeslot : sequence) {
+                timeslot.setStartTime(startOf(entry.getKey(), offset));
+                timeslot.setOffsetMinutes(offset);
+                timeslot.setStartMinute(entry.getKey().getStartMinute() + offset);
+                offset += timeslot.getDuration();
+            }
+            sequence.get(sequence.size() - 1).setCalendarLoadMinutes(offset);
+        }
+    }
 
     @Override
     public void beforeVariableChanged(ScoreDirector<FactorySchedulingSolution> scoreDirector, Timeslot timeslot) {
-        // 变量变更前不需要特殊处理
+        remove(scoreDirector, timeslot);
     }
 
     @Override
     public void afterVariableChanged(ScoreDirector<FactorySchedulingSolution> scoreDirector, Timeslot timeslot) {
-        // 当maintenance变量变更时，更新时间槽的开始和结束时间
-        if (timeslot.getMaintenance() != null) {
-            WorkCenterMaintenance maintenance = timeslot.getMaintenance();
-            // 使用ScoreDirector通知变量变更
-            scoreDirector.beforeVariableChanged(timeslot, "startTime");
-            // 更新开始时间
-            LocalDateTime startTime = maintenance.getDate().atTime(maintenance.getStartTime());
-            timeslot.setStartTime(startTime);
-            // 通知ScoreDirector开始时间已变更
-            scoreDirector.afterVariableChanged(timeslot, "startTime");
-        }
+        insert(scoreDirector, timeslot);
     }
 
     @Override
     public void beforeEntityAdded(ScoreDirector<FactorySchedulingSolution> scoreDirector, Timeslot timeslot) {
         // 实体添加前不需要特殊处理
-        if (timeslot.getMaintenance() != null) {
-            log.info("beforeEntityAdded timeslot :{}", timeslot.getMaintenance().getId());
-        }
     }
 
     @Override
     public void afterEntityAdded(ScoreDirector<FactorySchedulingSolution> scoreDirector, Timeslot timeslot) {
-        // 当实体被添加时，如果已分配维护计划，则更新时间
-        if (timeslot.getMaintenance() != null) {
-            log.info("afterEntityAdded timeslot :{}", timeslot.getMaintenance().getId());
-        }
+        insert(scoreDirector, timeslot);
     }
 
     @Override
     public void beforeEntityRemoved(ScoreDirector<FactorySchedulingSolution> scoreDirector, Timeslot timeslot) {
-        // 实体移除前不需要特殊处理
-        if (timeslot.getMaintenance() != null) {
-            log.info("beforeEntityRemoved timeslot :{}", timeslot.getMaintenance().getId());
-        }
+        remove(scoreDirector, timeslot);
     }
 
     @Override
     public void afterEntityRemoved(ScoreDirector<FactorySchedulingSolution> scoreDirector, Timeslot timeslot) {
-        // 实体移除后，可能需要重新计算相关时间槽的时间
-        if (timeslot.getMaintenance() != null) {
-            log.info("afterEntityRemoved timeslot :{}", timeslot.getMaintenance().getId());
+        // 实体移除后不需要特殊处理
+    }
+
+    /**
+     * 从原日历序列中移除时间槽，并前移其后的时间槽
+     */
+    private void remove(ScoreDirector<FactorySchedulingSolution> scoreDirector, Timeslot timeslot) {
+        WorkCenterMaintenance maintenance = timeslot.getMaintenance();
+        if (maintenance == null || timeslot.isOutsourcing()) {
+            return;
+        }
+        List<Timeslot> sequence = sequences.get(maintenance);
+        int index = sequence == null ? -1 : Collections.binarySearch(sequence, timeslot, SEQUENCE_COMPARATOR);
+        if (index < 0) {
+            log.warn("时间槽{}不在日历{}的序列中", timeslot.getId(), maintenance.getId());
+            return;
+        }
+        sequence.remove(index);
+        updateFrom(scoreDirector, maintenance, sequence, index);
+        updateLoad(scoreDirector, timeslot, null);
+        updateLastLoad(scoreDirector, sequence);
+    }
+
+    /**
+     * 将时间槽插入新日历序列，并后移其后的时间槽
+     */
+    private void insert(ScoreDirector<FactorySchedulingSolution> scoreDirector, Timeslot timeslot) {
+        WorkCenterMaintenance maintenance = timeslot.getMaintenance();
+        if (maintenance == null) {
+            update(scoreDirector, timeslot, null, null);
+            return;
         }
+        if (timeslot.isOutsourcing()) {
+            update(scoreDirector, timeslot, maintenance, 0);
+            return;
+        }
+        List<Timeslot> sequence = sequences.computeIfAbsent(maintenance, m -> new ArrayList<>());
+        int index = Collections.binarySearch(sequence, timeslot, SEQUENCE_COMPARATOR);
+        if (index >= 0) {
+            return;
+        }
+        index = -index - 1;
+        sequence.add(index, timeslot);
+        updateFrom(scoreDirector, maintenance, sequence, index);
+        if (index == sequence.size() - 1 && index > 0) {
+            updateLoad(scoreDirector, sequence.get(index - 1), null);
+        }
+        updateLastLoad(scoreDirector, sequence);
+    }
+
+    /**
+     * 重新计算序列中从index开始的时间槽，遇到开始时间未变化的时间槽即停止
+     */
+    private void updateFrom(ScoreDirector<FactorySchedulingSolution> scoreDirector, WorkCenterMaintenance maintenance,
+                            List<Timeslot> sequence, int index) {
+        int offset = index == 0 ? baseOffsetOf(maintenance)
+                : sequence.get(index - 1).getOffsetMinutes() + sequence.get(index - 1).getDuration();
+        for (int i = index; i < sequence.size(); i++) {
+            Timeslot timeslot = sequence.get(i);
+            if (i > index && timeslot.getOffsetMinutes() != null && timeslot.getOffsetMinutes() == offset) {
+                break;
+            }
+            update(scoreDirector, timeslot, maintenance, offset);
+            offset += timeslot.getDuration();
+        }
+    }
+
+    /**
+     * 将时间槽排在日历的offsetMinutes处，maintenance为null时清空开始时间
+     * <p>先比较整数分钟数，未变化时不创建LocalDateTime</p>
+     */
+    private void update(ScoreDirector<FactorySchedulingSolution> scoreDirector, Timeslot timeslot,
+                        WorkCenterMaintenance maintenance, Integer offsetMinutes) {
+        Integer startMinute = maintenance == null ? null : maintenance.getStartMinute() + offsetMinutes;
+        if (Objects.equals(timeslot.getOffsetMinutes(), offsetMinutes) && Objects.equals(timeslot.getStartMinute(), startMinute)
+                && (maintenance == null) == (timeslot.getStartTime() == null)) {
+            return;
+        }
+        scoreDirector.beforeVariableChanged(timeslot, START_TIME);
+        scoreDirector.beforeVariableChanged(timeslot, OFFSET_MINUTES);
+        scoreDirector.beforeVariableChanged(timeslot, START_MINUTE);
+        timeslot.setStartTime(maintenance == null ? null : startOf(maintenance, offsetMinutes));
+        timeslot.setOffsetMinutes(offsetMinutes);
+        timeslot.setStartMinute(startMinute);
+        scoreDirector.afterVariableChanged(timeslot, START_TIME);
+        scoreDirector.afterVariableChanged(timeslot, OFFSET_MINUTES);
+        scoreDirector.afterVariableChanged(timeslot, START_MINUTE);
+    }
+
+    /**
+     * 将日历总负载写入序列中的最后一个时间槽
+     */
+    private void updateLastLoad(ScoreDirector<FactorySchedulingSolution> scoreDirector, List<Timeslot> sequence) {
+        if (sequence.isEmpty()) {
+            return;
+        }
+        Timeslot last = sequence.get(sequence.size() - 1);
+        updateLoad(scoreDirector, last, last.getOffsetMinutes() + last.getDuration());
     }
 
-    private void setOutsourcingTime(Timeslot timeslot) {
-        Procedure procedure = timeslot.getProcedure();
-        List<Procedure> procedures = procedure.getNextProcedure();
+    private void updateLoad(ScoreDirector<FactorySchedulingSolution> scoreDirector, Timeslot timeslot, Integer calendarLoadMinutes) {
+        if (Objects.equals(timeslot.getCalendarLoadMinutes(), calendarLoadMinutes)) {
+            return;
+        }
+        scoreDirector.beforeVariableChanged(timeslot, CALENDAR_LOAD_MINUTES);
+        timeslot.setCalendarLoadMinutes(calendarLoadMinutes);
+        scoreDirector.afterVariableChanged(timeslot, CALENDAR_LOAD_MINUTES);
+    }
+
+    /**
+     * 日历内第一个时间槽的开始偏移：日历已用时间加全部固定的任务占用的时间
+     */
+    private static int baseOffsetOf(WorkCenterMaintenance maintenance) {
+        return maintenance.getUsageTime() + maintenance.getFixedLoadMinutes();
+    }
 
+    private static LocalDateTime startOf(WorkCenterMaintenance maintenance, int offsetMinutes) {
+        return maintenance.getDate().atTime(maintenance.getStartTime()).plusMinutes(offsetMinutes);
     }
 }
@@ -0,0 +1,85 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.Procedure;
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.entity.WorkCenter;
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工作中心索引构建器
+ * <p>为问题中的工作中心分配从0开始的连续整数索引，写入 {@link Timeslot#getWorkCenterIndex()} 和
+ * {@link WorkCenterMaintenance#getWorkCenterIndex()}，同时把工序号和外协标记展开到时间槽上。
+ * 约束和 {@link TimeslotVariableListener} 只读取这些整数字段，求解过程中不再经 Procedure/WorkCenter 实体取值、比较字符串。</p>
+ * <p>这些值在求解过程中不变，只需在加载问题时执行一次；求解中添加时间槽时用 {@link #indexOf(FactorySchedulingSolution)}
+ * 取回已分配的索引，新工作中心的索引接在其后。</p>
+ */
+public final class WorkCenterIndexBuilder {
+
+    /**
+     * 没有工作中心时的索引
+     */
+    public static final int NONE = -1;
+
+    /**
+     * 外协工作中心编码，外协工序不占用产能
+     */
+    public static final String OUTSOURCING_WORK_CENTER_CODE = "PM10W200";
+
+    private WorkCenterIndexBuilder() {
+    }
+
+    public static void build(FactorySchedulingSolution solution) {
+        build(solution.getTimeslots(), solution.getMaintenances(), new HashMap<>());
+    }
+
+    /**
+     * 写入工作中心索引
+     *
+     * @param timeslots          时间槽
+     * @param maintenances       日历
+     * @param indexByWorkCenter  工作中心id -> 索引，已有的索引保持不变，新工作中心追加在后面
+     */
+    public static void build(List<Timeslot> timeslots, List<WorkCenterMaintenance> maintenances,
+                             Map<String, Integer> indexByWorkCenter) {
+        for (WorkCenterMaintenance maintenance : maintenances) {
+            maintenance.setWorkCenterIndex(indexOf(maintenance.getWorkCenter(), indexByWorkCenter));
+        }
+        for (Timeslot timeslot : timeslots) {
+            Procedure procedure = timeslot.getProcedure();
+            WorkCenter workCenter = procedure == null ? null : procedure.getWorkCenter();
+            timeslot.setWorkCenterIndex(indexOf(workCenter, indexByWorkCenter));
+            timeslot.setOutsourcing(workCenter != null && OUTSOURCING_WORK_CENTER_CODE.equals(workCenter.getWorkCenterCode()));
+            timeslot.setProcedureNo(procedure == null || procedure.getProcedureNo() == null ? 0 : procedure.getProcedureNo());
+        }
+    }
+
+    /**
+     * 取回问题中已分配的工作中心索引
+     */
+    public static Map<String, Integer> indexOf(FactorySchedulingSolution solution) {
+        Map<String, Integer> indexByWorkCenter = new HashMap<>();
+        for (WorkCenterMaintenance maintenance : solution.getMaintenances()) {
+            if (maintenance.getWorkCenter() != null && maintenance.getWorkCenterIndex() != NONE) {
+                indexByWorkCenter.putIfAbsent(maintenance.getWorkCenter().getId(), maintenance.getWorkCenterIndex());
+            }
+        }
+        for (Timeslot timeslot : solution.getTimeslots()) {
+            Procedure procedure = timeslot.getProcedure();
+            if (procedure != null && procedure.getWorkCenter() != null && timeslot.getWorkCenterIndex() != NONE) {
+                indexByWorkCenter.putIfAbsent(procedure.getWorkCenter().getId(), timeslot.getWorkCenterIndex());
+            }
+        }
+        return indexByWorkCenter;
+    }
+
+    private static int indexOf(WorkCenter workCenter, Map<String, Integer> indexByWorkCenter) {
+        if (workCenter == null || workCenter.getId() == null) {
+            return NONE;
+        }
+        return indexByWorkCenter.computeIfAbsent(workCenter.getId(), id -> indexByWorkCenter.size());
+    }
+}
@@ -0,0 +1,27 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/**
+ * 工作中心日历强度比较器（按强度升序）
+ * <p>供 WEAKEST_FIT 等构造启发式使用：产能越小越弱，产能相同时日期越早越弱，
+ * 因此 WEAKEST_FIT 会优先尝试产能紧张、日期靠前的日历。</p>
+ */
+public class WorkCenterMaintenanceStrengthComparator implements Comparator<WorkCenterMaintenance>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Comparator<WorkCenterMaintenance> COMPARATOR = Comparator
+            .comparingInt(WorkCenterMaintenance::getCapacity)
+            .thenComparing(WorkCenterMaintenance::getDate, Comparator.nullsLast(Comparator.<LocalDate>naturalOrder()))
+            .thenComparing(WorkCenterMaintenance::getId, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+
+    @Override
+    public int compare(WorkCenterMaintenance a, WorkCenterMaintenance b) {
+        return COMPARATOR.compare(a, b);
+    }
+}
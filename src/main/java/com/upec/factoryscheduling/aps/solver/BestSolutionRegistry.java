@@ -0,0 +1,109 @@
+package com.upec.factoryscheduling.aps.solver;
+
+import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
+import com.upec.factoryscheduling.common.configuration.SolverProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 最佳解注册表
+ * <p>按problemId保存 solveAndListen 回调中的最新最佳解，状态、分数、可行性和分数解释接口直接读取内存中的快照，
+ * 不再从数据库重建解。求解中的问题始终保留；求解结束的问题最多保留 aps.solver.best-solution-cache-size 个，
+ * 超过 aps.solver.best-solution-ttl-minutes 未访问或超出数量时按最近访问时间淘汰。</p>
+ */
+@Slf4j
+@Component
+public class BestSolutionRegistry {
+
+    private final int maxFinished;
+
+    private final Duration ttl;
+
+    /**
+     * problemId -> 最佳解
+     */
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BestSolutionRegistry(SolverProperties solverProperties) {
+        this.maxFinished = solverProperties.getBestSolutionCacheSize();
+        this.ttl = Duration.ofMinutes(solverProperties.getBestSolutionTtlMinutes());
+    }
+
+    /**
+     * 记录求解过程中的最佳解
+     */
+    public void update(Long problemId, FactorySchedulingSolution solution) {
+        entries.put(problemId, new Entry(new BestSolutionSnapshot(problemId, solution, false)));
+    }
+
+    /**
+     * 记录最终解，同时按数量和过期时间淘汰已结束的问题
+     */
+    public void finish(Long problemId, FactorySchedulingSolution solution) {
+        entries.put(problemId, new Entry(new BestSolutionSnapshot(problemId, solution, true)));
+        evict();
+    }
+
+    /**
+     * 获取问题的最佳解快照
+     *
+     * @param problemId 问题ID
+     * @return 快照，问题不存在或已淘汰时返回null
+     */
+    public BestSolutionSnapshot get(Long problemId) {
+        Entry entry = entries.get(problemId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(ttl)) {
+            entries.remove(problemId, entry);
+            return null;
+        }
+        entry.lastAccess = Instant.now();
+        return entry.snapshot;
+    }
+
+    public void remove(Long problemId) {
+        entries.remove(problemId);
+    }
+
+    private void evict() {
+        entries.entrySet().removeIf(e -> e.getValue().isExpired(ttl));
+        List<Map.Entry<Long, Entry>> finished = entries.entrySet().stream()
+                .filter(e -> e.getValue().snapshot.isFinished())
+                .sorted(Comparator.comparing((Map.Entry<Long, Entry> e) -> e.getValue().lastAccess).reversed())
+                .collect(Collectors.toList());
+        for (Map.Entry<Long, Entry> e : finished.subList(Math.min(maxFinished, finished.size()), finished.size())) {
+            if (entries.remove(e.getKey(), e.getValue())) {
+                log.info("淘汰问题{}的最佳解缓存", e.getKey());
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final BestSolutionSnapshot snapshot;
+        private volatile Instant lastAccess;
+
+        private Entry(BestSolutionSnapshot snapshot) {
+            this.snapshot = snapshot;
+            this.lastAccess = snapshot.getUpdatedAt();
+        }
+
+        /**
+         * 求解中的问题不过期
+         */
+        private boolean isExpired(Duration ttl) {
+            return snapshot.isFinished() && lastAccess.plus(ttl).isBefore(Instant.now());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.upec.factoryscheduling.aps.solver;
+
+import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
+import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolutionCloner;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.optaplanner.core.api.score.ScoreExplanation;
+import org.optaplanner.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
+import org.optaplanner.core.api.solver.SolutionManager;
+
+import java.time.Instant;
+
+/**
+ * 某个问题的最佳解快照
+ * <p>solution 是求解器回调传入的规划克隆，求解器之后不会再修改它，快照创建后只读。
+ * 规划解本身不做同步，快照的final字段保证经 {@link BestSolutionRegistry} 取得快照的线程能看到完整的解。
+ * 对外返回解时应通过 {@link #copySolution()} 复制解对象本身，避免调用方修改求解状态等字段。</p>
+ */
+@Getter
+public class BestSolutionSnapshot {
+
+    private final Long problemId;
+    private final FactorySchedulingSolution solution;
+    private final HardMediumSoftScore score;
+    private final Instant updatedAt;
+    /**
+     * 是否为求解结束时的最终解
+     */
+    private final boolean finished;
+
+    @Getter(AccessLevel.NONE)
+    private ScoreExplanation<FactorySchedulingSolution, HardMediumSoftScore> explanation;
+
+    BestSolutionSnapshot(Long problemId, FactorySchedulingSolution solution, boolean finished) {
+        this.problemId = problemId;
+        this.solution = solution;
+        this.score = solution.getScore();
+        this.updatedAt = Instant.now();
+        this.finished = finished;
+    }
+
+    /**
+     * 浅复制解对象，时间槽和日历与快照共用，全部固定的任务的时间槽合并到时间槽列表中
+     */
+    public FactorySchedulingSolution copySolution() {
+        FactorySchedulingSolution copy = new FactorySchedulingSolution(solution.getAllTimeslots(), solution.getMaintenances());
+        copy.setProblemId(problemId);
+        copy.setProcedureLinks(solution.getProcedureLinks());
+        copy.setPlanningEpoch(solution.getPlanningEpoch());
+        copy.setScore(score);
+        return copy;
+    }
+
+    /**
+     * 分数解释，每个快照只计算一次
+     * <p>SolutionManager 会在传入的解上重新设置工作解、重算影子变量，并发读取快照的线程可能看到中间状态，
+     * 因此解释快照解的规划克隆，串行执行并缓存结果</p>
+     */
+    public synchronized ScoreExplanation<FactorySchedulingSolution, HardMediumSoftScore> explain(
+            SolutionManager<FactorySchedulingSolution, HardMediumSoftScore> solutionManager) {
+        if (explanation == null) {
+            explanation = solutionManager.explain(new FactorySchedulingSolutionCloner().cloneSolution(solution));
+        }
+        return explanation;
+    }
+}
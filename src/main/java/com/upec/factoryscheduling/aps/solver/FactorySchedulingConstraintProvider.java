@@ -1,6 +1,9 @@
 package com.upec.factoryscheduling.aps.solver;
 
 import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.solution.PlanningEpoch;
+import com.upec.factoryscheduling.aps.solution.ProcedureLink;
+import com.upec.factoryscheduling.aps.solution.WorkCenterIndexBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.optaplanner.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
 import org.optaplanner.core.api.score.stream.Constraint;
@@ -10,8 +13,6 @@ import org.optaplanner.core.api.score.stream.Joiners;
 import org.springframework.stereotype.Component;
 
 import java.io.Serializable;
-import java.time.Duration;
-import java.time.LocalDateTime;
 
 import static org.optaplanner.core.api.score.stream.ConstraintCollectors.sum;
 
@@ -24,6 +25,7 @@ public class FactorySchedulingConstraintProvider implements ConstraintProvider,
     private static final String STATUS_UNAVAILABLE = "N";
     private static final String STATUS_AVAILABLE = "Active";
     private static final int MINUTES_PER_DAY = 480;
+    private static final int MINUTES_IN_DAY = 24 * 60;
     private static final int PLANNING_HORIZON_DAYS = 30;
     private static final int AVERAGE_DAILY_LOAD = MINUTES_PER_DAY * PLANNING_HORIZON_DAYS;
     private static final int CAPACITY_BUFFER = 60; // 每天预留60分钟缓冲
@@ -33,8 +35,6 @@ public class FactorySchedulingConstraintProvider implements ConstraintProvider,
     private static final int MEDIUM_PENALTY_WEIGHT = 100;
     private static final int SOFT_REWARD_WEIGHT = 10;
 
-    private static final String WORK_CENTER_CODE = "PM10W200";
-
     @Override
     public Constraint[] defineConstraints(ConstraintFactory constraintFactory) {
         return new Constraint[]{
@@ -70,8 +70,8 @@ public class FactorySchedulingConstraintProvider implements ConstraintProvider,
         return constraintFactory.forEach(Timeslot.class)
                 .filter(timeslot ->
                         timeslot.getMaintenance() != null
-                                && timeslot.getProcedure().getWorkCenter() != null
-                                && !timeslot.getMaintenance().getWorkCenter().getId().equals(timeslot.getProcedure().getWorkCenter().getId()))
+                                && timeslot.getWorkCenterIndex() != WorkCenterIndexBuilder.NONE
+                                && timeslot.getMaintenance().getWorkCenterIndex() != timeslot.getWorkCenterIndex())
                 .penalize(HardMediumSoftScore.ONE_HARD, timeslot -> HARD_PENALTY_WEIGHT * 10) // 严重违反
                 .asConstraint("硬约束：工作中心必须匹配");
     }
@@ -80,39 +80,34 @@ public class FactorySchedulingConstraintProvider implements ConstraintProvider,
      * 硬约束2: 不能超过维护容量
      * 违反条件：分配给某天维护的任务总时长超过维护容量
      * 注意：工作中心为PM10W200的外协工序不考虑容量约束
+     * 日历总负载由 TimeslotVariableListener 累加后写在日历内最后一个时间槽上，无需按日历分组汇总
      */
     protected Constraint hardCapacityExceeded(ConstraintFactory constraintFactory) {
         return constraintFactory.forEach(Timeslot.class)
-                .filter(timeslot -> timeslot.getMaintenance() != null && timeslot.getDuration() > 0 &&
-                        (timeslot.getProcedure().getWorkCenter() == null || !WORK_CENTER_CODE.equals(timeslot.getProcedure().getWorkCenter().getWorkCenterCode())))
-                .groupBy(Timeslot::getMaintenance, sum(Timeslot::getDuration))
-                .filter((maintenance, totalDuration) ->
-                        totalDuration + maintenance.getUsageTime() > maintenance.getCapacity())
+                .filter(timeslot -> timeslot.getCalendarLoadMinutes() != null &&
+                        timeslot.getCalendarLoadMinutes() > timeslot.getMaintenance().getCapacity())
                 .penalize(HardMediumSoftScore.ONE_HARD,
-                        (maintenance, totalDuration) -> {
-                            int exceeded = totalDuration + maintenance.getUsageTime() - maintenance.getCapacity();
-                            return exceeded * HARD_PENALTY_WEIGHT;
-                        })
+                        timeslot -> (timeslot.getCalendarLoadMinutes() - timeslot.getMaintenance().getCapacity()) * HARD_PENALTY_WEIGHT)
                 .asConstraint("硬约束：不能超过维护容量");
     }
 
     /**
      * 硬约束5: 外协工序时间约束 - 上一道工序结束时间必须等于该工序开始时间
      * 仅适用于工作中心为PM10W200的外协工序
+     * 通过 ProcedureLink 的后序序号找到前序工序，全部使用索引连接
      */
     protected Constraint hardOutsourcingProcedurePreviousTimeConstraint(ConstraintFactory constraintFactory) {
         return constraintFactory.forEach(Timeslot.class)
-                .filter(timeslot -> timeslot.getProcedure().getWorkCenter() != null &&
-                        WORK_CENTER_CODE.equals(timeslot.getProcedure().getWorkCenter().getWorkCenterCode()) &&
-                        timeslot.getProcedure() != null &&
-                        timeslot.getProcedure().getProcedureNo() > 1 &&
-                        timeslot.getStartTime() != null)
+                .filter(timeslot -> timeslot.isOutsourcing() &&
+                        timeslot.getProcedureNo() > 1 &&
+                        timeslot.getStartMinute() != null)
+                .join(ProcedureLink.class,
+                        Joiners.equal(Timeslot::getProcedureSeq, ProcedureLink::getToSeq))
                 .join(Timeslot.class,
-                        Joiners.equal(t -> t.getProcedure().getTask().getTaskNo(), t -> t.getProcedure().getTask().getTaskNo()),
-                        Joiners.equal(t -> t.getProcedure().getIndex() - 1, t -> t.getProcedure().getIndex()))
-                .filter((current, previous) -> previous.getEndTime() != null && !previous.getEndTime().equals(current.getStartTime()))
+                        Joiners.equal((current, link) -> link.getFromSeq(), Timeslot::getProcedureSeq))
+                .filter((current, link, previous) -> previous.getStartMinute() != null && previous.getEndMinute() != current.getStartMinute())
                 .penalize(HardMediumSoftScore.ONE_HARD,
-                        (current, previous) -> HARD_PENALTY_WEIGHT * 10)
+                        (current, link, previous) -> HARD_PENALTY_WEIGHT * 10)
                 .asConstraint("硬约束：外协工序-上一道工序结束时间必须等于该工序开始时间");
     }
 
@@ -122,41 +117,33 @@ public class FactorySchedulingConstraintProvider implements ConstraintProvider,
      */
     protected Constraint hardOutsourcingProcedureNextTimeConstraint(ConstraintFactory constraintFactory) {
         return constraintFactory.forEach(Timeslot.class)
-                .filter(timeslot -> timeslot.getProcedure().getWorkCenter() != null &&
-                        WORK_CENTER_CODE.equals(timeslot.getProcedure().getWorkCenter().getWorkCenterCode()) &&
-                        timeslot.getProcedure() != null &&
-                        timeslot.getProcedure().getNextProcedureNo() != null && !
-                        timeslot.getProcedure().getNextProcedureNo().isEmpty() &&
-                        timeslot.getEndTime() != null)
+                .filter(timeslot -> timeslot.isOutsourcing() && timeslot.getStartMinute() != null)
+                .join(ProcedureLink.class,
+                        Joiners.equal(Timeslot::getProcedureSeq, ProcedureLink::getFromSeq))
                 .join(Timeslot.class,
-                        Joiners.equal(t -> t.getProcedure().getTask().getTaskNo(), t -> t.getProcedure().getTask().getTaskNo()),
-                        Joiners.filtering((current, next) -> next.getProcedure() != null &&
-                                current.getProcedure().getNextProcedureNo().contains(next.getProcedure().getProcedureNo())))
-                .filter((current, next) -> next.getStartTime() != null && !current.getEndTime().equals(next.getStartTime()))
-                .penalize(HardMediumSoftScore.ONE_HARD, (current, next) -> HARD_PENALTY_WEIGHT * 10)
+                        Joiners.equal((current, link) -> link.getToSeq(), Timeslot::getProcedureSeq))
+                .filter((current, link, next) -> next.getStartMinute() != null && current.getEndMinute() != next.getStartMinute())
+                .penalize(HardMediumSoftScore.ONE_HARD, (current, link, next) -> HARD_PENALTY_WEIGHT * 10)
                 .asConstraint("硬约束：外协工序-该工序结束时间必须等于下一道工序开始时间");
     }
 
     /**
      * 中等约束1: 工序顺序约束
      * 违反条件：后序工序在前序工序完成前开始
+     * 前序时间槽 -> ProcedureLink -> 后序时间槽，两次连接均为整数键索引
      */
     protected Constraint mediumProcedureSequence(ConstraintFactory constraintFactory) {
         return constraintFactory.forEach(Timeslot.class)
-                .filter(timeslot -> timeslot.getProcedure() != null &&
-                        timeslot.getEndTime() != null && !
-                        timeslot.getProcedure().getNextProcedure().isEmpty())
+                .filter(timeslot -> timeslot.getStartMinute() != null)
+                .join(ProcedureLink.class,
+                        Joiners.equal(Timeslot::getProcedureSeq, ProcedureLink::getFromSeq))
                 .join(Timeslot.class,
-                        Joiners.equal(t -> t.getProcedure().getTask().getTaskNo(), t -> t.getProcedure().getTask().getTaskNo()),
-                        Joiners.filtering((current, next) -> current.getProcedure().getNextProcedure().stream().anyMatch(p -> p.getId().equals(next.getProcedure().getId()))))
-                .filter((current, next) ->
-                        next.getStartTime() != null && !current.getEndTime().isBefore(next.getStartTime()))
+                        Joiners.equal((current, link) -> link.getToSeq(), Timeslot::getProcedureSeq))
+                .filter((current, link, next) ->
+                        next.getStartMinute() != null && current.getEndMinute() >= next.getStartMinute())
                 .penalize(HardMediumSoftScore.ONE_MEDIUM,
-                        (current, next) -> {
-                            // 如果后序在前序完成前开始，计算提前的时间
-                            long minutesEarly = Duration.between(next.getStartTime(), current.getEndTime()).toMinutes();
-                            return (int) Math.max(0, minutesEarly) * MEDIUM_PENALTY_WEIGHT;
-                        })
+                        // 后序在前序完成前开始的分钟数
+                        (current, link, next) -> (current.getEndMinute() - next.getStartMinute()) * MEDIUM_PENALTY_WEIGHT)
                 .asConstraint("中约束：工序必须按顺序执行");
     }
 
@@ -168,12 +155,12 @@ public class FactorySchedulingConstraintProvider implements ConstraintProvider,
         return constraintFactory.forEach(Timeslot.class)
                 .filter(timeslot -> timeslot.getTotal() > 1 && timeslot.getIndex() < timeslot.getTotal() - 1)
                 .join(Timeslot.class,
-                        Joiners.equal(Timeslot::getProcedure),
+                        Joiners.equal(Timeslot::getProcedureSeq),
                         Joiners.equal(t -> t.getIndex() + 1, Timeslot::getIndex))
                 .filter((slice1, slice2) ->
-                        slice2.getStartTime() != null &&
-                                slice1.getEndTime() != null && !
-                                slice1.getEndTime().isBefore(slice2.getStartTime()))
+                        slice2.getStartMinute() != null &&
+                                slice1.getStartMinute() != null &&
+                                slice1.getEndMinute() >= slice2.getStartMinute())
                 .penalize(HardMediumSoftScore.ONE_MEDIUM,
                         (slice1, slice2) -> MEDIUM_PENALTY_WEIGHT * 5)
                 .asConstraint("中约束：同一工序分片必须按顺序执行");
@@ -186,16 +173,11 @@ public class FactorySchedulingConstraintProvider implements ConstraintProvider,
     protected Constraint mediumOrderDateConstraint(ConstraintFactory constraintFactory) {
         return constraintFactory.forEach(Timeslot.class)
                 .filter(timeslot ->
-                        timeslot.getProcedure().getTask() != null
-                                && timeslot.getProcedure().getTask().getFactStartDate() != null
-                                && timeslot.getStartTime() != null
-                                && timeslot.getStartTime().isBefore(timeslot.getProcedure().getTask().getFactStartDate()))
+                        timeslot.getFactStartMinute() != PlanningEpoch.NONE
+                                && timeslot.getStartMinute() != null
+                                && timeslot.getStartMinute() < timeslot.getFactStartMinute())
                 .penalize(HardMediumSoftScore.ONE_MEDIUM,
-                        timeslot -> {
-                            long daysEarly =
-                                    Duration.between(timeslot.getStartTime(), timeslot.getProcedure().getTask().getFactStartDate()).toDays();
-                            return (int) daysEarly * MEDIUM_PENALTY_WEIGHT;
-                        })
+                        timeslot -> (timeslot.getFactStartMinute() - timeslot.getStartMinute()) / MINUTES_IN_DAY * MEDIUM_PENALTY_WEIGHT)
                 .asConstraint("中约束：不能早于实际开始时间");
     }
 
@@ -205,18 +187,13 @@ public class FactorySchedulingConstraintProvider implements ConstraintProvider,
      */
     protected Constraint softEarlyCompletion(ConstraintFactory constraintFactory) {
         return constraintFactory.forEach(Timeslot.class)
-                .filter(timeslot -> timeslot.getEndTime() != null &&
-                        timeslot.getProcedure() != null &&
-                        timeslot.getProcedure().getPlanEndDate() != null)
+                .filter(timeslot -> timeslot.getStartMinute() != null &&
+                        timeslot.getPlanEndMinute() != PlanningEpoch.NONE)
                 .reward(HardMediumSoftScore.ONE_SOFT,
                         timeslot -> {
-                            LocalDateTime planEnd = timeslot.getProcedure().getPlanEndDate().atTime(23, 59);
-                            LocalDateTime actualEnd = timeslot.getEndTime();
-                            if (actualEnd.isBefore(planEnd)) {
-                                long daysEarly = Duration.between(actualEnd, planEnd).toDays();
-                                return (int) daysEarly * SOFT_REWARD_WEIGHT;
-                            }
-                            return 0;
+                            // 计划完成日期23:59之前完成的天数
+                            int minutesEarly = timeslot.getPlanEndMinute() - timeslot.getEndMinute();
+                            return minutesEarly > 0 ? minutesEarly / MINUTES_IN_DAY * SOFT_REWARD_WEIGHT : 0;
                         })
                 .asConstraint("软约束：奖励提前完成");
     }
@@ -227,17 +204,14 @@ public class FactorySchedulingConstraintProvider implements ConstraintProvider,
      */
     protected Constraint softOnTimeStart(ConstraintFactory constraintFactory) {
         return constraintFactory.forEach(Timeslot.class)
-                .filter(timeslot -> timeslot.getStartTime() != null &&
-                        timeslot.getProcedure().getTask() != null &&
-                        timeslot.getProcedure().getTask().getPlanStartDate() != null &&
+                .filter(timeslot -> timeslot.getStartMinute() != null &&
+                        timeslot.getPlanStartMinute() != PlanningEpoch.NONE &&
                         timeslot.getProcedureIndex() == 1)
                 .reward(HardMediumSoftScore.ONE_SOFT,
                         timeslot -> {
-                            LocalDateTime planStart = timeslot.getProcedure().getTask().getPlanStartDate().atStartOfDay();
-                            LocalDateTime actualStart = timeslot.getStartTime();
-                            long hoursDiff = Math.abs(Duration.between(planStart, actualStart).toHours());
+                            int hoursDiff = Math.abs((timeslot.getStartMinute() - timeslot.getPlanStartMinute()) / 60);
                             if (hoursDiff <= 4) {
-                                return (int) (SOFT_REWARD_WEIGHT * (5 - hoursDiff));
+                                return SOFT_REWARD_WEIGHT * (5 - hoursDiff);
                             }
                             return 0;
                         })
@@ -250,14 +224,14 @@ public class FactorySchedulingConstraintProvider implements ConstraintProvider,
      */
     protected Constraint softHighPriorityFirst(ConstraintFactory constraintFactory) {
         return constraintFactory.forEach(Timeslot.class)
-                .filter(timeslot -> timeslot.getPriority() != null && timeslot.getEndTime() != null)
+                .filter(timeslot -> timeslot.getPriority() != null && timeslot.getStartMinute() != null)
                 .reward(HardMediumSoftScore.ONE_SOFT,
                         timeslot -> {
                             int priority = timeslot.getPriority();
-                            LocalDateTime now = LocalDateTime.now();
                             if (priority <= 3) {
-                                long daysFromNow = Duration.between(now, timeslot.getEndTime()).toDays();
-                                if (daysFromNow >= 0 && daysFromNow <= 7) {
+                                // 以排程基准时间代替当前时间，分钟数即为距基准时间的时长
+                                int daysFromEpoch = timeslot.getEndMinute() / MINUTES_IN_DAY;
+                                if (daysFromEpoch >= 0 && daysFromEpoch <= 7) {
                                     return (4 - priority) * SOFT_REWARD_WEIGHT * 2;
                                 }
                             }
@@ -273,8 +247,8 @@ public class FactorySchedulingConstraintProvider implements ConstraintProvider,
     protected Constraint softBalancedLoad(ConstraintFactory constraintFactory) {
         return constraintFactory.forEach(Timeslot.class)
                 .filter(timeslot ->
-                        timeslot.getProcedure().getWorkCenter() != null && timeslot.getDuration() > 0)
-                .groupBy(timeslot -> timeslot.getProcedure().getWorkCenter().getWorkCenterCode(), sum(Timeslot::getDuration))
+                        timeslot.getWorkCenterIndex() != WorkCenterIndexBuilder.NONE && timeslot.getDuration() > 0)
+                .groupBy(Timeslot::getWorkCenterIndex, sum(Timeslot::getDuration))
                 .reward(HardMediumSoftScore.ONE_SOFT,
                         (workCenter, totalDuration) -> {
                             int deviation = Math.abs(totalDuration - AVERAGE_DAILY_LOAD);
@@ -295,12 +269,12 @@ public class FactorySchedulingConstraintProvider implements ConstraintProvider,
                 .filter(timeslot ->
                         timeslot.getTotal() > 1 && timeslot.getIndex() < timeslot.getTotal() - 1)
                 .join(Timeslot.class,
-                        Joiners.equal(Timeslot::getProcedure),
+                        Joiners.equal(Timeslot::getProcedureSeq),
                         Joiners.equal(t -> t.getIndex() + 1, Timeslot::getIndex))
-                .filter((slice1, slice2) -> slice2.getStartTime() != null && slice1.getEndTime() != null)
+                .filter((slice1, slice2) -> slice2.getStartMinute() != null && slice1.getStartMinute() != null)
                 .reward(HardMediumSoftScore.ONE_SOFT,
                         (slice1, slice2) -> {
-                            long gapMinutes = Duration.between(slice1.getEndTime(), slice2.getStartTime()).toMinutes();
+                            int gapMinutes = slice2.getStartMinute() - slice1.getEndMinute();
                             if (gapMinutes <= 30) {
                                 return SOFT_REWARD_WEIGHT * 3;
                             } else if (gapMinutes <= 60) {
@@ -313,15 +287,15 @@ public class FactorySchedulingConstraintProvider implements ConstraintProvider,
     /**
      * 软约束6: 奖励合理容量利用
      * 优化目标：合理利用维护容量，不过度也不浪费
+     * 与硬约束2共用日历内最后一个时间槽上的日历总负载
      */
     protected Constraint softCapacityUtilization(ConstraintFactory constraintFactory) {
         return constraintFactory.forEach(Timeslot.class)
-                .filter(timeslot -> timeslot.getMaintenance() != null && timeslot.getDuration() > 0)
-                .groupBy(Timeslot::getMaintenance, sum(Timeslot::getDuration))
+                .filter(timeslot -> timeslot.getCalendarLoadMinutes() != null)
                 .reward(HardMediumSoftScore.ONE_SOFT,
-                        (maintenance, totalDuration) -> {
-                            int used = totalDuration + maintenance.getUsageTime();
-                            int capacity = maintenance.getCapacity();
+                        timeslot -> {
+                            int used = timeslot.getCalendarLoadMinutes();
+                            int capacity = timeslot.getMaintenance().getCapacity();
                             int optimalMin = (int) (capacity * 0.8);
                             int optimalMax = (int) (capacity * 0.9);
                             if (used >= optimalMin && used <= optimalMax) {
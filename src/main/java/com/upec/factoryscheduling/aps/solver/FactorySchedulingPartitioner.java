@@ -0,0 +1,260 @@
+package com.upec.factoryscheduling.aps.solver;
+
+import com.upec.factoryscheduling.aps.entity.Procedure;
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
+import com.upec.factoryscheduling.aps.solution.ProcedureLink;
+import lombok.extern.slf4j.Slf4j;
+import org.optaplanner.core.api.score.director.ScoreDirector;
+import org.optaplanner.core.impl.partitionedsearch.partitioner.SolutionPartitioner;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 分区搜索的问题拆分器
+ * <p>按工作中心拆分问题：每个分区独占一组工作中心及其日历，包含这些工作中心上的全部时间槽，
+ * 各分区在独立线程中求解，互不争抢同一个日历的产能。</p>
+ * <p>先按任务工艺路线把工作中心连成连通分量（同一任务经过的工作中心属于同一分量），
+ * 再按时间槽个数从大到小把分量分配到负载最小的分区；大于平均负载的分量拆成单个工作中心分配。
+ * 分量被拆开时，跨分区的工序前后继关系不放入分区，由分区搜索之后的全局局部搜索处理。</p>
+ * <p>分区中的时间槽是原时间槽的复制，日历、工序等问题事实与原问题共用（只读），
+ * 合并时OptaPlanner按 {@link org.optaplanner.core.api.domain.lookup.PlanningId} 找回原对象。
+ * 工作中心没有日历或已分配到其它分区日历的时间槽不放入任何分区，留给全局阶段处理。</p>
+ * <p>分区个数通过 solutionPartitionerCustomProperties 的 partCount 设置，见
+ * {@link com.upec.factoryscheduling.common.configuration.SolverProfile#getPartitionCount()}。</p>
+ */
+@Slf4j
+public class FactorySchedulingPartitioner implements SolutionPartitioner<FactorySchedulingSolution> {
+
+    private int partCount = 4;
+
+    public void setPartCount(int partCount) {
+        if (partCount < 1) {
+            throw new IllegalArgumentException("partCount必须为正整数: " + partCount);
+        }
+        this.partCount = partCount;
+    }
+
+    @Override
+    public List<FactorySchedulingSolution> splitWorkingSolution(ScoreDirector<FactorySchedulingSolution> scoreDirector,
+                                                                Integer runnablePartThreadLimit) {
+        FactorySchedulingSolution original = scoreDirector.getWorkingSolution();
+        Map<String, Integer> partByWorkCenter = assignWorkCenters(original.getTimeslots());
+        int parts = partByWorkCenter.values().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1;
+
+        List<List<WorkCenterMaintenance>> maintenancesByPart = new ArrayList<>(parts);
+        List<List<Timeslot>> timeslotsByPart = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
+            maintenancesByPart.add(new ArrayList<>());
+            timeslotsByPart.add(new ArrayList<>());
+        }
+        Map<WorkCenterMaintenance, Integer> partByMaintenance = new IdentityHashMap<>();
+        for (WorkCenterMaintenance maintenance : original.getMaintenances()) {
+            Integer part = maintenance.getWorkCenter() == null ? null : partByWorkCenter.get(maintenance.getWorkCenter().getId());
+            if (part != null) {
+                maintenancesByPart.get(part).add(maintenance);
+                partByMaintenance.put(maintenance, part);
+            }
+        }
+
+        Map<Integer, Integer> partBySeq = new HashMap<>();
+        int skipped = 0;
+        for (Timeslot timeslot : original.getTimeslots()) {
+            Integer part = partOf(timeslot, partByWorkCenter);
+            List<WorkCenterMaintenance> range = part == null ? Collections.emptyList() : rangeInPart(timeslot, part, partByMaintenance);
+            // 已分配到其它分区日历的时间槽(如固定在别的工作中心)保持原样
+            if (range.isEmpty() || (timeslot.getMaintenance() != null && !part.equals(partByMaintenance.get(timeslot.getMaintenance())))) {
+                skipped++;
+                continue;
+            }
+            timeslotsByPart.get(part).add(copyOf(timeslot, range));
+            if (timeslot.getProcedureSeq() >= 0) {
+                partBySeq.put(timeslot.getProcedureSeq(), part);
+            }
+        }
+
+        List<List<ProcedureLink>> linksByPart = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
+            linksByPart.add(new ArrayList<>());
+        }
+        int crossLinks = 0;
+        for (ProcedureLink link : original.getProcedureLinks()) {
+            Integer fromPart = partBySeq.get(link.getFromSeq());
+            Integer toPart = partBySeq.get(link.getToSeq());
+            if (fromPart != null && fromPart.equals(toPart)) {
+                linksByPart.get(fromPart).add(link);
+            } else if (fromPart != null && toPart != null) {
+                crossLinks++;
+            }
+        }
+
+        List<FactorySchedulingSolution> partList = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
+            if (timeslotsByPart.get(i).isEmpty()) {
+                continue;
+            }
+            FactorySchedulingSolution part = new FactorySchedulingSolution(timeslotsByPart.get(i), maintenancesByPart.get(i));
+            part.setProblemId(original.getProblemId());
+            part.setProcedureLinks(linksByPart.get(i));
+            part.setPlanningEpoch(original.getPlanningEpoch());
+            partList.add(part);
+        }
+        log.info("问题{}拆分为{}个分区，时间槽个数{}，跨分区前后继关系{}个，未分区时间槽{}个", original.getProblemId(), partList.size(),
+                partList.stream().map(part -> part.getTimeslots().size()).collect(Collectors.toList()), crossLinks, skipped);
+        return partList;
+    }
+
+    /**
+     * 把工作中心分配到分区，返回 工作中心id -> 分区序号，分区序号从0开始连续
+     */
+    private Map<String, Integer> assignWorkCenters(List<Timeslot> timeslots) {
+        Map<String, Integer> load = new HashMap<>();
+        Map<String, String> parent = new HashMap<>();
+        Map<String, String> workCenterByTask = new HashMap<>();
+        for (Timeslot timeslot : timeslots) {
+            Procedure procedure = timeslot.getProcedure();
+            if (procedure == null || procedure.getWorkCenter() == null) {
+                continue;
+            }
+            String workCenterId = procedure.getWorkCenter().getId();
+            load.merge(workCenterId, 1, Integer::sum);
+            parent.putIfAbsent(workCenterId, workCenterId);
+            String taskKey = taskKeyOf(procedure);
+            if (taskKey != null) {
+                String first = workCenterByTask.putIfAbsent(taskKey, workCenterId);
+                if (first != null) {
+                    union(parent, first, workCenterId);
+                }
+            }
+        }
+        // 连通分量，按工作中心id排序保证拆分结果可重现
+        Map<String, List<String>> components = new TreeMap<>();
+        for (String workCenterId : new TreeSet<>(load.keySet())) {
+            components.computeIfAbsent(find(parent, workCenterId), root -> new ArrayList<>()).add(workCenterId);
+        }
+        int total = load.values().stream().mapToInt(Integer::intValue).sum();
+        int average = Math.max(1, (total + partCount - 1) / partCount);
+        List<List<String>> items = new ArrayList<>();
+        for (List<String> component : components.values()) {
+            if (component.size() > 1 && weightOf(component, load) > average) {
+                component.forEach(workCenterId -> items.add(Collections.singletonList(workCenterId)));
+            } else {
+                items.add(component);
+            }
+        }
+        items.sort(Comparator.comparingInt((List<String> item) -> weightOf(item, load)).reversed()
+                .thenComparing(item -> item.get(0)));
+        int[] partLoad = new int[partCount];
+        Map<String, Integer> partByWorkCenter = new HashMap<>();
+        for (List<String> item : items) {
+            int part = 0;
+            for (int i = 1; i < partCount; i++) {
+                if (partLoad[i] < partLoad[part]) {
+                    part = i;
+                }
+            }
+            partLoad[part] += weightOf(item, load);
+            for (String workCenterId : item) {
+                partByWorkCenter.put(workCenterId, part);
+            }
+        }
+        // 去掉空分区，分区序号保持连续
+        Map<Integer, Integer> compact = new HashMap<>();
+        for (int i = 0; i < partCount; i++) {
+            if (partLoad[i] > 0) {
+                compact.put(i, compact.size());
+            }
+        }
+        partByWorkCenter.replaceAll((workCenterId, part) -> compact.get(part));
+        return partByWorkCenter;
+    }
+
+    private static Integer partOf(Timeslot timeslot, Map<String, Integer> partByWorkCenter) {
+        Procedure procedure = timeslot.getProcedure();
+        return procedure == null || procedure.getWorkCenter() == null ? null : partByWorkCenter.get(procedure.getWorkCenter().getId());
+    }
+
+    /**
+     * 时间槽在分区内的可选日历，通常就是原可选日历
+     */
+    private static List<WorkCenterMaintenance> rangeInPart(Timeslot timeslot, int part, Map<WorkCenterMaintenance, Integer> partByMaintenance) {
+        List<WorkCenterMaintenance> range = timeslot.getMaintenanceRange();
+        for (WorkCenterMaintenance maintenance : range) {
+            if (!Objects.equals(partByMaintenance.get(maintenance), part)) {
+                return range.stream().filter(m -> Objects.equals(partByMaintenance.get(m), part)).collect(Collectors.toList());
+            }
+        }
+        return range;
+    }
+
+    /**
+     * 复制时间槽的规划变量和问题属性，影子变量由分区求解器的监听器重新计算
+     */
+    private static Timeslot copyOf(Timeslot timeslot, List<WorkCenterMaintenance> range) {
+        Timeslot copy = new Timeslot();
+        copy.setId(timeslot.getId());
+        copy.setProblemId(timeslot.getProblemId());
+        copy.setProcedure(timeslot.getProcedure());
+        copy.setDuration(timeslot.getDuration());
+        copy.setPriority(timeslot.getPriority());
+        copy.setParallel(timeslot.isParallel());
+        copy.setManual(timeslot.isManual());
+        copy.setIndex(timeslot.getIndex());
+        copy.setTotal(timeslot.getTotal());
+        copy.setProcedureIndex(timeslot.getProcedureIndex());
+        copy.setProcedureSeq(timeslot.getProcedureSeq());
+        copy.setPlanEndMinute(timeslot.getPlanEndMinute());
+        copy.setPlanStartMinute(timeslot.getPlanStartMinute());
+        copy.setFactStartMinute(timeslot.getFactStartMinute());
+        copy.setWorkCenterIndex(timeslot.getWorkCenterIndex());
+        copy.setOutsourcing(timeslot.isOutsourcing());
+        copy.setProcedureNo(timeslot.getProcedureNo());
+        copy.setMaintenanceRange(range);
+        copy.setMaintenance(timeslot.getMaintenance());
+        return copy;
+    }
+
+    private static String taskKeyOf(Procedure procedure) {
+        if (procedure.getTask() != null && procedure.getTask().getTaskNo() != null) {
+            return procedure.getTask().getTaskNo();
+        }
+        return procedure.getOrder() == null ? null : procedure.getOrder().getOrderNo();
+    }
+
+    private static int weightOf(List<String> workCenterIds, Map<String, Integer> load) {
+        int weight = 0;
+        for (String workCenterId : workCenterIds) {
+            weight += load.get(workCenterId);
+        }
+        return weight;
+    }
+
+    private static String find(Map<String, String> parent, String id) {
+        String root = id;
+        while (!root.equals(parent.get(root))) {
+            root = parent.get(root);
+        }
+        // 路径压缩
+        while (!id.equals(root)) {
+            String next = parent.get(id);
+            parent.put(id, root);
+            id = next;
+        }
+        return root;
+    }
+
+    private static void union(Map<String, String> parent, String a, String b) {
+        String rootA = find(parent, a);
+        String rootB = find(parent, b);
+        if (!rootA.equals(rootB)) {
+            // 较小的id作为根，结果与遍历顺序无关
+            if (rootA.compareTo(rootB) < 0) {
+                parent.put(rootB, rootA);
+            } else {
+                parent.put(rootA, rootB);
+            }
+        }
+    }
+}
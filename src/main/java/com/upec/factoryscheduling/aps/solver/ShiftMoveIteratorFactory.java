@@ -0,0 +1,285 @@
+package com.upec.factoryscheduling.aps.solver;
+
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
+import com.upec.factoryscheduling.aps.solution.ProcedureLink;
+import com.upec.factoryscheduling.aps.solution.WorkCenterIndexBuilder;
+import org.optaplanner.core.api.score.director.ScoreDirector;
+import org.optaplanner.core.impl.heuristic.selector.move.factory.MoveIteratorFactory;
+
+import java.util.*;
+
+/**
+ * 平移类复合移动的生成器
+ * <p>单个时间槽的ChangeMove/SwapMove几乎总会先破坏分片顺序或工序顺序（mediumProcedureSliceSequence、mediumProcedureSequence），
+ * 被接受器拒绝。这里生成 {@link TimeslotGroupChangeMove}，把一组时间槽按相同天数一起平移，保持它们之间的先后顺序：</p>
+ * <ul>
+ *     <li>{@link Scope#PROCEDURE}：平移一个工序的全部分片</li>
+ *     <li>{@link Scope#TASK_CHAIN}：平移一个工序及沿 {@link ProcedureLink} 可达的全部后序工序</li>
+ * </ul>
+ * <p>范围通过 moveIteratorFactoryCustomProperties 的 scope 设置，见
+ * {@link com.upec.factoryscheduling.common.configuration.SolverProfile#isShiftMoves()}。</p>
+ * <p>阶段开始时按工作解建立索引：工序序号 -> 分片（按分片索引排序）、工序前后继邻接表(CSR)、
+ * (工作中心索引, 日期) -> 日历。求解中的问题变更会重新开始阶段，索引随之重建。</p>
+ * <p>每次随机选一个工序作为锚点，从它第一个分片的可选日历中随机选一个日期，得到平移天数，
+ * 再按范围决定一起平移哪些工序。每个时间槽平移到同一工作中心、日期加上平移天数的日历，
+ * 该日历不存在或不在时间槽的可选日历内时移动不可执行。</p>
+ * <p>原始顺序(selectionOrder=ORIGINAL)按工序序号依次取锚点，再按锚点第一个分片的可选日历顺序枚举平移天数，
+ * 跳过平移0天和不可执行的移动。</p>
+ */
+public class ShiftMoveIteratorFactory implements MoveIteratorFactory<FactorySchedulingSolution, TimeslotGroupChangeMove> {
+
+    /**
+     * 一起平移的时间槽范围
+     */
+    public enum Scope {
+        PROCEDURE,
+        TASK_CHAIN
+    }
+
+    private Scope scope = Scope.PROCEDURE;
+
+    private Timeslot[][] slotsBySeq = new Timeslot[0][];
+    private int[] seqs = new int[0];
+    private int[] offsets = new int[1];
+    private int[] successors = new int[0];
+    private Map<Long, WorkCenterMaintenance> maintenanceByDay = Collections.emptyMap();
+
+    public void setScope(String scope) {
+        try {
+            this.scope = Scope.valueOf(scope.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("scope必须为PROCEDURE或TASK_CHAIN: " + scope, e);
+        }
+    }
+
+    @Override
+    public void phaseStarted(ScoreDirector<FactorySchedulingSolution> scoreDirector) {
+        FactorySchedulingSolution solution = scoreDirector.getWorkingSolution();
+        int n = 0;
+        for (Timeslot timeslot : solution.getTimeslots()) {
+            n = Math.max(n, timeslot.getProcedureSeq() + 1);
+        }
+        List<List<Timeslot>> groups = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            groups.add(null);
+        }
+        for (Timeslot timeslot : solution.getTimeslots()) {
+            int seq = timeslot.getProcedureSeq();
+            if (seq >= 0) {
+                if (groups.get(seq) == null) {
+                    groups.set(seq, new ArrayList<>(Math.max(1, timeslot.getTotal())));
+                }
+                groups.get(seq).add(timeslot);
+            }
+        }
+        slotsBySeq = new Timeslot[n][];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            List<Timeslot> group = groups.get(i);
+            if (group != null) {
+                group.sort(Comparator.comparingInt(Timeslot::getIndex));
+                slotsBySeq[i] = group.toArray(new Timeslot[0]);
+                count++;
+            }
+        }
+        seqs = new int[count];
+        for (int i = 0, k = 0; i < n; i++) {
+            if (slotsBySeq[i] != null) {
+                seqs[k++] = i;
+            }
+        }
+
+        offsets = new int[n + 1];
+        for (ProcedureLink link : solution.getProcedureLinks()) {
+            if (link.getFromSeq() < n && link.getToSeq() < n) {
+                offsets[link.getFromSeq() + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        successors = new int[offsets[n]];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for (ProcedureLink link : solution.getProcedureLinks()) {
+            if (link.getFromSeq() < n && link.getToSeq() < n) {
+                successors[fill[link.getFromSeq()]++] = link.getToSeq();
+            }
+        }
+
+        maintenanceByDay = new HashMap<>(solution.getMaintenances().size() * 2);
+        for (WorkCenterMaintenance maintenance : solution.getMaintenances()) {
+            if (maintenance.getWorkCenterIndex() != WorkCenterIndexBuilder.NONE && maintenance.getDate() != null) {
+                maintenanceByDay.putIfAbsent(dayKey(maintenance.getWorkCenterIndex(), maintenance.getDate().toEpochDay()), maintenance);
+            }
+        }
+    }
+
+    @Override
+    public void phaseEnded(ScoreDirector<FactorySchedulingSolution> scoreDirector) {
+        slotsBySeq = new Timeslot[0][];
+        seqs = new int[0];
+        offsets = new int[1];
+        successors = new int[0];
+        maintenanceByDay = Collections.emptyMap();
+    }
+
+    @Override
+    public long getSize(ScoreDirector<FactorySchedulingSolution> scoreDirector) {
+        return seqs.length;
+    }
+
+    @Override
+    public Iterator<TimeslotGroupChangeMove> createOriginalMoveIterator(ScoreDirector<FactorySchedulingSolution> scoreDirector) {
+        int[] visited = new int[slotsBySeq.length];
+        return new Iterator<TimeslotGroupChangeMove>() {
+            private int stamp;
+            private int seqIndex;
+            private int rangeIndex;
+            private TimeslotGroupChangeMove upcoming;
+
+            @Override
+            public boolean hasNext() {
+                while (upcoming == null && seqIndex < seqs.length) {
+                    int anchor = seqs[seqIndex];
+                    Timeslot first = slotsBySeq[anchor][0];
+                    List<WorkCenterMaintenance> range = first.getMaintenanceRange();
+                    if (first.getMaintenance() == null || rangeIndex >= range.size()) {
+                        seqIndex++;
+                        rangeIndex = 0;
+                        continue;
+                    }
+                    long days = shiftDays(first, range.get(rangeIndex++));
+                    if (days == 0) {
+                        continue;
+                    }
+                    stamp++;
+                    TimeslotGroupChangeMove move = createMove(anchor, days, visited, stamp);
+                    if (move.isMoveDoable(scoreDirector)) {
+                        upcoming = move;
+                    }
+                }
+                return upcoming != null;
+            }
+
+            @Override
+            public TimeslotGroupChangeMove next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TimeslotGroupChangeMove move = upcoming;
+                upcoming = null;
+                return move;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<TimeslotGroupChangeMove> createRandomMoveIterator(ScoreDirector<FactorySchedulingSolution> scoreDirector,
+                                                                      Random workingRandom) {
+        int[] visited = new int[slotsBySeq.length];
+        return new Iterator<TimeslotGroupChangeMove>() {
+            private int stamp;
+
+            @Override
+            public boolean hasNext() {
+                return seqs.length > 0;
+            }
+
+            @Override
+            public TimeslotGroupChangeMove next() {
+                if (seqs.length == 0) {
+                    throw new NoSuchElementException();
+                }
+                int anchor = seqs[workingRandom.nextInt(seqs.length)];
+                long days = randomShiftDays(slotsBySeq[anchor][0], workingRandom);
+                stamp++;
+                return createMove(anchor, days, visited, stamp);
+            }
+        };
+    }
+
+    /**
+     * 与锚点工序一起平移的工序序号：PROCEDURE只有锚点，TASK_CHAIN为锚点及全部可达的后序工序(广度优先)
+     */
+    private int[] selectSeqs(int anchor, int[] visited, int stamp) {
+        if (scope == Scope.PROCEDURE) {
+            return new int[]{anchor};
+        }
+        int[] queue = new int[8];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = anchor;
+        visited[anchor] = stamp;
+        while (head < tail) {
+            int seq = queue[head++];
+            for (int k = offsets[seq]; k < offsets[seq + 1]; k++) {
+                int next = successors[k];
+                // 不在问题中的工序(固定任务、其它分区)跳过
+                if (visited[next] != stamp && slotsBySeq[next] != null) {
+                    visited[next] = stamp;
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return Arrays.copyOf(queue, tail);
+    }
+
+    private TimeslotGroupChangeMove createMove(int anchor, long days, int[] visited, int stamp) {
+        List<Timeslot> timeslots = new ArrayList<>();
+        List<WorkCenterMaintenance> targets = new ArrayList<>();
+        for (int seq : selectSeqs(anchor, visited, stamp)) {
+            for (Timeslot timeslot : slotsBySeq[seq]) {
+                timeslots.add(timeslot);
+                targets.add(shifted(timeslot, days));
+            }
+        }
+        return new TimeslotGroupChangeMove(scope == Scope.PROCEDURE ? "ProcedureShiftMove" : "TaskChainShiftMove",
+                timeslots, targets);
+    }
+
+    /**
+     * 锚点分片当前日期到其可选日历中随机一天的天数，未分配时为0(移动不可执行)
+     */
+    private static long randomShiftDays(Timeslot anchor, Random workingRandom) {
+        List<WorkCenterMaintenance> range = anchor.getMaintenanceRange();
+        if (range.isEmpty()) {
+            return 0;
+        }
+        return shiftDays(anchor, range.get(workingRandom.nextInt(range.size())));
+    }
+
+    /**
+     * 锚点分片当前日期到目标日历日期的天数，未分配或日期为空时为0
+     */
+    private static long shiftDays(Timeslot anchor, WorkCenterMaintenance target) {
+        WorkCenterMaintenance current = anchor.getMaintenance();
+        if (current == null || current.getDate() == null || target.getDate() == null) {
+            return 0;
+        }
+        return target.getDate().toEpochDay() - current.getDate().toEpochDay();
+    }
+
+    /**
+     * 同一工作中心平移 days 天后的日历，不存在或不在可选日历内时为null
+     */
+    private WorkCenterMaintenance shifted(Timeslot timeslot, long days) {
+        WorkCenterMaintenance current = timeslot.getMaintenance();
+        if (current == null || current.getDate() == null || current.getWorkCenterIndex() == WorkCenterIndexBuilder.NONE) {
+            return null;
+        }
+        if (days == 0) {
+            return current;
+        }
+        WorkCenterMaintenance target = maintenanceByDay.get(dayKey(current.getWorkCenterIndex(), current.getDate().toEpochDay() + days));
+        return target != null && timeslot.getMaintenanceRange().contains(target) ? target : null;
+    }
+
+    private static long dayKey(int workCenterIndex, long epochDay) {
+        return ((long) workCenterIndex << 32) | (epochDay & 0xFFFFFFFFL);
+    }
+}
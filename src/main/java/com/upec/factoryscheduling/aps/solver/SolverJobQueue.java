@@ -0,0 +1,301 @@
+package com.upec.factoryscheduling.aps.solver;
+
+import com.upec.factoryscheduling.common.configuration.SolverProfile;
+import com.upec.factoryscheduling.common.configuration.SolverProperties;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * 求解排队
+ * <p>限制同时求解的问题个数(aps.solver.max-concurrent-solves)和占用的CPU核数(aps.solver.cpu-budget)，
+ * 超出的求解请求在这里排队，而不是在SolverManager的线程池里不可见地等待。</p>
+ * <p>排队按用户轮转：每次优先从正在求解个数最少的用户中取最早的一个，个数相同时按轮转顺序，
+ * 某个用户一次提交很多问题不会挡住其他用户。
+ * 每个用户可限制同时求解个数(max-running-per-user)和排队个数(max-queued-per-user)。</p>
+ * <p>移动线程数、分区线程数在提交时按每个求解的CPU配额(cpu-budget / max-concurrent-solves)确定，AUTO改为配额，
+ * 超过配额的数值按配额截断，见 {@link SolverProfile#withCpuShare(int)}；占用核数超过剩余核数的求解等到有足够的核数再开始，
+ * 没有其它求解运行时总是可以开始。</p>
+ */
+@Slf4j
+@Component
+public class SolverJobQueue {
+
+    /**
+     * 未登录或系统内部提交求解时使用的用户
+     */
+    public static final String ANONYMOUS_USER = "anonymous";
+
+    /**
+     * 求解时长滑动平均的权重
+     */
+    private static final double DURATION_SMOOTHING = 0.3;
+
+    private final int cpuBudget;
+    private final int maxConcurrentSolves;
+    private final int maxRunningPerUser;
+    private final int maxQueuedPerUser;
+    private final int cpuShare;
+
+    /**
+     * 用户 -> 排队中的问题，遍历顺序即轮转顺序，取出问题后用户移到末尾
+     */
+    private final LinkedHashMap<String, Deque<Job>> queuesByUser = new LinkedHashMap<>();
+    private final Map<Long, Job> queued = new HashMap<>();
+    private final Map<Long, Job> running = new HashMap<>();
+    private final Map<String, Integer> runningByUser = new HashMap<>();
+    private int usedCores;
+    private double averageSolveSeconds;
+
+    @Autowired
+    public SolverJobQueue(SolverProperties solverProperties) {
+        this.cpuBudget = solverProperties.resolveCpuBudget();
+        this.maxConcurrentSolves = solverProperties.resolveMaxConcurrentSolves();
+        this.maxRunningPerUser = solverProperties.getMaxRunningPerUser() > 0 ? solverProperties.getMaxRunningPerUser() : maxConcurrentSolves;
+        this.maxQueuedPerUser = solverProperties.getMaxQueuedPerUser();
+        this.cpuShare = solverProperties.cpuSharePerSolve();
+        this.averageSolveSeconds = solverProperties.getExpectedSolveSeconds();
+        log.info("求解排队：CPU核数{}，同时求解{}个，每个求解配额{}核", cpuBudget, maxConcurrentSolves, cpuShare);
+    }
+
+    /**
+     * 提交求解，有空闲名额时立即开始，否则排队
+     *
+     * @param problemId 问题ID
+     * @param user      提交的用户
+     * @param profile   求解档位
+     * @param starter   开始求解的动作，参数为按CPU配额调整后的档位；求解结束(包括出错)时必须调用 {@link #finished(Long)}
+     * @return 按CPU配额调整后的档位
+     * @throws IllegalStateException 问题已在求解或排队中，或用户排队个数已满时抛出
+     */
+    public SolverProfile submit(Long problemId, String user, SolverProfile profile, Consumer<SolverProfile> starter) {
+        SolverProfile adjusted = profile.withCpuShare(cpuShare);
+        List<Job> toStart;
+        synchronized (this) {
+            if (queued.containsKey(problemId) || running.containsKey(problemId)) {
+                throw new IllegalStateException("问题" + problemId + "已在求解或排队中");
+            }
+            Deque<Job> queue = queuesByUser.get(user);
+            if (maxQueuedPerUser > 0 && queue != null && queue.size() >= maxQueuedPerUser) {
+                throw new IllegalStateException("用户" + user + "排队中的问题已达上限" + maxQueuedPerUser + "个");
+            }
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queuesByUser.put(user, queue);
+            }
+            Job job = new Job(problemId, user, adjusted, adjusted.cpuCost(), starter);
+            queue.addLast(job);
+            queued.put(problemId, job);
+            toStart = dispatch();
+        }
+        start(toStart);
+        return adjusted;
+    }
+
+    /**
+     * 求解结束(包括出错和提前终止)，释放名额并开始下一个排队的问题
+     */
+    public void finished(Long problemId) {
+        List<Job> toStart;
+        synchronized (this) {
+            Job job = running.remove(problemId);
+            if (job == null) {
+                return;
+            }
+            release(job);
+            double seconds = Duration.between(job.startedAt, Instant.now()).toMillis() / 1000.0;
+            averageSolveSeconds = DURATION_SMOOTHING * seconds + (1 - DURATION_SMOOTHING) * averageSolveSeconds;
+            toStart = dispatch();
+        }
+        start(toStart);
+    }
+
+    /**
+     * 取消排队中的问题
+     *
+     * @return 问题在排队中并已取消时返回true，已开始求解或不存在时返回false
+     */
+    public synchronized boolean cancel(Long problemId) {
+        Job job = queued.remove(problemId);
+        if (job == null) {
+            return false;
+        }
+        Deque<Job> queue = queuesByUser.get(job.user);
+        queue.remove(job);
+        if (queue.isEmpty()) {
+            queuesByUser.remove(job.user);
+        }
+        log.info("问题{}已取消排队", problemId);
+        return true;
+    }
+
+    /**
+     * 问题是否在排队中(尚未开始求解)
+     */
+    public synchronized boolean isQueued(Long problemId) {
+        return queued.containsKey(problemId);
+    }
+
+    /**
+     * 查询问题的排队位置和预计开始时间
+     * <p>按当前轮转顺序模拟出队，每个名额在运行中的求解预计结束后空出，求解时长按最近完成的求解估算</p>
+     *
+     * @param problemId 问题ID
+     * @return 排队信息，问题不在排队中时返回null
+     */
+    public synchronized QueuePosition positionOf(Long problemId) {
+        if (!queued.containsKey(problemId)) {
+            return null;
+        }
+        Instant now = Instant.now();
+        PriorityQueue<Double> slotFreeSeconds = new PriorityQueue<>();
+        for (Job job : running.values()) {
+            double elapsed = Duration.between(job.startedAt, now).toMillis() / 1000.0;
+            slotFreeSeconds.add(Math.max(0, averageSolveSeconds - elapsed));
+        }
+        while (slotFreeSeconds.size() < maxConcurrentSolves) {
+            slotFreeSeconds.add(0.0);
+        }
+        List<Job> order = dispatchOrder();
+        for (int i = 0; i < order.size(); i++) {
+            double startSeconds = slotFreeSeconds.poll();
+            if (order.get(i).problemId.equals(problemId)) {
+                return new QueuePosition(i + 1, order.size(), Math.round(startSeconds));
+            }
+            slotFreeSeconds.add(startSeconds + averageSolveSeconds);
+        }
+        return null;
+    }
+
+    /**
+     * 从排队中取出可以开始的问题，调用方持有锁
+     */
+    private List<Job> dispatch() {
+        List<Job> toStart = new ArrayList<>();
+        while (running.size() < maxConcurrentSolves) {
+            Job next = null;
+            for (Deque<Job> queue : queuesByUser.values()) {
+                Job job = queue.peekFirst();
+                int userRunning = runningByUser.getOrDefault(job.user, 0);
+                if (userRunning >= maxRunningPerUser || (!running.isEmpty() && usedCores + job.cpuCost > cpuBudget)) {
+                    continue;
+                }
+                if (next == null || userRunning < runningByUser.getOrDefault(next.user, 0)) {
+                    next = job;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            // 该用户移到轮转末尾
+            Deque<Job> queue = queuesByUser.remove(next.user);
+            queue.pollFirst();
+            if (!queue.isEmpty()) {
+                queuesByUser.put(next.user, queue);
+            }
+            queued.remove(next.problemId);
+            running.put(next.problemId, next);
+            runningByUser.merge(next.user, 1, Integer::sum);
+            usedCores += next.cpuCost;
+            next.startedAt = Instant.now();
+            toStart.add(next);
+        }
+        return toStart;
+    }
+
+    /**
+     * 按轮转顺序排列的全部排队问题，不考虑名额和核数；正在求解个数少的用户排在前面
+     */
+    private List<Job> dispatchOrder() {
+        List<Deque<Job>> queues = new ArrayList<>(queuesByUser.values());
+        queues.sort(Comparator.comparingInt(queue -> runningByUser.getOrDefault(queue.peekFirst().user, 0)));
+        List<Iterator<Job>> iterators = new ArrayList<>();
+        queues.forEach(queue -> iterators.add(queue.iterator()));
+        List<Job> order = new ArrayList<>(queued.size());
+        while (order.size() < queued.size()) {
+            for (Iterator<Job> iterator : iterators) {
+                if (iterator.hasNext()) {
+                    order.add(iterator.next());
+                }
+            }
+        }
+        return order;
+    }
+
+    private void release(Job job) {
+        usedCores -= job.cpuCost;
+        runningByUser.computeIfPresent(job.user, (user, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * 在锁外开始求解，开始失败时释放名额
+     */
+    private void start(List<Job> jobs) {
+        for (Job job : jobs) {
+            log.info("问题{}开始求解，用户{}，档位{}，占用{}核", job.problemId, job.user, job.profile, job.cpuCost);
+            try {
+                job.starter.accept(job.profile);
+            } catch (RuntimeException e) {
+                log.error("问题{}开始求解失败: {}", job.problemId, e.getMessage(), e);
+                synchronized (this) {
+                    if (running.remove(job.problemId) != null) {
+                        release(job);
+                    }
+                }
+                start(dispatchLocked());
+            }
+        }
+    }
+
+    private synchronized List<Job> dispatchLocked() {
+        return dispatch();
+    }
+
+    private static final class Job {
+        private final Long problemId;
+        private final String user;
+        private final SolverProfile profile;
+        private final int cpuCost;
+        private final Consumer<SolverProfile> starter;
+        private Instant startedAt;
+
+        private Job(Long problemId, String user, SolverProfile profile, int cpuCost, Consumer<SolverProfile> starter) {
+            this.problemId = problemId;
+            this.user = user;
+            this.profile = profile;
+            this.cpuCost = cpuCost;
+            this.starter = starter;
+        }
+    }
+
+    /**
+     * 排队位置
+     */
+    @Getter
+    public static class QueuePosition {
+        /**
+         * 排队位置，从1开始
+         */
+        private final int position;
+        /**
+         * 排队中的问题总数
+         */
+        private final int queueLength;
+        /**
+         * 预计开始求解的秒数
+         */
+        private final long etaSeconds;
+
+        QueuePosition(int position, int queueLength, long etaSeconds) {
+            this.position = position;
+            this.queueLength = queueLength;
+            this.etaSeconds = etaSeconds;
+        }
+    }
+}
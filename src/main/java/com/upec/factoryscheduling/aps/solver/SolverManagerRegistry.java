@@ -0,0 +1,178 @@
+package com.upec.factoryscheduling.aps.solver;
+
+import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
+import com.upec.factoryscheduling.common.configuration.OptaPlannerConfig;
+import com.upec.factoryscheduling.common.configuration.SolverProfile;
+import com.upec.factoryscheduling.common.configuration.SolverProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.optaplanner.core.api.solver.SolverManager;
+import org.optaplanner.core.config.solver.EnvironmentMode;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 求解器管理器注册表
+ * <p>OptaPlanner的SolverManager在创建时绑定SolverConfig，无法按单次求解切换环境模式或移动线程数。
+ * 该注册表按档位参数签名缓存SolverManager：默认档位直接使用Spring容器中的SolverManager，
+ * 其它档位在首次使用时基于未应用档位的基础配置（{@link OptaPlannerConfig#baseSolverConfig()}）创建，
+ * 不继承默认档位的移动线程缓冲区、随机数种子、算法类型等参数；同时记录每个problemId所在的SolverManager，
+ * 以便查询状态、提前终止时找到正确的求解器。</p>
+ * <p>档位签名按CPU配额调整后的参数计算(见 {@link SolverProfile#withCpuShare(int)})，默认档位的SolverManager也按调整后的档位创建。
+ * 求解结束后调用 {@link #release(Long)} 移除问题的记录；非默认档位的SolverManager没有求解中的问题超过
+ * {@link #IDLE_CLOSE_MILLIS} 后关闭并释放线程池，请求参数的各种组合不会让SolverManager一直累积。</p>
+ */
+@Slf4j
+@Component
+public class SolverManagerRegistry {
+
+    /**
+     * 非默认档位的SolverManager空闲多久后关闭
+     */
+    static final long IDLE_CLOSE_MILLIS = 5 * 60 * 1000L;
+
+    private final SolverProperties solverProperties;
+
+    /**
+     * 默认档位按CPU配额调整后的参数签名，与默认SolverManager的配置一致
+     */
+    private final String activeKey;
+
+    private final SolverManager<FactorySchedulingSolution, Long> defaultSolverManager;
+
+    /**
+     * 档位参数签名 -> SolverManager（不含默认档位）
+     */
+    private final Map<String, SolverManager<FactorySchedulingSolution, Long>> managers = new ConcurrentHashMap<>();
+
+    /**
+     * problemId -> 该问题使用的档位，求解结束后移除
+     */
+    private final Map<Long, SolverProfile> problemProfiles = new ConcurrentHashMap<>();
+
+    /**
+     * 档位参数签名 -> 求解中的问题个数(不含默认档位)
+     */
+    private final Map<String, Integer> runningByKey = new HashMap<>();
+
+    /**
+     * 档位参数签名 -> 开始空闲的时间(毫秒)
+     */
+    private final Map<String, Long> idleSince = new HashMap<>();
+
+    @Autowired
+    public SolverManagerRegistry(SolverProperties solverProperties,
+                                 SolverManager<FactorySchedulingSolution, Long> defaultSolverManager) {
+        this.solverProperties = solverProperties;
+        this.defaultSolverManager = defaultSolverManager;
+        this.activeKey = solverProperties.getActive().withCpuShare(solverProperties.cpuSharePerSolve()).key();
+    }
+
+    /**
+     * 解析单次求解使用的档位
+     *
+     * @param profileName     档位名称，为空时使用默认档位
+     * @param environmentMode 覆盖的环境模式，可为空
+     * @param moveThreadCount 覆盖的移动线程数，可为空
+     * @return 校验通过的档位
+     * @throws IllegalArgumentException 档位不存在或参数不合法时抛出
+     */
+    public SolverProfile resolveProfile(String profileName, EnvironmentMode environmentMode, String moveThreadCount) {
+        SolverProfile profile = solverProperties.resolve(profileName).override(environmentMode, moveThreadCount);
+        profile.validate();
+        return profile;
+    }
+
+    /**
+     * 为问题分配档位对应的SolverManager，求解结束(包括出错)后必须调用 {@link #release(Long)}
+     *
+     * @param problemId 问题ID
+     * @param profile   按CPU配额调整后的档位
+     * @return 对应的SolverManager
+     */
+    public synchronized SolverManager<FactorySchedulingSolution, Long> register(Long problemId, SolverProfile profile) {
+        problemProfiles.put(problemId, profile);
+        String key = profile.key();
+        if (!key.equals(activeKey)) {
+            runningByKey.merge(key, 1, Integer::sum);
+            idleSince.remove(key);
+        }
+        return forProfile(profile);
+    }
+
+    /**
+     * 问题求解结束，移除问题的记录；档位没有其它求解中的问题时开始计算空闲时间
+     */
+    public synchronized void release(Long problemId) {
+        SolverProfile profile = problemProfiles.remove(problemId);
+        if (profile == null) {
+            return;
+        }
+        String key = profile.key();
+        if (runningByKey.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null) == null
+                && managers.containsKey(key)) {
+            idleSince.put(key, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 关闭空闲超时的SolverManager
+     * <p>在定时线程中关闭，不在求解线程的回调中关闭，避免中断正在返回的求解线程</p>
+     */
+    @Scheduled(fixedDelay = 60_000L)
+    public void closeIdleManagers() {
+        List<SolverManager<FactorySchedulingSolution, Long>> idle = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<String, Long>> iterator = idleSince.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Long> entry = iterator.next();
+                if (now - entry.getValue() >= IDLE_CLOSE_MILLIS) {
+                    iterator.remove();
+                    idle.add(managers.remove(entry.getKey()));
+                    log.info("关闭空闲的求解器管理器，档位签名: {}", entry.getKey());
+                }
+            }
+        }
+        idle.forEach(SolverManager::close);
+    }
+
+    /**
+     * 获取问题所在的SolverManager，未注册的问题返回默认SolverManager
+     */
+    public SolverManager<FactorySchedulingSolution, Long> managerOf(Long problemId) {
+        SolverProfile profile = problemProfiles.get(problemId);
+        return profile == null ? defaultSolverManager : forProfile(profile);
+    }
+
+    /**
+     * 获取问题使用的档位，未注册的问题返回默认档位
+     */
+    public SolverProfile profileOf(Long problemId) {
+        return problemProfiles.getOrDefault(problemId, solverProperties.getActive());
+    }
+
+    private SolverManager<FactorySchedulingSolution, Long> forProfile(SolverProfile profile) {
+        if (profile.key().equals(activeKey)) {
+            return defaultSolverManager;
+        }
+        return managers.computeIfAbsent(profile.key(), key -> {
+            SolverConfig config = OptaPlannerConfig.baseSolverConfig();
+            profile.applyTo(config);
+            log.info("创建求解器管理器，档位: {}", profile);
+            return SolverManager.create(config, OptaPlannerConfig.solverManagerConfig(solverProperties));
+        });
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        managers.values().forEach(SolverManager::close);
+        managers.clear();
+        idleSince.clear();
+    }
+}
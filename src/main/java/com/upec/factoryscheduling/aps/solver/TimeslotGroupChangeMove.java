@@ -0,0 +1,124 @@
+package com.upec.factoryscheduling.aps.solver;
+
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
+import org.optaplanner.core.api.score.director.ScoreDirector;
+import org.optaplanner.core.impl.heuristic.move.AbstractMove;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 一组时间槽同时更换日历的复合移动
+ * <p>由 {@link ShiftMoveIteratorFactory} 生成，
+ * 一次把工序的全部分片（或工序及其全部后序工序）平移相同天数，保持分片之间、工序之间的先后顺序，
+ * 不会像单个时间槽的ChangeMove那样先破坏顺序约束再等下一步修复。撤销移动为同一类型、目标为原日历的移动。</p>
+ */
+public class TimeslotGroupChangeMove extends AbstractMove<FactorySchedulingSolution> {
+
+    private static final String VARIABLE_NAME = "maintenance";
+
+    private final String moveType;
+    private final List<Timeslot> timeslots;
+
+    /**
+     * 与 timeslots 一一对应的目标日历，为null表示平移后没有可选日历，移动不可执行
+     */
+    private final List<WorkCenterMaintenance> targets;
+
+    public TimeslotGroupChangeMove(String moveType, List<Timeslot> timeslots, List<WorkCenterMaintenance> targets) {
+        this.moveType = moveType;
+        this.timeslots = timeslots;
+        this.targets = targets;
+    }
+
+    @Override
+    public boolean isMoveDoable(ScoreDirector<FactorySchedulingSolution> scoreDirector) {
+        boolean changed = false;
+        for (int i = 0; i < timeslots.size(); i++) {
+            Timeslot timeslot = timeslots.get(i);
+            WorkCenterMaintenance target = targets.get(i);
+            if (target == null || timeslot.isPinned()) {
+                return false;
+            }
+            changed |= timeslot.getMaintenance() != target;
+        }
+        return changed;
+    }
+
+    @Override
+    protected TimeslotGroupChangeMove createUndoMove(ScoreDirector<FactorySchedulingSolution> scoreDirector) {
+        List<WorkCenterMaintenance> originals = new ArrayList<>(timeslots.size());
+        for (Timeslot timeslot : timeslots) {
+            originals.add(timeslot.getMaintenance());
+        }
+        return new TimeslotGroupChangeMove(moveType, timeslots, originals);
+    }
+
+    @Override
+    protected void doMoveOnGenuineVariables(ScoreDirector<FactorySchedulingSolution> scoreDirector) {
+        for (int i = 0; i < timeslots.size(); i++) {
+            Timeslot timeslot = timeslots.get(i);
+            WorkCenterMaintenance target = targets.get(i);
+            if (timeslot.getMaintenance() != target) {
+                scoreDirector.beforeVariableChanged(timeslot, VARIABLE_NAME);
+                timeslot.setMaintenance(target);
+                scoreDirector.afterVariableChanged(timeslot, VARIABLE_NAME);
+            }
+        }
+    }
+
+    @Override
+    public TimeslotGroupChangeMove rebase(ScoreDirector<FactorySchedulingSolution> destinationScoreDirector) {
+        return new TimeslotGroupChangeMove(moveType, rebaseList(timeslots, destinationScoreDirector),
+                rebaseList(targets, destinationScoreDirector));
+    }
+
+    @Override
+    public String getSimpleMoveTypeDescription() {
+        return moveType + "(" + VARIABLE_NAME + ")";
+    }
+
+    @Override
+    public Collection<Timeslot> getPlanningEntities() {
+        return timeslots;
+    }
+
+    @Override
+    public Collection<WorkCenterMaintenance> getPlanningValues() {
+        return targets;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        TimeslotGroupChangeMove that = (TimeslotGroupChangeMove) o;
+        return moveType.equals(that.moveType) && timeslots.equals(that.timeslots) && targets.equals(that.targets);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(moveType, timeslots, targets);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(moveType).append(" {");
+        for (int i = 0; i < timeslots.size(); i++) {
+            WorkCenterMaintenance current = timeslots.get(i).getMaintenance();
+            WorkCenterMaintenance target = targets.get(i);
+            builder.append(i == 0 ? "" : ", ").append(timeslots.get(i).getId())
+                    .append(" ").append(current == null ? null : current.getDate())
+                    .append(" -> ").append(target == null ? null : target.getDate());
+        }
+        return builder.append("}").toString();
+    }
+}
@@ -22,8 +22,10 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.regex.Pattern;
 
 /**
  * JWT 认证过滤器
@@ -34,6 +36,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
+    private static final String STREAM_PATH_PREFIX = "/api/scheduling/stream/";
+
+    /**
+     * 查询串中的 token 参数，向后传递的请求中替换为***，避免令牌出现在日志中
+     */
+    private static final Pattern TOKEN_PARAMETER = Pattern.compile("(^|&)(token=)[^&]*");
+
     @Autowired
     private JwtUtils jwtUtils;
 
@@ -61,7 +70,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 // 设置到安全上下文
                 SecurityContextHolder.getContext().setAuthentication(authentication);
             }
-            filterChain.doFilter(request, response);
+            filterChain.doFilter(maskTokenParameter(request), response);
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e);
             handleException(e, request, response);
@@ -70,6 +79,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     /**
      * 从请求头中解析 JWT 令牌
+     * <p>浏览器 EventSource 无法设置请求头，SSE 推送接口允许通过 token 参数传递令牌</p>
      *
      * @param request HTTP 请求
      * @return JWT 令牌
@@ -79,9 +89,32 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
             return headerAuth.substring(7);
         }
+        if (request.getRequestURI().startsWith(STREAM_PATH_PREFIX) && StringUtils.hasText(request.getParameter("token"))) {
+            return request.getParameter("token");
+        }
         return null;
     }
 
+    /**
+     * 屏蔽查询串中的 token 参数，后续过滤器、MVC和错误处理记录请求时只能看到***
+     *
+     * @param request HTTP 请求
+     * @return 没有 token 参数时为原请求
+     */
+    private static HttpServletRequest maskTokenParameter(HttpServletRequest request) {
+        String queryString = request.getQueryString();
+        if (queryString == null || !TOKEN_PARAMETER.matcher(queryString).find()) {
+            return request;
+        }
+        String masked = TOKEN_PARAMETER.matcher(queryString).replaceAll("$1$2***");
+        return new HttpServletRequestWrapper(request) {
+            @Override
+            public String getQueryString() {
+                return masked;
+            }
+        };
+    }
+
 
     private void handleException(Exception ex,
                                  HttpServletRequest request,
@@ -0,0 +1,102 @@
+package com.upec.factoryscheduling.common.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.regex.Pattern;
+
+/**
+ * MES数据同步配置
+ * <p>对应 application.yaml 中的 aps.mes-sync 配置项。导入流水线分为读取、转换、写入三个阶段，
+ * 阶段之间通过容量为 queue-capacity 的队列传递批次，内存中最多同时存在
+ * (queue-capacity * 2 + convert-threads + write-threads + 1) 个批次。</p>
+ * <p>增量同步按每张MES表的水位列(修改时间，格式yyyy-MM-dd HH:mm:ss)分页拉取水位之后的行，水位保存在 aps_mes_sync_watermark 表中。</p>
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "aps.mes-sync")
+public class MesSyncProperties {
+
+    private static final Pattern COLUMN_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    /**
+     * 每个批次的订单个数，转换阶段按批次查询任务和工序
+     */
+    private int chunkSize = 200;
+
+    /**
+     * 读取订单时的JDBC fetch size，MySQL需要在连接串中设置useCursorFetch=true才按此值分批读取
+     */
+    private int fetchSize = 1000;
+
+    /**
+     * 转换阶段的线程数
+     */
+    private int convertThreads = 2;
+
+    /**
+     * 写入阶段的线程数
+     */
+    private int writeThreads = 2;
+
+    /**
+     * 阶段之间队列的容量(批次个数)
+     */
+    private int queueCapacity = 4;
+
+    /**
+     * 每条批量语句的行数
+     */
+    private int writeBatchSize = 1000;
+
+    /**
+     * 增量同步每页的行数
+     */
+    private int syncPageSize = 1000;
+
+    /**
+     * 没有水位记录时的起始水位
+     */
+    private String initialWatermark = "2025-01-01 00:00:00";
+
+    /**
+     * MES_JJ_ORDER 的水位列，MES没有修改时间列时只能按创建时间捕获新订单
+     */
+    private String orderWatermarkColumn = "CREATEDATE";
+
+    /**
+     * MES_JJ_ORDER_TASK 的水位列，MES没有修改时间列时只能按创建时间捕获新任务
+     */
+    private String taskWatermarkColumn = "CREATEDATE";
+
+    /**
+     * MES_JJ_PROCEDURE 的水位列，工序变化时同时刷新其任务和订单
+     */
+    private String procedureWatermarkColumn = "UPDATEDATE";
+
+    /**
+     * 增量同步后是否重排受影响的任务(只重排已属于某个排程问题的任务)
+     * <p>默认关闭：首次部署时从 initialWatermark 开始的第一次同步会把历史数据全部视为变化，开启会重排全部任务。
+     * 建议首次同步完成、水位追上当前时间后再开启。</p>
+     */
+    private boolean replanAfterSync = false;
+
+    /**
+     * 校验配置，配置错误时抛出IllegalStateException
+     */
+    public void validate() {
+        if (chunkSize <= 0 || fetchSize <= 0 || convertThreads <= 0 || writeThreads <= 0 || queueCapacity <= 0 || writeBatchSize <= 0) {
+            throw new IllegalStateException("aps.mes-sync.chunk-size/fetch-size/convert-threads/write-threads/queue-capacity/write-batch-size必须大于0");
+        }
+        if (syncPageSize <= 0) {
+            throw new IllegalStateException("aps.mes-sync.sync-page-size必须大于0");
+        }
+        // 水位列拼接到SQL中，只允许列名
+        for (String column : new String[]{orderWatermarkColumn, taskWatermarkColumn, procedureWatermarkColumn}) {
+            if (column == null || !COLUMN_NAME.matcher(column).matches()) {
+                throw new IllegalStateException("aps.mes-sync水位列名不合法: " + column);
+            }
+        }
+    }
+}
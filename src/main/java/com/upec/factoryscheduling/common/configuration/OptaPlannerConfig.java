@@ -3,26 +3,49 @@ package com.upec.factoryscheduling.common.configuration;
 import com.upec.factoryscheduling.aps.entity.Timeslot;
 import com.upec.factoryscheduling.aps.solution.FactorySchedulingSolution;
 import com.upec.factoryscheduling.aps.solver.FactorySchedulingConstraintProvider;
+import lombok.extern.slf4j.Slf4j;
 import org.optaplanner.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
 import org.optaplanner.core.api.solver.SolutionManager;
 import org.optaplanner.core.api.solver.SolverManager;
 import org.optaplanner.core.config.constructionheuristic.ConstructionHeuristicPhaseConfig;
 import org.optaplanner.core.config.localsearch.LocalSearchPhaseConfig;
 import org.optaplanner.core.config.phase.PhaseConfig;
-import org.optaplanner.core.config.solver.EnvironmentMode;
 import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.config.solver.SolverManagerConfig;
 import org.optaplanner.core.config.solver.termination.TerminationConfig;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.util.ArrayList;
 import java.util.List;
 
+@Slf4j
 @Configuration
+@EnableConfigurationProperties({SolverProperties.class, MesSyncProperties.class})
 public class OptaPlannerConfig {
 
     @Bean
-    public SolverConfig solverConfig() {
+    public SolverConfig solverConfig(SolverProperties solverProperties) {
+        SolverConfig solverConfig = baseSolverConfig();
+
+        // 环境模式和多线程配置由aps.solver档位决定，启动时校验
+        // dev档位使用FULL_ASSERT便于发现分数错误，prod档位使用REPRODUCIBLE/NON_REPRODUCIBLE并启用移动线程
+        // AUTO参数按每个求解的CPU配额确定，与 SolverJobQueue 提交时调整后的档位一致，默认档位的求解才能使用这个SolverManager
+        solverProperties.validate();
+        SolverProfile profile = solverProperties.getActive().withCpuShare(solverProperties.cpuSharePerSolve());
+        profile.applyTo(solverConfig);
+        log.info("OptaPlanner求解器档位: {}", profile);
+
+        return solverConfig;
+    }
+
+    /**
+     * 未应用任何档位的基础求解器配置
+     * <p>档位只覆盖自己配置了的参数，其它档位的SolverManager必须基于这份配置创建，
+     * 而不是基于已应用默认档位的 {@link #solverConfig(SolverProperties)}，否则会继承默认档位的参数</p>
+     */
+    public static SolverConfig baseSolverConfig() {
         SolverConfig solverConfig = new SolverConfig();
 
         // 设置解决方案和实体类
@@ -47,14 +70,6 @@ public class OptaPlannerConfig {
         
         solverConfig.setPhaseConfigList(phaseConfigList);
 
-        // 设置环境模式 - 在多线程环境中使用REPRODUCIBLE确保结果可重现
-        // 注意：在生产环境中可考虑使用FASTEST，但会牺牲结果可重现性
-        solverConfig.setEnvironmentMode(EnvironmentMode.FULL_ASSERT);
-        
-        // 多线程配置 - 启用并行移动生成和评估
-        // 使用自动设置以充分利用多核CPU
-//        solverConfig.setMoveThreadCount(MOVE_THREAD_COUNT_AUTO);
-        
         // 增加移动线程缓冲区大小以减少线程间竞争
         solverConfig.setMoveThreadBufferSize(1024);
         
@@ -65,10 +80,16 @@ public class OptaPlannerConfig {
     }
 
     @Bean
-    public SolverManager<FactorySchedulingSolution, Long> solverManager(SolverConfig solverConfig) {
-        // 创建SolverManager，使用版本兼容的方式
-        // 注意：当前OptaPlanner版本可能不支持SolverManagerConfig，使用基本创建方式
-        return SolverManager.create(solverConfig);
+    public SolverManager<FactorySchedulingSolution, Long> solverManager(SolverConfig solverConfig, SolverProperties solverProperties) {
+        return SolverManager.create(solverConfig, solverManagerConfig(solverProperties));
+    }
+
+    /**
+     * SolverManager线程池大小与同时求解个数一致
+     * <p>同时求解的问题个数由 SolverJobQueue 控制，提交到SolverManager的求解都能立即得到线程，不在线程池里排队</p>
+     */
+    public static SolverManagerConfig solverManagerConfig(SolverProperties solverProperties) {
+        return new SolverManagerConfig().withParallelSolverCount(String.valueOf(solverProperties.resolveMaxConcurrentSolves()));
     }
 
     @Bean
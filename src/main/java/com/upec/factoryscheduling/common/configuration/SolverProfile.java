@@ -0,0 +1,326 @@
+package com.upec.factoryscheduling.common.configuration;
+
+import com.upec.factoryscheduling.aps.solver.FactorySchedulingPartitioner;
+import com.upec.factoryscheduling.aps.solver.ShiftMoveIteratorFactory;
+import lombok.Getter;
+import lombok.Setter;
+import org.optaplanner.core.api.score.stream.ConstraintStreamImplType;
+import org.optaplanner.core.config.constructionheuristic.ConstructionHeuristicPhaseConfig;
+import org.optaplanner.core.config.constructionheuristic.ConstructionHeuristicType;
+import org.optaplanner.core.config.heuristic.selector.move.MoveSelectorConfig;
+import org.optaplanner.core.config.heuristic.selector.move.composite.UnionMoveSelectorConfig;
+import org.optaplanner.core.config.heuristic.selector.move.factory.MoveIteratorFactoryConfig;
+import org.optaplanner.core.config.heuristic.selector.move.generic.ChangeMoveSelectorConfig;
+import org.optaplanner.core.config.heuristic.selector.move.generic.SwapMoveSelectorConfig;
+import org.optaplanner.core.config.localsearch.LocalSearchPhaseConfig;
+import org.optaplanner.core.config.localsearch.LocalSearchType;
+import org.optaplanner.core.config.partitionedsearch.PartitionedSearchPhaseConfig;
+import org.optaplanner.core.config.phase.PhaseConfig;
+import org.optaplanner.core.config.solver.EnvironmentMode;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.config.solver.termination.TerminationConfig;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 求解器运行档位
+ * <p>描述一组求解器运行参数（环境模式、移动线程数等），可在 application.yaml 中按名称配置，
+ * 也可在单次求解请求中覆盖部分参数。</p>
+ */
+@Getter
+@Setter
+public class SolverProfile {
+
+    /**
+     * 档位名称，由 SolverProperties 在绑定后回填
+     */
+    private String name;
+
+    /**
+     * 环境模式：开发环境使用FULL_ASSERT，生产环境使用REPRODUCIBLE或NON_REPRODUCIBLE
+     */
+    private EnvironmentMode environmentMode = EnvironmentMode.REPRODUCIBLE;
+
+    /**
+     * 移动线程数：NONE、AUTO 或正整数
+     */
+    private String moveThreadCount = SolverConfig.MOVE_THREAD_COUNT_NONE;
+
+    /**
+     * 移动线程缓冲区大小，为空时使用OptaPlanner默认值
+     */
+    private Integer moveThreadBufferSize;
+
+    /**
+     * 随机数种子，为空时使用OptaPlanner默认值
+     */
+    private Long randomSeed;
+
+    /**
+     * 约束流实现(DROOLS/BAVET)，为空时使用OptaPlanner默认实现
+     */
+    private ConstraintStreamImplType constraintStreamImplType;
+
+    /**
+     * 构造启发式类型(FIRST_FIT_DECREASING/WEAKEST_FIT等)，为空时使用OptaPlanner默认值
+     */
+    private ConstructionHeuristicType constructionHeuristicType;
+
+    /**
+     * 局部搜索类型(LATE_ACCEPTANCE/TABU_SEARCH/GREAT_DELUGE等)，为空时使用OptaPlanner默认值
+     */
+    private LocalSearchType localSearchType;
+
+    /**
+     * 局部搜索是否加入平移复合移动(整个工序的分片、工序及其后序工序按相同天数平移，见 {@link ShiftMoveIteratorFactory})，
+     * 与默认的ChangeMove、SwapMove按相同概率选择
+     */
+    private boolean shiftMoves;
+
+    /**
+     * 分区个数，大于1时在构造启发式和局部搜索之前增加分区搜索阶段，为空或1时不分区
+     */
+    private Integer partitionCount;
+
+    /**
+     * 分区搜索阶段的时间(秒)，之后合并分区并进入全局局部搜索
+     */
+    private long partitionSecondsSpentLimit = 60L;
+
+    /**
+     * 同时运行的分区线程数：AUTO(可用处理器数-2)、UNLIMITED 或正整数
+     */
+    private String partitionThreadLimit = PartitionedSearchPhaseConfig.ACTIVE_THREAD_COUNT_AUTO;
+
+    /**
+     * 校验档位参数，参数不合法时抛出IllegalArgumentException
+     */
+    public void validate() {
+        if (environmentMode == null) {
+            throw new IllegalArgumentException("求解器档位[" + name + "]未配置environmentMode");
+        }
+        if (!SolverConfig.MOVE_THREAD_COUNT_NONE.equals(moveThreadCount)
+                && !SolverConfig.MOVE_THREAD_COUNT_AUTO.equals(moveThreadCount)) {
+            int count;
+            try {
+                count = Integer.parseInt(moveThreadCount);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("求解器档位[" + name + "]的moveThreadCount必须为NONE、AUTO或正整数: " + moveThreadCount);
+            }
+            if (count < 1) {
+                throw new IllegalArgumentException("求解器档位[" + name + "]的moveThreadCount必须为正整数: " + moveThreadCount);
+            }
+        }
+        if (moveThreadBufferSize != null && moveThreadBufferSize < 1) {
+            throw new IllegalArgumentException("求解器档位[" + name + "]的moveThreadBufferSize必须为正整数: " + moveThreadBufferSize);
+        }
+        if (partitionCount != null && partitionCount < 1) {
+            throw new IllegalArgumentException("求解器档位[" + name + "]的partitionCount必须为正整数: " + partitionCount);
+        }
+        if (partitionSecondsSpentLimit < 1) {
+            throw new IllegalArgumentException("求解器档位[" + name + "]的partitionSecondsSpentLimit必须为正整数: " + partitionSecondsSpentLimit);
+        }
+        if (!PartitionedSearchPhaseConfig.ACTIVE_THREAD_COUNT_AUTO.equals(partitionThreadLimit)
+                && !PartitionedSearchPhaseConfig.ACTIVE_THREAD_COUNT_UNLIMITED.equals(partitionThreadLimit)) {
+            try {
+                if (Integer.parseInt(partitionThreadLimit) < 1) {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("求解器档位[" + name + "]的partitionThreadLimit必须为AUTO、UNLIMITED或正整数: " + partitionThreadLimit);
+            }
+        }
+    }
+
+    /**
+     * 是否启用多线程移动评估
+     */
+    public boolean isMultithreaded() {
+        return !SolverConfig.MOVE_THREAD_COUNT_NONE.equals(moveThreadCount);
+    }
+
+    /**
+     * 是否启用分区搜索
+     */
+    public boolean isPartitioned() {
+        return partitionCount != null && partitionCount > 1;
+    }
+
+    /**
+     * 按CPU配额确定线程数
+     * <p>移动线程数为AUTO时改为配额(配额小于2时不启用移动线程)，分区线程数为AUTO或UNLIMITED时改为配额；
+     * 明确配置(或请求中指定)的线程数超过配额时按配额截断。同时求解多个问题时，每个问题只使用自己的配额，
+     * 不会各自按全部核数创建线程，{@link #cpuCost()} 也不会超过配额。</p>
+     *
+     * @param share 每个求解可用的CPU核数
+     * @return 新的档位对象，当前对象不变
+     */
+    public SolverProfile withCpuShare(int share) {
+        SolverProfile profile = copy();
+        if (SolverConfig.MOVE_THREAD_COUNT_AUTO.equals(moveThreadCount)
+                || isMultithreaded() && Integer.parseInt(moveThreadCount) > share) {
+            profile.setMoveThreadCount(share >= 2 ? String.valueOf(share) : SolverConfig.MOVE_THREAD_COUNT_NONE);
+        }
+        if (PartitionedSearchPhaseConfig.ACTIVE_THREAD_COUNT_AUTO.equals(partitionThreadLimit)
+                || PartitionedSearchPhaseConfig.ACTIVE_THREAD_COUNT_UNLIMITED.equals(partitionThreadLimit)
+                || Integer.parseInt(partitionThreadLimit) > share) {
+            profile.setPartitionThreadLimit(String.valueOf(share));
+        }
+        return profile;
+    }
+
+    /**
+     * 求解占用的CPU核数：移动线程数和同时运行的分区数中的较大者，至少为1
+     * <p>AUTO和UNLIMITED无法确定具体数值，按可用处理器数计算，应先调用 {@link #withCpuShare(int)}</p>
+     */
+    public int cpuCost() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int cost = 1;
+        if (isMultithreaded()) {
+            cost = SolverConfig.MOVE_THREAD_COUNT_AUTO.equals(moveThreadCount) ? processors : Integer.parseInt(moveThreadCount);
+        }
+        if (isPartitioned()) {
+            int threads = PartitionedSearchPhaseConfig.ACTIVE_THREAD_COUNT_AUTO.equals(partitionThreadLimit)
+                    || PartitionedSearchPhaseConfig.ACTIVE_THREAD_COUNT_UNLIMITED.equals(partitionThreadLimit)
+                    ? processors : Integer.parseInt(partitionThreadLimit);
+            cost = Math.max(cost, Math.min(partitionCount, threads));
+        }
+        return cost;
+    }
+
+    /**
+     * 将档位参数写入求解器配置
+     */
+    public void applyTo(SolverConfig solverConfig) {
+        solverConfig.setEnvironmentMode(environmentMode);
+        solverConfig.setMoveThreadCount(moveThreadCount);
+        if (moveThreadBufferSize != null) {
+            solverConfig.setMoveThreadBufferSize(moveThreadBufferSize);
+        }
+        if (randomSeed != null) {
+            solverConfig.setRandomSeed(randomSeed);
+        }
+        if (solverConfig.getScoreDirectorFactoryConfig() != null) {
+            solverConfig.getScoreDirectorFactoryConfig().setConstraintStreamImplType(constraintStreamImplType);
+        }
+        if (solverConfig.getPhaseConfigList() != null
+                && solverConfig.getPhaseConfigList().stream().anyMatch(PartitionedSearchPhaseConfig.class::isInstance)) {
+            // 基础配置可能来自启用了分区的默认档位，先去掉分区阶段，再按本档位决定是否添加
+            List<PhaseConfig> phaseConfigList = new ArrayList<>(solverConfig.getPhaseConfigList());
+            phaseConfigList.removeIf(PartitionedSearchPhaseConfig.class::isInstance);
+            solverConfig.setPhaseConfigList(phaseConfigList);
+        }
+        if (solverConfig.getPhaseConfigList() != null && (constructionHeuristicType != null || localSearchType != null || shiftMoves)) {
+            // 复制阶段配置后再修改，避免影响共用同一阶段配置的其它SolverConfig
+            List<PhaseConfig> phaseConfigList = new ArrayList<>();
+            for (PhaseConfig<?> phaseConfig : solverConfig.getPhaseConfigList()) {
+                PhaseConfig<?> copy = phaseConfig.copyConfig();
+                if (copy instanceof ConstructionHeuristicPhaseConfig && constructionHeuristicType != null) {
+                    ((ConstructionHeuristicPhaseConfig) copy).setConstructionHeuristicType(constructionHeuristicType);
+                } else if (copy instanceof LocalSearchPhaseConfig) {
+                    if (localSearchType != null) {
+                        ((LocalSearchPhaseConfig) copy).setLocalSearchType(localSearchType);
+                    }
+                    if (shiftMoves) {
+                        ((LocalSearchPhaseConfig) copy).setMoveSelectorConfig(shiftMoveSelectorConfig());
+                    }
+                }
+                phaseConfigList.add(copy);
+            }
+            solverConfig.setPhaseConfigList(phaseConfigList);
+        }
+        if (solverConfig.getPhaseConfigList() != null && isPartitioned()) {
+            // 各分区使用与全局相同的阶段配置，分区阶段结束后合并，再由全局阶段处理跨分区的约束
+            List<PhaseConfig> partPhaseConfigList = new ArrayList<>();
+            for (PhaseConfig<?> phaseConfig : solverConfig.getPhaseConfigList()) {
+                partPhaseConfigList.add(phaseConfig.copyConfig());
+            }
+            Map<String, String> partitionerProperties = new HashMap<>();
+            partitionerProperties.put("partCount", String.valueOf(partitionCount));
+            PartitionedSearchPhaseConfig partitionedSearchPhaseConfig = new PartitionedSearchPhaseConfig()
+                    .withSolutionPartitionerClass(FactorySchedulingPartitioner.class)
+                    .withSolutionPartitionerCustomProperties(partitionerProperties)
+                    .withRunnablePartThreadLimit(partitionThreadLimit)
+                    .withPhaseConfigList(partPhaseConfigList);
+            partitionedSearchPhaseConfig.setTerminationConfig(new TerminationConfig().withSecondsSpentLimit(partitionSecondsSpentLimit));
+            List<PhaseConfig> phaseConfigList = new ArrayList<>();
+            phaseConfigList.add(partitionedSearchPhaseConfig);
+            phaseConfigList.addAll(solverConfig.getPhaseConfigList());
+            solverConfig.setPhaseConfigList(phaseConfigList);
+        }
+    }
+
+    /**
+     * 默认的ChangeMove、SwapMove加上两种平移移动
+     * <p>联合选择器默认按子选择器的大小加权，平移移动的个数(工序数)远小于ChangeMove(时间槽数x日历数)，
+     * 这里给每个子选择器相同的固定权重，否则平移移动几乎不会被选中</p>
+     */
+    private static UnionMoveSelectorConfig shiftMoveSelectorConfig() {
+        List<MoveSelectorConfig> moveSelectorConfigs = new ArrayList<>();
+        moveSelectorConfigs.add(new ChangeMoveSelectorConfig().withFixedProbabilityWeight(1.0));
+        moveSelectorConfigs.add(new SwapMoveSelectorConfig().withFixedProbabilityWeight(1.0));
+        for (ShiftMoveIteratorFactory.Scope scope : ShiftMoveIteratorFactory.Scope.values()) {
+            Map<String, String> properties = new HashMap<>();
+            properties.put("scope", scope.name());
+            moveSelectorConfigs.add(new MoveIteratorFactoryConfig()
+                    .withMoveIteratorFactoryClass(ShiftMoveIteratorFactory.class)
+                    .withMoveIteratorFactoryCustomProperties(properties)
+                    .withFixedProbabilityWeight(1.0));
+        }
+        return new UnionMoveSelectorConfig().withMoveSelectorList(moveSelectorConfigs);
+    }
+
+    /**
+     * 基于当前档位生成带覆盖参数的新档位，参数为空时沿用当前值
+     *
+     * @param environmentMode 覆盖的环境模式
+     * @param moveThreadCount 覆盖的移动线程数
+     * @return 新的档位对象，当前对象不变
+     */
+    public SolverProfile override(EnvironmentMode environmentMode, String moveThreadCount) {
+        SolverProfile profile = copy();
+        if (environmentMode != null) {
+            profile.setEnvironmentMode(environmentMode);
+        }
+        if (StringUtils.hasText(moveThreadCount)) {
+            profile.setMoveThreadCount(moveThreadCount.trim().toUpperCase());
+        }
+        return profile;
+    }
+
+    public SolverProfile copy() {
+        SolverProfile profile = new SolverProfile();
+        profile.setName(name);
+        profile.setEnvironmentMode(environmentMode);
+        profile.setMoveThreadCount(moveThreadCount);
+        profile.setMoveThreadBufferSize(moveThreadBufferSize);
+        profile.setRandomSeed(randomSeed);
+        profile.setConstraintStreamImplType(constraintStreamImplType);
+        profile.setConstructionHeuristicType(constructionHeuristicType);
+        profile.setLocalSearchType(localSearchType);
+        profile.setShiftMoves(shiftMoves);
+        profile.setPartitionCount(partitionCount);
+        profile.setPartitionSecondsSpentLimit(partitionSecondsSpentLimit);
+        profile.setPartitionThreadLimit(partitionThreadLimit);
+        return profile;
+    }
+
+    /**
+     * 档位的参数签名，参数相同的档位共用同一个SolverManager
+     */
+    public String key() {
+        return environmentMode + "/" + moveThreadCount + "/" + moveThreadBufferSize + "/" + randomSeed + "/" + constraintStreamImplType
+                + "/" + constructionHeuristicType + "/" + localSearchType + "/" + shiftMoves
+                + "/" + partitionCount + "/" + partitionSecondsSpentLimit + "/" + partitionThreadLimit;
+    }
+
+    @Override
+    public String toString() {
+        return name + "(environmentMode=" + environmentMode + ", moveThreadCount=" + moveThreadCount
+                + (isPartitioned() ? ", partitionCount=" + partitionCount : "") + ")";
+    }
+}
@@ -0,0 +1,218 @@
+package com.upec.factoryscheduling.common.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.optaplanner.core.config.solver.EnvironmentMode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.StringUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 求解器档位配置
+ * <p>对应 application.yaml 中的 aps.solver 配置项：
+ * <pre>
+ * aps:
+ *   solver:
+ *     active-profile: dev
+ *     profiles:
+ *       dev:
+ *         environment-mode: FULL_ASSERT
+ *       prod:
+ *         environment-mode: REPRODUCIBLE
+ *         move-thread-count: AUTO
+ * </pre>
+ * active-profile 为默认使用的档位，单次求解请求可以通过档位名称或参数覆盖。</p>
+ */
+@Slf4j
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "aps.solver")
+public class SolverProperties {
+
+    /**
+     * 默认档位名称
+     */
+    private String activeProfile = "dev";
+
+    /**
+     * 所有可选档位，key为档位名称
+     */
+    private Map<String, SolverProfile> profiles = new LinkedHashMap<>();
+
+    /**
+     * 时间槽可选日历窗口：工序计划开始日期之前允许的天数
+     */
+    private int maintenanceWindowDaysBefore = 3;
+
+    /**
+     * 时间槽可选日历窗口：工序计划完成日期之后允许的天数
+     */
+    private int maintenanceWindowDaysAfter = 10;
+
+    /**
+     * 关键路径时间窗：一个工作日可排的分钟数，用于把工序时长换算为跨越天数，0表示不构建关键路径时间窗。
+     * 取值不大于实际日产能时时间窗不会排除可行解
+     */
+    private int criticalPathDayMinutes = 1440;
+
+    /**
+     * 是否热启动：以上次保存的排程为初始解，构造启发式只分配未分配的时间槽，单次求解可用 ?warmStart= 覆盖
+     */
+    private boolean warmStart = true;
+
+    /**
+     * 最佳解推送间隔(毫秒)，间隔内产生的多个更优解合并为一次推送
+     */
+    private long streamIntervalMillis = 500;
+
+    /**
+     * 最佳解推送连接的超时时间(毫秒)，超时后浏览器EventSource会自动重连
+     */
+    private long streamTimeoutMillis = 30 * 60 * 1000L;
+
+    /**
+     * 内存中保留的已结束问题的最佳解个数，求解中的问题不受限制
+     */
+    private int bestSolutionCacheSize = 20;
+
+    /**
+     * 已结束问题的最佳解在最后一次访问后保留的时间(分钟)
+     */
+    private long bestSolutionTtlMinutes = 120;
+
+    /**
+     * 求解可用的CPU核数，0表示使用全部可用处理器
+     */
+    private int cpuBudget = 0;
+
+    /**
+     * 同时求解的问题个数，0表示按CPU核数自动确定(核数/2，至少1个)；超出的求解请求排队
+     */
+    private int maxConcurrentSolves = 0;
+
+    /**
+     * 每个用户同时求解的问题个数，0表示不单独限制
+     */
+    private int maxRunningPerUser = 0;
+
+    /**
+     * 每个用户排队中的问题个数上限，超出时拒绝新的求解请求，0表示不限制
+     */
+    private int maxQueuedPerUser = 5;
+
+    /**
+     * 估算排队时间使用的单次求解时长(秒)，有求解完成后改用实际时长的滑动平均
+     */
+    private long expectedSolveSeconds = 180;
+
+    /**
+     * 保存求解结果时每批查询和更新的时间槽个数
+     */
+    private int saveBatchSize = 1000;
+
+    /**
+     * 问题快照目录，每个问题一个文件，见 ProblemSnapshotStore
+     */
+    private String snapshotDir = "snapshots";
+
+    /**
+     * 从数据库加载问题后是否写入快照，供重新求解、基准测试和问题复现直接读取
+     * <p>默认关闭：快照在求解请求线程中同步写入，大问题会拖慢每次求解的启动。需要时通过 /snapshot 接口按需保存。
+     * 每个问题只保留最近一个快照文件，不会自动删除，不再需要的问题需手工清理 snapshotDir。</p>
+     */
+    private boolean snapshotOnLoad = false;
+
+    /**
+     * 实际使用的CPU核数
+     */
+    public int resolveCpuBudget() {
+        return cpuBudget > 0 ? cpuBudget : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 实际的同时求解问题个数
+     */
+    public int resolveMaxConcurrentSolves() {
+        return maxConcurrentSolves > 0 ? maxConcurrentSolves : Math.max(1, resolveCpuBudget() / 2);
+    }
+
+    /**
+     * 每个求解可分到的CPU核数，移动线程数、分区线程数为AUTO时按此值确定
+     */
+    public int cpuSharePerSolve() {
+        return Math.max(1, resolveCpuBudget() / resolveMaxConcurrentSolves());
+    }
+
+    /**
+     * 启动时校验全部档位，配置错误时直接终止启动
+     */
+    public void validate() {
+        if (profiles.isEmpty()) {
+            SolverProfile dev = new SolverProfile();
+            dev.setEnvironmentMode(EnvironmentMode.FULL_ASSERT);
+            profiles.put("dev", dev);
+            log.warn("未配置aps.solver.profiles，使用默认dev档位(FULL_ASSERT)");
+        }
+        profiles.forEach((name, profile) -> {
+            profile.setName(name);
+            try {
+                profile.validate();
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("求解器档位配置错误: " + e.getMessage(), e);
+            }
+            if (profile.isMultithreaded() && profile.getEnvironmentMode().isAsserted()) {
+                log.warn("求解器档位[{}]在{}模式下启用了多线程，断言开销会抵消多线程收益", name, profile.getEnvironmentMode());
+            }
+        });
+        if (maintenanceWindowDaysBefore < 0 || maintenanceWindowDaysAfter < 0) {
+            throw new IllegalStateException("aps.solver.maintenance-window-days-before/after不能为负数");
+        }
+        if (criticalPathDayMinutes < 0) {
+            throw new IllegalStateException("aps.solver.critical-path-day-minutes不能为负数");
+        }
+        if (streamIntervalMillis <= 0 || streamTimeoutMillis <= 0) {
+            throw new IllegalStateException("aps.solver.stream-interval-millis/stream-timeout-millis必须大于0");
+        }
+        if (bestSolutionCacheSize < 0 || bestSolutionTtlMinutes <= 0) {
+            throw new IllegalStateException("aps.solver.best-solution-cache-size不能为负数，best-solution-ttl-minutes必须大于0");
+        }
+        if (cpuBudget < 0 || maxConcurrentSolves < 0 || maxRunningPerUser < 0 || maxQueuedPerUser < 0 || expectedSolveSeconds <= 0) {
+            throw new IllegalStateException("aps.solver.cpu-budget/max-concurrent-solves/max-running-per-user/max-queued-per-user不能为负数，"
+                    + "expected-solve-seconds必须大于0");
+        }
+        if (saveBatchSize <= 0) {
+            throw new IllegalStateException("aps.solver.save-batch-size必须大于0");
+        }
+        if (!profiles.containsKey(activeProfile)) {
+            throw new IllegalStateException("aps.solver.active-profile=" + activeProfile + " 未在aps.solver.profiles中定义，可选: " + profiles.keySet());
+        }
+    }
+
+    /**
+     * 获取默认档位
+     */
+    public SolverProfile getActive() {
+        return profiles.get(activeProfile);
+    }
+
+    /**
+     * 按名称获取档位，名称为空时返回默认档位
+     *
+     * @param name 档位名称
+     * @return 档位对象
+     * @throws IllegalArgumentException 档位不存在时抛出
+     */
+    public SolverProfile resolve(String name) {
+        if (!StringUtils.hasText(name)) {
+            return getActive();
+        }
+        SolverProfile profile = profiles.get(name);
+        if (profile == null) {
+            throw new IllegalArgumentException("求解器档位不存在: " + name + "，可选: " + profiles.keySet());
+        }
+        return profile;
+    }
+}
@@ -1,74 +1,28 @@
 package com.upec.factoryscheduling.common.utils;
 
 import com.upec.factoryscheduling.aps.entity.Procedure;
+import com.upec.factoryscheduling.aps.entity.Task;
 
 import java.util.*;
 
 public class NodeLevelManager {
 
     /**
-     * 计算节点的层级（BFS广度优先算法）
-     * 从根节点开始，逐层计算每个节点的层级
+     * 计算从根节点可达的工序的层级（最长路径）
+     * <p>委托给 {@link ProcedureRouting}，每个工序和每条边只处理一次，结果缓存到任务上。
+     * 批量转换时应直接使用 {@link ProcedureRouting#buildAll(Collection)}。</p>
      *
      * @param root 根节点
      */
     public static void calculateLevels(Procedure root) {
-        if (root == null) {
-            return;
-        }
-        // 使用队列进行BFS遍历
-        Queue<Procedure> queue = new LinkedList<>();
-        Map<Procedure, Integer> visited = new HashMap<>();
-        // 初始化根节点
-        root.setLevel(1);
-        root.setIndex(1);
-        queue.offer(root);
-        visited.put(root, 0);
-        while (!queue.isEmpty()) {
-            Procedure current = queue.poll();
-            int currentLevel = current.getLevel();
-            // 处理所有下一个节点
-            if (current.getNextProcedure() != null) {
-                for (Procedure nextProcedure : current.getNextProcedure()) {
-                    // 如果节点尚未访问，或者新层级大于当前层级，则更新
-                    int newLevel = currentLevel + 1;
-                    if (!visited.containsKey(nextProcedure) || newLevel > visited.get(nextProcedure)) {
-                        nextProcedure.setLevel(newLevel);
-                        nextProcedure.setIndex(newLevel);
-                        visited.put(nextProcedure, newLevel);
-                        queue.offer(nextProcedure);
-                    }
-                }
-            }
-        }
-
+        routingOf(root);
     }
 
     /**
-     * 计算节点的层级（DFS深度优先算法）
-     * 递归计算每个节点的层级
+     * 计算节点的层级，与 {@link #calculateLevels(Procedure)} 相同
      */
     public static void calculateLevelsDFS(Procedure procedure) {
-        if (procedure == null) {
-            return;
-        }
-        // 如果节点没有层级，假设为根节点（层级0）
-        if (procedure.getLevel() == null) {
-            procedure.setLevel(1);
-            procedure.setIndex(1);
-        }
-        // 递归计算下一个节点的层级
-        if (procedure.getNextProcedure() != null) {
-            for (Procedure nextProcedure : procedure.getNextProcedure()) {
-                int newLevel = procedure.getLevel() + 1;
-                // 如果下一个节点还没有层级，或者新层级更大，则更新
-                if (nextProcedure.getLevel() == null || newLevel > nextProcedure.getLevel()) {
-                    nextProcedure.setLevel(newLevel);
-                    nextProcedure.setIndex(newLevel);
-                    calculateLevelsDFS(nextProcedure);
-                }
-            }
-        }
+        routingOf(procedure);
     }
 
     /**
@@ -78,122 +32,63 @@ public class NodeLevelManager {
         if (root == null) {
             return -1;
         }
-
-        // 确保层级已计算
-        if (root.getLevel() == null) {
-            calculateLevels(root);
-        }
-
-        int maxLevel = 0;
-        Queue<Procedure> queue = new LinkedList<>();
-        Set<Procedure> visited = new HashSet<>();
-
-        queue.offer(root);
-        visited.add(root);
-
-        while (!queue.isEmpty()) {
-            Procedure current = queue.poll();
-
-            // 更新最大层级
-            if (current.getLevel() != null && current.getLevel() > maxLevel) {
-                maxLevel = current.getLevel();
-            }
-
-            if (current.getNextProcedure() != null) {
-                for (Procedure nextProcedure : current.getNextProcedure()) {
-                    if (!visited.contains(nextProcedure)) {
-                        visited.add(nextProcedure);
-                        queue.offer(nextProcedure);
-                    }
-                }
-            }
-        }
-
-        return maxLevel;
+        return routingOf(root).getMaxLevel();
     }
 
     /**
      * 获取指定层级的节点列表
      */
     public static List<Procedure> getProcedureByLevel(Procedure root, int targetLevel) {
-        List<Procedure> result = new ArrayList<>();
-
         if (root == null || targetLevel < 0) {
-            return result;
-        }
-
-        // 确保层级已计算
-        if (root.getLevel() == null) {
-            calculateLevels(root);
+            return new ArrayList<>();
         }
-
-        Queue<Procedure> queue = new LinkedList<>();
-        Set<Procedure> visited = new HashSet<>();
-
-        queue.offer(root);
-        visited.add(root);
-
-        while (!queue.isEmpty()) {
-            Procedure current = queue.poll();
-
-            // 如果当前节点层级等于目标层级，添加到结果
-            if (current.getLevel() != null && current.getLevel() == targetLevel) {
-                result.add(current);
-            }
-
-            if (current.getNextProcedure() != null) {
-                for (Procedure nextProcedure : current.getNextProcedure()) {
-                    if (!visited.contains(nextProcedure)) {
-                        visited.add(nextProcedure);
-                        queue.offer(nextProcedure);
-                    }
-                }
-            }
-        }
-
-        // 按索引排序
-        result.sort(Comparator.comparingInt(Procedure::getIndex));
-
-        return result;
+        return new ArrayList<>(routingOf(root).getProcedures(targetLevel));
     }
 
     /**
      * 按层级分组节点
      */
     public static Map<Integer, List<Procedure>> groupProcedureByLevel(Procedure root) {
-        Map<Integer, List<Procedure>> levelMap = new TreeMap<>();
         if (root == null) {
-            return levelMap;
+            return new TreeMap<>();
         }
-        // 确保层级已计算
-        if (root.getLevel() == null) {
-            calculateLevels(root);
+        return routingOf(root).getLevels();
+    }
+
+    /**
+     * 根节点所在任务的工艺路线
+     * <p>任务上已缓存以该节点为起点的工艺路线时直接使用，否则收集从根节点可达的工序构建并缓存</p>
+     */
+    private static ProcedureRouting routingOf(Procedure root) {
+        if (root == null) {
+            return ProcedureRouting.of(null, Collections.emptyList());
         }
-        Queue<Procedure> queue = new LinkedList<>();
-        Set<Procedure> visited = new HashSet<>();
-        queue.offer(root);
+        Task task = root.getTask();
+        ProcedureRouting cached = task == null ? null : task.getRouting();
+        if (cached != null && cached.getProcedures(1).contains(root)) {
+            return cached;
+        }
+        Set<Procedure> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Procedure> reachable = new ArrayList<>();
+        Deque<Procedure> stack = new ArrayDeque<>();
+        stack.push(root);
         visited.add(root);
-        while (!queue.isEmpty()) {
-            Procedure current = queue.poll();
-            // 将节点添加到对应的层级列表
-            if (current.getLevel() != null) {
-                int level = current.getLevel();
-                levelMap.computeIfAbsent(level, k -> new ArrayList<>()).add(current);
-            }
+        while (!stack.isEmpty()) {
+            Procedure current = stack.pop();
+            reachable.add(current);
             if (current.getNextProcedure() != null) {
                 for (Procedure nextProcedure : current.getNextProcedure()) {
-                    if (!visited.contains(nextProcedure)) {
-                        visited.add(nextProcedure);
-                        queue.offer(nextProcedure);
+                    if (visited.add(nextProcedure)) {
+                        stack.push(nextProcedure);
                     }
                 }
             }
         }
-        // 每个层级的节点按索引排序
-        for (List<Procedure> procedures : levelMap.values()) {
-            procedures.sort(Comparator.comparingInt(Procedure::getIndex));
+        ProcedureRouting routing = ProcedureRouting.of(task == null ? null : task.getTaskNo(), reachable);
+        if (task != null) {
+            task.setRouting(routing);
         }
-        return levelMap;
+        return routing;
     }
 
     /**
@@ -299,6 +194,9 @@ public class NodeLevelManager {
         if (root == null) {
             return;
         }
+        if (root.getTask() != null) {
+            root.getTask().setRouting(null);
+        }
         Queue<Procedure> queue = new LinkedList<>();
         Set<Procedure> visited = new HashSet<>();
         queue.offer(root);
@@ -0,0 +1,216 @@
+package com.upec.factoryscheduling.common.utils;
+
+import com.upec.factoryscheduling.aps.entity.Procedure;
+import com.upec.factoryscheduling.aps.entity.Task;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * 任务工艺路线（工序有向无环图）
+ * <p>按 {@link Procedure#getNextProcedure()} 建图，用Kahn算法求拓扑序，同时沿拓扑序计算最长路径层级：
+ * 入度为0的工序层级为1，其余工序层级 = 所有前序工序层级的最大值 + 1。每个工序和每条边只处理一次，O(V+E)，
+ * 并行分支再多也不会重复入队。层级同时写入 {@link Procedure#setLevel(Integer)} 和 {@link Procedure#setIndex(int)}。</p>
+ * <p>环上的工序（及只能经环到达的工序）无法进入拓扑序，记入 {@link #getCyclicProcedures()}，
+ * 按工序号依次排在最大层级之后，保证每个工序都有层级。</p>
+ * <p>层级分组、最大层级在构建时一并算好，构建后只读；批量转换时用 {@link #buildAll(Collection)} 一次处理全部任务，
+ * 结果缓存在 {@link Task#getRouting()} 上。</p>
+ */
+@Slf4j
+public final class ProcedureRouting implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String taskNo;
+
+    /**
+     * 拓扑序，环上的工序排在最后
+     */
+    private final List<Procedure> topologicalOrder;
+
+    /**
+     * 层级分组，第i个元素为层级i+1的工序，组内按拓扑序
+     */
+    private final List<List<Procedure>> levels;
+
+    private final List<Procedure> cyclicProcedures;
+
+    private ProcedureRouting(String taskNo, List<Procedure> topologicalOrder, List<List<Procedure>> levels,
+                             List<Procedure> cyclicProcedures) {
+        this.taskNo = taskNo;
+        this.topologicalOrder = Collections.unmodifiableList(topologicalOrder);
+        this.levels = Collections.unmodifiableList(levels);
+        this.cyclicProcedures = Collections.unmodifiableList(cyclicProcedures);
+    }
+
+    /**
+     * 为一批工序按任务分别构建工艺路线，写入工序层级并缓存到任务上
+     *
+     * @param procedures 工序，可包含多个任务；没有任务的工序忽略
+     * @return 任务号 -> 工艺路线
+     */
+    public static Map<String, ProcedureRouting> buildAll(Collection<Procedure> procedures) {
+        Map<String, List<Procedure>> procedureByTask = new LinkedHashMap<>();
+        Map<String, Task> taskByNo = new HashMap<>();
+        for (Procedure procedure : procedures) {
+            Task task = procedure.getTask();
+            if (task == null || task.getTaskNo() == null) {
+                continue;
+            }
+            procedureByTask.computeIfAbsent(task.getTaskNo(), k -> new ArrayList<>()).add(procedure);
+            taskByNo.putIfAbsent(task.getTaskNo(), task);
+        }
+        Map<String, ProcedureRouting> routings = new LinkedHashMap<>(procedureByTask.size() * 2);
+        for (Map.Entry<String, List<Procedure>> entry : procedureByTask.entrySet()) {
+            ProcedureRouting routing = of(entry.getKey(), entry.getValue());
+            taskByNo.get(entry.getKey()).setRouting(routing);
+            routings.put(entry.getKey(), routing);
+        }
+        return routings;
+    }
+
+    /**
+     * 构建一个任务的工艺路线，指向其它任务的后继工序忽略
+     *
+     * @param taskNo     任务号，用于日志
+     * @param procedures 任务的全部工序
+     */
+    public static ProcedureRouting of(String taskNo, List<Procedure> procedures) {
+        int size = procedures.size();
+        Map<Procedure, Integer> indexOf = new IdentityHashMap<>(size * 2);
+        Procedure[] nodes = new Procedure[size];
+        int n = 0;
+        int edgeBound = 0;
+        for (Procedure procedure : procedures) {
+            if (indexOf.putIfAbsent(procedure, n) == null) {
+                nodes[n++] = procedure;
+                edgeBound += procedure.getNextProcedure() == null ? 0 : procedure.getNextProcedure().size();
+            }
+        }
+
+        // 邻接表(CSR)：successors[offsets[i] .. offsets[i+1]) 为节点i的后继
+        int[] inDegree = new int[n];
+        int[] offsets = new int[n + 1];
+        int[] successors = new int[edgeBound];
+        int edges = 0;
+        for (int i = 0; i < n; i++) {
+            List<Procedure> next = nodes[i].getNextProcedure();
+            if (next != null) {
+                for (Procedure successor : next) {
+                    Integer j = indexOf.get(successor);
+                    if (j != null) {
+                        successors[edges++] = j;
+                        inDegree[j]++;
+                    }
+                }
+            }
+            offsets[i + 1] = edges;
+        }
+
+        // Kahn拓扑排序，出队时层级已是所有前序层级的最大值+1
+        int[] level = new int[n];
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            if (inDegree[i] == 0) {
+                level[i] = 1;
+                queue[tail++] = i;
+            }
+        }
+        int maxLevel = 0;
+        while (head < tail) {
+            int i = queue[head++];
+            maxLevel = Math.max(maxLevel, level[i]);
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                int j = successors[k];
+                level[j] = Math.max(level[j], level[i] + 1);
+                if (--inDegree[j] == 0) {
+                    queue[tail++] = j;
+                }
+            }
+        }
+
+        List<Procedure> topologicalOrder = new ArrayList<>(n);
+        for (int k = 0; k < tail; k++) {
+            topologicalOrder.add(nodes[queue[k]]);
+        }
+        List<Procedure> cyclic = Collections.emptyList();
+        if (tail < n) {
+            cyclic = new ArrayList<>(n - tail);
+            for (int i = 0; i < n; i++) {
+                if (inDegree[i] > 0) {
+                    cyclic.add(nodes[i]);
+                }
+            }
+            cyclic.sort(Comparator.comparing(Procedure::getProcedureNo, Comparator.nullsLast(Comparator.naturalOrder())));
+            for (Procedure procedure : cyclic) {
+                level[indexOf.get(procedure)] = ++maxLevel;
+            }
+            topologicalOrder.addAll(cyclic);
+            log.warn("任务{}的工艺路线存在环，{}个工序按工序号排在最后：{}", taskNo, cyclic.size(),
+                    cyclic.stream().map(Procedure::getProcedureNo).toArray());
+        }
+
+        // 按拓扑序放入层级分组，组内保持拓扑序
+        int[] counts = new int[maxLevel];
+        for (int i = 0; i < n; i++) {
+            counts[level[i] - 1]++;
+            nodes[i].setLevel(level[i]);
+            nodes[i].setIndex(level[i]);
+        }
+        List<List<Procedure>> buckets = new ArrayList<>(maxLevel);
+        for (int l = 0; l < maxLevel; l++) {
+            buckets.add(new ArrayList<>(counts[l]));
+        }
+        for (Procedure procedure : topologicalOrder) {
+            buckets.get(procedure.getLevel() - 1).add(procedure);
+        }
+        List<List<Procedure>> readOnlyLevels = new ArrayList<>(maxLevel);
+        for (List<Procedure> bucket : buckets) {
+            readOnlyLevels.add(Collections.unmodifiableList(bucket));
+        }
+        return new ProcedureRouting(taskNo, topologicalOrder, readOnlyLevels, cyclic);
+    }
+
+    public String getTaskNo() {
+        return taskNo;
+    }
+
+    public List<Procedure> getTopologicalOrder() {
+        return topologicalOrder;
+    }
+
+    /**
+     * 最大层级，没有工序时为0
+     */
+    public int getMaxLevel() {
+        return levels.size();
+    }
+
+    /**
+     * 指定层级的工序，按拓扑序排列，层级不存在时为空列表
+     */
+    public List<Procedure> getProcedures(int level) {
+        return level < 1 || level > levels.size() ? Collections.emptyList() : levels.get(level - 1);
+    }
+
+    /**
+     * 层级 -> 工序
+     */
+    public Map<Integer, List<Procedure>> getLevels() {
+        Map<Integer, List<Procedure>> map = new TreeMap<>();
+        for (int l = 0; l < levels.size(); l++) {
+            map.put(l + 1, levels.get(l));
+        }
+        return map;
+    }
+
+    public boolean hasCycle() {
+        return !cyclicProcedures.isEmpty();
+    }
+
+    public List<Procedure> getCyclicProcedures() {
+        return cyclicProcedures;
+    }
+}
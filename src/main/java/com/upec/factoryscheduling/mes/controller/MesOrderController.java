@@ -2,6 +2,7 @@ package com.upec.factoryscheduling.mes.controller;
 
 import com.upec.factoryscheduling.common.utils.ApiResponse;
 import com.upec.factoryscheduling.mes.response.OrderTaskQueryResponse;
+import com.upec.factoryscheduling.mes.service.MesIncrementalSyncService;
 import com.upec.factoryscheduling.mes.service.MesJjOrderTaskService;
 import com.upec.factoryscheduling.mes.service.MesOrderService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,12 +22,23 @@ public class MesOrderController {
     @Autowired
     private MesJjOrderTaskService mesJjOrderTaskService;
 
+    @Autowired
+    private MesIncrementalSyncService mesIncrementalSyncService;
+
     @PostMapping("/syncData")
     public ApiResponse<Void> syncData(@RequestBody List<String> orderNos) {
 //        mesOrderService.mergePlannerData(orderNos);
         return ApiResponse.success();
     }
 
+    /**
+     * 立即执行一次MES增量同步(同步水位之后变化的订单、任务、工序并重排受影响的任务)
+     */
+    @PostMapping("/syncChanges")
+    public ApiResponse<MesIncrementalSyncService.SyncReport> syncChanges() {
+        return ApiResponse.success(mesIncrementalSyncService.syncChanges());
+    }
+
     /**
      * 根据条件分页查询订单任务数据（新接口，支持关联查询和分页）
      */
@@ -0,0 +1,38 @@
+package com.upec.factoryscheduling.mes.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * MES增量同步水位
+ * <p>每张MES表一行：已同步到的水位列值和同一水位下最后一行的主键，下次同步从 (水位, 主键) 之后继续。</p>
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "aps_mes_sync_watermark")
+public class MesSyncWatermark {
+
+    @Id
+    @Column(name = "table_name", length = 64)
+    private String tableName;
+
+    @Column(name = "watermark", length = 20)
+    private String watermark;
+
+    @Column(name = "last_key", length = 64)
+    private String lastKey;
+
+    //累计同步的行数
+    @Column(name = "synced_rows")
+    private long syncedRows;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
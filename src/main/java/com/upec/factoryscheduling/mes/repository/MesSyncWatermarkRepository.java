@@ -0,0 +1,9 @@
+package com.upec.factoryscheduling.mes.repository;
+
+import com.upec.factoryscheduling.mes.entity.MesSyncWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MesSyncWatermarkRepository extends JpaRepository<MesSyncWatermark, String> {
+}
@@ -0,0 +1,375 @@
+package com.upec.factoryscheduling.mes.service;
+
+import com.google.common.collect.Lists;
+import com.upec.factoryscheduling.aps.entity.Order;
+import com.upec.factoryscheduling.aps.entity.WorkCenter;
+import com.upec.factoryscheduling.aps.service.PlannerDataBatchWriter;
+import com.upec.factoryscheduling.aps.service.WorkCenterService;
+import com.upec.factoryscheduling.common.configuration.MesSyncProperties;
+import com.upec.factoryscheduling.mes.entity.MesJjOrderTask;
+import com.upec.factoryscheduling.mes.entity.MesJjProcedure;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * MES订单导入流水线
+ * <p>分为三个阶段，阶段之间通过有界队列传递批次，每个阶段独立运行：</p>
+ * <ol>
+ *     <li>读取：单线程以游标方式(fetch size)流式读取订单，每 chunk-size 个订单组成一个批次</li>
+ *     <li>转换：多个线程按批次查询MES任务和工序，并在内存中转换为订单、任务、工序、时间槽
+ *     (见 {@link MesPlannerDataConverter})</li>
+ *     <li>写入：多个线程按批次批量upsert(见 {@link PlannerDataBatchWriter})，每个批次一个事务</li>
+ * </ol>
+ * <p>队列满时上游阶段阻塞，内存中的批次个数有上限，与订单总数无关。任一阶段出错时停止全部阶段并抛出异常，
+ * 已写入的批次不回滚(upsert可重复执行，重新导入即可)。</p>
+ * <p>每个阶段的行数和耗时记录到指标 aps.mes.import.rows 和 aps.mes.import.busy(按stage区分)，
+ * 结束时输出各阶段的行/秒。</p>
+ */
+@Slf4j
+@Service
+public class MesImportPipeline {
+
+    private static final String READ = "read";
+    private static final String CONVERT = "convert";
+    private static final String WRITE = "write";
+
+    private JdbcTemplate jdbcTemplate;
+    private MesJjOrderTaskService mesJjOrderTaskService;
+    private MesJjProcedureService mesJjProcedureService;
+    private WorkCenterService workCenterService;
+    private PlannerDataBatchWriter plannerDataBatchWriter;
+    private MesSyncProperties mesSyncProperties;
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("mySqlTemplate")
+    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Autowired
+    public void setMesJjOrderTaskService(MesJjOrderTaskService mesJjOrderTaskService) {
+        this.mesJjOrderTaskService = mesJjOrderTaskService;
+    }
+
+    @Autowired
+    public void setMesJjProcedureService(MesJjProcedureService mesJjProcedureService) {
+        this.mesJjProcedureService = mesJjProcedureService;
+    }
+
+    @Autowired
+    public void setWorkCenterService(WorkCenterService workCenterService) {
+        this.workCenterService = workCenterService;
+    }
+
+    @Autowired
+    public void setPlannerDataBatchWriter(PlannerDataBatchWriter plannerDataBatchWriter) {
+        this.plannerDataBatchWriter = plannerDataBatchWriter;
+    }
+
+    @Autowired
+    public void setMesSyncProperties(MesSyncProperties mesSyncProperties) {
+        mesSyncProperties.validate();
+        this.mesSyncProperties = mesSyncProperties;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 导入订单查询返回的全部订单及其任务、工序、时间槽
+     *
+     * @param orderSql 订单查询，列名按 {@link BeanPropertyRowMapper} 映射到 {@link Order}
+     * @param args     查询参数
+     * @return 各阶段的统计
+     * @throws IllegalStateException 任一阶段出错或导入被中断时抛出
+     */
+    public ImportReport importOrders(String orderSql, Object... args) {
+        List<WorkCenter> workCenters = workCenterService.getAllMachines();
+        Map<String, WorkCenter> workCenterMap = workCenters.stream()
+                .collect(Collectors.toMap(WorkCenter::getId, workCenter -> workCenter, (w1, w2) -> w1));
+        return run(sink -> readOrders(orderSql, args, sink), orders -> convert(orders, workCenterMap));
+    }
+
+    /**
+     * 导入指定的订单(已在内存中)，按批次转换和写入
+     */
+    public ImportReport importOrders(List<Order> orders) {
+        List<WorkCenter> workCenters = workCenterService.getAllMachines();
+        Map<String, WorkCenter> workCenterMap = workCenters.stream()
+                .collect(Collectors.toMap(WorkCenter::getId, workCenter -> workCenter, (w1, w2) -> w1));
+        return run(sink -> {
+            for (List<Order> chunk : Lists.partition(orders, mesSyncProperties.getChunkSize())) {
+                sink.accept(new ArrayList<>(chunk));
+            }
+            return orders.size();
+        }, chunk -> convert(chunk, workCenterMap));
+    }
+
+    private ImportReport run(Reader reader, Function<List<Order>, PlannerDataBatchWriter.Batch> converter) {
+        int convertThreads = mesSyncProperties.getConvertThreads();
+        int writeThreads = mesSyncProperties.getWriteThreads();
+        BlockingQueue<List<Order>> convertQueue = new ArrayBlockingQueue<>(mesSyncProperties.getQueueCapacity());
+        BlockingQueue<PlannerDataBatchWriter.Batch> writeQueue = new ArrayBlockingQueue<>(mesSyncProperties.getQueueCapacity());
+        List<Order> endOfOrders = new ArrayList<>();
+        PlannerDataBatchWriter.Batch endOfBatches = new PlannerDataBatchWriter.Batch(
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Map<String, StageStats> stats = new LinkedHashMap<>();
+        stats.put(READ, new StageStats(READ));
+        stats.put(CONVERT, new StageStats(CONVERT));
+        stats.put(WRITE, new StageStats(WRITE));
+
+        long begin = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(convertThreads + writeThreads, new ThreadFactory() {
+            private int count;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mes-import-" + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        CountDownLatch converted = new CountDownLatch(convertThreads);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < convertThreads; i++) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        List<Order> orders;
+                        while ((orders = convertQueue.take()) != endOfOrders && failure.get() == null) {
+                            long start = System.nanoTime();
+                            PlannerDataBatchWriter.Batch batch = converter.apply(orders);
+                            stats.get(CONVERT).add(batch.size(), System.nanoTime() - start);
+                            put(writeQueue, batch, failure);
+                        }
+                    } catch (Throwable e) {
+                        fail(failure, e);
+                    } finally {
+                        converted.countDown();
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < writeThreads; i++) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        PlannerDataBatchWriter.Batch batch;
+                        while ((batch = writeQueue.take()) != endOfBatches && failure.get() == null) {
+                            long start = System.nanoTime();
+                            int rows = plannerDataBatchWriter.write(batch, mesSyncProperties.getWriteBatchSize());
+                            stats.get(WRITE).add(rows, System.nanoTime() - start);
+                        }
+                    } catch (Throwable e) {
+                        fail(failure, e);
+                    }
+                    return null;
+                }));
+            }
+
+            // 读取阶段在当前线程执行
+            long start = System.nanoTime();
+            try {
+                int rows = reader.read(orders -> put(convertQueue, orders, failure));
+                stats.get(READ).add(rows, System.nanoTime() - start);
+            } catch (Throwable e) {
+                fail(failure, e);
+            }
+            for (int i = 0; i < convertThreads; i++) {
+                putEnd(convertQueue, endOfOrders, failure);
+            }
+            converted.await();
+            for (int i = 0; i < writeThreads; i++) {
+                putEnd(writeQueue, endOfBatches, failure);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(failure, e);
+        } catch (ExecutionException e) {
+            fail(failure, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ImportReport report = new ImportReport(new ArrayList<>(stats.values()), System.nanoTime() - begin);
+        record(report);
+        log.info("MES导入{}：{}", failure.get() == null ? "完成" : "失败", report);
+        if (failure.get() != null) {
+            throw new IllegalStateException("MES导入失败: " + failure.get().getMessage(), failure.get());
+        }
+        return report;
+    }
+
+    /**
+     * 流式读取订单，每 chunk-size 个订单交给转换阶段
+     */
+    private int readOrders(String orderSql, Object[] args, Sink sink) throws InterruptedException {
+        BeanPropertyRowMapper<Order> mapper = new BeanPropertyRowMapper<>(Order.class);
+        int chunkSize = mesSyncProperties.getChunkSize();
+        List<Order> chunk = new ArrayList<>(chunkSize);
+        int[] rows = {0};
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(orderSql, java.sql.ResultSet.TYPE_FORWARD_ONLY, java.sql.ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(mesSyncProperties.getFetchSize());
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
+            return ps;
+        }, rs -> {
+            chunk.add(mapper.mapRow(rs, rows[0]++));
+            if (chunk.size() >= chunkSize) {
+                try {
+                    sink.accept(new ArrayList<>(chunk));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("MES导入被中断", e);
+                }
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) {
+            sink.accept(new ArrayList<>(chunk));
+        }
+        return rows[0];
+    }
+
+    /**
+     * 查询一批订单的MES任务和工序并转换
+     */
+    private PlannerDataBatchWriter.Batch convert(List<Order> orders, Map<String, WorkCenter> workCenterMap) {
+        List<String> orderNos = orders.stream().map(Order::getOrderNo).filter(Objects::nonNull).collect(Collectors.toList());
+        List<MesJjOrderTask> mesOrderTasks = new ArrayList<>();
+        for (List<String> chunk : Lists.partition(orderNos, 999)) {
+            mesOrderTasks.addAll(mesJjOrderTaskService.queryAllByOrderNoInAndTaskStatusIn(chunk, List.of("生产中", "待生产")));
+        }
+        List<String> taskNos = mesOrderTasks.stream().map(MesJjOrderTask::getTaskNo).distinct().collect(Collectors.toList());
+        List<MesJjProcedure> mesProcedures = new ArrayList<>();
+        for (List<String> chunk : Lists.partition(taskNos, 999)) {
+            mesProcedures.addAll(mesJjProcedureService.findAllByTaskNo(chunk));
+        }
+        return MesPlannerDataConverter.convert(orders, mesOrderTasks, mesProcedures, workCenterMap);
+    }
+
+    /**
+     * 放入队列，出错时不再等待
+     */
+    private static <T> void put(BlockingQueue<T> queue, T item, AtomicReference<Throwable> failure) throws InterruptedException {
+        while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+            if (failure.get() != null) {
+                throw new CancellationException("MES导入已停止");
+            }
+        }
+    }
+
+    /**
+     * 放入结束标记，出错时下游可能已经退出，清空队列中未处理的批次后再放入
+     */
+    private static <T> void putEnd(BlockingQueue<T> queue, T end, AtomicReference<Throwable> failure) throws InterruptedException {
+        while (!queue.offer(end, 100, TimeUnit.MILLISECONDS)) {
+            if (failure.get() != null) {
+                queue.removeIf(item -> item != end);
+            }
+        }
+    }
+
+    private static void fail(AtomicReference<Throwable> failure, Throwable e) {
+        if (!(e instanceof CancellationException) && failure.compareAndSet(null, e)) {
+            log.error("MES导入出错: {}", e.getMessage(), e);
+        }
+    }
+
+    private void record(ImportReport report) {
+        for (StageStats stage : report.getStages()) {
+            meterRegistry.counter("aps.mes.import.rows", "stage", stage.getName()).increment(stage.getRows());
+            meterRegistry.timer("aps.mes.import.busy", "stage", stage.getName()).record(stage.getBusyNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Sink {
+        void accept(List<Order> orders) throws InterruptedException;
+    }
+
+    @FunctionalInterface
+    private interface Reader {
+        int read(Sink sink) throws Exception;
+    }
+
+    /**
+     * 单个阶段的统计
+     */
+    @Getter
+    public static class StageStats {
+        private final String name;
+        private final AtomicLong rowCount = new AtomicLong();
+        private final AtomicLong busyNanoCount = new AtomicLong();
+
+        StageStats(String name) {
+            this.name = name;
+        }
+
+        void add(long rows, long nanos) {
+            rowCount.addAndGet(rows);
+            busyNanoCount.addAndGet(nanos);
+        }
+
+        public long getRows() {
+            return rowCount.get();
+        }
+
+        public long getBusyNanos() {
+            return busyNanoCount.get();
+        }
+
+        /**
+         * 按阶段所有线程的忙碌时间之和计算的单线程吞吐
+         */
+        public double rowsPerSecond() {
+            return getBusyNanos() == 0 ? 0 : getRows() * 1e9 / getBusyNanos();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %d行 %.0f行/秒", name, getRows(), rowsPerSecond());
+        }
+    }
+
+    /**
+     * 导入统计
+     */
+    @Getter
+    public static class ImportReport {
+        private final List<StageStats> stages;
+        private final long elapsedNanos;
+
+        ImportReport(List<StageStats> stages, long elapsedNanos) {
+            this.stages = stages;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return stages + "，总耗时" + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms";
+        }
+    }
+}
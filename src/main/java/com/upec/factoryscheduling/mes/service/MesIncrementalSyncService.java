@@ -0,0 +1,266 @@
+package com.upec.factoryscheduling.mes.service;
+
+import com.google.common.collect.Lists;
+import com.upec.factoryscheduling.aps.service.PlannerDataBatchWriter;
+import com.upec.factoryscheduling.aps.service.SchedulingService;
+import com.upec.factoryscheduling.common.configuration.MesSyncProperties;
+import com.upec.factoryscheduling.mes.entity.MesJjOrder;
+import com.upec.factoryscheduling.mes.entity.MesJjOrderTask;
+import com.upec.factoryscheduling.mes.entity.MesJjProcedure;
+import com.upec.factoryscheduling.mes.entity.MesSyncWatermark;
+import com.upec.factoryscheduling.mes.repository.MesJjOrderTaskRepository;
+import com.upec.factoryscheduling.mes.repository.MesOrderRepository;
+import com.upec.factoryscheduling.mes.repository.MesSyncWatermarkRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.Column;
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * MES增量同步
+ * <p>代替整表比对：每张MES表按水位列(修改时间)和主键分页拉取上次同步之后变化的行，批量更新已导入的订单、任务、工序，
+ * 每页写入后保存水位(见 {@link MesSyncWatermark})。更新语句可重复执行，同步中断后从上次保存的水位继续。</p>
+ * <p>工序变化时从MES重新读取其任务和订单，订单和任务表没有修改时间列时也能捕获随工序推进的状态变化。
+ * 同步结束后按时间槽所属的排程问题分组，只重排受影响的任务；问题正在求解或排队时跳过。</p>
+ * <p>只更新已导入的行，新订单由 {@link MesOrderService#syncMesOrders()} 导入。</p>
+ */
+@Slf4j
+@Service
+public class MesIncrementalSyncService {
+
+    private static final String ORDER_TABLE = "MES_JJ_ORDER";
+    private static final String TASK_TABLE = "MES_JJ_ORDER_TASK";
+    private static final String PROCEDURE_TABLE = "MES_JJ_PROCEDURE";
+
+    private static final String REPLAN_USER = "mes-sync";
+
+    private JdbcTemplate jdbcTemplate;
+    private PlannerDataBatchWriter plannerDataBatchWriter;
+    private MesSyncProperties mesSyncProperties;
+    private MesSyncWatermarkRepository mesSyncWatermarkRepository;
+    private MesOrderRepository mesOrderRepository;
+    private MesJjOrderTaskRepository mesJjOrderTaskRepository;
+    private SchedulingService schedulingService;
+
+    @Autowired
+    @Qualifier("mySqlTemplate")
+    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Autowired
+    public void setPlannerDataBatchWriter(PlannerDataBatchWriter plannerDataBatchWriter) {
+        this.plannerDataBatchWriter = plannerDataBatchWriter;
+    }
+
+    @Autowired
+    public void setMesSyncProperties(MesSyncProperties mesSyncProperties) {
+        this.mesSyncProperties = mesSyncProperties;
+    }
+
+    @Autowired
+    public void setMesSyncWatermarkRepository(MesSyncWatermarkRepository mesSyncWatermarkRepository) {
+        this.mesSyncWatermarkRepository = mesSyncWatermarkRepository;
+    }
+
+    @Autowired
+    public void setMesOrderRepository(MesOrderRepository mesOrderRepository) {
+        this.mesOrderRepository = mesOrderRepository;
+    }
+
+    @Autowired
+    public void setMesJjOrderTaskRepository(MesJjOrderTaskRepository mesJjOrderTaskRepository) {
+        this.mesJjOrderTaskRepository = mesJjOrderTaskRepository;
+    }
+
+    @Autowired
+    public void setSchedulingService(SchedulingService schedulingService) {
+        this.schedulingService = schedulingService;
+    }
+
+    /**
+     * 同步上次水位之后变化的订单、任务、工序，并重排受影响的任务
+     *
+     * @return 同步统计
+     */
+    @Scheduled(cron = "${aps.mes-sync.incremental-cron:0 */10 * * * *}")
+    public synchronized SyncReport syncChanges() {
+        SyncReport report = new SyncReport();
+        Set<String> orderNos = new LinkedHashSet<>();
+        Set<String> taskNos = new LinkedHashSet<>();
+        Set<String> procedureOrderNos = new LinkedHashSet<>();
+        Set<String> procedureTaskNos = new LinkedHashSet<>();
+
+        report.rows.put(PROCEDURE_TABLE, pull(PROCEDURE_TABLE, "SEQ", mesSyncProperties.getProcedureWatermarkColumn(),
+                MesJjProcedure.class, page -> {
+                    plannerDataBatchWriter.updateProcedures(MesPlannerDataConverter.convertProcedures(page,
+                            Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap()), mesSyncProperties.getWriteBatchSize());
+                    page.forEach(procedure -> {
+                        procedureTaskNos.add(procedure.getTaskNo());
+                        procedureOrderNos.add(procedure.getOrderNo());
+                    });
+                }));
+        report.rows.put(TASK_TABLE, pull(TASK_TABLE, "TASKNO", mesSyncProperties.getTaskWatermarkColumn(),
+                MesJjOrderTask.class, page -> applyTasks(page, taskNos)));
+        report.rows.put(ORDER_TABLE, pull(ORDER_TABLE, "ORDERNO", mesSyncProperties.getOrderWatermarkColumn(),
+                MesJjOrder.class, page -> applyOrders(page, orderNos)));
+
+        // 工序变化的任务和订单，本次没有按水位拉取到的从MES重新读取
+        procedureTaskNos.removeAll(taskNos);
+        procedureTaskNos.remove(null);
+        for (List<String> chunk : Lists.partition(new ArrayList<>(procedureTaskNos), 999)) {
+            applyTasks(mesJjOrderTaskRepository.findAllById(chunk), taskNos);
+        }
+        procedureOrderNos.removeAll(orderNos);
+        procedureOrderNos.remove(null);
+        for (List<String> chunk : Lists.partition(new ArrayList<>(procedureOrderNos), 999)) {
+            applyOrders(mesOrderRepository.findAllByOrderNoIn(chunk), orderNos);
+        }
+        report.refreshedTasks = procedureTaskNos.size();
+        report.refreshedOrders = procedureOrderNos.size();
+
+        taskNos.addAll(findTaskNosOfOrders(orderNos));
+        report.affectedTasks = taskNos.size();
+        if (mesSyncProperties.isReplanAfterSync()) {
+            report.replannedProblems.addAll(replan(taskNos));
+        }
+        log.info("MES增量同步完成：{}", report);
+        return report;
+    }
+
+    private void applyTasks(List<MesJjOrderTask> mesOrderTasks, Set<String> taskNos) {
+        plannerDataBatchWriter.updateTasks(MesPlannerDataConverter.convertTasks(mesOrderTasks), mesSyncProperties.getWriteBatchSize());
+        mesOrderTasks.forEach(task -> taskNos.add(task.getTaskNo()));
+    }
+
+    private void applyOrders(List<MesJjOrder> mesOrders, Set<String> orderNos) {
+        plannerDataBatchWriter.updateOrders(MesPlannerDataConverter.convertOrders(mesOrders), mesSyncProperties.getWriteBatchSize());
+        mesOrders.forEach(order -> orderNos.add(order.getOrderNo()));
+    }
+
+    /**
+     * 按 (水位列, 主键) 分页拉取水位之后的行，每页处理后保存水位
+     *
+     * @return 拉取的行数
+     */
+    private <T> long pull(String table, String keyColumn, String watermarkColumn, Class<T> type, Consumer<List<T>> apply) {
+        MesSyncWatermark watermark = mesSyncWatermarkRepository.findById(table).orElseGet(() -> {
+            MesSyncWatermark initial = new MesSyncWatermark();
+            initial.setTableName(table);
+            initial.setWatermark(mesSyncProperties.getInitialWatermark());
+            initial.setLastKey("");
+            return initial;
+        });
+        String sql = "select " + selectColumns(type) + ", t." + watermarkColumn + " as SYNC_WATERMARK, t." + keyColumn + " as SYNC_KEY"
+                + " from " + table + " t where t.ORDERNO like '00400%'"
+                + " and (t." + watermarkColumn + " > ? or (t." + watermarkColumn + " = ? and t." + keyColumn + " > ?))"
+                + " order by t." + watermarkColumn + ", t." + keyColumn + " limit ?";
+        BeanPropertyRowMapper<T> mapper = BeanPropertyRowMapper.newInstance(type);
+        int pageSize = mesSyncProperties.getSyncPageSize();
+        long rows = 0;
+        while (true) {
+            String[] last = new String[2];
+            List<T> page = jdbcTemplate.query(sql, (rs, rowNum) -> {
+                last[0] = rs.getString("SYNC_WATERMARK");
+                last[1] = rs.getString("SYNC_KEY");
+                return mapper.mapRow(rs, rowNum);
+            }, watermark.getWatermark(), watermark.getWatermark(), watermark.getLastKey(), pageSize);
+            if (page.isEmpty()) {
+                break;
+            }
+            apply.accept(page);
+            watermark.setWatermark(last[0]);
+            watermark.setLastKey(last[1]);
+            watermark.setSyncedRows(watermark.getSyncedRows() + page.size());
+            watermark.setUpdatedAt(LocalDateTime.now());
+            watermark = mesSyncWatermarkRepository.save(watermark);
+            rows += page.size();
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 按实体的@Column生成 "t.列名 as 属性名"，MES列名(如PLAN_STARTDATE)与属性名不能按下划线规则对应
+     */
+    private static String selectColumns(Class<?> type) {
+        List<String> columns = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            Column column = field.getAnnotation(Column.class);
+            if (column != null) {
+                columns.add("t." + column.name() + " as " + field.getName());
+            }
+        }
+        return String.join(", ", columns);
+    }
+
+    private List<String> findTaskNosOfOrders(Set<String> orderNos) {
+        List<String> taskNos = new ArrayList<>();
+        for (List<String> chunk : Lists.partition(new ArrayList<>(orderNos), 999)) {
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            taskNos.addAll(jdbcTemplate.queryForList("select task_no from aps_task where order_no in (" + placeholders + ")",
+                    String.class, chunk.toArray()));
+        }
+        return taskNos;
+    }
+
+    /**
+     * 按时间槽所属的排程问题分组重排，只加载受影响的任务，其余任务保持不变
+     *
+     * @return 开始重排的问题
+     */
+    private List<Long> replan(Set<String> taskNos) {
+        Map<Long, List<String>> problemTasks = new TreeMap<>();
+        for (List<String> chunk : Lists.partition(new ArrayList<>(taskNos), 999)) {
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query("select distinct t.problem_id, p.task_no from aps_timeslot t inner join aps_procedure p on t.procedure_id = p.id "
+                            + "where t.problem_id is not null and p.task_no in (" + placeholders + ")",
+                    rs -> {
+                        problemTasks.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(rs.getString(2));
+                    }, chunk.toArray());
+        }
+        List<Long> replanned = new ArrayList<>();
+        for (Map.Entry<Long, List<String>> entry : problemTasks.entrySet()) {
+            try {
+                schedulingService.startScheduling(entry.getKey(), entry.getValue(), null, null, null, null, REPLAN_USER);
+                replanned.add(entry.getKey());
+            } catch (IllegalStateException e) {
+                log.warn("问题{}正在求解或排队，跳过重排{}个任务: {}", entry.getKey(), entry.getValue().size(), e.getMessage());
+            }
+        }
+        return replanned;
+    }
+
+    /**
+     * 增量同步统计
+     */
+    @Getter
+    public static class SyncReport {
+        //MES表 -> 按水位拉取的行数
+        private final Map<String, Long> rows = new LinkedHashMap<>();
+        //因工序变化从MES重新读取的任务、订单个数
+        private int refreshedTasks;
+        private int refreshedOrders;
+        private int affectedTasks;
+        private final List<Long> replannedProblems = new ArrayList<>();
+
+        @Override
+        public String toString() {
+            return rows + "，重新读取任务" + refreshedTasks + "个、订单" + refreshedOrders + "个，受影响任务" + affectedTasks
+                    + "个，重排问题" + replannedProblems.stream().map(String::valueOf).collect(Collectors.joining(",", "[", "]"));
+        }
+    }
+}
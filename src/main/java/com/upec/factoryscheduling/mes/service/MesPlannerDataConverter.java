@@ -0,0 +1,202 @@
+package com.upec.factoryscheduling.mes.service;
+
+import com.upec.factoryscheduling.aps.entity.*;
+import com.upec.factoryscheduling.aps.service.PlannerDataBatchWriter;
+import com.upec.factoryscheduling.common.utils.DateUtils;
+import com.upec.factoryscheduling.common.utils.ProcedureRouting;
+import com.upec.factoryscheduling.mes.entity.MesJjOrder;
+import com.upec.factoryscheduling.mes.entity.MesJjOrderTask;
+import com.upec.factoryscheduling.mes.entity.MesJjProcedure;
+import com.xkzhangsan.time.utils.CollectionUtil;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * MES数据转换为排程基础数据
+ * <p>只在内存中转换，不访问数据库：任务、工序、时间槽之间的关联、工序后继关系、并行标记和工序层级都在这里建立，
+ * 结果交给 {@link PlannerDataBatchWriter} 批量写入。</p>
+ */
+public final class MesPlannerDataConverter {
+
+    private MesPlannerDataConverter() {
+    }
+
+    /**
+     * 转换一批订单及其任务、工序
+     *
+     * @param orders         订单
+     * @param mesOrderTasks  订单下的MES任务
+     * @param mesProcedures  任务下的MES工序
+     * @param workCenterMap  工作中心id -> 工作中心
+     * @return 待写入的排程基础数据
+     */
+    public static PlannerDataBatchWriter.Batch convert(List<Order> orders, List<MesJjOrderTask> mesOrderTasks,
+                                                       List<MesJjProcedure> mesProcedures, Map<String, WorkCenter> workCenterMap) {
+        List<Task> tasks = convertTasks(mesOrderTasks);
+        Map<String, Order> orderMap = orders.stream().collect(Collectors.toMap(Order::getOrderNo, order -> order, (o1, o2) -> o1));
+        Map<String, Task> taskMap = tasks.stream().collect(Collectors.toMap(Task::getTaskNo, task -> task, (t1, t2) -> t1));
+        List<Procedure> procedures = convertProcedures(mesProcedures.stream().distinct().collect(Collectors.toList()),
+                workCenterMap, orderMap, taskMap);
+        List<Timeslot> timeslots = new ArrayList<>(procedures.size());
+        for (Procedure procedure : procedures) {
+            if (procedure.getTask() != null) {
+                timeslots.add(createTimeslot(procedure));
+            }
+        }
+        return new PlannerDataBatchWriter.Batch(orders, tasks, procedures, timeslots);
+    }
+
+    /**
+     * 转换MES订单的状态、数量和日期，用于更新已导入的订单
+     */
+    public static List<Order> convertOrders(List<MesJjOrder> mesOrders) {
+        List<Order> orders = new ArrayList<>(mesOrders.size());
+        for (MesJjOrder mesOrder : mesOrders) {
+            Order order = new Order();
+            order.setOrderNo(mesOrder.getOrderNo());
+            order.setOrderStatus(mesOrder.getOrderStatus());
+            order.setErpStatus(mesOrder.getErpStatus());
+            order.setContractNum(mesOrder.getContractNum());
+            order.setPlanStartDate(DateUtils.parseLocalDate(mesOrder.getPlanStartDate()));
+            order.setPlanEndDate(DateUtils.parseLocalDate(mesOrder.getPlanEndDate()));
+            order.setFactStartDate(DateUtils.parseDateTime(mesOrder.getFactStartDate()));
+            order.setFactEndDate(DateUtils.parseDateTime(mesOrder.getFactEndDate()));
+            if (StringUtils.hasLength(mesOrder.getPlanQuantity())) {
+                order.setPlanQuantity(Integer.parseInt(mesOrder.getPlanQuantity()));
+            }
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    public static List<Task> convertTasks(List<MesJjOrderTask> mesOrderTasks) {
+        List<Task> tasks = new ArrayList<>(mesOrderTasks.size());
+        for (MesJjOrderTask orderTask : mesOrderTasks) {
+            Task task = new Task();
+            task.setOrderNo(orderTask.getOrderNo());
+            task.setTaskNo(orderTask.getTaskNo());
+            task.setStatus(orderTask.getTaskStatus());
+            task.setCreateDate(DateUtils.parseDateTime(orderTask.getCreateDate()));
+            if (StringUtils.hasLength(orderTask.getPlanStartDate())) {
+                task.setPlanStartDate(DateUtils.parseLocalDate(orderTask.getPlanStartDate()));
+            }
+            if (StringUtils.hasLength(orderTask.getPlanEndDate())) {
+                task.setPlanEndDate(DateUtils.parseLocalDate(orderTask.getPlanEndDate()));
+            }
+            if (StringUtils.hasLength(orderTask.getFactStartDate())) {
+                task.setFactStartDate(DateUtils.parseDateTime(orderTask.getFactStartDate()));
+            }
+            if (StringUtils.hasLength(orderTask.getFactEndDate())) {
+                task.setFactEndDate(DateUtils.parseDateTime(orderTask.getFactEndDate()));
+            }
+            if (StringUtils.hasLength(orderTask.getMark())) {
+                task.setPriority(100);
+            }
+            if (StringUtils.hasLength(orderTask.getPlanQuantity())) {
+                task.setPlanQuantity(Integer.parseInt(orderTask.getPlanQuantity()));
+            }
+            if (StringUtils.hasLength(orderTask.getLockedRemark())) {
+                task.setLockedRemark(orderTask.getLockedRemark());
+            }
+            if (StringUtils.hasLength(orderTask.getRouteSeq())) {
+                task.setRouteId(orderTask.getRouteSeq());
+            }
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    public static List<Procedure> convertProcedures(List<MesJjProcedure> mesProcedures, Map<String, WorkCenter> workCenterMap,
+                                                    Map<String, Order> orders, Map<String, Task> tasks) {
+        List<Procedure> procedures = new ArrayList<>(mesProcedures.size());
+        for (MesJjProcedure mesProcedure : mesProcedures) {
+            if (mesProcedure.getProcedureNo().equals("15")) {
+                continue;
+            }
+            Procedure procedure = new Procedure();
+            Integer procedureNo = Integer.parseInt(mesProcedure.getProcedureNo());
+            procedure.setId(mesProcedure.getSeq());
+            procedure.setProcedureName(mesProcedure.getProcedureName());
+            procedure.setStatus(mesProcedure.getProcedureStatus());
+            procedure.setProcedureNo(procedureNo);
+            procedure.setWorkCenter(workCenterMap.get(mesProcedure.getWorkCenterSeq()));
+            procedure.setOrder(orders.get(mesProcedure.getOrderNo()));
+            procedure.setTask(tasks.get(mesProcedure.getTaskNo()));
+            procedure.setProcedureType(mesProcedure.getProcedureType());
+            procedure.setCreateDate(DateUtils.parseDateTime(mesProcedure.getCreatedate()));
+            if (StringUtils.hasLength(mesProcedure.getNextProcedureNo())) {
+                String[] nextProcedureNos = mesProcedure.getNextProcedureNo().split(",");
+                List<Integer> numbers = new ArrayList<>();
+                for (String nextProcedureNo : nextProcedureNos) {
+                    numbers.add(Integer.parseInt(nextProcedureNo));
+                }
+                procedure.setNextProcedureNo(numbers);
+            }
+            if (StringUtils.hasLength(mesProcedure.getPlanStartDate())) {
+                procedure.setPlanStartDate(DateUtils.parseLocalDate(mesProcedure.getPlanStartDate()));
+            }
+            if (StringUtils.hasLength(mesProcedure.getPlanEndDate())) {
+                procedure.setPlanEndDate(DateUtils.parseLocalDate(mesProcedure.getPlanEndDate()));
+            }
+            if (StringUtils.hasLength(mesProcedure.getFactStartDate())) {
+                procedure.setStartTime(DateUtils.parseDateTime(mesProcedure.getFactStartDate()));
+            }
+            if (StringUtils.hasLength(mesProcedure.getFactEndDate())) {
+                procedure.setEndTime(DateUtils.parseDateTime(mesProcedure.getFactEndDate()));
+            }
+            if (mesProcedure.getMachineHours() != null) {
+                procedure.setMachineMinutes((int) (Double.parseDouble(mesProcedure.getMachineHours()) * 60));
+            }
+            if (StringUtils.hasLength(mesProcedure.getHumanHours())) {
+                procedure.setHumanMinutes((int) (Double.parseDouble(mesProcedure.getHumanHours()) * 60));
+            }
+            if (StringUtils.hasLength(mesProcedure.getReworkFlag())) {
+                procedure.setRework(mesProcedure.getReworkFlag().equals("1"));
+            }
+            procedures.add(procedure);
+        }
+        // 任务号_工序号 -> 工序，任务缺失的工序不参与连接
+        Map<String, Procedure> map = procedures.stream().filter(p -> p.getTask() != null)
+                .collect(Collectors.toMap(p -> p.getTask().getTaskNo() + "_" + p.getProcedureNo(), m1 -> m1, (p1, p2) -> p1));
+        for (Procedure procedure : procedures) {
+            List<Integer> numbers = procedure.getNextProcedureNo();
+            if (CollectionUtil.isEmpty(numbers) || procedure.getTask() == null) {
+                continue;
+            }
+            for (Integer number : numbers) {
+                Procedure nextProcedure = map.get(procedure.getTask().getTaskNo() + "_" + number);
+                if (nextProcedure != null) {
+                    if (numbers.size() >= 2) {
+                        nextProcedure.setParallel(true);
+                    }
+                    procedure.addNextProcedure(nextProcedure);
+                }
+            }
+        }
+        // 整批工序一次性按任务计算拓扑序和层级，O(V+E)
+        ProcedureRouting.buildAll(procedures);
+        return procedures;
+    }
+
+    public static Timeslot createTimeslot(Procedure procedure) {
+        Timeslot timeslot = new Timeslot();
+        timeslot.setId(procedure.getTask().getTaskNo() + "_" + procedure.getProcedureNo() + "_" + 1);
+        timeslot.setProcedure(procedure);
+        timeslot.setStartTime(procedure.getStartTime());
+        if (procedure.getTask() != null) {
+            timeslot.setPriority(timeslot.getProcedure().getTask().getPriority());
+        }
+        timeslot.setIndex(1);
+        timeslot.setTotal(1);
+        timeslot.setProcedureIndex(procedure.getIndex());
+        timeslot.setParallel(procedure.isParallel());
+        timeslot.setDuration(procedure.getMachineMinutes());
+        if (procedure.getStartTime() != null && procedure.getEndTime() != null) {
+            timeslot.setManual(true);
+            timeslot.setStartTime(procedure.getStartTime());
+        }
+        return timeslot;
+    }
+}
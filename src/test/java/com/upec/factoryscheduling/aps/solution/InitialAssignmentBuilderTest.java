@@ -0,0 +1,53 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.Timeslot;
+import com.upec.factoryscheduling.aps.entity.WorkCenter;
+import com.upec.factoryscheduling.aps.entity.WorkCenterMaintenance;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 初始分配 - 手动排定的时间槽保持固定
+ */
+class InitialAssignmentBuilderTest {
+
+    @Test
+    void manualTimeslotKeepsCalendarOfAnotherWorkCenter() {
+        FactorySchedulingSolution solution = ProblemChangeScoreConsistencyTest.problem();
+        WorkCenter other = new WorkCenter();
+        other.setId("WC2");
+        WorkCenterMaintenance foreign = new WorkCenterMaintenance(other, LocalDate.of(2025, 1, 6), 480, "");
+        foreign.setId("WC2_0");
+        solution.getMaintenances().add(foreign);
+        List<Timeslot> timeslots = solution.getTimeslots();
+        timeslots.get(0).setManual(true);
+        timeslots.get(0).setMaintenance(foreign);
+        timeslots.get(1).setMaintenance(foreign);
+
+        InitialAssignmentBuilder.build(timeslots, solution.getMaintenances(),
+                new PlanningEpoch(LocalDate.of(2025, 1, 6).atStartOfDay()), true);
+
+        assertSame(foreign, timeslots.get(0).getMaintenance());
+        assertTrue(timeslots.get(0).isPinned());
+        assertNull(timeslots.get(1).getMaintenance());
+    }
+
+    @Test
+    void manualTimeslotLosesCalendarMissingFromProblem() {
+        FactorySchedulingSolution solution = ProblemChangeScoreConsistencyTest.problem();
+        WorkCenterMaintenance detached = new WorkCenterMaintenance();
+        detached.setId("WC1_9");
+        Timeslot timeslot = solution.getTimeslots().get(0);
+        timeslot.setManual(true);
+        timeslot.setMaintenance(detached);
+
+        InitialAssignmentBuilder.build(solution.getTimeslots(), solution.getMaintenances(),
+                new PlanningEpoch(LocalDate.of(2025, 1, 6).atStartOfDay()), true);
+
+        assertNull(timeslot.getMaintenance());
+    }
+}
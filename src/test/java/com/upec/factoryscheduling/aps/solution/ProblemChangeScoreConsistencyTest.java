@@ -0,0 +1,193 @@
+package com.upec.factoryscheduling.aps.solution;
+
+import com.upec.factoryscheduling.aps.entity.*;
+import com.upec.factoryscheduling.common.configuration.OptaPlannerConfig;
+import org.junit.jupiter.api.Test;
+import org.optaplanner.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
+import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.impl.score.director.InnerScoreDirector;
+import org.optaplanner.core.impl.score.director.InnerScoreDirectorFactory;
+import org.optaplanner.core.impl.solver.DefaultSolverFactory;
+import org.optaplanner.core.impl.solver.change.DefaultProblemChangeDirector;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 求解中的问题变更 - 增量分数与从头计算的分数一致
+ */
+class ProblemChangeScoreConsistencyTest {
+
+    private static final LocalDate HORIZON_START = LocalDate.of(2025, 1, 6);
+
+    @SuppressWarnings("unchecked")
+    private final InnerScoreDirectorFactory<FactorySchedulingSolution, HardMediumSoftScore> scoreDirectorFactory =
+            ((DefaultSolverFactory<FactorySchedulingSolution>) SolverFactory.<FactorySchedulingSolution>create(
+                    OptaPlannerConfig.baseSolverConfig())).getScoreDirectorFactory();
+
+    @Test
+    void maintenanceCapacityChangeRecalculatesCapacityConstraints() {
+        FactorySchedulingSolution solution = problem();
+        try (InnerScoreDirector<FactorySchedulingSolution, HardMediumSoftScore> scoreDirector =
+                     scoreDirectorFactory.buildScoreDirector(true, false)) {
+            scoreDirector.setWorkingSolution(solution);
+            HardMediumSoftScore before = scoreDirector.calculateScore();
+            FactorySchedulingSolution published = scoreDirector.cloneWorkingSolution();
+
+            new DefaultProblemChangeDirector<>(scoreDirector).doProblemChange(new MaintenanceCapacityProblemChange("WC1_0", 240));
+            HardMediumSoftScore after = scoreDirector.calculateScore();
+
+            assertNotEquals(before, after);
+            assertEquals(scoreFromScratch(scoreDirector.cloneWorkingSolution()), after);
+            assertEquals(480, maintenance(published, "WC1_0").getCapacity());
+            assertEquals(240, maintenance(scoreDirector.getWorkingSolution(), "WC1_0").getCapacity());
+            for (Timeslot timeslot : scoreDirector.getWorkingSolution().getTimeslots()) {
+                assertTrue(timeslot.getMaintenanceRange().contains(timeslot.getMaintenance()));
+            }
+        }
+    }
+
+    @Test
+    void removingFixedTimeslotReleasesItsCapacity() {
+        FactorySchedulingSolution solution = problem();
+        solution.getTimeslots().get(0).setManual(true);
+        FixedTaskBuilder.build(solution);
+        assertEquals(200, maintenance(solution, "WC1_0").getFixedLoadMinutes());
+        try (InnerScoreDirector<FactorySchedulingSolution, HardMediumSoftScore> scoreDirector =
+                     scoreDirectorFactory.buildScoreDirector(true, false)) {
+            scoreDirector.setWorkingSolution(solution);
+            HardMediumSoftScore before = scoreDirector.calculateScore();
+            FactorySchedulingSolution published = scoreDirector.cloneWorkingSolution();
+
+            new DefaultProblemChangeDirector<>(scoreDirector).doProblemChange(new RemoveTimeslotsProblemChange(List.of("T0_1_1")));
+            HardMediumSoftScore after = scoreDirector.calculateScore();
+
+            assertNotEquals(before, after);
+            assertEquals(scoreFromScratch(scoreDirector.cloneWorkingSolution()), after);
+            assertTrue(scoreDirector.getWorkingSolution().getFixedTimeslots().isEmpty());
+            assertEquals(0, maintenance(scoreDirector.getWorkingSolution(), "WC1_0").getFixedLoadMinutes());
+            assertEquals(200, maintenance(published, "WC1_0").getFixedLoadMinutes());
+            assertEquals(1, published.getFixedTimeslots().size());
+        }
+    }
+
+    @Test
+    void unpinningFixedTimeslotMakesItPlanningEntity() {
+        FactorySchedulingSolution solution = problem();
+        solution.getTimeslots().get(0).setManual(true);
+        FixedTaskBuilder.build(solution);
+        try (InnerScoreDirector<FactorySchedulingSolution, HardMediumSoftScore> scoreDirector =
+                     scoreDirectorFactory.buildScoreDirector(true, false)) {
+            scoreDirector.setWorkingSolution(solution);
+            scoreDirector.calculateScore();
+            FactorySchedulingSolution published = scoreDirector.cloneWorkingSolution();
+
+            new DefaultProblemChangeDirector<>(scoreDirector).doProblemChange(new PinTimeslotProblemChange("T0_1_1", "WC1_1", false));
+            HardMediumSoftScore after = scoreDirector.calculateScore();
+
+            assertEquals(scoreFromScratch(scoreDirector.cloneWorkingSolution()), after);
+            FactorySchedulingSolution working = scoreDirector.getWorkingSolution();
+            assertTrue(working.getFixedTimeslots().isEmpty());
+            Timeslot released = working.getTimeslots().stream()
+                    .filter(timeslot -> "T0_1_1".equals(timeslot.getId()))
+                    .findFirst()
+                    .orElseThrow(IllegalStateException::new);
+            assertFalse(released.isPinned());
+            assertSame(maintenance(working, "WC1_1"), released.getMaintenance());
+            assertEquals(0, maintenance(working, "WC1_0").getFixedLoadMinutes());
+            assertTrue(published.getFixedTimeslots().get(0).isManual());
+        }
+    }
+
+    private HardMediumSoftScore scoreFromScratch(FactorySchedulingSolution solution) {
+        try (InnerScoreDirector<FactorySchedulingSolution, HardMediumSoftScore> scoreDirector =
+                     scoreDirectorFactory.buildScoreDirector(false, false)) {
+            scoreDirector.setWorkingSolution(solution);
+            return scoreDirector.calculateScore();
+        }
+    }
+
+    private static WorkCenterMaintenance maintenance(FactorySchedulingSolution solution, String id) {
+        return solution.getMaintenances().stream()
+                .filter(maintenance -> id.equals(maintenance.getId()))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+    }
+
+    /**
+     * 一个工作中心两天的日历，三道工序分配在第一天，第一天超出容量
+     */
+    static FactorySchedulingSolution problem() {
+        WorkCenter workCenter = new WorkCenter();
+        workCenter.setId("WC1");
+        workCenter.setWorkCenterCode("WC1");
+        workCenter.setName("WC1");
+        workCenter.setStatus("Y");
+        List<WorkCenterMaintenance> maintenances = new ArrayList<>();
+        for (int d = 0; d < 2; d++) {
+            WorkCenterMaintenance maintenance = new WorkCenterMaintenance(workCenter, HORIZON_START.plusDays(d), 480, "");
+            maintenance.setId("WC1_" + d);
+            maintenance.setYear(maintenance.getDate().getYear());
+            maintenance.setStatus("Y");
+            maintenance.setStartTime(LocalTime.of(9, 0));
+            maintenance.setEndTime(LocalTime.of(17, 0));
+            maintenances.add(maintenance);
+        }
+        List<Timeslot> timeslots = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            timeslots.add(timeslot("T" + t, workCenter, maintenances.get(0)));
+        }
+        FactorySchedulingSolution solution = new FactorySchedulingSolution(timeslots, maintenances);
+        solution.setProblemId(1L);
+        solution.setProcedureLinks(ProcedureLinkBuilder.build(solution.getTimeslots()));
+        PlanningEpoch epoch = new PlanningEpoch(HORIZON_START.atStartOfDay());
+        CriticalPathWindowBuilder.build(solution.getTimeslots(), solution.getProcedureLinks(), epoch, 10, 1440);
+        MaintenanceRangeBuilder.build(solution.getTimeslots(), solution.getMaintenances(), 3, 10);
+        EpochMinutesBuilder.build(solution, epoch);
+        WorkCenterIndexBuilder.build(solution);
+        return solution;
+    }
+
+    private static Timeslot timeslot(String taskNo, WorkCenter workCenter, WorkCenterMaintenance maintenance) {
+        Order order = new Order();
+        order.setOrderNo("O" + taskNo);
+        order.setPlanStartDate(HORIZON_START);
+        order.setPlanEndDate(HORIZON_START.plusDays(1));
+        Task task = new Task();
+        task.setTaskNo(taskNo);
+        task.setOrderNo(order.getOrderNo());
+        task.setPriority(1);
+        task.setPlanStartDate(order.getPlanStartDate());
+        task.setPlanEndDate(order.getPlanEndDate());
+        Procedure procedure = new Procedure();
+        procedure.setId(taskNo + "_1");
+        procedure.setTask(task);
+        procedure.setOrder(order);
+        procedure.setProcedureNo(1);
+        procedure.setProcedureName("P1");
+        procedure.setIndex(1);
+        procedure.setLevel(1);
+        procedure.setWorkCenter(workCenter);
+        procedure.setMachineMinutes(200);
+        procedure.setPlanStartDate(HORIZON_START);
+        procedure.setPlanEndDate(HORIZON_START.plusDays(1));
+        procedure.setNextProcedure(new ArrayList<>());
+        procedure.setNextProcedureNo(new ArrayList<>());
+        procedure.setStatus("待生产");
+        Timeslot timeslot = new Timeslot();
+        timeslot.setId(procedure.getId() + "_1");
+        timeslot.setProblemId(1L);
+        timeslot.setProcedure(procedure);
+        timeslot.setPriority(task.getPriority());
+        timeslot.setDuration(procedure.getMachineMinutes());
+        timeslot.setIndex(1);
+        timeslot.setTotal(1);
+        timeslot.setProcedureIndex(procedure.getIndex());
+        timeslot.setMaintenance(maintenance);
+        return timeslot;
+    }
+}
@@ -10,6 +10,8 @@ import type {
     ProcedureQueryParams,
     RegisterRequest,
     RegisterResponse,
+    SolutionUpdate,
+    SolveResponse,
     SpringDataPage,
     Task,
     UserInfo,
@@ -127,10 +129,10 @@ export const startTasks = async (orderNos: string[]): Promise<string> => {
   // 根据时间戳生成problemId
   const problemId = `${Date.now()}`;
   // 保存服务器响应（响应拦截器已经返回了response.data）
-  const response:ApiResponse<string> = await apiClient.post(`/api/scheduling/solve/${problemId}`, orderNos);
-  // 此时response已经是{code: 200, msg: "success", data: "..."}的格式
+  const response:ApiResponse<SolveResponse> = await apiClient.post(`/api/scheduling/solve/${problemId}`, orderNos);
+  // 此时response已经是{code: 200, msg: "success", data: {...}}的格式
   if (response.code === 200) {
-    return response.data || '';
+    return response.data ? `${response.data.message} (${response.data.profile}: ${response.data.environmentMode}, moveThreadCount=${response.data.moveThreadCount})` : '';
   } else {
     throw new Error(`API调用失败: ${response.msg || '未知错误'}`);
   }
@@ -317,3 +319,28 @@ export const splitOutsourcingTimeslot = async (timeslotId: string, days: number)
     throw new Error(`拆分时间槽失败: ${response.msg || '未知错误'}`);
   }
 };
+
+// 订阅最佳解推送(SSE)，返回取消订阅函数
+// 求解结束后服务端关闭连接，onFinished在收到最终解后调用；EventSource无法设置请求头，令牌通过token参数传递
+export const subscribeBestSolution = (
+  problemId: string,
+  onUpdate: (update: SolutionUpdate) => void,
+  onFinished?: (error: string | null) => void
+): (() => void) => {
+  const token = localStorage.getItem('token');
+  const url = `${apiClient.defaults.baseURL}/api/scheduling/stream/${problemId}${token ? `?token=${encodeURIComponent(token)}` : ''}`;
+  const source = new EventSource(url, { withCredentials: true });
+  const handle = (event: MessageEvent) => {
+    const update: SolutionUpdate = JSON.parse(event.data);
+    onUpdate(update);
+    if (update.solverStatus === 'NOT_SOLVING') {
+      // 求解已结束，阻止EventSource自动重连
+      source.close();
+      onFinished?.(update.error);
+    }
+  };
+  source.addEventListener('snapshot', handle as EventListener);
+  source.addEventListener('update', handle as EventListener);
+  source.addEventListener('failed', handle as EventListener);
+  return () => source.close();
+};
@@ -118,6 +118,41 @@ export interface ApiResponse<T> {
     total?: number;
 }
 
+// 启动求解响应，包含实际生效的求解档位
+export interface SolveResponse {
+    problemId: number;
+    profile: string;
+    environmentMode: string;
+    moveThreadCount: string;
+    // SOLVING_ACTIVE已开始求解，SOLVING_SCHEDULED排队中
+    status: string;
+    // 以下排队字段只在排队时有值
+    queuePosition?: number;
+    queueLength?: number;
+    etaSeconds?: number;
+    message: string;
+}
+
+// 最佳解推送中的时间槽排程结果
+export interface TimeslotAssignment {
+    timeslotId: string;
+    maintenanceId: string | null;
+    startTime: string | null;
+}
+
+// 最佳解推送消息：full=true时changes为全部时间槽，否则只包含发生变化的时间槽
+export interface SolutionUpdate {
+    problemId: number;
+    version: number;
+    full: boolean;
+    score: string | null;
+    feasible: boolean;
+    solverStatus: string;
+    error: string | null;
+    changes: TimeslotAssignment[];
+    removed: string[];
+}
+
 // ====================================
 // 认证相关接口定义
 // ====================================